@@ -0,0 +1,105 @@
+package io.kamax.mxisd.benchmark;
+
+import io.kamax.mxisd.config.HashingConfig;
+import io.kamax.mxisd.config.MxisdConfig;
+import io.kamax.mxisd.hash.HashManager;
+import io.kamax.mxisd.lookup.BulkLookupRequest;
+import io.kamax.mxisd.lookup.SingleLookupReply;
+import io.kamax.mxisd.lookup.SingleLookupRequest;
+import io.kamax.mxisd.lookup.ThreePidMapping;
+import io.kamax.mxisd.lookup.provider.IThreePidProvider;
+import io.kamax.mxisd.lookup.strategy.RecursivePriorityLookupStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * v1 bulk lookups through the lookup strategy, against two in-memory providers which each know a tenth of the addresses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BulkLookupBenchmark {
+
+    private static class Provider implements IThreePidProvider {
+
+        private final int priority;
+        private final Map<String, String> mxids = new HashMap<>();
+
+        Provider(int priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public boolean isLocal() {
+            return true;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public Optional<SingleLookupReply> find(SingleLookupRequest request) {
+            return Optional.empty();
+        }
+
+        @Override
+        public List<ThreePidMapping> populate(List<ThreePidMapping> mappings) {
+            List<ThreePidMapping> found = new ArrayList<>();
+            for (ThreePidMapping mapping : mappings) {
+                String mxid = mxids.get(mapping.getMedium() + ":" + mapping.getValue());
+                if (mxid != null) {
+                    found.add(new ThreePidMapping(mapping.getMedium(), mapping.getValue(), mxid));
+                }
+            }
+            return found;
+        }
+
+    }
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private RecursivePriorityLookupStrategy strategy;
+    private List<ThreePidMapping> mappings;
+
+    @Setup
+    public void setup() {
+        Provider first = new Provider(10);
+        Provider second = new Provider(5);
+        mappings = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String address = "user" + i + "@example.org";
+            if (i % 20 == 0) {
+                first.mxids.put("email:" + address, "@user" + i + ":example.org");
+            } else if (i % 20 == 10) {
+                second.mxids.put("email:" + address, "@user" + i + ":example.org");
+            }
+            mappings.add(new ThreePidMapping("email", address, null));
+        }
+
+        HashManager hashManager = new HashManager();
+        hashManager.init(new HashingConfig(), Collections.emptyList(), null);
+        MxisdConfig cfg = MxisdConfig.forDomain("example.org").inMemory().build();
+        strategy = new RecursivePriorityLookupStrategy(cfg.getLookup(), Arrays.asList(first, second), null, hashManager);
+    }
+
+    @Benchmark
+    public List<ThreePidMapping> bulk() {
+        BulkLookupRequest request = new BulkLookupRequest();
+        request.setRequester("127.0.0.1");
+        // The lookup removes found mappings from the list it is given
+        request.setMappings(new ArrayList<>(mappings));
+        return strategy.find(request).join();
+    }
+
+}
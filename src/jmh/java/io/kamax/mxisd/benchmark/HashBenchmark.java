@@ -0,0 +1,148 @@
+package io.kamax.mxisd.benchmark;
+
+import io.kamax.mxisd.config.HashingConfig;
+import io.kamax.mxisd.config.SQLiteStorageConfig;
+import io.kamax.mxisd.config.StorageConfig;
+import io.kamax.mxisd.hash.engine.HashEngine;
+import io.kamax.mxisd.hash.storage.HashStorage;
+import io.kamax.mxisd.hash.storage.InMemoryHashStorage;
+import io.kamax.mxisd.hash.storage.SqlHashStorage;
+import io.kamax.mxisd.lookup.SingleLookupReply;
+import io.kamax.mxisd.lookup.SingleLookupRequest;
+import io.kamax.mxisd.lookup.ThreePidMapping;
+import io.kamax.mxisd.lookup.provider.IThreePidProvider;
+import io.kamax.mxisd.storage.ormlite.OrmLiteSqlStorage;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hash computation and v2 lookups of client batches where about one address in ten is known, as for an address book
+ * sync, with and without the Bloom filter in front of the storage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class HashBenchmark {
+
+    private static final int TableSize = 10000;
+
+    private static class Engine extends HashEngine {
+
+        Engine(List<? extends IThreePidProvider> providers, HashStorage hashStorage, HashingConfig config) {
+            super(providers, hashStorage, config);
+        }
+
+        String hash(ThreePidMapping mapping) {
+            return hash(mapping, getPepper());
+        }
+
+    }
+
+    private static class Provider implements IThreePidProvider {
+
+        private final List<ThreePidMapping> mappings = new ArrayList<>();
+
+        Provider(int size) {
+            for (int i = 0; i < size; i++) {
+                mappings.add(new ThreePidMapping("email", "user" + i + "@example.org", "@user" + i + ":example.org"));
+            }
+        }
+
+        @Override
+        public boolean isLocal() {
+            return true;
+        }
+
+        @Override
+        public int getPriority() {
+            return 0;
+        }
+
+        @Override
+        public Optional<SingleLookupReply> find(SingleLookupRequest request) {
+            return Optional.empty();
+        }
+
+        @Override
+        public List<ThreePidMapping> populate(List<ThreePidMapping> mappings) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Iterable<ThreePidMapping> populateHashes() {
+            return mappings;
+        }
+
+    }
+
+    @Param({"memory", "sql"})
+    public String storage;
+
+    @Param({"10", "100", "1000"})
+    public int batch;
+
+    private Engine engine;
+    private HashStorage hashStorage;
+    private ThreePidMapping mapping;
+    private List<String> hashes;
+
+    private static HashStorage buildStorage(String type) {
+        if ("memory".equals(type)) {
+            return new InMemoryHashStorage();
+        }
+
+        StorageConfig.Provider provider = new StorageConfig.Provider();
+        SQLiteStorageConfig config = new SQLiteStorageConfig();
+        config.setDatabase(":memory:");
+        provider.setSqlite(config);
+        return new SqlHashStorage(new OrmLiteSqlStorage(StorageConfig.BackendEnum.sqlite, provider));
+    }
+
+    @Setup
+    public void setup() {
+        HashingConfig cfg = new HashingConfig();
+        cfg.setEnabled(true);
+        cfg.setHashStorageType("memory".equals(storage) ? HashingConfig.HashStorageEnum.in_memory : HashingConfig.HashStorageEnum.sql);
+
+        Provider provider = new Provider(TableSize);
+        hashStorage = buildStorage(storage);
+        engine = new Engine(Collections.singletonList(provider), hashStorage, cfg);
+        engine.updateHashes();
+        mapping = provider.mappings.get(0);
+
+        Random rnd = new Random(42);
+        hashes = new ArrayList<>();
+        for (int i = 0; i < batch; i++) {
+            ThreePidMapping m = i % 10 == 0
+                ? provider.mappings.get(rnd.nextInt(TableSize))
+                : new ThreePidMapping("email", "contact" + rnd.nextInt() + "@example.com", null);
+            hashes.add(engine.hash(m));
+        }
+    }
+
+    @Benchmark
+    public String hash() {
+        return engine.hash(mapping);
+    }
+
+    @Benchmark
+    public Collection<Pair<String, ThreePidMapping>> find() {
+        return hashStorage.find(hashes);
+    }
+
+    @Benchmark
+    public Collection<Pair<String, ThreePidMapping>> filteredFind() {
+        // Without a filter, as with the in-memory storage, this is the same as find()
+        List<String> candidates = engine.filter(hashes);
+        return candidates.isEmpty() ? Collections.emptyList() : hashStorage.find(candidates);
+    }
+
+}
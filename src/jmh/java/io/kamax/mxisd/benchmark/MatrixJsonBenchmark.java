@@ -0,0 +1,182 @@
+/*
+ * mxisd - Matrix Identity Server Daemon
+ * Copyright (C) 2019 Kamax Sàrl
+ *
+ * https://www.kamax.io/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.kamax.mxisd.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import io.kamax.matrix.json.GsonUtil;
+import io.kamax.matrix.json.MatrixJson;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Canonical JSON encoding, compared to the previous JsonWriter based implementation kept here as a baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MatrixJsonBenchmark {
+
+    private static class Legacy {
+
+        private static void encode(JsonElement el, JsonWriter writer) throws IOException {
+            if (el.isJsonObject()) {
+                writer.beginObject();
+                for (Map.Entry<String, JsonElement> entry : (Iterable<Map.Entry<String, JsonElement>>) el.getAsJsonObject().entrySet().stream()
+                        .sorted(Comparator.comparing(Map.Entry::getKey))::iterator) {
+                    writer.name(entry.getKey());
+                    encode(entry.getValue(), writer);
+                }
+                writer.endObject();
+            } else if (el.isJsonPrimitive()) {
+                writer.jsonValue(el.toString());
+            } else if (el.isJsonArray()) {
+                writer.beginArray();
+                for (JsonElement item : el.getAsJsonArray()) {
+                    encode(item, writer);
+                }
+                writer.endArray();
+            } else {
+                writer.nullValue();
+            }
+        }
+
+        static String encodeCanonical(JsonObject obj) {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                writer.setIndent("");
+                writer.setHtmlSafe(false);
+                writer.setLenient(false);
+                encode(obj, writer);
+                writer.close();
+                return out.toString(StandardCharsets.UTF_8.name());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+    @Param({"lookup", "invite", "bulk"})
+    public String payload;
+
+    private JsonObject obj;
+
+    private static JsonObject lookupReply() {
+        JsonObject obj = new JsonObject();
+        obj.addProperty("address", "john.doe@example.org");
+        obj.addProperty("medium", "email");
+        obj.addProperty("mxid", "@john.doe:example.org");
+        obj.addProperty("not_after", 1577836800000L);
+        obj.addProperty("not_before", 1546300800000L);
+        obj.addProperty("ts", 1561939200000L);
+        return obj;
+    }
+
+    private static JsonObject invite() {
+        JsonObject signed = new JsonObject();
+        signed.addProperty("mxid", "@john.doe:example.org");
+        signed.addProperty("token", "a4b5c6d7e8f9a4b5c6d7e8f9a4b5c6d7e8f9a4b5c6d7e8f9a4b5c6d7e8f9abcd");
+
+        JsonObject invite = new JsonObject();
+        invite.addProperty("sender", "@jane.doe:example.org");
+        invite.addProperty("room_id", "!abcdefghijklmnop:example.org");
+        invite.addProperty("mxid", "@john.doe:example.org");
+        invite.addProperty("medium", "email");
+        invite.addProperty("address", "john.doe@example.org");
+        invite.add("signed", signed);
+
+        JsonArray invites = new JsonArray();
+        invites.add(invite);
+
+        JsonObject obj = new JsonObject();
+        obj.add("invites", invites);
+        obj.addProperty("medium", "email");
+        obj.addProperty("address", "john.doe@example.org");
+        obj.addProperty("mxid", "@john.doe:example.org");
+        return obj;
+    }
+
+    private static JsonObject bulkRequest() {
+        JsonArray threepids = new JsonArray();
+        for (int i = 0; i < 1000; i++) {
+            JsonArray tpid = new JsonArray();
+            tpid.add("email");
+            tpid.add("user" + i + "@example.org");
+            threepids.add(tpid);
+        }
+
+        JsonObject obj = new JsonObject();
+        obj.add("threepids", threepids);
+        obj.addProperty("requester", "@jane.doe:example.org");
+        return obj;
+    }
+
+    @Setup
+    public void setup() {
+        switch (payload) {
+            case "lookup":
+                obj = lookupReply();
+                break;
+            case "invite":
+                obj = invite();
+                break;
+            default:
+                obj = bulkRequest();
+        }
+
+        if (!Legacy.encodeCanonical(obj).equals(MatrixJson.encodeCanonical(obj))) {
+            throw new IllegalStateException("Canonical encodings differ for " + GsonUtil.get().toJson(obj));
+        }
+    }
+
+    @Benchmark
+    public String legacyString() {
+        return Legacy.encodeCanonical(obj);
+    }
+
+    @Benchmark
+    public byte[] legacyBytes() {
+        return Legacy.encodeCanonical(obj).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String canonicalString() {
+        return MatrixJson.encodeCanonical(obj);
+    }
+
+    @Benchmark
+    public byte[] canonicalBytes() {
+        return MatrixJson.encodeCanonicalBytes(obj);
+    }
+
+}
@@ -0,0 +1,70 @@
+package io.kamax.mxisd.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import io.kamax.matrix.json.GsonUtil;
+import io.kamax.mxisd.http.io.identity.ClientBulkLookupRequest;
+import io.kamax.mxisd.http.io.identity.ClientHashLookupRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of lookup request bodies as done by the handlers: straight from the body stream into the request class, or
+ * into a JSON tree from the whole body as a string.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class RequestParsingBenchmark {
+
+    @Param({"10", "1000"})
+    public int size;
+
+    private byte[] bulkBody;
+    private byte[] hashBody;
+
+    @Setup
+    public void setup() {
+        JsonArray threepids = new JsonArray();
+        JsonArray addresses = new JsonArray();
+        for (int i = 0; i < size; i++) {
+            JsonArray tpid = new JsonArray();
+            tpid.add("email");
+            tpid.add("user" + i + "@example.org");
+            threepids.add(tpid);
+            addresses.add("rujYzy1w0JxulN_rVlErGUmkdXT5znL0sjSF_IW" + String.format("%04d", i));
+        }
+
+        JsonObject bulk = new JsonObject();
+        bulk.add("threepids", threepids);
+        bulkBody = GsonUtil.get().toJson(bulk).getBytes(StandardCharsets.UTF_8);
+
+        JsonObject hash = new JsonObject();
+        hash.addProperty("algorithm", "sha256");
+        hash.addProperty("pepper", "matrixrocks");
+        hash.add("addresses", addresses);
+        hashBody = GsonUtil.get().toJson(hash).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ClientBulkLookupRequest bulkStream() {
+        return GsonUtil.get().fromJson(new InputStreamReader(new ByteArrayInputStream(bulkBody), StandardCharsets.UTF_8),
+            ClientBulkLookupRequest.class);
+    }
+
+    @Benchmark
+    public JsonObject bulkTree() {
+        return GsonUtil.parseObj(new String(bulkBody, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public ClientHashLookupRequest hashStream() {
+        return GsonUtil.get().fromJson(new InputStreamReader(new ByteArrayInputStream(hashBody), StandardCharsets.UTF_8),
+            ClientHashLookupRequest.class);
+    }
+
+}
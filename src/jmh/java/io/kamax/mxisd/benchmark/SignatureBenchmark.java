@@ -0,0 +1,66 @@
+package io.kamax.mxisd.benchmark;
+
+import com.google.gson.JsonObject;
+import io.kamax.matrix.json.MatrixJson;
+import io.kamax.mxisd.config.MxisdConfig;
+import io.kamax.mxisd.crypto.Signature;
+import io.kamax.mxisd.crypto.ed25519.Ed25519KeyManager;
+import io.kamax.mxisd.crypto.ed25519.Ed25519SignatureManager;
+import io.kamax.mxisd.storage.crypto.MemoryKeyStore;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import net.i2p.crypto.eddsa.spec.EdDSANamedCurveTable;
+import net.i2p.crypto.eddsa.spec.EdDSAPublicKeySpec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing and verifying a signed v1 lookup reply, including its canonical encoding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SignatureBenchmark {
+
+    private Ed25519SignatureManager signMgr;
+    private JsonObject reply;
+    private byte[] replyBytes;
+    private EdDSAPublicKey publicKey;
+    private String signature;
+
+    @Setup
+    public void setup() {
+        Ed25519KeyManager keyMgr = new Ed25519KeyManager(new MemoryKeyStore());
+        signMgr = new Ed25519SignatureManager(MxisdConfig.forDomain("example.org").inMemory().build(), keyMgr);
+
+        reply = new JsonObject();
+        reply.addProperty("address", "john.doe@example.org");
+        reply.addProperty("medium", "email");
+        reply.addProperty("mxid", "@john.doe:example.org");
+        reply.addProperty("not_after", 1577836800000L);
+        reply.addProperty("not_before", 1546300800000L);
+        reply.addProperty("ts", 1561939200000L);
+        replyBytes = MatrixJson.encodeCanonicalBytes(reply);
+
+        Signature sign = signMgr.sign(replyBytes);
+        signature = sign.getSignature();
+        byte[] pubKey = Base64.getDecoder().decode(keyMgr.getPublicKeyBase64(sign.getKey()));
+        publicKey = new EdDSAPublicKey(new EdDSAPublicKeySpec(pubKey, EdDSANamedCurveTable.ED_25519_CURVE_SPEC));
+
+        if (!signMgr.verify(publicKey, signature, replyBytes)) {
+            throw new IllegalStateException("Signature does not verify");
+        }
+    }
+
+    @Benchmark
+    public Signature sign() {
+        return signMgr.sign(reply);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return signMgr.verify(publicKey, signature, replyBytes);
+    }
+
+}
@@ -24,79 +24,245 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import com.google.gson.stream.JsonWriter;
+import com.google.gson.JsonPrimitive;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class MatrixJson {
 
-    // Needed to avoid silly try/catch block in lambdas
-    // We only use ByteArray streams, so IOException will not happen (unless irrecoverable situation like OOM)
-    private static class JsonWriterUnchecked extends JsonWriter {
+    // Writes canonical JSON as UTF-8 straight into a byte buffer, with the same escaping rules as Gson's JsonWriter
+    private static class CanonicalWriter {
 
-        public JsonWriterUnchecked(Writer out) {
-            super(out);
+        private static final int initialSize = 1024;
+        private static final int maxRetainedSize = 64 * 1024;
+        private static final byte[] hex = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        private static final Comparator<Map.Entry<String, JsonElement>> byKey = Map.Entry.comparingByKey();
+
+        private byte[] buf = new byte[initialSize];
+        private int len;
+
+        private void reset() {
+            // We do not keep big buffers around after an unusually large document
+            if (buf.length > maxRetainedSize) {
+                buf = new byte[initialSize];
+            }
+            len = 0;
         }
 
-        @Override
-        public JsonWriter name(String value) {
-            try {
-                return super.name(value);
-            } catch (IOException e) {
-                throw new JsonCanonicalException(e);
+        private void ensure(int extra) {
+            if (len + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
             }
         }
-    }
 
-    private static JsonParser parser = new JsonParser();
+        private void write(int b) {
+            ensure(1);
+            buf[len++] = (byte) b;
+        }
 
-    private static void encodeCanonical(JsonObject el, JsonWriterUnchecked writer) throws IOException {
-        writer.beginObject();
-        el.entrySet().stream().sorted(Comparator.comparing(Map.Entry::getKey)).forEachOrdered(entry -> {
-            writer.name(entry.getKey());
-            encodeCanonicalElement(entry.getValue(), writer);
-        });
-        writer.endObject();
-    }
+        private void writeAscii(String s) {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                buf[len++] = (byte) s.charAt(i);
+            }
+        }
 
-    private static void encodeCanonicalArray(JsonArray array, JsonWriterUnchecked writer) throws IOException {
-        writer.beginArray();
-        array.forEach(el -> encodeCanonicalElement(el, writer));
-        writer.endArray();
-    }
+        private void writeUnicodeEscape(char c) {
+            ensure(6);
+            buf[len++] = '\\';
+            buf[len++] = 'u';
+            buf[len++] = hex[(c >> 12) & 0xF];
+            buf[len++] = hex[(c >> 8) & 0xF];
+            buf[len++] = hex[(c >> 4) & 0xF];
+            buf[len++] = hex[c & 0xF];
+        }
+
+        private void writeEscaped(char c) {
+            switch (c) {
+                case '"':
+                    writeAscii("\\\"");
+                    break;
+                case '\\':
+                    writeAscii("\\\\");
+                    break;
+                case '\t':
+                    writeAscii("\\t");
+                    break;
+                case '\b':
+                    writeAscii("\\b");
+                    break;
+                case '\n':
+                    writeAscii("\\n");
+                    break;
+                case '\r':
+                    writeAscii("\\r");
+                    break;
+                case '\f':
+                    writeAscii("\\f");
+                    break;
+                default:
+                    writeUnicodeEscape(c);
+            }
+        }
+
+        private void writeString(String s) {
+            ensure(s.length() + 2);
+            buf[len++] = '"';
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    if (c < 0x20 || c == '"' || c == '\\') {
+                        writeEscaped(c);
+                    } else {
+                        write(c);
+                    }
+                } else if (c < 0x800) {
+                    ensure(2);
+                    buf[len++] = (byte) (0xC0 | (c >> 6));
+                    buf[len++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        int cp = Character.toCodePoint(c, s.charAt(++i));
+                        ensure(4);
+                        buf[len++] = (byte) (0xF0 | (cp >> 18));
+                        buf[len++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                        buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                        buf[len++] = (byte) (0x80 | (cp & 0x3F));
+                    } else {
+                        // Same replacement as the UTF-8 encoder for a lone surrogate
+                        write('?');
+                    }
+                } else if (c == '\u2028' || c == '\u2029') {
+                    writeUnicodeEscape(c);
+                } else {
+                    ensure(3);
+                    buf[len++] = (byte) (0xE0 | (c >> 12));
+                    buf[len++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buf[len++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            write('"');
+        }
+
+        private void writePrimitive(JsonPrimitive value) {
+            if (value.isString()) {
+                writeString(value.getAsString());
+            } else if (value.isBoolean()) {
+                writeAscii(value.getAsBoolean() ? "true" : "false");
+            } else {
+                writeAscii(value.getAsNumber().toString());
+            }
+        }
+
+        private void writeEntry(Map.Entry<String, JsonElement> entry) {
+            writeString(entry.getKey());
+            write(':');
+            writeElement(entry.getValue());
+        }
+
+        private boolean isSorted(Set<Map.Entry<String, JsonElement>> entries) {
+            Iterator<Map.Entry<String, JsonElement>> it = entries.iterator();
+            if (!it.hasNext()) {
+                return true;
+            }
+
+            String previous = it.next().getKey();
+            while (it.hasNext()) {
+                String current = it.next().getKey();
+                if (previous.compareTo(current) > 0) {
+                    return false;
+                }
+                previous = current;
+            }
+
+            return true;
+        }
+
+        private void writeObject(JsonObject obj) {
+            write('{');
+            Set<Map.Entry<String, JsonElement>> entries = obj.entrySet();
+            boolean first = true;
+            if (isSorted(entries)) {
+                for (Map.Entry<String, JsonElement> entry : entries) {
+                    if (!first) {
+                        write(',');
+                    }
+                    writeEntry(entry);
+                    first = false;
+                }
+            } else {
+                List<Map.Entry<String, JsonElement>> sorted = new ArrayList<>(entries);
+                sorted.sort(byKey);
+                for (Map.Entry<String, JsonElement> entry : sorted) {
+                    if (!first) {
+                        write(',');
+                    }
+                    writeEntry(entry);
+                    first = false;
+                }
+            }
+            write('}');
+        }
+
+        private void writeArray(JsonArray array) {
+            write('[');
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) {
+                    write(',');
+                }
+                writeElement(array.get(i));
+            }
+            write(']');
+        }
 
-    private static void encodeCanonicalElement(JsonElement el, JsonWriterUnchecked writer) {
-        try {
-            if (el.isJsonObject()) encodeCanonical(el.getAsJsonObject(), writer);
-            else if (el.isJsonPrimitive()) writer.jsonValue(el.toString());
-            else if (el.isJsonArray()) encodeCanonicalArray(el.getAsJsonArray(), writer);
-            else if (el.isJsonNull()) writer.nullValue();
+        private void writeElement(JsonElement el) {
+            if (el.isJsonObject()) writeObject(el.getAsJsonObject());
+            else if (el.isJsonPrimitive()) writePrimitive(el.getAsJsonPrimitive());
+            else if (el.isJsonArray()) writeArray(el.getAsJsonArray());
+            else if (el.isJsonNull()) writeAscii("null");
             else throw new JsonCanonicalException("Unexpected JSON type, this is a bug, report!");
-        } catch (IOException e) {
-            throw new JsonCanonicalException(e);
         }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buf, len);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buf, 0, len, StandardCharsets.UTF_8);
+        }
+
+    }
+
+    private static JsonParser parser = new JsonParser();
+    private static ThreadLocal<CanonicalWriter> writers = ThreadLocal.withInitial(CanonicalWriter::new);
+
+    private static CanonicalWriter encode(JsonObject obj) {
+        CanonicalWriter writer = writers.get();
+        writer.reset();
+        writer.writeObject(obj);
+        return writer;
+    }
+
+    /**
+     * Encode a JSON object in its canonical form, as UTF-8 bytes ready to be signed or hashed.
+     *
+     * @param obj The JSON object to encode
+     * @return The UTF-8 bytes of the canonical form
+     */
+    public static byte[] encodeCanonicalBytes(JsonObject obj) {
+        return encode(obj).toByteArray();
     }
 
     public static String encodeCanonical(JsonObject obj) {
-        try {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            JsonWriterUnchecked writer = new JsonWriterUnchecked(new OutputStreamWriter(out, StandardCharsets.UTF_8));
-            writer.setIndent("");
-            writer.setHtmlSafe(false);
-            writer.setLenient(false);
-
-            encodeCanonical(obj, writer);
-            writer.close();
-            return out.toString(StandardCharsets.UTF_8.name());
-        } catch (IOException e) {
-            throw new JsonCanonicalException(e);
-        }
+        return encode(obj).toString();
     }
 
     public static String encodeCanonical(String data) {
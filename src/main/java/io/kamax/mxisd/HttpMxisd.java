@@ -20,16 +20,25 @@
 
 package io.kamax.mxisd;
 
+import io.kamax.mxisd.config.AdminServerConfig;
+import io.kamax.mxisd.config.HttpServerConfig;
 import io.kamax.mxisd.config.MatrixConfig;
 import io.kamax.mxisd.config.MxisdConfig;
 import io.kamax.mxisd.config.PolicyConfig;
+import io.kamax.mxisd.config.RateLimitConfig;
 import io.kamax.mxisd.config.ServerConfig;
+import io.kamax.mxisd.config.ShutdownConfig;
+import io.kamax.mxisd.exception.ConfigurationException;
 import io.kamax.mxisd.http.undertow.handler.ApiHandler;
 import io.kamax.mxisd.http.undertow.handler.AuthorizationHandler;
 import io.kamax.mxisd.http.undertow.handler.CheckTermsHandler;
 import io.kamax.mxisd.http.undertow.handler.InternalInfoHandler;
 import io.kamax.mxisd.http.undertow.handler.OptionsHandler;
+import io.kamax.mxisd.http.undertow.handler.RateLimitHandler;
 import io.kamax.mxisd.http.undertow.handler.RequestDumpingHandler;
+import io.kamax.mxisd.http.undertow.handler.RequestLoggingHandler;
+import io.kamax.mxisd.http.undertow.handler.RequestMetricsHandler;
+import io.kamax.mxisd.http.undertow.handler.RequestTraceWriter;
 import io.kamax.mxisd.http.undertow.handler.SaneHandler;
 import io.kamax.mxisd.http.undertow.handler.as.v1.AsNotFoundHandler;
 import io.kamax.mxisd.http.undertow.handler.as.v1.AsTransactionHandler;
@@ -62,31 +71,66 @@ import io.kamax.mxisd.http.undertow.handler.invite.v1.RoomInviteHandler;
 import io.kamax.mxisd.http.undertow.handler.profile.v1.InternalProfileHandler;
 import io.kamax.mxisd.http.undertow.handler.profile.v1.ProfileHandler;
 import io.kamax.mxisd.http.undertow.handler.register.v1.Register3pidRequestTokenHandler;
+import io.kamax.mxisd.http.undertow.handler.status.HealthHandler;
+import io.kamax.mxisd.http.undertow.handler.status.LogLevelsHandler;
+import io.kamax.mxisd.http.undertow.handler.status.MetricsHandler;
 import io.kamax.mxisd.http.undertow.handler.status.StatusHandler;
 import io.kamax.mxisd.http.undertow.handler.status.VersionHandler;
 import io.kamax.mxisd.http.undertow.handler.term.v2.AcceptTermsHandler;
 import io.kamax.mxisd.http.undertow.handler.term.v2.GetTermsHandler;
+import io.kamax.mxisd.logging.AsyncLogStream;
 import io.kamax.mxisd.matrix.IdentityServiceAPI;
+import io.kamax.mxisd.metrics.MetricRegistry;
+import io.kamax.mxisd.ratelimit.LoadShedder;
+import io.kamax.mxisd.ratelimit.RateLimiter;
 import io.undertow.Handlers;
 import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.predicate.Predicate;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.RoutingHandler;
+import io.undertow.server.handlers.GracefulShutdownHandler;
+import io.undertow.server.handlers.encoding.ContentEncodingRepository;
+import io.undertow.server.handlers.encoding.DeflateEncodingProvider;
+import io.undertow.server.handlers.encoding.EncodingHandler;
+import io.undertow.server.handlers.encoding.GzipEncodingProvider;
+import io.undertow.util.Headers;
 import io.undertow.util.HttpString;
 import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
 import org.jetbrains.annotations.NotNull;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.Options;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 public class HttpMxisd {
 
+    private static final Logger log = LoggerFactory.getLogger(HttpMxisd.class);
+
     // Core
     private Mxisd m;
 
     // I/O
     private Undertow httpSrv;
+    private Undertow adminSrv;
+    private GracefulShutdownHandler shutdownHandler;
+    private volatile boolean ready;
+    private RequestTraceWriter traceWriter;
+    private RateLimiter rateLimiter;
+    private LoadShedder loadShedder;
 
     static {
         // Used in XNIO package, dependency of Undertow
@@ -99,8 +143,33 @@ public class HttpMxisd {
     }
 
     public void start() {
+        if (m.getConfig().getLogging().isAsync()) {
+            AsyncLogStream.install(m.getConfig().getLogging().getAsyncQueueSize());
+        }
+
         m.start();
 
+        RateLimitConfig rateLimitCfg = m.getConfig().getServer().getRateLimit();
+        rateLimiter = new RateLimiter(rateLimitCfg);
+        if (rateLimitCfg.getShedding().isEnabled()) {
+            int maxInFlight = rateLimitCfg.getShedding().getMaxInFlight();
+            if (maxInFlight <= 0) {
+                int workerThreads = m.getConfig().getServer().getHttp().getWorkerThreads();
+                if (workerThreads <= 0) {
+                    // Same default as Undertow
+                    workerThreads = Math.max(Runtime.getRuntime().availableProcessors(), 2) * 8;
+                }
+                maxInFlight = workerThreads * 2;
+            }
+            loadShedder = new LoadShedder(maxInFlight, rateLimitCfg.getShedding().getRetryAfterMs());
+            MetricRegistry.get().gauge("shedder_in_flight", "Requests counted against the load shedding limit")
+                .track(loadShedder::getInFlight);
+        }
+
+        if (m.getConfig().getLogging().isRequests()) {
+            traceWriter = new RequestTraceWriter(m.getConfig().getLogging().getRequestTrace().getQueueSize());
+        }
+
         HttpHandler asUserHandler = sane(new AsUserHandler(m.getAs()));
         HttpHandler asTxnHandler = sane(new AsTransactionHandler(m.getAs()));
         HttpHandler asNotFoundHandler = sane(new AsNotFoundHandler(m.getAs()));
@@ -109,8 +178,10 @@ public class HttpMxisd {
             .add("OPTIONS", "/**", sane(new OptionsHandler()))
 
             // Status endpoints
-            .get(StatusHandler.Path, sane(new StatusHandler()))
-            .get(VersionHandler.Path, sane(new VersionHandler()))
+            .get(StatusHandler.Path, nonBlocking(new StatusHandler()))
+            .get(VersionHandler.Path, nonBlocking(new VersionHandler()))
+            .get(HealthHandler.LivePath, nonBlocking(new HealthHandler(() -> true)))
+            .get(HealthHandler.ReadyPath, nonBlocking(new HealthHandler(() -> ready, m::getReadiness)))
 
             // Authentication endpoints
             .get(LoginHandler.Path, sane(new LoginGetHandler(m.getAuth(), m.getHttpClient())))
@@ -147,19 +218,152 @@ public class HttpMxisd {
         termsEndpoints(handler);
         hashEndpoints(handler);
         accountEndpoints(handler);
-        ServerConfig serverConfig = m.getConfig().getServer();
-        httpSrv = Undertow.builder().addHttpListener(serverConfig.getPort(), serverConfig.getHostname()).setHandler(handler).build();
+        // Tracks in-flight requests so they can be drained on stop
+        shutdownHandler = Handlers.gracefulShutdown(handler);
+        httpSrv = buildServer(m.getConfig().getServer()).setHandler(shutdownHandler).build();
 
         httpSrv.start();
+
+        AdminServerConfig adminCfg = m.getConfig().getServer().getAdmin();
+        if (adminCfg.isEnabled()) {
+            LogLevelsHandler logLevelsHandler = new LogLevelsHandler();
+            HttpHandler adminHandler = Handlers.routing()
+                .get(MetricsHandler.Path, new MetricsHandler(MetricRegistry.get()))
+                .get(HealthHandler.LivePath, new HealthHandler(() -> true))
+                .get(HealthHandler.ReadyPath, new HealthHandler(() -> ready, m::getReadiness))
+                .get(LogLevelsHandler.Path, logLevelsHandler)
+                .put(LogLevelsHandler.ComponentPath, logLevelsHandler)
+                .delete(LogLevelsHandler.ComponentPath, logLevelsHandler);
+            adminSrv = Undertow.builder().addHttpListener(adminCfg.getPort(), adminCfg.getHostname()).setHandler(adminHandler).build();
+            adminSrv.start();
+        }
+
+        ready = true;
+    }
+
+    private SSLContext buildSslContext(HttpServerConfig.Tls cfg) {
+        try (InputStream is = new FileInputStream(cfg.getKeyStore())) {
+            KeyStore keyStore = KeyStore.getInstance(cfg.getKeyStoreType());
+            keyStore.load(is, Objects.nonNull(cfg.getKeyStorePassword()) ? cfg.getKeyStorePassword().toCharArray() : null);
+
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(keyStore, Objects.nonNull(cfg.getKeyPassword()) ? cfg.getKeyPassword().toCharArray() : null);
+
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(kmf.getKeyManagers(), null, null);
+            return sslContext;
+        } catch (IOException | GeneralSecurityException e) {
+            throw new ConfigurationException("server.http.tls.keyStore", e.getMessage());
+        }
     }
 
+    private Undertow.Builder buildServer(ServerConfig serverConfig) {
+        HttpServerConfig cfg = serverConfig.getHttp();
+        Undertow.Builder builder = Undertow.builder().addHttpListener(serverConfig.getPort(), serverConfig.getHostname());
+
+        if (cfg.getIoThreads() > 0) {
+            builder.setIoThreads(cfg.getIoThreads());
+        }
+
+        if (cfg.getWorkerThreads() > 0) {
+            builder.setWorkerThreads(cfg.getWorkerThreads());
+        }
+
+        if (cfg.getBufferSize() > 0) {
+            builder.setBufferSize(cfg.getBufferSize());
+        }
+
+        if (Objects.nonNull(cfg.getDirectBuffers())) {
+            builder.setDirectBuffers(cfg.getDirectBuffers());
+        }
+
+        if (cfg.getBacklog() > 0) {
+            builder.setSocketOption(Options.BACKLOG, cfg.getBacklog());
+        }
+
+        if (cfg.getIdleTimeoutInSeconds() > 0) {
+            builder.setServerOption(UndertowOptions.IDLE_TIMEOUT, (int) (cfg.getIdleTimeoutInSeconds() * 1000));
+        }
+
+        if (cfg.getNoRequestTimeoutInSeconds() > 0) {
+            builder.setServerOption(UndertowOptions.NO_REQUEST_TIMEOUT, (int) (cfg.getNoRequestTimeoutInSeconds() * 1000));
+        }
+
+        if (cfg.getRequestParseTimeoutInSeconds() > 0) {
+            builder.setServerOption(UndertowOptions.REQUEST_PARSE_TIMEOUT, (int) (cfg.getRequestParseTimeoutInSeconds() * 1000));
+        }
+
+        if (cfg.getMaxEntitySize() > 0) {
+            builder.setServerOption(UndertowOptions.MAX_ENTITY_SIZE, cfg.getMaxEntitySize());
+        }
+
+        // Allows h2c upgrade on the plain listener and h2 via ALPN on the TLS one
+        builder.setServerOption(UndertowOptions.ENABLE_HTTP2, cfg.isHttp2());
+
+        if (cfg.getTls().isEnabled()) {
+            builder.addHttpsListener(cfg.getTls().getPort(), serverConfig.getHostname(), buildSslContext(cfg.getTls()));
+        }
+
+        return builder;
+    }
+
+    /**
+     * Stops in order: readiness is dropped first, then new requests are refused and in-flight ones drained within the
+     * grace period, and only then are the core components and the admin listener stopped.
+     */
     public void stop() {
+        ready = false;
+
+        ShutdownConfig cfg = m.getConfig().getServer().getShutdown();
+        if (Objects.nonNull(httpSrv) && cfg.getDelayInSeconds() > 0) {
+            // Lets load balancers notice the failing readiness probe while we still serve requests
+            log.info("Waiting {}s before refusing new requests", cfg.getDelayInSeconds());
+            sleep(TimeUnit.SECONDS.toMillis(cfg.getDelayInSeconds()));
+        }
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(cfg.getGracePeriodInSeconds());
+
         // Because it might have never been initialized if an exception is thrown early
+        if (Objects.nonNull(shutdownHandler)) {
+            shutdownHandler.shutdown();
+            try {
+                if (!shutdownHandler.awaitShutdown(remaining(deadline))) {
+                    log.warn("Grace period expired with requests still in flight, they will be aborted");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
         if (Objects.nonNull(httpSrv)) {
             httpSrv.stop();
         }
 
-        m.stop();
+        if (Objects.nonNull(traceWriter)) {
+            traceWriter.stop();
+        }
+
+        // Whatever is left of the grace period goes to background work, such as pending invite publications
+        m.stop(remaining(deadline), TimeUnit.MILLISECONDS);
+
+        if (Objects.nonNull(adminSrv)) {
+            adminSrv.stop();
+        }
+
+        log.info("Shutdown complete");
+        AsyncLogStream.uninstall();
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private void keyEndpoints(RoutingHandler routingHandler) {
@@ -172,7 +376,7 @@ public class HttpMxisd {
 
     private void identityEndpoints(RoutingHandler routingHandler) {
         // Legacy v1
-        routingHandler.get(SingleLookupHandler.Path, sane(new SingleLookupHandler(m.getConfig(), m.getIdentity(), m.getSign())));
+        routingHandler.get(SingleLookupHandler.Path, sane(new SingleLookupHandler(m.getConfig(), m.getIdentity(), m.getKeyManager(), m.getSign())));
         routingHandler.post(BulkLookupHandler.Path, sane(new BulkLookupHandler(m.getIdentity())));
 
         addEndpoints(routingHandler, Methods.GET, false, new HelloHandler());
@@ -213,16 +417,19 @@ public class HttpMxisd {
     private void hashEndpoints(RoutingHandler routingHandler) {
         MatrixConfig matrixConfig = m.getConfig().getMatrix();
         if (matrixConfig.isV2()) {
+            // Access tokens and accepted terms are checked against the storage, and lookups may reach the identity stores or
+            // the SQL hash storage, so these need worker threads like the other API routes
             wrapWithTokenAndAuthorizationHandlers(routingHandler, Methods.GET, new HashDetailsHandler(m.getHashManager()),
                 HashDetailsHandler.PATH, true);
-            wrapWithTokenAndAuthorizationHandlers(routingHandler, Methods.POST,
-                new HashLookupHandler(m.getIdentity(), m.getHashManager()), HashLookupHandler.Path, true);
+            wrapWithTokenAndAuthorizationHandlers(routingHandler, Methods.POST, new HashLookupHandler(m.getIdentity(), m.getHashManager()),
+                HashLookupHandler.Path, true);
         }
     }
 
     private void addEndpoints(RoutingHandler routingHandler, HttpString method, boolean useAuthorization, ApiHandler... handlers) {
+        // Wrapped once per version by attachHandler, so each request goes through the limiters and metrics only once
         for (ApiHandler handler : handlers) {
-            attachHandler(routingHandler, method, handler, useAuthorization, sane(handler));
+            attachHandler(routingHandler, method, handler, useAuthorization, handler);
         }
     }
 
@@ -240,15 +447,19 @@ public class HttpMxisd {
 
     private void wrapWithTokenAndAuthorizationHandlers(RoutingHandler routingHandler, HttpString method, HttpHandler httpHandler,
                                                        String url, boolean useAuthorization) {
+        routingHandler.add(method, url, sane(wrapWithTokenAndAuthorizationHandlers(httpHandler, url, useAuthorization)));
+    }
+
+    private HttpHandler wrapWithTokenAndAuthorizationHandlers(HttpHandler httpHandler, String url, boolean useAuthorization) {
         List<PolicyConfig.PolicyObject> policyObjects = getPolicyObjects(url);
         HttpHandler wrappedHandler;
         if (useAuthorization) {
             wrappedHandler = policyObjects.isEmpty() ? httpHandler : CheckTermsHandler.around(m.getAccMgr(), httpHandler, policyObjects);
-            wrappedHandler = AuthorizationHandler.around(m.getAccMgr(), wrappedHandler);
+            wrappedHandler = AuthorizationHandler.around(m.getAccMgr(), rateLimiter, wrappedHandler);
         } else {
             wrappedHandler = httpHandler;
         }
-        routingHandler.add(method, url, sane(wrappedHandler));
+        return wrappedHandler;
     }
 
     @NotNull
@@ -268,9 +479,40 @@ public class HttpMxisd {
     }
 
     private HttpHandler sane(HttpHandler httpHandler) {
-        SaneHandler handler = SaneHandler.around(httpHandler);
+        return wrap(SaneHandler.around(httpHandler), loadShedder);
+    }
+
+    // Served on the IO thread from memory, they never wait for a worker or in a queue so they are not shed
+    private HttpHandler nonBlocking(HttpHandler httpHandler) {
+        return wrap(SaneHandler.nonBlocking(httpHandler, null), null);
+    }
+
+    private HttpHandler compress(HttpHandler handler) {
+        HttpServerConfig.Compression cfg = m.getConfig().getServer().getHttp().getCompression();
+        if (!cfg.isEnabled()) {
+            return handler;
+        }
+
+        // Streamed bodies have no length yet when the response starts, they are always large enough
+        Predicate predicate = exchange -> {
+            if (exchange.getStatusCode() != StatusCodes.OK) {
+                return false;
+            }
+
+            String length = exchange.getResponseHeaders().getFirst(Headers.CONTENT_LENGTH);
+            return Objects.isNull(length) || Long.parseLong(length) >= cfg.getMinSize();
+        };
+
+        return new EncodingHandler(handler, new ContentEncodingRepository()
+            .addEncodingHandler("gzip", new GzipEncodingProvider(), 50, predicate)
+            .addEncodingHandler("deflate", new DeflateEncodingProvider(), 10, predicate));
+    }
+
+    private HttpHandler wrap(HttpHandler saneHandler, LoadShedder shedder) {
+        HttpHandler handler = RateLimitHandler.around(compress(saneHandler), rateLimiter, shedder);
+        handler = RequestLoggingHandler.around(RequestMetricsHandler.around(handler));
         if (m.getConfig().getLogging().isRequests()) {
-            return new RequestDumpingHandler(handler);
+            return new RequestDumpingHandler(handler, m.getConfig().getLogging().getRequestTrace(), traceWriter);
         } else {
             return handler;
         }
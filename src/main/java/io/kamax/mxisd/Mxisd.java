@@ -25,6 +25,8 @@ import io.kamax.mxisd.auth.AccountManager;
 import io.kamax.mxisd.auth.AuthManager;
 import io.kamax.mxisd.auth.AuthProviders;
 import io.kamax.mxisd.backend.IdentityStoreSupplier;
+import io.kamax.mxisd.backend.exec.ExecWorkerPool;
+import io.kamax.mxisd.backend.sql.SqlConnectionPool;
 import io.kamax.mxisd.backend.sql.synapse.Synapse;
 import io.kamax.mxisd.config.MxisdConfig;
 import io.kamax.mxisd.config.StorageConfig;
@@ -33,6 +35,7 @@ import io.kamax.mxisd.crypto.KeyManager;
 import io.kamax.mxisd.crypto.SignatureManager;
 import io.kamax.mxisd.crypto.ed25519.Ed25519KeyManager;
 import io.kamax.mxisd.directory.DirectoryManager;
+import io.kamax.mxisd.directory.DirectoryProvider;
 import io.kamax.mxisd.directory.DirectoryProviders;
 import io.kamax.mxisd.dns.ClientDnsOverwrite;
 import io.kamax.mxisd.dns.FederationDnsOverwrite;
@@ -41,6 +44,7 @@ import io.kamax.mxisd.invitation.InvitationManager;
 import io.kamax.mxisd.lookup.ThreePidProviders;
 import io.kamax.mxisd.lookup.fetcher.IRemoteIdentityServerFetcher;
 import io.kamax.mxisd.lookup.provider.BridgeFetcher;
+import io.kamax.mxisd.lookup.provider.IThreePidProvider;
 import io.kamax.mxisd.lookup.provider.RemoteIdentityServerFetcher;
 import io.kamax.mxisd.lookup.strategy.LookupStrategy;
 import io.kamax.mxisd.lookup.strategy.RecursivePriorityLookupStrategy;
@@ -50,6 +54,7 @@ import io.kamax.mxisd.notification.NotificationHandlerSupplier;
 import io.kamax.mxisd.notification.NotificationHandlers;
 import io.kamax.mxisd.notification.NotificationManager;
 import io.kamax.mxisd.profile.ProfileManager;
+import io.kamax.mxisd.profile.ProfileProvider;
 import io.kamax.mxisd.profile.ProfileProviders;
 import io.kamax.mxisd.registration.RegistrationManager;
 import io.kamax.mxisd.session.SessionManager;
@@ -58,8 +63,22 @@ import io.kamax.mxisd.storage.ormlite.OrmLiteSqlStorage;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Mxisd {
 
@@ -67,6 +86,8 @@ public class Mxisd {
     public static final String Version = StringUtils.defaultIfBlank(Mxisd.class.getPackage().getImplementationVersion(), "UNKNOWN");
     public static final String Agent = Name + "/" + Version;
 
+    private static final Logger log = LoggerFactory.getLogger(Mxisd.class);
+
     private final MxisdConfig cfg;
 
     private CloseableHttpClient httpClient;
@@ -77,6 +98,7 @@ public class Mxisd {
     private Ed25519KeyManager keyMgr;
     private SignatureManager signMgr;
     private ClientDnsOverwrite clientDns;
+    private HomeserverFederationResolver resolver;
 
     // Features
     private AuthManager authMgr;
@@ -90,6 +112,7 @@ public class Mxisd {
     private RegistrationManager regMgr;
     private AccountManager accMgr;
     private HashManager hashManager;
+    private final List<IThreePidProvider> threePidProviders = new ArrayList<>();
 
     // HS-specific classes
     private Synapse synapse;
@@ -106,38 +129,77 @@ public class Mxisd {
                 .build();
 
         FederationDnsOverwrite fedDns = new FederationDnsOverwrite(cfg.getDns().getOverwrite());
-        HomeserverFederationResolver resolver = new HomeserverFederationResolver(fedDns, httpClient);
+        resolver = new HomeserverFederationResolver(fedDns, httpClient);
         IdentityServerUtils.setHttpClient(httpClient);
         srvFetcher = new RemoteIdentityServerFetcher(httpClient);
 
-        StorageConfig.BackendEnum storageBackend = cfg.getStorage().getBackend();
-        StorageConfig.Provider storageProvider = cfg.getStorage().getProvider();
-        store = new OrmLiteSqlStorage(storageBackend, storageProvider);
-
-        keyMgr = CryptoFactory.getKeyManager(cfg.getKey());
-        signMgr = CryptoFactory.getSignatureManager(cfg, keyMgr);
         clientDns = new ClientDnsOverwrite(cfg.getDns().getOverwrite());
-
-        synapse = new Synapse(cfg.getSynapseSql());
         BridgeFetcher bridgeFetcher = new BridgeFetcher(cfg.getLookup().getRecursive().getBridge(), srvFetcher);
+
+        // Backends only register suppliers here, they are created when the providers are fetched below
         ServiceLoader.load(IdentityStoreSupplier.class).iterator().forEachRemaining(p -> p.accept(this));
         ServiceLoader.load(NotificationHandlerSupplier.class).iterator().forEachRemaining(p -> p.accept(this));
 
-        hashManager = new HashManager();
-        hashManager.init(cfg.getHashing(), ThreePidProviders.get(), store);
+        // Storage migrations, homeserver and backend connections do not depend on each other, so they are set up
+        // concurrently. Authentication providers need the invitation manager and are created afterwards.
+        AtomicInteger initThreadCount = new AtomicInteger();
+        ExecutorService init = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "init-" + initThreadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            CompletableFuture<Void> storage = CompletableFuture.runAsync(() -> {
+                StorageConfig.BackendEnum storageBackend = cfg.getStorage().getBackend();
+                StorageConfig.Provider storageProvider = cfg.getStorage().getProvider();
+                store = new OrmLiteSqlStorage(storageBackend, storageProvider);
+
+                keyMgr = CryptoFactory.getKeyManager(cfg.getKey(), store);
+                signMgr = CryptoFactory.getSignatureManager(cfg, keyMgr);
+            }, init);
+            CompletableFuture<Void> homeserver = CompletableFuture.runAsync(() -> synapse = new Synapse(cfg.getSynapseSql()), init);
+            CompletableFuture<List<? extends IThreePidProvider>> hashProviders = CompletableFuture.supplyAsync(ThreePidProviders::get, init);
+            CompletableFuture<List<? extends IThreePidProvider>> lookupProviders = CompletableFuture.supplyAsync(ThreePidProviders::get, init);
+            CompletableFuture<List<? extends ProfileProvider>> profileProviders = CompletableFuture.supplyAsync(ProfileProviders::get, init);
+            CompletableFuture<List<? extends DirectoryProvider>> directoryProviders = CompletableFuture.supplyAsync(DirectoryProviders::get, init);
+            notifMgr = new NotificationManager(cfg.getNotification(), NotificationHandlers.get());
+
+            await(CompletableFuture.allOf(storage, homeserver, hashProviders, lookupProviders, profileProviders, directoryProviders));
+
+            threePidProviders.addAll(hashProviders.join());
+            threePidProviders.addAll(lookupProviders.join());
+
+            // Hashes are computed in the background, see isReady()
+            hashManager = new HashManager();
+            hashManager.init(cfg.getHashing(), hashProviders.join(), store);
+
+            idStrategy = new RecursivePriorityLookupStrategy(cfg.getLookup(), lookupProviders.join(), bridgeFetcher, hashManager);
+            pMgr = new ProfileManager(profileProviders.join(), clientDns, httpClient);
+            dirMgr = new DirectoryManager(cfg.getDirectory(), clientDns, httpClient, directoryProviders.join());
+        } finally {
+            init.shutdown();
+        }
 
-        idStrategy = new RecursivePriorityLookupStrategy(cfg.getLookup(), ThreePidProviders.get(), bridgeFetcher, hashManager);
-        pMgr = new ProfileManager(ProfileProviders.get(), clientDns, httpClient);
-        notifMgr = new NotificationManager(cfg.getNotification(), NotificationHandlers.get());
         sessMgr = new SessionManager(cfg, store, notifMgr, resolver, signMgr);
         invMgr = new InvitationManager(cfg, store, idStrategy, keyMgr, signMgr, resolver, notifMgr, pMgr);
         authMgr = new AuthManager(cfg, AuthProviders.get(), idStrategy, invMgr, clientDns, httpClient);
-        dirMgr = new DirectoryManager(cfg.getDirectory(), clientDns, httpClient, DirectoryProviders.get());
         regMgr = new RegistrationManager(cfg.getRegister(), httpClient, clientDns, invMgr);
         asHander = new AppSvcManager(this);
         accMgr = new AccountManager(store, resolver, cfg.getAccountConfig(), cfg.getMatrix());
     }
 
+    private static void await(CompletableFuture<?> f) {
+        try {
+            f.join();
+        } catch (CompletionException e) {
+            // So configuration errors are reported as such
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     public MxisdConfig getConfig() {
         return cfg;
     }
@@ -214,12 +276,70 @@ public class Mxisd {
         return hashManager;
     }
 
+    /**
+     * Subsystems that can still be warming up once started, and if they are ready to serve requests.
+     */
+    public Map<String, Boolean> getReadiness() {
+        Map<String, Boolean> readiness = new LinkedHashMap<>();
+        readiness.put("storage", Objects.nonNull(store));
+        readiness.put("lookup", Objects.nonNull(idStrategy));
+        readiness.put("hashing", Objects.nonNull(hashManager) && hashManager.isReady());
+        return readiness;
+    }
+
     public void start() {
         build();
     }
 
     public void stop() {
-        // no-op
+        stop(cfg.getServer().getShutdown().getGracePeriodInSeconds(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops background work and releases backend resources, in dependency order. Must only be called once no more
+     * requests are being served.
+     */
+    public void stop(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        if (Objects.nonNull(invMgr)) {
+            invMgr.stop(remaining(deadline), TimeUnit.NANOSECONDS);
+        }
+
+        if (Objects.nonNull(hashManager)) {
+            hashManager.stop(remaining(deadline), TimeUnit.NANOSECONDS);
+        }
+
+        for (IThreePidProvider provider : threePidProviders) {
+            try {
+                provider.close();
+            } catch (RuntimeException e) {
+                log.warn("Unable to close 3PID provider {}: {}", provider.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+
+        if (Objects.nonNull(resolver)) {
+            resolver.stop();
+        }
+
+        ExecWorkerPool.shutdownAll();
+        SqlConnectionPool.closeAll();
+
+        if (Objects.nonNull(store)) {
+            store.close();
+        }
+
+        if (Objects.nonNull(httpClient)) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                log.warn("Unable to close HTTP client: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
     }
 
 }
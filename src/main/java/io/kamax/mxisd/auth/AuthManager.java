@@ -43,6 +43,8 @@ import io.kamax.mxisd.exception.RemoteLoginException;
 import io.kamax.mxisd.invitation.InvitationManager;
 import io.kamax.mxisd.lookup.ThreePidMapping;
 import io.kamax.mxisd.lookup.strategy.LookupStrategy;
+import io.kamax.mxisd.metrics.Histogram;
+import io.kamax.mxisd.metrics.MetricRegistry;
 import io.kamax.mxisd.util.RestClientUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -66,6 +68,9 @@ public class AuthManager {
 
     private static final Logger log = LoggerFactory.getLogger(AuthManager.class);
 
+    private static final Histogram providerTime = MetricRegistry.get().histogram("auth_provider_duration_seconds",
+        "Time spent in authentication providers", "provider");
+
     private static final String TypeKey = "type";
     private static final String UserKey = "user";
     private static final String IdentifierKey = "identifier";
@@ -117,7 +122,13 @@ public class AuthManager {
 
             log.info("Attempting authentication with store {}", provider.getClass().getSimpleName());
 
-            BackendAuthResult result = provider.authenticate(mxid, password);
+            BackendAuthResult result;
+            long start = System.nanoTime();
+            try {
+                result = provider.authenticate(mxid, password);
+            } finally {
+                providerTime.observeSince(start, provider.getClass().getSimpleName());
+            }
             if (result.isSuccess()) {
                 String mxId;
                 if (UserIdType.Localpart.is(result.getId().getType())) {
@@ -51,6 +51,7 @@ public class ExecDirectoryStore extends ExecStore implements DirectoryProvider {
         }
 
         Processor<UserDirectorySearchResult> p = new Processor<>(cfg);
+        p.setCacheable(true);
 
         p.addJsonInputTemplate(tokens -> new UserDirectorySearchRequest(tokens.getType(), tokens.getQuery()));
         p.addInputTemplate(PlainType, tokens -> tokens.getType() + System.lineSeparator() + tokens.getQuery());
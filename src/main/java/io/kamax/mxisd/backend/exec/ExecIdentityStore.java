@@ -94,6 +94,7 @@ public class ExecIdentityStore extends ExecStore implements IThreePidProvider {
     public Optional<SingleLookupReply> find(SingleLookupRequest request) {
         Processor<Optional<SingleLookupReply>> p = new Processor<>();
         p.withConfig(cfg.getLookup().getSingle());
+        p.setCacheable(true);
 
         p.addTokenMapper(getSingleCfg().getToken().getMedium(), request::getType);
         p.addTokenMapper(getSingleCfg().getToken().getAddress(), request::getThreePid);
@@ -149,6 +150,7 @@ public class ExecIdentityStore extends ExecStore implements IThreePidProvider {
     public List<ThreePidMapping> populate(List<ThreePidMapping> mappings) {
         Processor<List<ThreePidMapping>> p = new Processor<>();
         p.withConfig(cfg.getLookup().getBulk());
+        p.setCacheable(true);
 
         p.addInput(JsonType, () -> {
             JsonArray tpids = GsonUtil.asArray(mappings.stream()
@@ -44,6 +44,7 @@ public class ExecProfileStore extends ExecStore implements ProfileProvider {
 
     private Optional<JsonProfileResult> getFull(_MatrixID userId, ExecConfig.Process cfg) {
         Processor<Optional<JsonProfileResult>> p = new Processor<>(cfg);
+        p.setCacheable(true);
 
         p.addJsonInputTemplate(tokens -> new JsonProfileRequest(tokens.getLocalpart(), tokens.getDomain(), tokens.getMxid()));
         p.addInputTemplate(PlainType, tokens -> tokens.getLocalpart() + System.lineSeparator()
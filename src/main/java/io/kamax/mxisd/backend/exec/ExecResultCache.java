@@ -0,0 +1,99 @@
+/*
+ * mxisd - Matrix Identity Server Daemon
+ * Copyright (C) 2019 Kamax Sàrl
+ *
+ * https://www.kamax.io/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.kamax.mxisd.backend.exec;
+
+import io.kamax.mxisd.config.ExecConfig;
+import io.kamax.mxisd.metrics.CacheMetrics;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TTL cache of successful exec results, keyed on the fully token-substituted command line, environment and input.
+ */
+public class ExecResultCache {
+
+    public static class Result {
+
+        private final int exitValue;
+        private final String output;
+        private final Instant expiresAt;
+
+        public Result(int exitValue, String output, Instant expiresAt) {
+            this.exitValue = exitValue;
+            this.output = output;
+            this.expiresAt = expiresAt;
+        }
+
+        public int getExitValue() {
+            return exitValue;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        boolean isExpired(Instant now) {
+            return !now.isBefore(expiresAt);
+        }
+
+    }
+
+    private final ExecConfig.Cache cfg;
+    private final Map<String, Result> entries = new ConcurrentHashMap<>();
+
+    public ExecResultCache(ExecConfig.Cache cfg) {
+        this.cfg = cfg;
+    }
+
+    public Optional<Result> get(String key) {
+        Result result = entries.get(key);
+        if (Objects.isNull(result)) {
+            CacheMetrics.miss("exec_result");
+            return Optional.empty();
+        }
+
+        if (result.isExpired(Instant.now())) {
+            entries.remove(key, result);
+            CacheMetrics.miss("exec_result");
+            return Optional.empty();
+        }
+
+        CacheMetrics.hit("exec_result");
+        return Optional.of(result);
+    }
+
+    public void put(String key, int exitValue, String output) {
+        Instant now = Instant.now();
+        if (entries.size() >= cfg.getMaxEntries()) {
+            entries.values().removeIf(r -> r.isExpired(now));
+            if (entries.size() >= cfg.getMaxEntries()) {
+                return;
+            }
+        }
+
+        entries.put(key, new Result(exitValue, output, now.plusSeconds(cfg.getTtlInSeconds())));
+    }
+
+}
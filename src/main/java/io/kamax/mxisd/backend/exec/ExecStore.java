@@ -27,11 +27,15 @@ import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessOutput;
 import org.zeroturnaround.exec.ProcessResult;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -51,6 +55,9 @@ public class ExecStore {
 
     private final ExecConfig cfg;
     private Supplier<ProcessExecutor> executorSupplier = () -> new ProcessExecutor().readOutput(true);
+    private final Map<ExecConfig.Process, ExecWorkerPool> workerPools = new ConcurrentHashMap<>();
+    private final Map<ExecConfig.Process, Semaphore> gates = new ConcurrentHashMap<>();
+    private final Map<ExecConfig.Process, ExecResultCache> resultCaches = new ConcurrentHashMap<>();
 
     public ExecStore(ExecConfig cfg) {
         this.cfg = cfg;
@@ -60,6 +67,22 @@ public class ExecStore {
         executorSupplier = supplier;
     }
 
+    protected ExecWorkerPool getWorkerPool(ExecConfig.Process cfg) {
+        return workerPools.computeIfAbsent(cfg, ExecWorkerPool::new);
+    }
+
+    protected Optional<Semaphore> getGate(ExecConfig.Process cfg) {
+        if (cfg.getConcurrency().getMax() < 1) {
+            return Optional.empty();
+        }
+
+        return Optional.of(gates.computeIfAbsent(cfg, c -> new Semaphore(c.getConcurrency().getMax(), true)));
+    }
+
+    protected ExecResultCache getResultCache(ExecConfig.Process cfg) {
+        return resultCaches.computeIfAbsent(cfg, c -> new ExecResultCache(c.getCache()));
+    }
+
     public class Processor<V> {
 
         private ExecConfig.Process cfg;
@@ -85,6 +108,8 @@ public class ExecStore {
         private Map<String, Function<String, V>> unknownMappers;
         private Function<String, V> unknownDefault;
 
+        private boolean cacheable;
+
         public Processor(ExecConfig.Process cfg) {
             this();
             withConfig(cfg);
@@ -149,6 +174,15 @@ public class ExecStore {
             this.cfg = cfg;
         }
 
+        /**
+         * Mark the command as read-only, allowing its successful results to be cached if enabled in the configuration.
+         *
+         * @param cacheable true if the result only depends on the arguments, environment and input
+         */
+        public void setCacheable(boolean cacheable) {
+            this.cacheable = cacheable;
+        }
+
         public void addTokenMapper(String token, Supplier<String> data) {
             tokenMappers.put(token, data);
         }
@@ -205,24 +239,69 @@ public class ExecStore {
             unknownDefault = mapper;
         }
 
-        public V execute() {
-            log.info("Executing {}", cfg.getCommand());
+        private ProcessResult executeOneshot(List<String> args, Map<String, String> env, Optional<String> input) throws IOException, InterruptedException, TimeoutException {
+            ProcessExecutor psExec = executorSupplier.get();
+            psExec.command(args);
+            psExec.environment(env);
+            input.ifPresent(v -> psExec.redirectInput(IOUtils.toInputStream(v, StandardCharsets.UTF_8)));
+            return psExec.execute();
+        }
+
+        private ProcessResult executePersistent(List<String> args, Map<String, String> env, Optional<String> input) {
+            // The worker runs the configured command, only the arguments after it are per request
+            ExecWorkerPool.Reply reply = getWorkerPool(cfg).execute(args.subList(1, args.size()), env, input);
+            return makeResult(reply.getExitValue(), reply.getOutput());
+        }
+
+        private ProcessResult makeResult(int exitValue, String output) {
+            return new ProcessResult(exitValue, new ProcessOutput(output.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        private ProcessResult run() throws IOException, InterruptedException, TimeoutException {
+            List<String> args = new ArrayList<>();
+            args.add(tokenHandler.apply(cfg.getCommand()));
+            args.addAll(cfg.getArgs().stream().map(arg -> tokenHandler.apply(arg)).collect(Collectors.toList()));
+
+            Map<String, String> env = new HashMap<>(cfg.getEnv()).entrySet().stream()
+                    .peek(e -> e.setValue(tokenHandler.apply(e.getValue())))
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+            Optional<String> input = inputSupplier.get();
+
+            String cacheKey = null;
+            if (cacheable && cfg.getCache().isEnabled()) {
+                cacheKey = toJson(Arrays.asList(args, new TreeMap<>(env), input.orElse(null)));
+                Optional<ExecResultCache.Result> cached = getResultCache(cfg).get(cacheKey);
+                if (cached.isPresent()) {
+                    log.info("Using cached result for {}", cfg.getCommand());
+                    return makeResult(cached.get().getExitValue(), cached.get().getOutput());
+                }
+            }
+
+            Optional<Semaphore> gate = getGate(cfg);
+            if (gate.isPresent() && !gate.get().tryAcquire(cfg.getConcurrency().getTimeoutInSeconds(), TimeUnit.SECONDS)) {
+                throw new InternalServerError("Too many concurrent executions of " + cfg.getCommand());
+            }
 
             try {
-                ProcessExecutor psExec = executorSupplier.get();
+                ProcessResult psResult = ExecConfig.ModeEnum.persistent.equals(cfg.getMode()) ?
+                        executePersistent(args, env, input) : executeOneshot(args, env, input);
 
-                List<String> args = new ArrayList<>();
-                args.add(tokenHandler.apply(cfg.getCommand()));
-                args.addAll(cfg.getArgs().stream().map(arg -> tokenHandler.apply(arg)).collect(Collectors.toList()));
-                psExec.command(args);
+                if (Objects.nonNull(cacheKey) && cfg.getExit().getSuccess().contains(psResult.getExitValue())) {
+                    getResultCache(cfg).put(cacheKey, psResult.getExitValue(), psResult.outputUTF8());
+                }
 
-                psExec.environment(new HashMap<>(cfg.getEnv()).entrySet().stream()
-                        .peek(e -> e.setValue(tokenHandler.apply(e.getValue())))
-                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+                return psResult;
+            } finally {
+                gate.ifPresent(Semaphore::release);
+            }
+        }
 
-                inputSupplier.get().ifPresent(input -> psExec.redirectInput(IOUtils.toInputStream(input, StandardCharsets.UTF_8)));
+        public V execute() {
+            log.info("Executing {}", cfg.getCommand());
 
-                ProcessResult psResult = psExec.execute();
+            try {
+                ProcessResult psResult = run();
                 String output = psResult.outputUTF8();
                 onExitHandler.accept(psResult);
 
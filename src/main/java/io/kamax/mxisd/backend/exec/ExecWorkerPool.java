@@ -0,0 +1,341 @@
+/*
+ * mxisd - Matrix Identity Server Daemon
+ * Copyright (C) 2019 Kamax Sàrl
+ *
+ * https://www.kamax.io/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.kamax.mxisd.backend.exec;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import io.kamax.matrix.json.GsonUtil;
+import io.kamax.mxisd.config.ExecConfig;
+import io.kamax.mxisd.exception.InternalServerError;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of long-lived worker processes for an exec command running in <code>persistent</code> mode.
+ * <p>
+ * Workers are started once with the configured command, arguments and environment, then exchange line-delimited JSON
+ * over stdin/stdout. Each request is a single line
+ * <code>{"id": "...", "type": "exec", "input": ..., "args": [...], "env": {...}}</code> where <code>args</code> and
+ * <code>env</code> are the configured ones with the tokens of the request replaced, and each reply a single line
+ * <code>{"id": "...", "exit": 0, "output": ...}</code>. Replies are matched by ID so a worker can process up to
+ * <code>maxInFlight</code> requests at once and answer them in any order. Health checks send a
+ * <code>{"id": "...", "type": "ping"}</code> request which must be answered with any reply carrying the same ID. They do
+ * not count against <code>maxInFlight</code>, so a busy worker is not mistaken for a stuck one.
+ * <p>
+ * A worker that exits or fails a health check is restarted, and its pending requests fail.
+ */
+public class ExecWorkerPool {
+
+    public static class Reply {
+
+        private final int exitValue;
+        private final String output;
+
+        public Reply(int exitValue, String output) {
+            this.exitValue = exitValue;
+            this.output = output;
+        }
+
+        public int getExitValue() {
+            return exitValue;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ExecWorkerPool.class);
+    private static final Set<ExecWorkerPool> pools = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Stops the workers of all pools, once no more requests can reach them.
+     */
+    public static void shutdownAll() {
+        new ArrayList<>(pools).forEach(ExecWorkerPool::shutdown);
+    }
+
+    private class Worker {
+
+        private final int index;
+        private final Semaphore slots;
+        private final Map<String, CompletableFuture<JsonObject>> pending = new ConcurrentHashMap<>();
+        private Process process;
+        private Writer writer;
+
+        Worker(int index) {
+            this.index = index;
+            this.slots = new Semaphore(cfg.getWorker().getMaxInFlight());
+        }
+
+        private synchronized void ensureStarted() throws IOException {
+            if (Objects.nonNull(process)) {
+                return;
+            }
+
+            log.info("Starting worker #{} for {}", index, cfg.getCommand());
+            List<String> command = new ArrayList<>();
+            command.add(cfg.getCommand());
+            command.addAll(cfg.getArgs());
+
+            ProcessBuilder pb = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+            pb.environment().putAll(cfg.getEnv());
+            Process ps = pb.start();
+            process = ps;
+            writer = new BufferedWriter(new OutputStreamWriter(ps.getOutputStream(), StandardCharsets.UTF_8));
+
+            Thread reader = new Thread(() -> read(ps), "exec-worker-" + index + "-" + cfg.getCommand());
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void read(Process ps) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(ps.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while (Objects.nonNull(line = reader.readLine())) {
+                    if (StringUtils.isBlank(line)) {
+                        continue;
+                    }
+
+                    try {
+                        JsonObject reply = GsonUtil.parseObj(line);
+                        String id = GsonUtil.getStringOrThrow(reply, "id");
+                        CompletableFuture<JsonObject> f = pending.remove(id);
+                        if (Objects.isNull(f)) {
+                            log.warn("Worker #{} for {} replied to unknown request {}", index, cfg.getCommand(), id);
+                        } else {
+                            f.complete(reply);
+                        }
+                    } catch (RuntimeException e) {
+                        log.warn("Worker #{} for {} sent an invalid reply: {}", index, cfg.getCommand(), e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Worker #{} for {}: unable to read output", index, cfg.getCommand(), e);
+            } finally {
+                stop(ps, "exited");
+            }
+        }
+
+        private synchronized void stop(Process ps, String reason) {
+            if (Objects.isNull(process) || process != ps) {
+                return;
+            }
+
+            log.warn("Worker #{} for {} {}, it will be restarted", index, cfg.getCommand(), reason);
+            process = null;
+            writer = null;
+            ps.destroy();
+
+            for (CompletableFuture<JsonObject> f : pending.values()) {
+                f.completeExceptionally(new InternalServerError("Exec worker " + reason));
+            }
+            pending.clear();
+        }
+
+        private synchronized void shutdown() {
+            if (Objects.nonNull(process)) {
+                process.destroy();
+                process = null;
+                writer = null;
+            }
+        }
+
+        int getAvailableSlots() {
+            return slots.availablePermits();
+        }
+
+        synchronized boolean isStarted() {
+            return Objects.nonNull(process);
+        }
+
+        JsonObject send(JsonObject request) throws InterruptedException {
+            if (!slots.tryAcquire(cfg.getWorker().getTimeoutInSeconds(), TimeUnit.SECONDS)) {
+                throw new InternalServerError("Timed out waiting for an available exec worker");
+            }
+
+            try {
+                return exchange(request);
+            } finally {
+                slots.release();
+            }
+        }
+
+        private JsonObject exchange(JsonObject request) throws InterruptedException {
+            String id = Long.toString(ids.incrementAndGet());
+            request.addProperty("id", id);
+            CompletableFuture<JsonObject> f = new CompletableFuture<>();
+
+            synchronized (this) {
+                try {
+                    ensureStarted();
+                    pending.put(id, f);
+                    writer.write(GsonUtil.get().toJson(request));
+                    writer.write('\n');
+                    writer.flush();
+                } catch (IOException e) {
+                    pending.remove(id);
+                    stop(process, "could not be written to");
+                    throw new InternalServerError(e);
+                }
+            }
+
+            try {
+                return f.get(cfg.getWorker().getTimeoutInSeconds(), TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                pending.remove(id);
+                throw new InternalServerError("Exec worker did not reply within " + cfg.getWorker().getTimeout());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new InternalServerError(e.getCause());
+            }
+        }
+
+        void healthCheck() {
+            Process ps;
+            synchronized (this) {
+                ps = process;
+            }
+
+            if (Objects.isNull(ps)) {
+                return;
+            }
+
+            try {
+                JsonObject ping = new JsonObject();
+                ping.addProperty("type", "ping");
+                // Not through the slots, which may all be taken by requests the worker is busy serving
+                exchange(ping);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                stop(ps, "failed its health check");
+            }
+        }
+
+    }
+
+    private final ExecConfig.Process cfg;
+    private final List<Worker> workers = new ArrayList<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final ScheduledExecutorService healthChecker;
+
+    public ExecWorkerPool(ExecConfig.Process cfg) {
+        this.cfg = cfg;
+
+        for (int i = 0; i < cfg.getWorker().getSize(); i++) {
+            workers.add(new Worker(i));
+        }
+
+        long interval = cfg.getWorker().getHealthCheckInSeconds();
+        if (interval > 0) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "exec-worker-health-" + cfg.getCommand());
+                t.setDaemon(true);
+                return t;
+            });
+            healthChecker.scheduleWithFixedDelay(() -> workers.forEach(Worker::healthCheck), interval, interval, TimeUnit.SECONDS);
+        } else {
+            healthChecker = null;
+        }
+
+        pools.add(this);
+    }
+
+    private Worker select() {
+        Worker selected = workers.get(0);
+        for (Worker worker : workers) {
+            if (worker.getAvailableSlots() > selected.getAvailableSlots()) {
+                selected = worker;
+            }
+        }
+        return selected;
+    }
+
+    public Reply execute(Optional<String> input) {
+        return execute(cfg.getArgs(), cfg.getEnv(), input);
+    }
+
+    /**
+     * Executes a request on the least busy worker.
+     *
+     * @param args  The arguments of the request, after the command.
+     * @param env   The environment of the request.
+     * @param input The input of the request, if any.
+     * @return The reply of the worker.
+     */
+    public Reply execute(List<String> args, Map<String, String> env, Optional<String> input) {
+        JsonObject request = new JsonObject();
+        request.addProperty("type", "exec");
+        input.ifPresent(v -> {
+            if (ExecStore.JsonType.equals(cfg.getInput().getType().orElse(""))) {
+                request.add("input", GsonUtil.parse(v));
+            } else {
+                request.addProperty("input", v);
+            }
+        });
+        request.add("args", GsonUtil.get().toJsonTree(args));
+        request.add("env", GsonUtil.get().toJsonTree(new TreeMap<>(env)));
+
+        try {
+            JsonObject reply = select().send(request);
+            int exitValue = GsonUtil.findPrimitive(reply, "exit").map(JsonPrimitive::getAsInt).orElse(0);
+            String output = GsonUtil.findElement(reply, "output").map(el -> {
+                if (el.isJsonNull()) {
+                    return "";
+                }
+
+                if (el.isJsonPrimitive()) {
+                    return el.getAsString();
+                }
+
+                return GsonUtil.get().toJson(el);
+            }).orElse("");
+            return new Reply(exitValue, output);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerError(e);
+        }
+    }
+
+    public int getStartedCount() {
+        return (int) workers.stream().filter(Worker::isStarted).count();
+    }
+
+    public void shutdown() {
+        pools.remove(this);
+        if (Objects.nonNull(healthChecker)) {
+            healthChecker.shutdownNow();
+        }
+        workers.forEach(Worker::shutdown);
+    }
+
+}
@@ -21,8 +21,7 @@
 package io.kamax.mxisd.backend.firebase;
 
 import com.google.firebase.auth.UserRecord;
-import com.google.firebase.tasks.OnFailureListener;
-import com.google.firebase.tasks.OnSuccessListener;
+import com.google.firebase.tasks.Task;
 import io.kamax.matrix.MatrixID;
 import io.kamax.matrix.ThreePidMedium;
 import io.kamax.mxisd.config.MxisdConfig;
@@ -30,27 +29,38 @@ import io.kamax.mxisd.lookup.SingleLookupReply;
 import io.kamax.mxisd.lookup.SingleLookupRequest;
 import io.kamax.mxisd.lookup.ThreePidMapping;
 import io.kamax.mxisd.lookup.provider.IThreePidProvider;
+import io.kamax.mxisd.util.AsyncLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class GoogleFirebaseProvider extends GoogleFirebaseBackend implements IThreePidProvider {
 
     private transient final Logger log = LoggerFactory.getLogger(GoogleFirebaseProvider.class);
     private String domain;
+    private AsyncLimiter limiter;
 
     public GoogleFirebaseProvider(MxisdConfig cfg) {
-        this(cfg.getFirebase().isEnabled(), cfg.getFirebase().getCredentials(), cfg.getFirebase().getDatabase(), cfg.getMatrix().getDomain());
+        this(cfg.getFirebase().isEnabled(), cfg.getFirebase().getCredentials(), cfg.getFirebase().getDatabase(), cfg.getMatrix().getDomain(),
+                cfg.getFirebase().getMaxConcurrent(), cfg.getFirebase().getTimeoutInSeconds());
     }
 
     public GoogleFirebaseProvider(boolean isEnabled, String credsPath, String db, String domain) {
+        this(isEnabled, credsPath, db, domain, 20, 30);
+    }
+
+    public GoogleFirebaseProvider(boolean isEnabled, String credsPath, String db, String domain, int maxConcurrent, long timeoutInSeconds) {
         super(isEnabled, "ThreePidProvider", credsPath, db);
         this.domain = domain;
+        this.limiter = new AsyncLimiter("firebase-lookup", maxConcurrent, timeoutInSeconds, TimeUnit.SECONDS);
     }
 
     private String getMxid(UserRecord record) {
@@ -67,71 +77,100 @@ public class GoogleFirebaseProvider extends GoogleFirebaseBackend implements ITh
         return 25;
     }
 
-    private void waitOnLatch(CountDownLatch l) {
-        try {
-            l.await(30, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            log.warn("Interrupted while waiting for Firebase auth check");
-        }
-    }
-
-    private Optional<UserRecord> findInternal(String medium, String address) {
-        final UserRecord[] r = new UserRecord[1];
-        CountDownLatch l = new CountDownLatch(1);
-
-        OnSuccessListener<UserRecord> success = result -> {
-            log.info("Found 3PID match for {}:{} - UID is {}", medium, address, result.getUid());
-            r[0] = result;
-            l.countDown();
-        };
-
-        OnFailureListener failure = e -> {
-            log.info("No 3PID match for {}:{} - {}", medium, address, e.getMessage());
-            r[0] = null;
-            l.countDown();
-        };
-
+    private Optional<Task<UserRecord>> getTask(String medium, String address) {
         if (ThreePidMedium.Email.is(medium)) {
-            log.info("Performing E-mail 3PID lookup for {}", address);
-            getFirebase().getUserByEmail(address)
-                    .addOnSuccessListener(success)
-                    .addOnFailureListener(failure);
-            waitOnLatch(l);
+            log.debug("Performing E-mail 3PID lookup for {}", address);
+            return Optional.of(getFirebase().getUserByEmail(address));
         } else if (ThreePidMedium.PhoneNumber.is(medium)) {
-            log.info("Performing msisdn 3PID lookup for {}", address);
-            getFirebase().getUserByPhoneNumber(address)
-                    .addOnSuccessListener(success)
-                    .addOnFailureListener(failure);
-            waitOnLatch(l);
+            log.debug("Performing msisdn 3PID lookup for {}", address);
+            return Optional.of(getFirebase().getUserByPhoneNumber(address));
         } else {
-            log.info("{} is not a supported 3PID medium", medium);
-            r[0] = null;
+            log.debug("{} is not a supported 3PID medium", medium);
+            return Optional.empty();
         }
+    }
+
+    private CompletableFuture<Optional<UserRecord>> toFuture(String medium, String address, Task<UserRecord> task) {
+        CompletableFuture<Optional<UserRecord>> future = new CompletableFuture<>();
+        task.addOnSuccessListener(result -> {
+            log.debug("Found 3PID match for {}:{} - UID is {}", medium, address, result.getUid());
+            future.complete(Optional.of(result));
+        }).addOnFailureListener(e -> {
+            log.debug("No 3PID match for {}:{} - {}", medium, address, e.getMessage());
+            future.complete(Optional.empty());
+        });
+        return future;
+    }
 
-        return Optional.ofNullable(r[0]);
+    /**
+     * Starts a lookup once one of the concurrent lookup slots is available, without blocking.
+     *
+     * @return A future completed with the matching user, or empty if there is none or the lookup did not complete in time
+     */
+    private CompletableFuture<Optional<UserRecord>> findInternal(String medium, String address) {
+        return limiter.submit(() -> getTask(medium, address)
+                .map(task -> toFuture(medium, address, task))
+                .orElseGet(() -> CompletableFuture.completedFuture(Optional.empty())))
+                .handle((result, e) -> {
+                    if (Objects.isNull(e)) {
+                        return result;
+                    }
+
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause instanceof TimeoutException) {
+                        log.warn("Firebase lookup for {}:{} did not complete in time", medium, address);
+                    } else {
+                        log.warn("Firebase lookup for {}:{} failed", medium, address, cause);
+                    }
+                    return Optional.empty();
+                });
     }
 
     @Override
-    public Optional<SingleLookupReply> find(SingleLookupRequest request) {
-        Optional<UserRecord> urOpt = findInternal(request.getType(), request.getThreePid());
-        return urOpt.map(userRecord -> new SingleLookupReply(request, getMxid(userRecord)));
+    public CompletableFuture<Optional<SingleLookupReply>> findAsync(SingleLookupRequest request) {
+        return findInternal(request.getType(), request.getThreePid())
+                .thenApply(urOpt -> urOpt.map(userRecord -> new SingleLookupReply(request, getMxid(userRecord))));
+    }
 
+    @Override
+    public Optional<SingleLookupReply> find(SingleLookupRequest request) {
+        return findAsync(request).join();
     }
 
+    /**
+     * Starts all lookups at once, at most <code>maxConcurrent</code> of them running at a time. Lookups which do not
+     * complete in time are left out of the result.
+     */
     @Override
-    public List<ThreePidMapping> populate(List<ThreePidMapping> mappings) {
-        List<ThreePidMapping> results = new ArrayList<>();
-        mappings.parallelStream().forEach(o -> {
-            Optional<UserRecord> urOpt = findInternal(o.getMedium(), o.getValue());
-            if (urOpt.isPresent()) {
+    public CompletableFuture<List<ThreePidMapping>> populateAsync(List<ThreePidMapping> mappings) {
+        List<CompletableFuture<Optional<ThreePidMapping>>> futures = new ArrayList<>();
+        for (ThreePidMapping o : mappings) {
+            futures.add(findInternal(o.getMedium(), o.getValue()).thenApply(urOpt -> urOpt.map(ur -> {
                 ThreePidMapping result = new ThreePidMapping();
                 result.setMedium(o.getMedium());
                 result.setValue(o.getValue());
-                result.setMxid(getMxid(urOpt.get()));
-                results.add(result);
+                result.setMxid(getMxid(ur));
+                return result;
+            })));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<ThreePidMapping> results = new ArrayList<>();
+            for (CompletableFuture<Optional<ThreePidMapping>> future : futures) {
+                future.join().ifPresent(results::add);
             }
+            return results;
         });
-        return results;
+    }
+
+    @Override
+    public List<ThreePidMapping> populate(List<ThreePidMapping> mappings) {
+        return populateAsync(mappings).join();
+    }
+
+    @Override
+    public void close() {
+        limiter.close();
     }
 
 }
@@ -24,6 +24,8 @@ import io.kamax.matrix.MatrixID;
 import io.kamax.matrix._MatrixID;
 import io.kamax.mxisd.config.MatrixConfig;
 import io.kamax.mxisd.config.ldap.LdapConfig;
+import io.kamax.mxisd.metrics.Gauge;
+import io.kamax.mxisd.metrics.MetricRegistry;
 import org.apache.commons.lang.StringUtils;
 import org.apache.directory.api.ldap.model.entry.Attribute;
 import org.apache.directory.api.ldap.model.entry.AttributeUtils;
@@ -36,10 +38,12 @@ import org.slf4j.LoggerFactory;
 
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class LdapBackend {
 
@@ -48,6 +52,9 @@ public abstract class LdapBackend {
 
     private transient final Logger log = LoggerFactory.getLogger(LdapBackend.class);
 
+    private static final Gauge openConnections = MetricRegistry.get().gauge("ldap_connections_open",
+        "LDAP connections currently open", "host");
+
     private LdapConfig cfg;
     private MatrixConfig mxCfg;
 
@@ -73,7 +80,26 @@ public abstract class LdapBackend {
     }
 
     protected synchronized LdapConnection getConn() {
-        return new LdapNetworkConnection(cfg.getConnection().getHost(), cfg.getConnection().getPort(), cfg.getConnection().isTls());
+        // Connections are not pooled, so the number of open ones is what saturates the LDAP server
+        String host = cfg.getConnection().getHost();
+        AtomicBoolean open = new AtomicBoolean(true);
+        LdapConnection conn = new LdapNetworkConnection(host, cfg.getConnection().getPort(), cfg.getConnection().isTls()) {
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (open.compareAndSet(true, false)) {
+                        openConnections.dec(host);
+                    }
+                }
+            }
+
+        };
+        // Only counted once built, a connection failing to build is never closed
+        openConnections.inc(host);
+        return conn;
     }
 
     protected void bind(LdapConnection conn) throws LdapException {
@@ -83,14 +83,14 @@ public class LdapThreePidProvider extends LdapBackend implements IThreePidProvid
             try (EntryCursor cursor = conn.search(baseDN, searchQuery, SearchScope.SUBTREE, getUidAtt())) {
                 while (cursor.next()) {
                     Entry entry = cursor.get();
-                    log.info("Found possible match, DN: {}", entry.getDn().getName());
+                    log.debug("Found possible match, DN: {}", entry.getDn().getName());
 
                     Optional<String> data = getAttribute(entry, getUidAtt());
                     if (!data.isPresent()) {
                         continue;
                     }
 
-                    log.info("DN {} is a valid match", entry.getDn().getName());
+                    log.debug("DN {} is a valid match", entry.getDn().getName());
                     return Optional.of(buildMatrixIdFromUid(data.get()));
                 }
             } catch (CursorLdapReferralException e) {
@@ -105,7 +105,7 @@ public class LdapThreePidProvider extends LdapBackend implements IThreePidProvid
 
     @Override
     public Optional<SingleLookupReply> find(SingleLookupRequest request) {
-        log.info("Performing LDAP lookup {} of type {}", request.getThreePid(), request.getType());
+        log.debug("Performing LDAP lookup {} of type {}", request.getThreePid(), request.getType());
 
         try (LdapConnection conn = getConn()) {
             bind(conn);
@@ -117,7 +117,7 @@ public class LdapThreePidProvider extends LdapBackend implements IThreePidProvid
 
     @Override
     public List<ThreePidMapping> populate(List<ThreePidMapping> mappings) {
-        log.info("Looking up {} mappings", mappings.size());
+        log.debug("Looking up {} mappings", mappings.size());
         List<ThreePidMapping> mappingsFound = new ArrayList<>();
 
         try (LdapConnection conn = getConn()) {
@@ -178,7 +178,7 @@ public class LdapThreePidProvider extends LdapBackend implements IThreePidProvid
                 try (EntryCursor cursor = conn.search(baseDN, filter, SearchScope.SUBTREE, attributes.toArray(new String[0]))) {
                     while (cursor.next()) {
                         Entry entry = cursor.get();
-                        log.info("Found possible match, DN: {}", entry.getDn().getName());
+                        log.debug("Found possible match, DN: {}", entry.getDn().getName());
                         Optional<String> mxid = getAttribute(entry, getUidAtt());
                         if (!mxid.isPresent()) {
                             continue;
@@ -25,11 +25,49 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import io.kamax.mxisd.config.rest.RestBackendConfig;
 import io.kamax.mxisd.util.GsonParser;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class RestProvider {
 
+    // One pool per backend configuration, shared by all REST providers built from it
+    private static final Map<RestBackendConfig, CloseableHttpClient> clients = new ConcurrentHashMap<>();
+
+    private static CloseableHttpClient buildClient(RestBackendConfig cfg) {
+        RestBackendConfig.Http httpCfg = cfg.getHttp();
+
+        PoolingHttpClientConnectionManager connMgr = new PoolingHttpClientConnectionManager();
+        connMgr.setMaxTotal(httpCfg.getMaxTotal());
+        connMgr.setDefaultMaxPerRoute(httpCfg.getMaxPerRoute());
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connMgr)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout((int) TimeUnit.SECONDS.toMillis(httpCfg.getConnectTimeoutInSeconds()))
+                        .setSocketTimeout((int) TimeUnit.SECONDS.toMillis(httpCfg.getSocketTimeoutInSeconds()))
+                        .setConnectionRequestTimeout((int) TimeUnit.SECONDS.toMillis(httpCfg.getRequestTimeoutInSeconds()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(httpCfg.getIdleTimeoutInSeconds(), TimeUnit.SECONDS);
+
+        if (!httpCfg.isGzip()) {
+            builder.disableContentCompression();
+        }
+
+        return builder.build();
+    }
+
+    protected static CloseableHttpClient getClient(RestBackendConfig cfg) {
+        return clients.computeIfAbsent(cfg, RestProvider::buildClient);
+    }
+
     protected RestBackendConfig cfg;
     protected Gson gson;
     protected GsonParser parser;
@@ -38,7 +76,7 @@ public class RestProvider {
     public RestProvider(RestBackendConfig cfg) {
         this.cfg = cfg;
 
-        client = HttpClients.createDefault();
+        client = getClient(cfg);
         gson = new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES).create();
         parser = new GsonParser(gson);
     }
@@ -39,7 +39,12 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 public class RestThreePidProvider extends RestProvider implements IThreePidProvider {
@@ -47,6 +52,7 @@ public class RestThreePidProvider extends RestProvider implements IThreePidProvi
     private transient final Logger log = LoggerFactory.getLogger(RestThreePidProvider.class);
 
     private MatrixConfig mxCfg; // FIXME should be done in the lookup manager
+    private ExecutorService bulkExecutor;
 
     public RestThreePidProvider(RestBackendConfig cfg, MatrixConfig mxCfg) {
         super(cfg);
@@ -93,9 +99,48 @@ public class RestThreePidProvider extends RestProvider implements IThreePidProvi
         }
     }
 
-    // TODO refactor common code
+    private synchronized ExecutorService getBulkExecutor() {
+        if (Objects.isNull(bulkExecutor)) {
+            bulkExecutor = Executors.newFixedThreadPool(cfg.getBulk().getParallelism(), r -> {
+                Thread t = new Thread(r, "rest-bulk-lookup");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        return bulkExecutor;
+    }
+
     @Override
     public List<ThreePidMapping> populate(List<ThreePidMapping> mappings) {
+        int chunkSize = cfg.getBulk().getChunkSize();
+        if (chunkSize < 1 || mappings.size() <= chunkSize) {
+            return populateChunk(mappings);
+        }
+
+        log.debug("Splitting bulk lookup of {} 3PIDs in chunks of {}", mappings.size(), chunkSize);
+        List<CompletableFuture<List<ThreePidMapping>>> futures = new ArrayList<>();
+        for (int i = 0; i < mappings.size(); i += chunkSize) {
+            List<ThreePidMapping> chunk = mappings.subList(i, Math.min(i + chunkSize, mappings.size()));
+            futures.add(CompletableFuture.supplyAsync(() -> populateChunk(chunk), getBulkExecutor()));
+        }
+
+        List<ThreePidMapping> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<ThreePidMapping>> future : futures) {
+                results.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    // TODO refactor common code
+    private List<ThreePidMapping> populateChunk(List<ThreePidMapping> mappings) {
         List<LookupSingleRequestJson> ioListRequest = mappings.stream()
                 .map(mapping -> new LookupSingleRequestJson(mapping.getMedium(), mapping.getValue()))
                 .collect(Collectors.toList());
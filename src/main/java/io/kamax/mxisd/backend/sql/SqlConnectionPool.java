@@ -22,9 +22,15 @@ package io.kamax.mxisd.backend.sql;
 
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 import io.kamax.mxisd.config.sql.SqlConfig;
+import io.kamax.mxisd.metrics.Gauge;
+import io.kamax.mxisd.metrics.MetricRegistry;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class SqlConnectionPool {
 
@@ -34,6 +40,28 @@ public class SqlConnectionPool {
 
     }
 
+    private interface SqlSupplier {
+
+        int get() throws SQLException;
+
+    }
+
+    private static final AtomicInteger poolIds = new AtomicInteger();
+    private static final Set<SqlConnectionPool> pools = ConcurrentHashMap.newKeySet();
+    private static final Gauge connections = MetricRegistry.get().gauge("db_pool_connections",
+        "Connections of SQL backend pools by state", "pool", "state");
+    private static final Gauge maxConnections = MetricRegistry.get().gauge("db_pool_max_connections",
+        "Maximum size of SQL backend pools", "pool");
+    private static final Gauge waiting = MetricRegistry.get().gauge("db_pool_waiting_threads",
+        "Threads waiting for a connection from SQL backend pools", "pool");
+
+    /**
+     * Closes all pools. Backends do not have a lifecycle of their own, so this is done once requests are drained.
+     */
+    public static void closeAll() {
+        pools.forEach(SqlConnectionPool::close);
+    }
+
     private ComboPooledDataSource ds;
 
     public SqlConnectionPool(SqlConfig cfg) {
@@ -46,12 +74,34 @@ public class SqlConnectionPool {
         ds.setAcquireIncrement(2);
         ds.setAcquireRetryAttempts(10);
         ds.setAcquireRetryDelay(1000);
+
+        String pool = cfg.getType() + "#" + poolIds.incrementAndGet();
+        connections.track(track(ds::getNumBusyConnectionsDefaultUser), pool, "busy");
+        connections.track(track(ds::getNumIdleConnectionsDefaultUser), pool, "idle");
+        maxConnections.track(ds::getMaxPoolSize, pool);
+        waiting.track(track(ds::getNumThreadsAwaitingCheckoutDefaultUser), pool);
+        pools.add(this);
+    }
+
+    private static Supplier<Number> track(SqlSupplier supplier) {
+        return () -> {
+            try {
+                return supplier.get();
+            } catch (SQLException e) {
+                return Double.NaN;
+            }
+        };
     }
 
     public Connection get() throws SQLException {
         return ds.getConnection();
     }
 
+    public void close() {
+        pools.remove(this);
+        ds.close();
+    }
+
     public <T> T withConnFunction(SqlFunction<Connection, T> function) {
         try (Connection conn = get()) {
             return function.run(conn);
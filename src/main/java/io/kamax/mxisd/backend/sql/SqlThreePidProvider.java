@@ -25,6 +25,7 @@ import io.kamax.mxisd.config.MatrixConfig;
 import io.kamax.mxisd.config.sql.SqlConfig;
 import io.kamax.mxisd.lookup.SingleLookupReply;
 import io.kamax.mxisd.lookup.SingleLookupRequest;
+import io.kamax.mxisd.lookup.ThreePidChanges;
 import io.kamax.mxisd.lookup.ThreePidMapping;
 import io.kamax.mxisd.lookup.provider.IThreePidProvider;
 import org.apache.commons.lang.StringUtils;
@@ -34,10 +35,12 @@ import org.slf4j.LoggerFactory;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 public abstract class SqlThreePidProvider implements IThreePidProvider {
@@ -67,9 +70,9 @@ public abstract class SqlThreePidProvider implements IThreePidProvider {
 
     @Override
     public Optional<SingleLookupReply> find(SingleLookupRequest request) {
-        log.info("SQL lookup");
+        log.debug("SQL lookup");
         String stmtSql = StringUtils.defaultIfBlank(cfg.getIdentity().getMedium().get(request.getType()), cfg.getIdentity().getQuery());
-        log.info("SQL query: {}", stmtSql);
+        log.debug("SQL query: {}", stmtSql);
         try (Connection conn = pool.get()) {
             try (PreparedStatement stmt = conn.prepareStatement(stmtSql)) {
                 stmt.setString(1, request.getType().toLowerCase());
@@ -78,20 +81,20 @@ public abstract class SqlThreePidProvider implements IThreePidProvider {
                 try (ResultSet rSet = stmt.executeQuery()) {
                     while (rSet.next()) {
                         String uid = rSet.getString("uid");
-                        log.info("Found match: {}", uid);
+                        log.debug("Found match: {}", uid);
                         if (StringUtils.equals("uid", cfg.getIdentity().getType())) {
-                            log.info("Resolving as localpart");
+                            log.debug("Resolving as localpart");
                             return Optional.of(new SingleLookupReply(request, MatrixID.asAcceptable(uid, mxCfg.getDomain())));
                         }
                         if (StringUtils.equals("mxid", cfg.getIdentity().getType())) {
-                            log.info("Resolving as MXID");
+                            log.debug("Resolving as MXID");
                             return Optional.of(new SingleLookupReply(request, MatrixID.asAcceptable(uid)));
                         }
 
-                        log.info("Identity type is unknown, skipping");
+                        log.debug("Identity type is unknown, skipping");
                     }
 
-                    log.info("No match found in SQL");
+                    log.debug("No match found in SQL");
                     return Optional.empty();
                 }
             }
@@ -130,4 +133,66 @@ public abstract class SqlThreePidProvider implements IThreePidProvider {
         }
         return result;
     }
+
+    /**
+     * Uses the optional cursor and changes queries of the lookup configuration, typically on an updated_at column.
+     * <p>
+     * The cursor query returns a single {@code cursor} column. The changes query takes the previous cursor as parameter
+     * and returns rows ordered by their {@code cursor} column, with {@code mxid}, {@code medium} and {@code address},
+     * and an optional {@code deleted} boolean column for stores with soft deletes.
+     * <p>
+     * The cursor is kept as returned by the driver and bound back with its SQL type, so it can be compared to numeric or
+     * timestamp columns on databases like PostgreSQL which do not implicitly cast text parameters.
+     */
+    @Override
+    public Optional<ThreePidChanges> changesSince(Object cursor) {
+        SqlConfig.Lookup lookupCfg = cfg.getLookup();
+        if (StringUtils.isBlank(lookupCfg.getCursorQuery()) || StringUtils.isBlank(lookupCfg.getChangesQuery())) {
+            return Optional.empty();
+        }
+
+        try (Connection connection = pool.get()) {
+            if (Objects.isNull(cursor)) {
+                try (PreparedStatement stmt = connection.prepareStatement(lookupCfg.getCursorQuery());
+                     ResultSet rSet = stmt.executeQuery()) {
+                    return Optional.of(new ThreePidChanges(rSet.next() ? rSet.getObject("cursor") : null));
+                }
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(lookupCfg.getChangesQuery())) {
+                stmt.setObject(1, cursor);
+                try (ResultSet rSet = stmt.executeQuery()) {
+                    boolean softDeletes = hasColumn(rSet.getMetaData(), "deleted");
+                    List<ThreePidMapping> added = new ArrayList<>();
+                    List<ThreePidMapping> removed = new ArrayList<>();
+                    Object next = cursor;
+                    while (rSet.next()) {
+                        ThreePidMapping mapping = new ThreePidMapping(rSet.getString("medium"), rSet.getString("address"), rSet.getString("mxid"));
+                        if (softDeletes && rSet.getBoolean("deleted")) {
+                            removed.add(mapping);
+                        } else {
+                            added.add(mapping);
+                        }
+                        next = rSet.getObject("cursor");
+                    }
+
+                    ThreePidChanges changes = new ThreePidChanges(next);
+                    changes.getAdded().addAll(added);
+                    changes.getRemoved().addAll(removed);
+                    return Optional.of(changes);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean hasColumn(ResultSetMetaData metaData, String name) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (StringUtils.equalsIgnoreCase(name, metaData.getColumnLabel(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,62 @@
+package io.kamax.mxisd.config;
+
+import io.kamax.mxisd.exception.ConfigurationException;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Separate HTTP listener for operational endpoints, such as metrics, which must not be exposed with the public API.
+ */
+public class AdminServerConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdminServerConfig.class);
+
+    private boolean enabled = false;
+    private String hostname = "127.0.0.1";
+    private int port = 8091;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getHostname() {
+        return hostname;
+    }
+
+    public void setHostname(String hostname) {
+        this.hostname = hostname;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public void build() {
+        LOGGER.info("--- Admin listener config ---");
+        LOGGER.info("   Enabled: {}", isEnabled());
+        if (!isEnabled()) {
+            return;
+        }
+
+        if (StringUtils.isBlank(getHostname())) {
+            throw new ConfigurationException("server.admin.hostname");
+        }
+
+        if (getPort() <= 0 || getPort() > 65535) {
+            throw new ConfigurationException("server.admin.port", "Must be a valid TCP port");
+        }
+
+        LOGGER.info("   Hostname: {}", getHostname());
+        LOGGER.info("   Port: {}", getPort());
+    }
+
+}
@@ -20,6 +20,8 @@
 
 package io.kamax.mxisd.config;
 
+import io.kamax.mxisd.exception.ConfigurationException;
+
 import java.util.*;
 
 public class ExecConfig {
@@ -147,10 +149,175 @@ public class ExecConfig {
 
     }
 
+    public enum ModeEnum {
+        oneshot,
+        persistent
+    }
+
+    public static class Worker {
+
+        private int size = 1;
+        private int maxInFlight = 1;
+        private String timeout = "30s";
+        private transient long timeoutInSeconds = 30;
+        private String healthCheck = "30s";
+        private transient long healthCheckInSeconds = 30;
+
+        public int getSize() {
+            return size;
+        }
+
+        public void setSize(int size) {
+            this.size = size;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public String getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(String timeout) {
+            this.timeout = timeout;
+        }
+
+        public long getTimeoutInSeconds() {
+            return timeoutInSeconds;
+        }
+
+        public String getHealthCheck() {
+            return healthCheck;
+        }
+
+        public void setHealthCheck(String healthCheck) {
+            this.healthCheck = healthCheck;
+        }
+
+        public long getHealthCheckInSeconds() {
+            return healthCheckInSeconds;
+        }
+
+        public void build() {
+            if (getSize() < 1) {
+                throw new ConfigurationException("exec.*.worker.size", "Must be greater than 0");
+            }
+
+            if (getMaxInFlight() < 1) {
+                throw new ConfigurationException("exec.*.worker.maxInFlight", "Must be greater than 0");
+            }
+
+            timeoutInSeconds = new DurationDeserializer().deserialize(getTimeout());
+            if (timeoutInSeconds < 1) {
+                throw new ConfigurationException("exec.*.worker.timeout", "Must be at least one second");
+            }
+
+            healthCheckInSeconds = new DurationDeserializer().deserialize(getHealthCheck());
+        }
+
+    }
+
+    public static class Concurrency {
+
+        private int max = 0;
+        private String timeout = "30s";
+        private transient long timeoutInSeconds = 30;
+
+        public int getMax() {
+            return max;
+        }
+
+        public void setMax(int max) {
+            this.max = max;
+        }
+
+        public String getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(String timeout) {
+            this.timeout = timeout;
+        }
+
+        public long getTimeoutInSeconds() {
+            return timeoutInSeconds;
+        }
+
+        public void build() {
+            if (getMax() < 0) {
+                throw new ConfigurationException("exec.*.concurrency.max", "Must be 0 (unlimited) or greater");
+            }
+
+            timeoutInSeconds = new DurationDeserializer().deserialize(getTimeout());
+        }
+
+    }
+
+    public static class Cache {
+
+        private boolean enabled = false;
+        private String ttl = "1m";
+        private transient long ttlInSeconds = 60;
+        private int maxEntries = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(String ttl) {
+            this.ttl = ttl;
+        }
+
+        public long getTtlInSeconds() {
+            return ttlInSeconds;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public void build() {
+            if (!isEnabled()) {
+                return;
+            }
+
+            ttlInSeconds = new DurationDeserializer().deserialize(getTtl());
+            if (ttlInSeconds < 1) {
+                throw new ConfigurationException("exec.*.cache.ttl", "Must be at least one second");
+            }
+
+            if (getMaxEntries() < 1) {
+                throw new ConfigurationException("exec.*.cache.maxEntries", "Must be greater than 0");
+            }
+        }
+
+    }
+
     public static class Process {
 
         private Token token = new Token();
         private String command;
+        private ModeEnum mode = ModeEnum.oneshot;
+        private Worker worker = new Worker();
+        private Concurrency concurrency = new Concurrency();
+        private Cache cache = new Cache();
 
         private List<String> args = new ArrayList<>();
         private Map<String, String> env = new HashMap<>();
@@ -175,6 +342,38 @@ public class ExecConfig {
             this.command = command;
         }
 
+        public ModeEnum getMode() {
+            return mode;
+        }
+
+        public void setMode(ModeEnum mode) {
+            this.mode = mode;
+        }
+
+        public Worker getWorker() {
+            return worker;
+        }
+
+        public void setWorker(Worker worker) {
+            this.worker = worker;
+        }
+
+        public Concurrency getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(Concurrency concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public Cache getCache() {
+            return cache;
+        }
+
+        public void setCache(Cache cache) {
+            this.cache = cache;
+        }
+
         public List<String> getArgs() {
             return args;
         }
@@ -219,6 +418,15 @@ public class ExecConfig {
             this.output = output;
         }
 
+        public void build() {
+            if (ModeEnum.persistent.equals(getMode())) {
+                getWorker().build();
+            }
+
+            getConcurrency().build();
+            getCache().build();
+        }
+
     }
 
     public static class Auth extends Process {
@@ -457,6 +665,15 @@ public class ExecConfig {
             getProfile().setEnabled(isEnabled());
         }
 
+        getAuth().build();
+        getDirectory().getSearch().getByName().build();
+        getDirectory().getSearch().getByThreepid().build();
+        getIdentity().getLookup().getSingle().build();
+        getIdentity().getLookup().getBulk().build();
+        getProfile().getDisplayName().build();
+        getProfile().getThreePid().build();
+        getProfile().getRole().build();
+
         return this;
     }
 
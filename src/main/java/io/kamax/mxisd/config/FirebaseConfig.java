@@ -20,6 +20,7 @@
 
 package io.kamax.mxisd.config;
 
+import io.kamax.mxisd.exception.ConfigurationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +31,9 @@ public class FirebaseConfig {
     private boolean enabled;
     private String credentials;
     private String database;
+    private int maxConcurrent = 20;
+    private String timeout = "30s";
+    private transient long timeoutInSeconds = 30;
 
     public boolean isEnabled() {
         return enabled;
@@ -55,12 +59,44 @@ public class FirebaseConfig {
         this.database = database;
     }
 
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public String getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(String timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getTimeoutInSeconds() {
+        return timeoutInSeconds;
+    }
+
     public void build() {
         log.info("--- Firebase configuration ---");
         log.info("Enabled: {}", isEnabled());
         if (isEnabled()) {
             log.info("Credentials: {}", getCredentials());
             log.info("Database: {}", getDatabase());
+
+            if (getMaxConcurrent() < 1) {
+                throw new ConfigurationException("firebase.maxConcurrent", "Must be greater than 0");
+            }
+
+            timeoutInSeconds = new DurationDeserializer().deserialize(getTimeout());
+            if (timeoutInSeconds < 1) {
+                throw new ConfigurationException("firebase.timeout", "Must be at least one second");
+            }
+
+            log.info("Max concurrent lookups: {}", getMaxConcurrent());
+            log.info("Lookup timeout: {}", getTimeout());
         }
     }
 
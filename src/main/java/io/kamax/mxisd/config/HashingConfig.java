@@ -1,5 +1,7 @@
 package io.kamax.mxisd.config;
 
+import io.kamax.mxisd.exception.ConfigurationException;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,6 +21,10 @@ public class HashingConfig {
     private transient long delayInSeconds = 10;
     private int requests = 10;
     private List<Algorithm> algorithms = new ArrayList<>();
+    private String snapshotFile;
+    private String changesInterval;
+    private transient long changesIntervalInSeconds = 0;
+    private double bloomFilterFpp = 0.01;
 
     public void build(MatrixConfig matrixConfig) {
         if (isEnabled()) {
@@ -36,6 +42,17 @@ public class HashingConfig {
                 LOGGER.info("   Rotation after requests: {}", getRequests());
             }
             LOGGER.info("   Algorithms: {}", getAlgorithms());
+            LOGGER.info("   Snapshot file: {}", getSnapshotFile());
+            if (StringUtils.isNotBlank(getChangesInterval())) {
+                changesIntervalInSeconds = new DurationDeserializer().deserialize(getChangesInterval());
+            }
+            LOGGER.info("   Changes polling interval in seconds: {}", getChangesIntervalInSeconds());
+            if (getBloomFilterFpp() < 0 || getBloomFilterFpp() >= 1) {
+                throw new ConfigurationException("hashing.bloomFilterFpp", "Must be between 0 (disabled) and 1");
+            }
+            if (isBloomFilterEnabled()) {
+                LOGGER.info("   Bloom filter false positive rate: {}", getBloomFilterFpp());
+            }
         } else {
             if (matrixConfig.isV2()) {
                 LOGGER.warn("V2 enabled without the hash configuration.");
@@ -122,4 +139,39 @@ public class HashingConfig {
     public void setAlgorithms(List<Algorithm> algorithms) {
         this.algorithms = algorithms;
     }
+
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public String getChangesInterval() {
+        return changesInterval;
+    }
+
+    public void setChangesInterval(String changesInterval) {
+        this.changesInterval = changesInterval;
+    }
+
+    public long getChangesIntervalInSeconds() {
+        return changesIntervalInSeconds;
+    }
+
+    public double getBloomFilterFpp() {
+        return bloomFilterFpp;
+    }
+
+    public void setBloomFilterFpp(double bloomFilterFpp) {
+        this.bloomFilterFpp = bloomFilterFpp;
+    }
+
+    /**
+     * The filter only saves work with the SQL storage, in-memory lookups cost about the same as checking it.
+     */
+    public boolean isBloomFilterEnabled() {
+        return getBloomFilterFpp() > 0 && HashStorageEnum.sql == getHashStorageType();
+    }
 }
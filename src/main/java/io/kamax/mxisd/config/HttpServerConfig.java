@@ -0,0 +1,290 @@
+package io.kamax.mxisd.config;
+
+import io.kamax.mxisd.exception.ConfigurationException;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+
+public class HttpServerConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpServerConfig.class);
+
+    public static class Tls {
+
+        private boolean enabled = false;
+        private int port = 8443;
+        private String keyStore;
+        private String keyStoreType = "PKCS12";
+        private String keyStorePassword;
+        private String keyPassword;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public String getKeyStore() {
+            return keyStore;
+        }
+
+        public void setKeyStore(String keyStore) {
+            this.keyStore = keyStore;
+        }
+
+        public String getKeyStoreType() {
+            return keyStoreType;
+        }
+
+        public void setKeyStoreType(String keyStoreType) {
+            this.keyStoreType = keyStoreType;
+        }
+
+        public String getKeyStorePassword() {
+            return keyStorePassword;
+        }
+
+        public void setKeyStorePassword(String keyStorePassword) {
+            this.keyStorePassword = keyStorePassword;
+        }
+
+        public String getKeyPassword() {
+            return keyPassword;
+        }
+
+        public void setKeyPassword(String keyPassword) {
+            this.keyPassword = keyPassword;
+        }
+
+        public void build() {
+            if (!isEnabled()) {
+                return;
+            }
+
+            if (StringUtils.isBlank(getKeyStore())) {
+                throw new ConfigurationException("server.http.tls.keyStore");
+            }
+
+            if (Objects.isNull(getKeyPassword())) {
+                setKeyPassword(getKeyStorePassword());
+            }
+        }
+
+    }
+
+    public static class Compression {
+
+        private boolean enabled = true;
+        private long minSize = 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMinSize() {
+            return minSize;
+        }
+
+        public void setMinSize(long minSize) {
+            this.minSize = minSize;
+        }
+
+        public void build() {
+            if (getMinSize() < 0) {
+                throw new ConfigurationException("server.http.compression.minSize", "Must be 0 or greater");
+            }
+        }
+
+    }
+
+    private int ioThreads = 0;
+    private int workerThreads = 0;
+    private int bufferSize = 0;
+    private Boolean directBuffers;
+    private int backlog = 0;
+    private String idleTimeout;
+    private transient long idleTimeoutInSeconds = 0;
+    private String noRequestTimeout;
+    private transient long noRequestTimeoutInSeconds = 0;
+    private String requestParseTimeout;
+    private transient long requestParseTimeoutInSeconds = 0;
+    private long maxEntitySize = 0;
+    private boolean http2 = false;
+    private Compression compression = new Compression();
+    private Tls tls = new Tls();
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public Boolean getDirectBuffers() {
+        return directBuffers;
+    }
+
+    public void setDirectBuffers(Boolean directBuffers) {
+        this.directBuffers = directBuffers;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public String getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(String idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public long getIdleTimeoutInSeconds() {
+        return idleTimeoutInSeconds;
+    }
+
+    public String getNoRequestTimeout() {
+        return noRequestTimeout;
+    }
+
+    public void setNoRequestTimeout(String noRequestTimeout) {
+        this.noRequestTimeout = noRequestTimeout;
+    }
+
+    public long getNoRequestTimeoutInSeconds() {
+        return noRequestTimeoutInSeconds;
+    }
+
+    public String getRequestParseTimeout() {
+        return requestParseTimeout;
+    }
+
+    public void setRequestParseTimeout(String requestParseTimeout) {
+        this.requestParseTimeout = requestParseTimeout;
+    }
+
+    public long getRequestParseTimeoutInSeconds() {
+        return requestParseTimeoutInSeconds;
+    }
+
+    public long getMaxEntitySize() {
+        return maxEntitySize;
+    }
+
+    public void setMaxEntitySize(long maxEntitySize) {
+        this.maxEntitySize = maxEntitySize;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public Tls getTls() {
+        return tls;
+    }
+
+    public void setTls(Tls tls) {
+        this.tls = tls;
+    }
+
+    private long parseDuration(String key, String value) {
+        if (StringUtils.isBlank(value)) {
+            return 0;
+        }
+
+        try {
+            return new DurationDeserializer().deserialize(value);
+        } catch (RuntimeException e) {
+            throw new ConfigurationException(key, e.getMessage());
+        }
+    }
+
+    public void build() {
+        if (getIoThreads() < 0) {
+            throw new ConfigurationException("server.http.ioThreads", "Must be 0 (default) or greater");
+        }
+
+        if (getWorkerThreads() < 0) {
+            throw new ConfigurationException("server.http.workerThreads", "Must be 0 (default) or greater");
+        }
+
+        if (getBufferSize() < 0) {
+            throw new ConfigurationException("server.http.bufferSize", "Must be 0 (default) or greater");
+        }
+
+        if (getMaxEntitySize() < 0) {
+            throw new ConfigurationException("server.http.maxEntitySize", "Must be 0 (unlimited) or greater");
+        }
+
+        idleTimeoutInSeconds = parseDuration("server.http.idleTimeout", getIdleTimeout());
+        noRequestTimeoutInSeconds = parseDuration("server.http.noRequestTimeout", getNoRequestTimeout());
+        requestParseTimeoutInSeconds = parseDuration("server.http.requestParseTimeout", getRequestParseTimeout());
+        getCompression().build();
+        getTls().build();
+
+        LOGGER.info("--- HTTP server config ---");
+        LOGGER.info("   IO threads: {}", getIoThreads() > 0 ? getIoThreads() : "default");
+        LOGGER.info("   Worker threads: {}", getWorkerThreads() > 0 ? getWorkerThreads() : "default");
+        LOGGER.info("   Buffer size: {}", getBufferSize() > 0 ? getBufferSize() : "default");
+        LOGGER.info("   Direct buffers: {}", Objects.nonNull(getDirectBuffers()) ? getDirectBuffers() : "default");
+        LOGGER.info("   Backlog: {}", getBacklog() > 0 ? getBacklog() : "default");
+        LOGGER.info("   Idle timeout: {}", StringUtils.defaultIfBlank(getIdleTimeout(), "default"));
+        LOGGER.info("   No request timeout: {}", StringUtils.defaultIfBlank(getNoRequestTimeout(), "default"));
+        LOGGER.info("   Request parse timeout: {}", StringUtils.defaultIfBlank(getRequestParseTimeout(), "default"));
+        LOGGER.info("   Max entity size: {}", getMaxEntitySize() > 0 ? getMaxEntitySize() : "unlimited");
+        LOGGER.info("   HTTP/2: {}", isHttp2());
+        LOGGER.info("   Compression: {}", getCompression().isEnabled() ? "from " + getCompression().getMinSize() + " bytes" : "disabled");
+        LOGGER.info("   TLS: {}", getTls().isEnabled() ? "port " + getTls().getPort() : "disabled");
+    }
+
+}
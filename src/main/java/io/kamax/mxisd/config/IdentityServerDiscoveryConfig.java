@@ -0,0 +1,80 @@
+package io.kamax.mxisd.config;
+
+import io.kamax.mxisd.exception.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class IdentityServerDiscoveryConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdentityServerDiscoveryConfig.class);
+
+    private String ttl = "1h";
+    private transient long ttlInSeconds = 3600;
+    private String negativeTtl = "10m";
+    private transient long negativeTtlInSeconds = 600;
+    private String probeInterval = "5m";
+    private transient long probeIntervalInSeconds = 300;
+    private int maxEntries = 10000;
+
+    public String getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(String ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getTtlInSeconds() {
+        return ttlInSeconds;
+    }
+
+    public String getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    public void setNegativeTtl(String negativeTtl) {
+        this.negativeTtl = negativeTtl;
+    }
+
+    public long getNegativeTtlInSeconds() {
+        return negativeTtlInSeconds;
+    }
+
+    public String getProbeInterval() {
+        return probeInterval;
+    }
+
+    public void setProbeInterval(String probeInterval) {
+        this.probeInterval = probeInterval;
+    }
+
+    public long getProbeIntervalInSeconds() {
+        return probeIntervalInSeconds;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public void build() {
+        DurationDeserializer deserializer = new DurationDeserializer();
+        ttlInSeconds = deserializer.deserialize(getTtl());
+        negativeTtlInSeconds = deserializer.deserialize(getNegativeTtl());
+        probeIntervalInSeconds = deserializer.deserialize(getProbeInterval());
+
+        if (getMaxEntries() < 1) {
+            throw new ConfigurationException("lookup.recursive.discovery.maxEntries", "Must be greater than 0");
+        }
+
+        LOGGER.info("--- Identity server discovery cache ---");
+        LOGGER.info("   TTL: {}", getTtl());
+        LOGGER.info("   Negative TTL: {}", getNegativeTtl());
+        LOGGER.info("   Health probe interval: {}", getProbeInterval());
+        LOGGER.info("   Max entries: {}", getMaxEntries());
+    }
+
+}
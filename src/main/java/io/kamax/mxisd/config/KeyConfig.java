@@ -25,8 +25,22 @@ import org.apache.commons.lang.StringUtils;
 
 public class KeyConfig {
 
+    public enum KeyStoreEnum {
+        file,
+        sql
+    }
+
+    private KeyStoreEnum store = KeyStoreEnum.file;
     private String path;
 
+    public KeyStoreEnum getStore() {
+        return store;
+    }
+
+    public void setStore(KeyStoreEnum store) {
+        this.store = store;
+    }
+
     public void setPath(String path) {
         this.path = path;
     }
@@ -36,7 +50,7 @@ public class KeyConfig {
     }
 
     public void build() {
-        if (StringUtils.isBlank(getPath())) {
+        if (KeyStoreEnum.file == getStore() && StringUtils.isBlank(getPath())) {
             throw new ConfigurationException("key.path");
         }
     }
@@ -1,16 +1,116 @@
 package io.kamax.mxisd.config;
 
+import io.kamax.mxisd.exception.ConfigurationException;
+import io.kamax.mxisd.logging.LogLevels;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
 public class LoggingConfig {
 
     private static final Logger LOGGER = LoggerFactory.getLogger("App");
 
+    public static class RequestTrace {
+
+        private static final Pattern StatusPattern = Pattern.compile("[1-5]([0-9]{2}|xx)");
+
+        private double sampleRate = 1;
+        private List<String> routes = new ArrayList<>();
+        private List<String> statuses = new ArrayList<>();
+        private List<String> clients = new ArrayList<>();
+        private int maxBodySize = 4096;
+        private int queueSize = 1000;
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public List<String> getRoutes() {
+            return routes;
+        }
+
+        public void setRoutes(List<String> routes) {
+            this.routes = routes;
+        }
+
+        public List<String> getStatuses() {
+            return statuses;
+        }
+
+        public void setStatuses(List<String> statuses) {
+            this.statuses = statuses;
+        }
+
+        public List<String> getClients() {
+            return clients;
+        }
+
+        public void setClients(List<String> clients) {
+            this.clients = clients;
+        }
+
+        public int getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public void setMaxBodySize(int maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
+
+        public void build() {
+            if (getSampleRate() < 0 || getSampleRate() > 1) {
+                throw new ConfigurationException("logging.requestTrace.sampleRate", "Must be between 0 and 1");
+            }
+
+            for (String status : getStatuses()) {
+                if (!StatusPattern.matcher(status).matches()) {
+                    throw new ConfigurationException("logging.requestTrace.statuses", "Invalid status " + status + ", use codes like 500 or classes like 5xx");
+                }
+            }
+
+            if (getMaxBodySize() < 0) {
+                throw new ConfigurationException("logging.requestTrace.maxBodySize", "Must be 0 or greater");
+            }
+
+            if (getQueueSize() <= 0) {
+                throw new ConfigurationException("logging.requestTrace.queueSize", "Must be greater than 0");
+            }
+
+            LOGGER.info("  Request trace sample rate: {}", getSampleRate());
+            LOGGER.info("  Request trace routes: {}", getRoutes().isEmpty() ? "all" : getRoutes());
+            LOGGER.info("  Request trace statuses: {}", getStatuses().isEmpty() ? "all" : getStatuses());
+            LOGGER.info("  Request trace clients: {}", getClients().isEmpty() ? "all" : getClients());
+            LOGGER.info("  Request trace max body size: {}", getMaxBodySize());
+            LOGGER.info("  Request trace queue size: {}", getQueueSize());
+        }
+
+    }
+
     private String root;
     private String app;
+    private Map<String, String> levels = new HashMap<>();
+    private boolean async = true;
+    private int asyncQueueSize = 10000;
     private boolean requests = false;
+    private RequestTrace requestTrace = new RequestTrace();
 
     public String getRoot() {
         return root;
@@ -28,6 +128,30 @@ public class LoggingConfig {
         this.app = app;
     }
 
+    public Map<String, String> getLevels() {
+        return levels;
+    }
+
+    public void setLevels(Map<String, String> levels) {
+        this.levels = levels;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+    public void setAsyncQueueSize(int asyncQueueSize) {
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
     public boolean isRequests() {
         return requests;
     }
@@ -36,6 +160,14 @@ public class LoggingConfig {
         this.requests = requests;
     }
 
+    public RequestTrace getRequestTrace() {
+        return requestTrace;
+    }
+
+    public void setRequestTrace(RequestTrace requestTrace) {
+        this.requestTrace = requestTrace;
+    }
+
     public void build() {
         LOGGER.info("Logging config:");
         if (StringUtils.isNotBlank(getRoot())) {
@@ -47,14 +179,31 @@ public class LoggingConfig {
         if (StringUtils.isNotBlank(appLevel)) {
             LOGGER.info("  Logging level set by environment: {}", appLevel);
         } else if (StringUtils.isNotBlank(getApp())) {
-            System.setProperty("org.slf4j.simpleLogger.log.io.kamax.mxisd", getApp());
+            if (!LogLevels.isValid(getApp())) {
+                throw new ConfigurationException("logging.app", "Invalid log level: " + getApp());
+            }
+            LogLevels.set("io.kamax.mxisd", getApp());
             LOGGER.info("  Logging level set by the configuration: {}", getApp());
         } else {
             LOGGER.info("  Logging level hasn't set, use default");
         }
+
+        for (Map.Entry<String, String> level : getLevels().entrySet()) {
+            if (!LogLevels.isValid(level.getValue())) {
+                throw new ConfigurationException("logging.levels." + level.getKey(), "Invalid log level: " + level.getValue());
+            }
+            LogLevels.set(level.getKey(), level.getValue());
+            LOGGER.info("  Logging level of {}: {}", level.getKey(), level.getValue());
+        }
+
+        if (getAsyncQueueSize() <= 0) {
+            throw new ConfigurationException("logging.asyncQueueSize", "Must be greater than 0");
+        }
+        LOGGER.info("  Asynchronous logging: {}", isAsync());
         LOGGER.info("  Log requests: {}", isRequests());
         if (isRequests()) {
-            LOGGER.warn("  Request dumping enabled, use this only to debug purposes, don't use it in the production.");
+            LOGGER.warn("  Request dumping enabled, use sampling and filters to limit its volume in production.");
+            getRequestTrace().build();
         }
     }
 }
@@ -59,6 +59,7 @@ public class MxisdConfig {
 
         private BulkLookupConfig bulk = new BulkLookupConfig();
         private RecursiveLookupConfig recursive = new RecursiveLookupConfig();
+        private SignedLookupCacheConfig signedCache = new SignedLookupCacheConfig();
 
         public BulkLookupConfig getBulk() {
             return bulk;
@@ -76,9 +77,18 @@ public class MxisdConfig {
             this.recursive = recursive;
         }
 
+        public SignedLookupCacheConfig getSignedCache() {
+            return signedCache;
+        }
+
+        public void setSignedCache(SignedLookupCacheConfig signedCache) {
+            this.signedCache = signedCache;
+        }
+
         public void build() {
             getBulk().build();
             getRecursive().build();
+            getSignedCache().build();
         }
 
     }
@@ -0,0 +1,210 @@
+package io.kamax.mxisd.config;
+
+import io.kamax.mxisd.exception.ConfigurationException;
+import io.kamax.mxisd.ratelimit.TrustedProxies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Per-client request budgets and load shedding of the public listener.
+ */
+public class RateLimitConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitConfig.class);
+
+    public enum Key {
+
+        // Address of the connecting client
+        ip,
+
+        // Access token of the request once verified by a route requiring authentication, or the client address
+        token,
+
+        // Server part of the Matrix ID owning the access token, only for routes requiring authentication
+        homeserver
+
+    }
+
+    public static class Rule {
+
+        private List<String> routes = new ArrayList<>();
+        private Key key = Key.ip;
+        private double rate;
+        private int burst;
+
+        public List<String> getRoutes() {
+            return routes;
+        }
+
+        public void setRoutes(List<String> routes) {
+            this.routes = routes;
+        }
+
+        public Key getKey() {
+            return key;
+        }
+
+        public void setKey(Key key) {
+            this.key = key;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public void build(int index) {
+            String prefix = "server.rateLimit.rules[" + index + "]";
+            if (Objects.isNull(getRoutes()) || getRoutes().isEmpty()) {
+                throw new ConfigurationException(prefix + ".routes", "At least one route is required");
+            }
+
+            if (Objects.isNull(getKey())) {
+                throw new ConfigurationException(prefix + ".key", "Must be one of ip, token or homeserver");
+            }
+
+            if (getRate() <= 0) {
+                throw new ConfigurationException(prefix + ".rate", "Must be greater than 0");
+            }
+
+            if (getBurst() <= 0) {
+                setBurst((int) Math.max(1, Math.ceil(getRate())));
+            }
+
+            LOGGER.info("   Rule: {} per second, burst of {}, per {} on {}", getRate(), getBurst(), getKey(), getRoutes());
+        }
+
+    }
+
+    public static class Shedding {
+
+        private boolean enabled = false;
+        private int maxInFlight = 0;
+        private long retryAfterMs = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+
+        public void setRetryAfterMs(long retryAfterMs) {
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public void build() {
+            LOGGER.info("   Load shedding: {}", isEnabled());
+            if (!isEnabled()) {
+                return;
+            }
+
+            if (getMaxInFlight() < 0) {
+                throw new ConfigurationException("server.rateLimit.shedding.maxInFlight", "Must be 0 or greater");
+            }
+
+            if (getRetryAfterMs() <= 0) {
+                throw new ConfigurationException("server.rateLimit.shedding.retryAfterMs", "Must be greater than 0");
+            }
+
+            LOGGER.info("   Max requests in flight: {}", getMaxInFlight() > 0 ? getMaxInFlight() : "twice the worker threads");
+            LOGGER.info("   Retry after: {}ms", getRetryAfterMs());
+        }
+
+    }
+
+    private boolean enabled = false;
+    private int maxKeys = 100000;
+    private List<String> trustedProxies = new ArrayList<>();
+    private List<Rule> rules = new ArrayList<>();
+    private Shedding shedding = new Shedding();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    public void setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    public List<String> getTrustedProxies() {
+        return trustedProxies;
+    }
+
+    public void setTrustedProxies(List<String> trustedProxies) {
+        this.trustedProxies = trustedProxies;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    public Shedding getShedding() {
+        return shedding;
+    }
+
+    public void setShedding(Shedding shedding) {
+        this.shedding = shedding;
+    }
+
+    public void build() {
+        LOGGER.info("--- Rate limit config ---");
+        LOGGER.info("   Enabled: {}", isEnabled());
+        if (isEnabled()) {
+            if (getMaxKeys() <= 0) {
+                throw new ConfigurationException("server.rateLimit.maxKeys", "Must be greater than 0");
+            }
+
+            LOGGER.info("   Max tracked clients per rule: {}", getMaxKeys());
+            // Validated here so errors are reported with the rest of the configuration
+            new TrustedProxies(getTrustedProxies());
+            LOGGER.info("   Trusted proxies: {}", getTrustedProxies().isEmpty() ? "none" : getTrustedProxies());
+            for (int i = 0; i < getRules().size(); i++) {
+                getRules().get(i).build(i);
+            }
+        }
+
+        getShedding().build();
+    }
+
+}
@@ -28,6 +28,8 @@ public class RecursiveLookupConfig {
     private boolean enabled = true;
     private List<String> allowedCidr = new ArrayList<>();
     private RecursiveLookupBridgeConfig bridge = new RecursiveLookupBridgeConfig();
+    private IdentityServerDiscoveryConfig discovery = new IdentityServerDiscoveryConfig();
+    private RemoteBulkLookupConfig bulk = new RemoteBulkLookupConfig();
 
     public RecursiveLookupConfig() {
         allowedCidr.add("127.0.0.0/8");
@@ -61,8 +63,26 @@ public class RecursiveLookupConfig {
         this.bridge = bridge;
     }
 
+    public IdentityServerDiscoveryConfig getDiscovery() {
+        return discovery;
+    }
+
+    public void setDiscovery(IdentityServerDiscoveryConfig discovery) {
+        this.discovery = discovery;
+    }
+
+    public RemoteBulkLookupConfig getBulk() {
+        return bulk;
+    }
+
+    public void setBulk(RemoteBulkLookupConfig bulk) {
+        this.bulk = bulk;
+    }
+
     public void build() {
         bridge.build();
+        discovery.build();
+        bulk.build();
     }
 
 }
@@ -0,0 +1,78 @@
+package io.kamax.mxisd.config;
+
+import io.kamax.mxisd.exception.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class RemoteBulkLookupConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteBulkLookupConfig.class);
+
+    private int threads = 8;
+    private int queue = 1000;
+    private int perDomain = 2;
+    private String timeout = "30s";
+    private transient long timeoutInSeconds = 30;
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getQueue() {
+        return queue;
+    }
+
+    public void setQueue(int queue) {
+        this.queue = queue;
+    }
+
+    public int getPerDomain() {
+        return perDomain;
+    }
+
+    public void setPerDomain(int perDomain) {
+        this.perDomain = perDomain;
+    }
+
+    public String getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(String timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getTimeoutInSeconds() {
+        return timeoutInSeconds;
+    }
+
+    public void build() {
+        if (getThreads() < 1) {
+            throw new ConfigurationException("lookup.recursive.bulk.threads", "Must be greater than 0");
+        }
+
+        if (getQueue() < 0) {
+            throw new ConfigurationException("lookup.recursive.bulk.queue", "Must be 0 or greater");
+        }
+
+        if (getPerDomain() < 1) {
+            throw new ConfigurationException("lookup.recursive.bulk.perDomain", "Must be greater than 0");
+        }
+
+        timeoutInSeconds = new DurationDeserializer().deserialize(getTimeout());
+        if (timeoutInSeconds < 1) {
+            throw new ConfigurationException("lookup.recursive.bulk.timeout", "Must be at least one second");
+        }
+
+        LOGGER.info("--- Remote bulk lookup ---");
+        LOGGER.info("   Threads: {}", getThreads());
+        LOGGER.info("   Queued domains: {}", getQueue());
+        LOGGER.info("   Concurrent lookups per domain: {}", getPerDomain());
+        LOGGER.info("   Timeout: {}", getTimeout());
+    }
+
+}
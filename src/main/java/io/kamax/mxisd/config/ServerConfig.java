@@ -35,6 +35,10 @@ public class ServerConfig {
     private int port = 8090;
     private String publicUrl;
     private String hostname;
+    private HttpServerConfig http = new HttpServerConfig();
+    private AdminServerConfig admin = new AdminServerConfig();
+    private RateLimitConfig rateLimit = new RateLimitConfig();
+    private ShutdownConfig shutdown = new ShutdownConfig();
 
     public String getName() {
         return name;
@@ -68,6 +72,38 @@ public class ServerConfig {
         this.hostname = hostname;
     }
 
+    public HttpServerConfig getHttp() {
+        return http;
+    }
+
+    public void setHttp(HttpServerConfig http) {
+        this.http = http;
+    }
+
+    public AdminServerConfig getAdmin() {
+        return admin;
+    }
+
+    public void setAdmin(AdminServerConfig admin) {
+        this.admin = admin;
+    }
+
+    public RateLimitConfig getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(RateLimitConfig rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public ShutdownConfig getShutdown() {
+        return shutdown;
+    }
+
+    public void setShutdown(ShutdownConfig shutdown) {
+        this.shutdown = shutdown;
+    }
+
     public void build() {
         log.info("--- Server config ---");
 
@@ -92,5 +128,10 @@ public class ServerConfig {
         log.info("Port: {}", getPort());
         log.info("Public URL: {}", getPublicUrl());
         log.info("Hostname: {}", getHostname());
+
+        getHttp().build();
+        getAdmin().build();
+        getRateLimit().build();
+        getShutdown().build();
     }
 }
@@ -0,0 +1,68 @@
+package io.kamax.mxisd.config;
+
+import io.kamax.mxisd.exception.ConfigurationException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * How the server stops: it first reports itself as not ready, waits for load balancers to notice, then stops accepting
+ * requests and lets the ones in flight and background work finish within the grace period.
+ */
+public class ShutdownConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShutdownConfig.class);
+
+    private String delay = "0s";
+    private transient long delayInSeconds = 0;
+    private String gracePeriod = "30s";
+    private transient long gracePeriodInSeconds = 30;
+
+    public String getDelay() {
+        return delay;
+    }
+
+    public void setDelay(String delay) {
+        this.delay = delay;
+    }
+
+    public long getDelayInSeconds() {
+        return delayInSeconds;
+    }
+
+    public String getGracePeriod() {
+        return gracePeriod;
+    }
+
+    public void setGracePeriod(String gracePeriod) {
+        this.gracePeriod = gracePeriod;
+    }
+
+    public long getGracePeriodInSeconds() {
+        return gracePeriodInSeconds;
+    }
+
+    public void build() {
+        DurationDeserializer deserializer = new DurationDeserializer();
+        if (StringUtils.isNotBlank(getDelay())) {
+            delayInSeconds = deserializer.deserialize(getDelay());
+        }
+
+        if (StringUtils.isNotBlank(getGracePeriod())) {
+            gracePeriodInSeconds = deserializer.deserialize(getGracePeriod());
+        }
+
+        if (delayInSeconds < 0) {
+            throw new ConfigurationException("server.shutdown.delay", "Must be 0 or greater");
+        }
+
+        if (gracePeriodInSeconds < 0) {
+            throw new ConfigurationException("server.shutdown.gracePeriod", "Must be 0 or greater");
+        }
+
+        LOGGER.info("--- Shutdown config ---");
+        LOGGER.info("   Delay: {}s", delayInSeconds);
+        LOGGER.info("   Grace period: {}s", gracePeriodInSeconds);
+    }
+
+}
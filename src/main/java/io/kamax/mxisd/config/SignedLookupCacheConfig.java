@@ -0,0 +1,63 @@
+package io.kamax.mxisd.config;
+
+import io.kamax.mxisd.exception.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SignedLookupCacheConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SignedLookupCacheConfig.class);
+
+    private boolean enabled = true;
+    private String ttl = "1m";
+    private transient long ttlInSeconds = 60;
+    private int maxEntries = 10000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(String ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getTtlInSeconds() {
+        return ttlInSeconds;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public void build() {
+        if (!isEnabled()) {
+            LOGGER.info("Signed lookup cache is disabled");
+            return;
+        }
+
+        ttlInSeconds = new DurationDeserializer().deserialize(getTtl());
+        if (ttlInSeconds < 1) {
+            throw new ConfigurationException("lookup.signedCache.ttl", "Must be at least one second");
+        }
+        if (getMaxEntries() < 1) {
+            throw new ConfigurationException("lookup.signedCache.maxEntries", "Must be greater than 0");
+        }
+
+        LOGGER.info("--- Signed lookup cache ---");
+        LOGGER.info("   TTL: {}", getTtl());
+        LOGGER.info("   Max entries: {}", getMaxEntries());
+    }
+
+}
@@ -20,6 +20,7 @@
 
 package io.kamax.mxisd.config.rest;
 
+import io.kamax.mxisd.config.DurationDeserializer;
 import io.kamax.mxisd.exception.ConfigurationException;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -127,11 +128,150 @@ public class RestBackendConfig {
 
     }
 
+    public static class Http {
+
+        private int maxTotal = 200;
+        private int maxPerRoute = 50;
+        private String connectTimeout = "5s";
+        private transient long connectTimeoutInSeconds = 5;
+        private String socketTimeout = "30s";
+        private transient long socketTimeoutInSeconds = 30;
+        private String requestTimeout = "5s";
+        private transient long requestTimeoutInSeconds = 5;
+        private String idleTimeout = "30s";
+        private transient long idleTimeoutInSeconds = 30;
+        private boolean gzip = true;
+
+        public int getMaxTotal() {
+            return maxTotal;
+        }
+
+        public void setMaxTotal(int maxTotal) {
+            this.maxTotal = maxTotal;
+        }
+
+        public int getMaxPerRoute() {
+            return maxPerRoute;
+        }
+
+        public void setMaxPerRoute(int maxPerRoute) {
+            this.maxPerRoute = maxPerRoute;
+        }
+
+        public String getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(String connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public long getConnectTimeoutInSeconds() {
+            return connectTimeoutInSeconds;
+        }
+
+        public String getSocketTimeout() {
+            return socketTimeout;
+        }
+
+        public void setSocketTimeout(String socketTimeout) {
+            this.socketTimeout = socketTimeout;
+        }
+
+        public long getSocketTimeoutInSeconds() {
+            return socketTimeoutInSeconds;
+        }
+
+        public String getRequestTimeout() {
+            return requestTimeout;
+        }
+
+        public void setRequestTimeout(String requestTimeout) {
+            this.requestTimeout = requestTimeout;
+        }
+
+        public long getRequestTimeoutInSeconds() {
+            return requestTimeoutInSeconds;
+        }
+
+        public String getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public void setIdleTimeout(String idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+
+        public long getIdleTimeoutInSeconds() {
+            return idleTimeoutInSeconds;
+        }
+
+        public boolean isGzip() {
+            return gzip;
+        }
+
+        public void setGzip(boolean gzip) {
+            this.gzip = gzip;
+        }
+
+        public void build() {
+            if (getMaxTotal() < 1) {
+                throw new ConfigurationException("rest.http.maxTotal", "Must be greater than 0");
+            }
+
+            if (getMaxPerRoute() < 1) {
+                throw new ConfigurationException("rest.http.maxPerRoute", "Must be greater than 0");
+            }
+
+            DurationDeserializer deserializer = new DurationDeserializer();
+            connectTimeoutInSeconds = deserializer.deserialize(getConnectTimeout());
+            socketTimeoutInSeconds = deserializer.deserialize(getSocketTimeout());
+            requestTimeoutInSeconds = deserializer.deserialize(getRequestTimeout());
+            idleTimeoutInSeconds = deserializer.deserialize(getIdleTimeout());
+        }
+
+    }
+
+    public static class Bulk {
+
+        private int chunkSize = 0;
+        private int parallelism = 4;
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public void build() {
+            if (getChunkSize() < 0) {
+                throw new ConfigurationException("rest.bulk.chunkSize", "Must be 0 (disabled) or greater");
+            }
+
+            if (getParallelism() < 1) {
+                throw new ConfigurationException("rest.bulk.parallelism", "Must be greater than 0");
+            }
+        }
+
+    }
+
     private static final Logger log = LoggerFactory.getLogger(RestBackendConfig.class);
 
     private boolean enabled;
     private String host;
     private Endpoints endpoints = new Endpoints();
+    private Http http = new Http();
+    private Bulk bulk = new Bulk();
 
     public boolean isEnabled() {
         return enabled;
@@ -157,6 +297,22 @@ public class RestBackendConfig {
         this.endpoints = endpoints;
     }
 
+    public Http getHttp() {
+        return http;
+    }
+
+    public void setHttp(Http http) {
+        this.http = http;
+    }
+
+    public Bulk getBulk() {
+        return bulk;
+    }
+
+    public void setBulk(Bulk bulk) {
+        this.bulk = bulk;
+    }
+
     private String buildEndpointUrl(String endpoint) {
         if (!StringUtils.startsWith(endpoint, "/")) {
             return endpoint;
@@ -201,6 +357,14 @@ public class RestBackendConfig {
             log.info("  - Display name: {}", getEndpoints().getProfile().getDisplayName());
             log.info("  - 3PIDs: {}", getEndpoints().getProfile().getThreepids());
             log.info("  - Roles: {}", getEndpoints().getProfile().getRoles());
+
+            getHttp().build();
+            log.info("HTTP pool: {} max, {} per route, connect/socket/request timeouts {}/{}/{}, idle timeout {}, gzip {}",
+                    getHttp().getMaxTotal(), getHttp().getMaxPerRoute(), getHttp().getConnectTimeout(),
+                    getHttp().getSocketTimeout(), getHttp().getRequestTimeout(), getHttp().getIdleTimeout(), getHttp().isGzip());
+
+            getBulk().build();
+            log.info("Bulk chunk size: {} (parallelism {})", getBulk().getChunkSize(), getBulk().getParallelism());
         }
     }
 
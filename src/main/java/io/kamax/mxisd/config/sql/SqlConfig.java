@@ -126,6 +126,8 @@ public abstract class SqlConfig {
 
     public static class Lookup {
         private String query = "SELECT user_id AS mxid, medium, address from user_threepid_id_server";
+        private String cursorQuery;
+        private String changesQuery;
 
         public String getQuery() {
             return query;
@@ -134,6 +136,22 @@ public abstract class SqlConfig {
         public void setQuery(String query) {
             this.query = query;
         }
+
+        public String getCursorQuery() {
+            return cursorQuery;
+        }
+
+        public void setCursorQuery(String cursorQuery) {
+            this.cursorQuery = cursorQuery;
+        }
+
+        public String getChangesQuery() {
+            return changesQuery;
+        }
+
+        public void setChangesQuery(String changesQuery) {
+            this.changesQuery = changesQuery;
+        }
     }
 
     public static class Identity {
@@ -376,6 +394,8 @@ public abstract class SqlConfig {
             log.info("3PID mapping query: {}", getIdentity().getQuery());
             log.info("Identity medium queries: {}", GsonUtil.build().toJson(getIdentity().getMedium()));
             log.info("Lookup query: {}", getLookup().getQuery());
+            log.info("Lookup cursor query: {}", getLookup().getCursorQuery());
+            log.info("Lookup changes query: {}", getLookup().getChangesQuery());
             log.info("Profile:");
             log.info("  Enabled: {}", getProfile().isEnabled());
             if (getProfile().isEnabled()) {
@@ -24,20 +24,30 @@ import io.kamax.mxisd.config.KeyConfig;
 import io.kamax.mxisd.config.MxisdConfig;
 import io.kamax.mxisd.crypto.ed25519.Ed25519KeyManager;
 import io.kamax.mxisd.crypto.ed25519.Ed25519SignatureManager;
+import io.kamax.mxisd.storage.IStorage;
 import io.kamax.mxisd.storage.crypto.FileKeyStore;
 import io.kamax.mxisd.storage.crypto.KeyStore;
 import io.kamax.mxisd.storage.crypto.MemoryKeyStore;
+import io.kamax.mxisd.storage.crypto.SqlKeyStore;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Optional;
 
 public class CryptoFactory {
 
-    public static Ed25519KeyManager getKeyManager(KeyConfig keyCfg) {
+    private static final Logger log = LoggerFactory.getLogger(CryptoFactory.class);
+
+    public static Ed25519KeyManager getKeyManager(KeyConfig keyCfg, IStorage storage) {
         KeyStore store;
-        if (StringUtils.equals(":memory:", keyCfg.getPath())) {
+        if (KeyConfig.KeyStoreEnum.sql == keyCfg.getStore()) {
+            store = new SqlKeyStore(storage);
+            importFileKeys(keyCfg, store);
+        } else if (StringUtils.equals(":memory:", keyCfg.getPath())) {
             store = new MemoryKeyStore();
         } else {
             File keyStore = new File(keyCfg.getPath());
@@ -55,6 +65,34 @@ public class CryptoFactory {
         return new Ed25519KeyManager(store);
     }
 
+    private static void importFileKeys(KeyConfig keyCfg, KeyStore store) {
+        if (StringUtils.isBlank(keyCfg.getPath()) || !new File(keyCfg.getPath()).isDirectory() || !store.list().isEmpty()) {
+            return;
+        }
+
+        log.info("Importing keys from file key store at {}", keyCfg.getPath());
+        FileKeyStore fileStore = new FileKeyStore(keyCfg.getPath());
+        for (KeyIdentifier id : fileStore.list()) {
+            store.add(fileStore.get(id));
+        }
+        fileStore.getCurrentKey().filter(store::has).ifPresent(store::setCurrentKey);
+        log.info("Key store import done");
+    }
+
+    /**
+     * Compute the public key of a private key, for the algorithms supported
+     *
+     * @param key The key to compute the public key of
+     * @return The public key, encoded as unpadded Base64, or empty if the algorithm is not supported
+     */
+    public static Optional<String> getPublicKeyBase64(Key key) {
+        if (KeyAlgorithm.Ed25519.equals(key.getId().getAlgorithm())) {
+            return Optional.of(Ed25519KeyManager.getPublicKeyBase64(key.getPrivateKeyBase64()));
+        }
+
+        return Optional.empty();
+    }
+
     public static SignatureManager getSignatureManager(MxisdConfig cfg, Ed25519KeyManager keyMgr) {
         return new Ed25519SignatureManager(cfg, keyMgr);
     }
@@ -30,10 +30,16 @@ public interface KeyManager {
 
     Key getServerSigningKey();
 
+    default KeyIdentifier getServerSigningKeyId() {
+        return getServerSigningKey().getId();
+    }
+
     Key getKey(KeyIdentifier id);
 
     void disableKey(KeyIdentifier id);
 
+    void deleteKey(KeyIdentifier id);
+
     String getPublicKeyBase64(KeyIdentifier id);
 
     boolean isValid(KeyType type, String publicKeyBase64);
@@ -65,7 +65,7 @@ public interface SignatureManager {
             oldSigns = signEl.getAsJsonObject();
         }
 
-        JsonObject newSigns = signMessageGson(domain, MatrixJson.encodeCanonical(message));
+        JsonObject newSigns = signMessageGson(domain, MatrixJson.encodeCanonicalBytes(message));
         oldSigns.entrySet().forEach(entry -> newSigns.add(entry.getKey(), entry.getValue()));
         message.add(EventKey.Signatures.get(), newSigns);
 
@@ -79,7 +79,19 @@ public interface SignatureManager {
      * @param message The message to sign
      * @return The <code>signatures</code> object
      */
-    JsonObject signMessageGson(String domain, String message);
+    default JsonObject signMessageGson(String domain, String message) {
+        return signMessageGson(domain, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sign the UTF-8 encoded message and produce a <code>signatures</code> object that can directly be added to the
+     * object being signed.
+     *
+     * @param domain  The domain under which the signature should be added
+     * @param message The UTF-8 encoded message to sign
+     * @return The <code>signatures</code> object
+     */
+    JsonObject signMessageGson(String domain, byte[] message);
 
     /**
      * Sign the canonical form of a JSON object.
@@ -32,7 +32,6 @@ import net.i2p.crypto.eddsa.spec.EdDSAPrivateKeySpec;
 import net.i2p.crypto.eddsa.spec.EdDSAPublicKeySpec;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.RandomStringUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -105,7 +104,12 @@ public class Ed25519KeyManager implements KeyManager {
 
     @Override
     public Key getServerSigningKey() {
-        return store.get(store.getCurrentKey().orElseThrow(IllegalStateException::new));
+        return store.get(getServerSigningKeyId());
+    }
+
+    @Override
+    public KeyIdentifier getServerSigningKeyId() {
+        return store.getCurrentKey().orElseThrow(IllegalStateException::new);
     }
 
     @Override
@@ -121,12 +125,26 @@ public class Ed25519KeyManager implements KeyManager {
         return new EdDSAPrivateKey(getPrivateKeySpecs(id));
     }
 
-    private EdDSAPublicKey getPublicKey(KeyIdentifier id) {
-        EdDSAPrivateKeySpec privKeySpec = getPrivateKeySpecs(id);
-        EdDSAPublicKeySpec pubKeySpec = new EdDSAPublicKeySpec(privKeySpec.getA(), keySpecs);
+    private static EdDSAPublicKey getPublicKey(EdDSAPrivateKeySpec privKeySpec) {
+        EdDSAPublicKeySpec pubKeySpec = new EdDSAPublicKeySpec(privKeySpec.getA(), privKeySpec.getParams());
         return new EdDSAPublicKey(pubKeySpec);
     }
 
+    private EdDSAPublicKey getPublicKey(KeyIdentifier id) {
+        return getPublicKey(getPrivateKeySpecs(id));
+    }
+
+    /**
+     * Compute the public key matching an Ed25519 private key seed
+     *
+     * @param privKeyBase64 The private key seed, encoded as Base64
+     * @return The public key encoded as unpadded Base64
+     */
+    public static String getPublicKeyBase64(String privKeyBase64) {
+        EdDSAPrivateKeySpec privKeySpec = new EdDSAPrivateKeySpec(Base64.decodeBase64(privKeyBase64), EdDSANamedCurveTable.ED_25519_CURVE_SPEC);
+        return MxBase64.encode(getPublicKey(privKeySpec).getAbyte());
+    }
+
     @Override
     public void disableKey(KeyIdentifier id) {
         Key key = store.get(id);
@@ -134,6 +152,11 @@ public class Ed25519KeyManager implements KeyManager {
         store.update(key);
     }
 
+    @Override
+    public void deleteKey(KeyIdentifier id) {
+        store.delete(id);
+    }
+
     @Override
     public String getPublicKeyBase64(KeyIdentifier id) {
         return MxBase64.encode(getPublicKey(id).getAbyte());
@@ -141,8 +164,7 @@ public class Ed25519KeyManager implements KeyManager {
 
     @Override
     public boolean isValid(KeyType type, String publicKeyBase64) {
-        // TODO caching?
-        return getKeys(type).stream().anyMatch(id -> StringUtils.equals(getPublicKeyBase64(id), publicKeyBase64));
+        return store.findByPublicKey(type, publicKeyBase64).isPresent();
     }
 
 }
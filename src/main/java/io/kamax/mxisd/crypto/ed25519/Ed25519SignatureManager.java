@@ -53,7 +53,7 @@ public class Ed25519SignatureManager implements SignatureManager {
     }
 
     @Override
-    public JsonObject signMessageGson(String domain, String message) {
+    public JsonObject signMessageGson(String domain, byte[] message) {
         Signature sign = sign(message);
 
         JsonObject keySignature = new JsonObject();
@@ -66,7 +66,7 @@ public class Ed25519SignatureManager implements SignatureManager {
 
     @Override
     public Signature sign(JsonObject obj) {
-        return sign(MatrixJson.encodeCanonical(obj));
+        return sign(MatrixJson.encodeCanonicalBytes(obj));
     }
 
     @Override
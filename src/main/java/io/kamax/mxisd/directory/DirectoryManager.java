@@ -29,6 +29,8 @@ import io.kamax.mxisd.exception.HttpMatrixException;
 import io.kamax.mxisd.exception.InternalServerError;
 import io.kamax.mxisd.http.io.UserDirectorySearchRequest;
 import io.kamax.mxisd.http.io.UserDirectorySearchResult;
+import io.kamax.mxisd.metrics.Histogram;
+import io.kamax.mxisd.metrics.MetricRegistry;
 import io.kamax.mxisd.util.RestClientUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -50,6 +52,9 @@ public class DirectoryManager {
 
     private transient final Logger log = LoggerFactory.getLogger(DirectoryManager.class);
 
+    private static final Histogram providerTime = MetricRegistry.get().histogram("directory_provider_duration_seconds",
+        "Time spent in user directory providers", "provider", "type");
+
     private DirectoryConfig cfg;
     private ClientDnsOverwrite dns;
     private CloseableHttpClient client;
@@ -113,7 +118,13 @@ public class DirectoryManager {
 
         for (DirectoryProvider provider : providers) {
             log.info("Using Directory provider {}", provider.getClass().getSimpleName());
-            UserDirectorySearchResult resultProvider = provider.searchByDisplayName(query);
+            UserDirectorySearchResult resultProvider;
+            long start = System.nanoTime();
+            try {
+                resultProvider = provider.searchByDisplayName(query);
+            } finally {
+                providerTime.observeSince(start, provider.getClass().getSimpleName(), "displayname");
+            }
             log.info("Display name: found {} match(es) for '{}'", resultProvider.getResults().size(), query);
             result.getResults().addAll(resultProvider.getResults());
             if (resultProvider.isLimited()) {
@@ -123,7 +134,12 @@ public class DirectoryManager {
             if (cfg.getExclude().getThreepid()) {
                 log.info("Skipping 3PID data, disabled in config");
             } else {
-                resultProvider = provider.searchBy3pid(query);
+                start = System.nanoTime();
+                try {
+                    resultProvider = provider.searchBy3pid(query);
+                } finally {
+                    providerTime.observeSince(start, provider.getClass().getSimpleName(), "threepid");
+                }
                 log.info("Threepid: found {} match(es) for '{}'", resultProvider.getResults().size(), query);
                 result.getResults().addAll(resultProvider.getResults());
                 if (resultProvider.isLimited()) {
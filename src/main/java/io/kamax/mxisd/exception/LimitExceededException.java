@@ -0,0 +1,19 @@
+package io.kamax.mxisd.exception;
+
+public class LimitExceededException extends HttpMatrixException {
+
+    public static final int Status = 429;
+    public static final String ErrCode = "M_LIMIT_EXCEEDED";
+
+    private final long retryAfterMs;
+
+    public LimitExceededException(long retryAfterMs) {
+        super(Status, ErrCode, "Too many requests");
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+}
@@ -0,0 +1,14 @@
+package io.kamax.mxisd.exception;
+
+import org.apache.http.HttpStatus;
+
+/**
+ * A subsystem required by the request is still initialising.
+ */
+public class NotReadyException extends HttpMatrixException {
+
+    public NotReadyException(String subsystem) {
+        super(HttpStatus.SC_SERVICE_UNAVAILABLE, "M_NOT_AVAILABLE", "The " + subsystem + " service is starting, try again later");
+    }
+
+}
@@ -18,6 +18,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class HashManager {
@@ -26,6 +30,7 @@ public class HashManager {
 
     private Engine engine;
     private HashRotationStrategy rotationStrategy;
+    private ScheduledExecutorService changesPoller;
     private HashStorage hashStorage;
     private HashingConfig config;
     private IStorage storage;
@@ -35,8 +40,15 @@ public class HashManager {
         this.config = config;
         this.storage = storage;
         initStorage();
-        engine = config.isEnabled() ? new HashEngine(providers, getHashStorage(), config) : new NoneEngine();
+        if (config.isEnabled()) {
+            HashEngine hashEngine = new HashEngine(providers, getHashStorage(), config);
+            hashEngine.restore();
+            engine = hashEngine;
+        } else {
+            engine = new NoneEngine();
+        }
         initRotationStrategy();
+        initChangesPoller();
         configured.set(true);
     }
 
@@ -76,6 +88,20 @@ public class HashManager {
         this.rotationStrategy.register(getHashEngine());
     }
 
+    private void initChangesPoller() {
+        long interval = config.getChangesIntervalInSeconds();
+        if (!config.isEnabled() || interval <= 0) {
+            return;
+        }
+
+        changesPoller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hash-changes");
+            t.setDaemon(true);
+            return t;
+        });
+        changesPoller.scheduleWithFixedDelay(() -> getHashEngine().updateChanges(), interval, interval, TimeUnit.SECONDS);
+    }
+
     public Engine getHashEngine() {
         return engine;
     }
@@ -88,7 +114,21 @@ public class HashManager {
         return hashStorage;
     }
 
+    public boolean isReady() {
+        return configured.get() && engine.isReady();
+    }
+
     public HashingConfig getConfig() {
         return config;
     }
+
+    public void stop(long timeout, TimeUnit unit) {
+        if (Objects.nonNull(changesPoller)) {
+            changesPoller.shutdownNow();
+        }
+
+        if (Objects.nonNull(rotationStrategy)) {
+            rotationStrategy.stop(timeout, unit);
+        }
+    }
 }
@@ -0,0 +1,85 @@
+package io.kamax.mxisd.hash.engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Probabilistic set of hashes: {@link #mightContain(String)} never returns false for an added value, and returns true
+ * for other values with about the configured false positive rate, as long as no more than the expected number of
+ * values are added.
+ * <p>
+ * Values can be added while the filter is read. Bit positions use double hashing over a 64-bit FNV-1a hash of the value,
+ * so any value can be checked, including ones that are not valid digests.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long size;
+    private final int hashCount;
+
+    public BloomFilter(long expected, double falsePositiveRate) {
+        long n = Math.max(1, expected);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (m + 63) / 64));
+        this.bits = new AtomicLongArray(words);
+        this.size = words * 64L;
+        this.hashCount = (int) Math.max(1, Math.min(16, Math.round((double) size / n * Math.log(2))));
+    }
+
+    private static long fnv1a(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // Final step of MurmurHash3, to spread FNV's weak low bits
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public void add(String value) {
+        long h = fnv1a(value);
+        long h1 = mix(h);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, size);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long h = fnv1a(value);
+        long h1 = mix(h);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, size);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Memory used by the bit set, in bytes.
+     */
+    public long getByteSize() {
+        return size / 8;
+    }
+
+}
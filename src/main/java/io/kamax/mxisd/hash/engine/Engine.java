@@ -1,7 +1,30 @@
 package io.kamax.mxisd.hash.engine;
 
+import java.util.List;
+
 public interface Engine {
     void updateHashes();
 
     String getPepper();
+
+    /**
+     * Drops hashes which are certainly not stored, so only the others need to be looked up.
+     */
+    default List<String> filter(List<String> hashes) {
+        return hashes;
+    }
+
+    /**
+     * Applies changes made in identity stores since the last rotation, if they can report them.
+     */
+    default void updateChanges() {
+        // no-op
+    }
+
+    /**
+     * If hashes were computed at least once, so lookups can be served.
+     */
+    default boolean isReady() {
+        return true;
+    }
 }
@@ -1,52 +1,227 @@
 package io.kamax.mxisd.hash.engine;
 
 import io.kamax.mxisd.config.HashingConfig;
+import io.kamax.mxisd.hash.storage.HashSnapshot;
 import io.kamax.mxisd.hash.storage.HashStorage;
+import io.kamax.mxisd.lookup.ThreePidChanges;
 import io.kamax.mxisd.lookup.ThreePidMapping;
 import io.kamax.mxisd.lookup.provider.IThreePidProvider;
+import io.kamax.mxisd.metrics.Counter;
+import io.kamax.mxisd.metrics.Gauge;
+import io.kamax.mxisd.metrics.Histogram;
+import io.kamax.mxisd.metrics.MetricRegistry;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 public class HashEngine implements Engine {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HashEngine.class);
 
+    private static final Histogram rotationTime = MetricRegistry.get().histogram("hash_rotation_duration_seconds",
+        "Time taken to compute all hashes for a new pepper", new double[]{0.1, 0.5, 1, 5, 10, 30, 60, 120, 300, 600});
+    private static final Gauge rotationSize = MetricRegistry.get().gauge("hash_rotation_size",
+        "Number of hashes computed during the last rotation");
+    private static final Counter filterChecks = MetricRegistry.get().counter("hash_filter_checks_total",
+        "Lookup hashes checked against the Bloom filter, by result", "result");
+    private static final Counter changesApplied = MetricRegistry.get().counter("hash_changes_total",
+        "Mappings added or removed from identity store change feeds between rotations", "type");
+
     private final List<? extends IThreePidProvider> providers;
     private final HashStorage hashStorage;
     private final HashingConfig config;
     private final Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+    private final Object rotation = new Object();
+    private final Path snapshot;
+    // Only accessed with the rotation lock held
+    private Map<IThreePidProvider, Object> cursors = new HashMap<>();
     private String pepper;
+    private volatile BloomFilter bloomFilter;
+    private volatile boolean ready;
 
     public HashEngine(List<? extends IThreePidProvider> providers, HashStorage hashStorage, HashingConfig config) {
         this.providers = providers;
         this.hashStorage = hashStorage;
         this.config = config;
+        this.snapshot = StringUtils.isBlank(config.getSnapshotFile()) ? null : Paths.get(config.getSnapshotFile());
+    }
+
+    /**
+     * Serves the hashes of the last saved rotation until the next one completes, if a snapshot is available.
+     */
+    public void restore() {
+        if (Objects.isNull(snapshot)) {
+            return;
+        }
+
+        HashSnapshot.read(snapshot).ifPresent(data -> {
+            long start = System.nanoTime();
+            try {
+                BloomFilter newFilter = newFilter(data.size());
+                synchronized (hashStorage) {
+                    hashStorage.clear();
+                    data.forEach((hash, mapping) -> {
+                        hashStorage.add(mapping, hash);
+                        if (Objects.nonNull(newFilter)) {
+                            newFilter.add(hash);
+                        }
+                    });
+                    pepper = data.getPepper();
+                    bloomFilter = newFilter;
+                }
+                ready = true;
+                LOGGER.info("Restored {} hashes from {} in {} ms", data.size(), snapshot, (System.nanoTime() - start) / 1000000);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to restore hashes from {}: {}", snapshot, e.getMessage());
+                synchronized (hashStorage) {
+                    hashStorage.clear();
+                }
+            }
+        });
     }
 
     @Override
     public void updateHashes() {
-        LOGGER.info("Start update hashes.");
-        synchronized (hashStorage) {
-            this.pepper = newPepper();
-            hashStorage.clear();
+        synchronized (rotation) {
+            LOGGER.info("Start update hashes.");
+            long start = System.nanoTime();
+
+            // Providers are read without holding the storage lock, so lookups keep being served with the current pepper
+            String newPepper = newPepper();
+            List<Pair<String, ThreePidMapping>> hashes = new ArrayList<>();
+            Map<IThreePidProvider, Object> newCursors = new HashMap<>();
             for (IThreePidProvider provider : providers) {
                 try {
+                    // Taken first, so changes made while reading are not missed
+                    provider.changesSince(null).ifPresent(changes -> newCursors.put(provider, changes.getCursor()));
+
                     LOGGER.info("Populate hashes from the handler: {}", provider.getClass().getCanonicalName());
                     for (ThreePidMapping pidMapping : provider.populateHashes()) {
                         LOGGER.debug("Found 3PID: {}", pidMapping);
-                        hashStorage.add(pidMapping, hash(pidMapping));
+                        hashes.add(Pair.of(hash(pidMapping, newPepper), pidMapping));
                     }
                 } catch (Exception e) {
                     LOGGER.error("Unable to update hashes of the provider: " + provider.toString(), e);
                 }
             }
+
+            BloomFilter newFilter = newFilter(hashes.size());
+            if (Objects.nonNull(newFilter)) {
+                hashes.forEach(hash -> newFilter.add(hash.getKey()));
+            }
+
+            synchronized (hashStorage) {
+                hashStorage.clear();
+                hashes.forEach(hash -> hashStorage.add(hash.getValue(), hash.getKey()));
+                this.pepper = newPepper;
+                this.bloomFilter = newFilter;
+            }
+            cursors = newCursors;
+            ready = true;
+            rotationTime.observeSince(start);
+            rotationSize.set(hashes.size());
+            LOGGER.info("Finish update hashes.");
+
+            save(newPepper, hashes);
+        }
+    }
+
+    /**
+     * Applies the changes reported by providers since the last rotation or call, with the current pepper.
+     */
+    @Override
+    public void updateChanges() {
+        synchronized (rotation) {
+            for (Map.Entry<IThreePidProvider, Object> cursor : cursors.entrySet()) {
+                IThreePidProvider provider = cursor.getKey();
+                try {
+                    Optional<ThreePidChanges> result = provider.changesSince(cursor.getValue());
+                    if (!result.isPresent()) {
+                        continue;
+                    }
+
+                    // Storages are safe for concurrent use, the storage lock is only needed to swap the whole table
+                    ThreePidChanges changes = result.get();
+                    for (ThreePidMapping pidMapping : changes.getRemoved()) {
+                        hashStorage.remove(hash(pidMapping, pepper));
+                    }
+                    for (ThreePidMapping pidMapping : changes.getAdded()) {
+                        // The same address might already be stored, possibly for another user
+                        String hash = hash(pidMapping, pepper);
+                        hashStorage.remove(hash);
+                        hashStorage.add(pidMapping, hash);
+                        // Removed hashes stay in the filter until the next rotation, as false positives
+                        BloomFilter current = bloomFilter;
+                        if (Objects.nonNull(current)) {
+                            current.add(hash);
+                        }
+                    }
+                    cursor.setValue(changes.getCursor());
+
+                    if (!changes.isEmpty()) {
+                        changesApplied.inc(changes.getAdded().size(), "added");
+                        changesApplied.inc(changes.getRemoved().size(), "removed");
+                        LOGGER.debug("Applied {} added and {} removed 3PIDs from {}", changes.getAdded().size(),
+                            changes.getRemoved().size(), provider.getClass().getCanonicalName());
+                    }
+                } catch (Exception e) {
+                    LOGGER.error("Unable to update hash changes of the provider: " + provider.toString(), e);
+                }
+            }
+        }
+    }
+
+    private BloomFilter newFilter(int size) {
+        if (!config.isBloomFilterEnabled()) {
+            return null;
+        }
+
+        // Leaves room for the hashes added from change feeds until the next rotation
+        return new BloomFilter(size + size / 10 + 1024, config.getBloomFilterFpp());
+    }
+
+    @Override
+    public List<String> filter(List<String> hashes) {
+        BloomFilter current = bloomFilter;
+        if (Objects.isNull(current)) {
+            return hashes;
+        }
+
+        List<String> candidates = new ArrayList<>();
+        for (String hash : hashes) {
+            if (current.mightContain(hash)) {
+                candidates.add(hash);
+            }
+        }
+        filterChecks.inc(candidates.size(), "passed");
+        filterChecks.inc(hashes.size() - candidates.size(), "rejected");
+        return candidates;
+    }
+
+    private void save(String pepper, List<Pair<String, ThreePidMapping>> hashes) {
+        if (Objects.isNull(snapshot)) {
+            return;
+        }
+
+        try {
+            HashSnapshot.write(snapshot, pepper, hashes);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to save hashes to {}: {}", snapshot, e.getMessage());
         }
-        LOGGER.info("Finish update hashes.");
     }
 
     @Override
@@ -56,8 +231,13 @@ public class HashEngine implements Engine {
         }
     }
 
-    protected String hash(ThreePidMapping pidMapping) {
-        return base64.encodeToString(DigestUtils.sha256(pidMapping.getValue() + " " + pidMapping.getMedium() + " " + getPepper()));
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    protected String hash(ThreePidMapping pidMapping, String pepper) {
+        return base64.encodeToString(DigestUtils.sha256(pidMapping.getValue() + " " + pidMapping.getMedium() + " " + pepper));
     }
 
     protected String newPepper() {
@@ -2,6 +2,8 @@ package io.kamax.mxisd.hash.rotation;
 
 import io.kamax.mxisd.hash.engine.Engine;
 
+import java.util.concurrent.TimeUnit;
+
 public interface HashRotationStrategy {
 
     void register(Engine engine);
@@ -13,4 +15,11 @@ public interface HashRotationStrategy {
     default void trigger() {
         getHashEngine().updateHashes();
     }
+
+    /**
+     * Stops scheduling rotations and waits for a running one to complete.
+     */
+    default void stop(long timeout, TimeUnit unit) {
+        // no-op
+    }
 }
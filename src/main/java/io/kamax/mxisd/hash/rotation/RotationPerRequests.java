@@ -1,11 +1,32 @@
 package io.kamax.mxisd.hash.rotation;
 
 import io.kamax.mxisd.hash.engine.Engine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Rotates the pepper every given number of lookups.
+ * <p>
+ * Lookups only increment a counter. Rotations run on a single background thread, and requests for a rotation made
+ * while one is already pending are merged into it.
+ */
 public class RotationPerRequests implements HashRotationStrategy {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(RotationPerRequests.class);
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "hash-rotation");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean pending = new AtomicBoolean(false);
     private Engine engine;
     private final AtomicInteger counter = new AtomicInteger(0);
     private final int barrier;
@@ -17,7 +38,9 @@ public class RotationPerRequests implements HashRotationStrategy {
     @Override
     public void register(Engine engine) {
         this.engine = engine;
-        trigger();
+
+        // The first computation covers every provider, it must not delay startup
+        schedule();
     }
 
     @Override
@@ -26,11 +49,39 @@ public class RotationPerRequests implements HashRotationStrategy {
     }
 
     @Override
-    public synchronized void newRequest() {
-        int newValue = counter.incrementAndGet();
-        if (newValue >= barrier) {
-            counter.set(0);
-            trigger();
+    public void newRequest() {
+        if (counter.updateAndGet(v -> v + 1 >= barrier ? 0 : v + 1) == 0) {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (!pending.compareAndSet(false, true)) {
+            // Already queued, it will see the latest data
+            return;
+        }
+
+        try {
+            executorService.execute(() -> {
+                // Cleared before running, so a request made during the rotation queues exactly one more
+                pending.set(false);
+                trigger();
+            });
+        } catch (RejectedExecutionException e) {
+            // Stopping
+            pending.set(false);
+        }
+    }
+
+    @Override
+    public void stop(long timeout, TimeUnit unit) {
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(timeout, unit)) {
+                LOGGER.warn("Hash rotation still running, stopping anyway");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
@@ -1,6 +1,8 @@
 package io.kamax.mxisd.hash.rotation;
 
 import io.kamax.mxisd.hash.engine.Engine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -8,6 +10,8 @@ import java.util.concurrent.TimeUnit;
 
 public class TimeBasedRotation implements HashRotationStrategy {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimeBasedRotation.class);
+
     private final long delay;
     private Engine engine;
     private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
@@ -19,7 +23,6 @@ public class TimeBasedRotation implements HashRotationStrategy {
     @Override
     public void register(Engine engine) {
         this.engine = engine;
-        Runtime.getRuntime().addShutdownHook(new Thread(executorService::shutdown));
         executorService.scheduleWithFixedDelay(this::trigger, 0, delay, TimeUnit.SECONDS);
     }
 
@@ -31,4 +34,16 @@ public class TimeBasedRotation implements HashRotationStrategy {
     @Override
     public void newRequest() {
     }
+
+    @Override
+    public void stop(long timeout, TimeUnit unit) {
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(timeout, unit)) {
+                LOGGER.warn("Hash rotation still running, stopping anyway");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -18,6 +18,11 @@ public class EmptyStorage implements HashStorage {
 
     }
 
+    @Override
+    public void remove(String hash) {
+
+    }
+
     @Override
     public void clear() {
 
@@ -0,0 +1,167 @@
+package io.kamax.mxisd.hash.storage;
+
+import io.kamax.mxisd.lookup.ThreePidMapping;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * Binary copy of the pepper and hash table of the last rotation, so a restart can serve lookups before the providers
+ * have been read again.
+ * <p>
+ * Digests are stored decoded, and the file is read through a read-only memory mapping. It holds the pepper and 3PIDs
+ * in clear, so it is only readable by its owner where the file system allows it.
+ */
+public class HashSnapshot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashSnapshot.class);
+
+    private static final int Magic = 0x4D584853; // MXHS
+    private static final int Version = 1;
+
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder decoder = Base64.getUrlDecoder();
+
+    public static void write(Path file, String pepper, Collection<Pair<String, ThreePidMapping>> hashes) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try {
+                Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system, we rely on the directory permissions
+            }
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(Magic);
+                out.writeInt(Version);
+                out.writeLong(System.currentTimeMillis());
+                writeString(out, pepper);
+                out.writeInt(hashes.size());
+                for (Pair<String, ThreePidMapping> hash : hashes) {
+                    byte[] digest = decoder.decode(hash.getKey());
+                    out.writeByte(digest.length);
+                    out.write(digest);
+                    writeString(out, hash.getValue().getMedium());
+                    writeString(out, hash.getValue().getValue());
+                    writeString(out, hash.getValue().getMxid());
+                }
+            }
+
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    /**
+     * Maps the snapshot and validates its header. Entries are only decoded by {@link #forEach(BiConsumer)}.
+     *
+     * @return The snapshot, or empty if the file does not exist or is not a valid snapshot.
+     */
+    public static Optional<HashSnapshot> read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid once the channel is closed
+            MappedByteBuffer buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buffer.getInt() != Magic || buffer.getInt() != Version) {
+                LOGGER.warn("Ignoring hash snapshot {}: unknown format", file);
+                return Optional.empty();
+            }
+
+            long createdAt = buffer.getLong();
+            String pepper = readString(buffer);
+            int size = buffer.getInt();
+            return Optional.of(new HashSnapshot(pepper, createdAt, size, buffer.slice()));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Ignoring hash snapshot {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        byte[] data = new byte[length];
+        buffer.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    private final String pepper;
+    private final long createdAt;
+    private final int size;
+    private final ByteBuffer entries;
+
+    private HashSnapshot(String pepper, long createdAt, int size, ByteBuffer entries) {
+        this.pepper = pepper;
+        this.createdAt = createdAt;
+        this.size = size;
+        this.entries = entries;
+    }
+
+    public String getPepper() {
+        return pepper;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decodes each entry, in the order they were written.
+     *
+     * @throws BufferUnderflowException If the file is truncated.
+     */
+    public void forEach(BiConsumer<String, ThreePidMapping> consumer) {
+        ByteBuffer buffer = entries.duplicate();
+        for (int i = 0; i < size; i++) {
+            byte[] digest = new byte[buffer.get() & 0xFF];
+            buffer.get(digest);
+            String medium = readString(buffer);
+            String address = readString(buffer);
+            String mxid = readString(buffer);
+            consumer.accept(encoder.encodeToString(digest), new ThreePidMapping(medium, address, mxid));
+        }
+    }
+
+}
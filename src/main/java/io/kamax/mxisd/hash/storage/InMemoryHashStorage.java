@@ -30,6 +30,11 @@ public class InMemoryHashStorage implements HashStorage {
         mapping.put(hash, pidMapping);
     }
 
+    @Override
+    public void remove(String hash) {
+        mapping.remove(hash);
+    }
+
     @Override
     public void clear() {
         mapping.clear();
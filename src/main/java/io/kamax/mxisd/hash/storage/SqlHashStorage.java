@@ -12,7 +12,6 @@ public class SqlHashStorage implements HashStorage {
 
     public SqlHashStorage(IStorage storage) {
         this.storage = storage;
-        Runtime.getRuntime().addShutdownHook(new Thread(storage::clearHashes));
     }
 
     @Override
@@ -25,6 +24,11 @@ public class SqlHashStorage implements HashStorage {
         storage.addHash(pidMapping.getMxid(), pidMapping.getMedium(), pidMapping.getValue(), hash);
     }
 
+    @Override
+    public void remove(String hash) {
+        storage.deleteHash(hash);
+    }
+
     @Override
     public void clear() {
         storage.clearHashes();
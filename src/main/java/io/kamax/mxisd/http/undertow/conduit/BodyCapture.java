@@ -0,0 +1,50 @@
+package io.kamax.mxisd.http.undertow.conduit;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Keeps a copy of at most the first <code>limit</code> bytes that went through a conduit.
+ */
+public class BodyCapture {
+
+    private final int limit;
+    private byte[] data = new byte[0];
+    private int size = 0;
+    private long total = 0;
+
+    public BodyCapture(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Captures the bytes between <code>position</code> and <code>position + length</code>, leaving the buffer untouched.
+     */
+    public synchronized void capture(ByteBuffer buffer, int position, int length) {
+        total += length;
+        int n = Math.min(length, limit - size);
+        if (n <= 0) {
+            return;
+        }
+
+        if (size + n > data.length) {
+            data = Arrays.copyOf(data, Math.min(limit, Math.max(size + n, data.length * 2)));
+        }
+
+        ByteBuffer view = buffer.duplicate();
+        view.limit(position + n);
+        view.position(position);
+        view.get(data, size, n);
+        size += n;
+    }
+
+    public synchronized String dump() {
+        String body = new String(data, 0, size, StandardCharsets.UTF_8);
+        if (total > size) {
+            body += "... (" + (total - size) + " more bytes)";
+        }
+        return body;
+    }
+
+}
@@ -28,9 +28,6 @@ import org.xnio.conduits.StreamSinkConduit;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Conduit that saves all the data that is written through it and can dump it to the console
@@ -41,15 +38,17 @@ import java.util.concurrent.CopyOnWriteArrayList;
  */
 public class DebuggingStreamSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> implements ConduitWithDump {
 
-    private final List<byte[]> data = new CopyOnWriteArrayList<>();
+    private final BodyCapture capture;
 
     /**
      * Construct a new instance.
      *
-     * @param next the delegate conduit to set
+     * @param next    the delegate conduit to set
+     * @param maxSize the maximum number of bytes to keep for the dump
      */
-    public DebuggingStreamSinkConduit(StreamSinkConduit next) {
+    public DebuggingStreamSinkConduit(StreamSinkConduit next, int maxSize) {
         super(next);
+        this.capture = new BodyCapture(maxSize);
     }
 
     @Override
@@ -57,11 +56,7 @@ public class DebuggingStreamSinkConduit extends AbstractStreamSinkConduit<Stream
         int pos = src.position();
         int res = super.write(src);
         if (res > 0) {
-            byte[] d = new byte[res];
-            for (int i = 0; i < res; ++i) {
-                d[i] = src.get(i + pos);
-            }
-            data.add(d);
+            capture.capture(src, pos, res);
         }
         return res;
     }
@@ -98,10 +93,6 @@ public class DebuggingStreamSinkConduit extends AbstractStreamSinkConduit<Stream
 
     @Override
     public String dump() {
-        StringBuilder sb = new StringBuilder();
-        for (byte[] datum : data) {
-            sb.append(new String(datum, StandardCharsets.UTF_8));
-        }
-        return sb.toString();
+        return capture.dump();
     }
 }
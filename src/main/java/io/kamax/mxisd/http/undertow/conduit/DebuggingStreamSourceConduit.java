@@ -27,9 +27,6 @@ import org.xnio.conduits.StreamSourceConduit;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Conduit that saves all the data that is written through it and can dump it to the console
@@ -40,15 +37,17 @@ import java.util.concurrent.CopyOnWriteArrayList;
  */
 public class DebuggingStreamSourceConduit extends AbstractStreamSourceConduit<StreamSourceConduit> implements ConduitWithDump {
 
-    private final List<byte[]> data = new CopyOnWriteArrayList<>();
+    private final BodyCapture capture;
 
     /**
      * Construct a new instance.
      *
-     * @param next the delegate conduit to set
+     * @param next    the delegate conduit to set
+     * @param maxSize the maximum number of bytes to keep for the dump
      */
-    public DebuggingStreamSourceConduit(StreamSourceConduit next) {
+    public DebuggingStreamSourceConduit(StreamSourceConduit next, int maxSize) {
         super(next);
+        this.capture = new BodyCapture(maxSize);
     }
 
     public long transferTo(final long position, final long count, final FileChannel target) throws IOException {
@@ -64,11 +63,7 @@ public class DebuggingStreamSourceConduit extends AbstractStreamSourceConduit<St
         int pos = dst.position();
         int res = super.read(dst);
         if (res > 0) {
-            byte[] d = new byte[res];
-            for (int i = 0; i < res; ++i) {
-                d[i] = dst.get(i + pos);
-            }
-            data.add(d);
+            capture.capture(dst, pos, res);
         }
         return res;
     }
@@ -85,11 +80,6 @@ public class DebuggingStreamSourceConduit extends AbstractStreamSourceConduit<St
 
     @Override
     public String dump() {
-
-        StringBuilder sb = new StringBuilder();
-        for (byte[] datum : data) {
-            sb.append(new String(datum, StandardCharsets.UTF_8));
-        }
-        return sb.toString();
+        return capture.dump();
     }
 }
@@ -21,27 +21,38 @@
 package io.kamax.mxisd.http.undertow.handler;
 
 import io.kamax.mxisd.auth.AccountManager;
+import io.kamax.mxisd.config.RateLimitConfig;
 import io.kamax.mxisd.exception.InvalidCredentialsException;
+import io.kamax.mxisd.exception.LimitExceededException;
+import io.kamax.mxisd.ratelimit.RateLimiter;
 import io.kamax.mxisd.storage.ormlite.dao.AccountDao;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Objects;
+
 public class AuthorizationHandler extends BasicHttpHandler {
 
     private static final Logger log = LoggerFactory.getLogger(AuthorizationHandler.class);
 
     private final AccountManager accountManager;
+    private final RateLimiter limiter;
 
     private final HttpHandler child;
 
     public static AuthorizationHandler around(AccountManager accountManager, HttpHandler child) {
-        return new AuthorizationHandler(accountManager, child);
+        return around(accountManager, null, child);
+    }
+
+    public static AuthorizationHandler around(AccountManager accountManager, RateLimiter limiter, HttpHandler child) {
+        return new AuthorizationHandler(accountManager, limiter, child);
     }
 
-    private AuthorizationHandler(AccountManager accountManager, HttpHandler child) {
+    private AuthorizationHandler(AccountManager accountManager, RateLimiter limiter, HttpHandler child) {
         this.accountManager = accountManager;
+        this.limiter = limiter;
         this.child = child;
     }
 
@@ -65,6 +76,19 @@ public class AuthorizationHandler extends BasicHttpHandler {
             throw new InvalidCredentialsException();
         }
         log.trace("Access for '{}' allowed", account.getUserId());
+        if (Objects.nonNull(limiter)) {
+            limiter.addVerifiedToken(token);
+        }
+
+        String route = RequestMetricsHandler.getRoute(exchange);
+        if (Objects.nonNull(limiter) && limiter.has(route, RateLimitConfig.Key.homeserver)) {
+            String homeserver = account.getUserId().substring(account.getUserId().indexOf(':') + 1);
+            long wait = limiter.acquire(route, RateLimitConfig.Key.homeserver, homeserver);
+            if (wait > 0) {
+                throw new LimitExceededException(wait);
+            }
+        }
+
         child.handleRequest(exchange);
     }
 }
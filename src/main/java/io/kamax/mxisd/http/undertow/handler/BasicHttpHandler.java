@@ -27,13 +27,16 @@ import io.kamax.mxisd.dns.ClientDnsOverwrite;
 import io.kamax.mxisd.exception.AccessTokenNotFoundException;
 import io.kamax.mxisd.exception.HttpMatrixException;
 import io.kamax.mxisd.exception.InternalServerError;
+import io.kamax.mxisd.exception.LimitExceededException;
+import io.kamax.mxisd.metrics.Counter;
+import io.kamax.mxisd.metrics.MetricRegistry;
 import io.kamax.mxisd.proxy.Response;
 import io.kamax.mxisd.util.OptionalUtil;
 import io.kamax.mxisd.util.RestClientUtils;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.form.FormData;
-import io.undertow.util.HttpString;
+import io.undertow.util.*;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
@@ -44,11 +47,11 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
@@ -56,10 +59,16 @@ public abstract class BasicHttpHandler implements HttpHandler {
 
     private static final Logger log = LoggerFactory.getLogger(BasicHttpHandler.class);
 
+    private static final Counter errors = MetricRegistry.get().counter("http_errors_total",
+        "Matrix error codes returned", "route", "errcode");
+
     protected final static String headerName = "Authorization";
     protected final static String headerValuePrefix = "Bearer ";
     private final static String parameterName = "access_token";
 
+    // Request body already read by a non-blocking receiver, see SaneHandler#nonBlocking
+    protected final static AttachmentKey<byte[]> requestBodyKey = AttachmentKey.create(byte[].class);
+
     Optional<String> findAccessTokenInHeaders(HttpServerExchange exchange) {
         return Optional.ofNullable(exchange.getRequestHeaders().getFirst(headerName))
             .filter(header -> StringUtils.startsWith(header, headerValuePrefix))
@@ -120,6 +129,11 @@ public abstract class BasicHttpHandler implements HttpHandler {
     }
 
     protected String getBodyUtf8(HttpServerExchange exchange) {
+        byte[] body = exchange.getAttachment(requestBodyKey);
+        if (Objects.nonNull(body)) {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
         try {
             return IOUtils.toString(exchange.getInputStream(), StandardCharsets.UTF_8);
         } catch (IOException e) {
@@ -127,8 +141,15 @@ public abstract class BasicHttpHandler implements HttpHandler {
         }
     }
 
+    protected Reader getBodyReader(HttpServerExchange exchange) {
+        byte[] body = exchange.getAttachment(requestBodyKey);
+        InputStream is = Objects.nonNull(body) ? new ByteArrayInputStream(body) : exchange.getInputStream();
+        return new InputStreamReader(is, StandardCharsets.UTF_8);
+    }
+
     protected <T> T parseJsonTo(HttpServerExchange exchange, Class<T> type) {
-        return GsonUtil.get().fromJson(getBodyUtf8(exchange), type);
+        // Parsed straight from the request stream, the body never exists as a single string
+        return GsonUtil.get().fromJson(getBodyReader(exchange), type);
     }
 
     protected JsonObject parseJsonObject(HttpServerExchange exchange, String key) {
@@ -158,7 +179,7 @@ public abstract class BasicHttpHandler implements HttpHandler {
     }
 
     protected void respond(HttpServerExchange ex, int statusCode, JsonElement bodyJson) {
-        respondJson(ex, statusCode, GsonUtil.get().toJson(bodyJson));
+        streamJson(ex, statusCode, bodyJson);
     }
 
     protected void respond(HttpServerExchange ex, JsonElement bodyJson) {
@@ -176,7 +197,109 @@ public abstract class BasicHttpHandler implements HttpHandler {
     }
 
     protected void respondJson(HttpServerExchange ex, Object body) {
-        respondJson(ex, GsonUtil.get().toJson(body));
+        streamJson(ex, 200, body);
+    }
+
+    /**
+     * Serialises the body into at most one Undertow buffer worth of memory.
+     * <p>
+     * A body that fits is sent through the response sender with a Content-Length. A larger one switches the exchange to
+     * blocking mode and is streamed, chunked, through the response output stream as it is produced. The IO thread
+     * cannot block, so the body is serialised to a string first in that case.
+     */
+    protected void streamJson(HttpServerExchange ex, int status, Object body) {
+        if (ex.isInIoThread()) {
+            respondJson(ex, status, GsonUtil.get().toJson(body));
+            return;
+        }
+
+        ex.setStatusCode(status);
+        ex.getResponseHeaders().put(HttpString.tryFromString("Content-Type"), "application/json");
+
+        // Only closed once the body is complete, a partial body must not be sent as if it was the whole response
+        Writer writer = new OutputStreamWriter(new BodyStream(ex), StandardCharsets.UTF_8);
+        try {
+            GsonUtil.get().toJson(body, writer);
+            writer.close();
+        } catch (IOException e) {
+            throw new InternalServerError(e);
+        }
+    }
+
+    /**
+     * Buffers a response body until it outgrows a single Undertow buffer, then switches to the response output stream.
+     */
+    private static class BodyStream extends OutputStream {
+
+        private final HttpServerExchange ex;
+        private final int limit;
+        private final ByteArrayOutputStream buffer;
+        private OutputStream out;
+
+        BodyStream(HttpServerExchange ex) {
+            this.ex = ex;
+            this.limit = ex.getConnection().getByteBufferPool().getBufferSize();
+            this.buffer = new ByteArrayOutputStream(Math.min(limit, 1024));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (Objects.isNull(out) && buffer.size() + len > limit) {
+                if (!ex.isBlocking()) {
+                    ex.startBlocking();
+                }
+                out = ex.getOutputStream();
+                buffer.writeTo(out);
+            }
+
+            if (Objects.isNull(out)) {
+                buffer.write(b, off, len);
+            } else {
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (Objects.isNull(out)) {
+                ex.getResponseSender().send(ByteBuffer.wrap(buffer.toByteArray()));
+            } else {
+                out.close();
+            }
+        }
+
+    }
+
+    /**
+     * Responds with a precomputed body, or with a 304 if the client already holds it as per its conditional headers.
+     */
+    protected void respond(HttpServerExchange ex, CacheableBody body) {
+        ex.getResponseHeaders().put(Headers.ETAG, body.getETag().toString());
+        ex.getResponseHeaders().put(Headers.LAST_MODIFIED, DateUtils.toDateString(body.getLastModified()));
+        ex.getResponseHeaders().put(Headers.CACHE_CONTROL, "no-cache");
+        // Caches must not serve a compressed body to clients which did not ask for it
+        ex.getResponseHeaders().put(Headers.VARY, Headers.ACCEPT_ENCODING_STRING);
+
+        // If-None-Match takes precedence over If-Modified-Since when both are sent
+        boolean modified;
+        if (ex.getRequestHeaders().contains(Headers.IF_NONE_MATCH)) {
+            modified = ETagUtils.handleIfNoneMatch(ex, body.getETag(), true);
+        } else {
+            modified = DateUtils.handleIfModifiedSince(ex, body.getLastModified());
+        }
+
+        if (!modified) {
+            ex.setStatusCode(StatusCodes.NOT_MODIFIED);
+            return;
+        }
+
+        ex.getResponseHeaders().put(HttpString.tryFromString("Content-Type"), "application/json");
+        ex.getResponseSender().send(ByteBuffer.wrap(body.getBody()));
     }
 
     protected JsonObject buildErrorBody(HttpServerExchange exchange, String errCode, String error) {
@@ -184,6 +307,7 @@ public abstract class BasicHttpHandler implements HttpHandler {
         obj.addProperty("errcode", errCode);
         obj.addProperty("error", error);
         obj.addProperty("success", false);
+        errors.inc(RequestMetricsHandler.getRoute(exchange), errCode);
         log.info("Request {} {} - Error {}: {}", exchange.getRequestMethod(), exchange.getRequestURL(), errCode, error);
         return obj;
     }
@@ -192,6 +316,13 @@ public abstract class BasicHttpHandler implements HttpHandler {
         respond(ex, status, buildErrorBody(ex, errCode, error));
     }
 
+    protected void respond(HttpServerExchange exchange, LimitExceededException ex) {
+        JsonObject body = buildErrorBody(exchange, ex.getErrorCode(), ex.getError());
+        body.addProperty("retry_after_ms", ex.getRetryAfterMs());
+        exchange.getResponseHeaders().put(Headers.RETRY_AFTER, Long.toString((ex.getRetryAfterMs() + 999) / 1000));
+        respond(exchange, ex.getStatus(), body);
+    }
+
     protected void handleException(HttpServerExchange exchange, HttpMatrixException ex) {
         respond(exchange, ex.getStatus(), buildErrorBody(exchange, ex.getErrorCode(), ex.getError()));
     }
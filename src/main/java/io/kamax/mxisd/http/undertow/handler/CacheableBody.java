@@ -0,0 +1,48 @@
+package io.kamax.mxisd.http.undertow.handler;
+
+import com.google.gson.JsonElement;
+import io.kamax.matrix.json.GsonUtil;
+import io.undertow.util.ETag;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * A precomputed JSON response body, with the validators used to answer conditional requests.
+ * <p>
+ * The ETag is weak: the body can be sent compressed or not depending on the client, and both representations are only
+ * semantically equivalent, not byte for byte.
+ */
+public class CacheableBody {
+
+    private final byte[] body;
+    private final ETag etag;
+    private final Date lastModified;
+
+    public CacheableBody(JsonElement json, Instant lastModified) {
+        this.body = GsonUtil.get().toJson(json).getBytes(StandardCharsets.UTF_8);
+        this.etag = new ETag(true, Base64.getUrlEncoder().withoutPadding().encodeToString(DigestUtils.sha256(body)));
+        // HTTP dates only have a one second precision
+        this.lastModified = Date.from(Instant.ofEpochSecond(lastModified.getEpochSecond()));
+    }
+
+    public CacheableBody(JsonElement json) {
+        this(json, Instant.now());
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public ETag getETag() {
+        return etag;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+}
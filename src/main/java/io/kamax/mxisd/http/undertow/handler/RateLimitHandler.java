@@ -0,0 +1,73 @@
+package io.kamax.mxisd.http.undertow.handler;
+
+import io.kamax.mxisd.config.RateLimitConfig;
+import io.kamax.mxisd.exception.LimitExceededException;
+import io.kamax.mxisd.ratelimit.LoadShedder;
+import io.kamax.mxisd.ratelimit.RateLimiter;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+
+import java.util.Objects;
+
+/**
+ * Rejects requests of clients over their budget, and requests arriving while the server is saturated, with
+ * <code>M_LIMIT_EXCEEDED</code> before any work is done for them.
+ * <p>
+ * Budgets keyed by homeserver need the access token to be verified first and are enforced by
+ * {@link AuthorizationHandler} instead. Budgets keyed by token use the access token only once it has been verified by a
+ * previous request, and the client address until then. Behind trusted reverse proxies, the client address is taken from
+ * <code>X-Forwarded-For</code>.
+ */
+public class RateLimitHandler extends BasicHttpHandler {
+
+    public static HttpHandler around(HttpHandler child, RateLimiter limiter, LoadShedder shedder) {
+        if (!limiter.isEnabled() && Objects.isNull(shedder)) {
+            return child;
+        }
+
+        return new RateLimitHandler(child, limiter, shedder);
+    }
+
+    private final HttpHandler child;
+    private final RateLimiter limiter;
+    private final LoadShedder shedder;
+
+    private RateLimitHandler(HttpHandler child, RateLimiter limiter, LoadShedder shedder) {
+        this.child = child;
+        this.limiter = limiter;
+        this.shedder = shedder;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        String route = RequestMetricsHandler.getRoute(exchange);
+        String address = limiter.getClient(exchange.getSourceAddress().getAddress().getHostAddress(),
+            exchange.getRequestHeaders().getFirst(Headers.X_FORWARDED_FOR));
+
+        long wait = limiter.acquire(route, RateLimitConfig.Key.ip, address);
+        if (limiter.has(route, RateLimitConfig.Key.token)) {
+            String client = findAccessToken(exchange).flatMap(limiter::findVerifiedToken).orElse(address);
+            wait = Math.max(wait, limiter.acquire(route, RateLimitConfig.Key.token, client));
+        }
+        if (wait > 0) {
+            respond(exchange, new LimitExceededException(wait));
+            return;
+        }
+
+        if (Objects.nonNull(shedder)) {
+            if (!shedder.tryEnter(route)) {
+                respond(exchange, new LimitExceededException(shedder.getRetryAfterMs()));
+                return;
+            }
+
+            exchange.addExchangeCompleteListener((ex, next) -> {
+                shedder.leave();
+                next.proceed();
+            });
+        }
+
+        child.handleRequest(exchange);
+    }
+
+}
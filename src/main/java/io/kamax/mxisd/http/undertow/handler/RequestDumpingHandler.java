@@ -18,6 +18,9 @@
 
 package io.kamax.mxisd.http.undertow.handler;
 
+import edazdarevic.commons.net.CIDRUtils;
+import io.kamax.mxisd.config.LoggingConfig;
+import io.kamax.mxisd.exception.ConfigurationException;
 import io.kamax.mxisd.http.undertow.conduit.ConduitWithDump;
 import io.kamax.mxisd.http.undertow.conduit.DebuggingStreamSinkConduit;
 import io.kamax.mxisd.http.undertow.conduit.DebuggingStreamSourceConduit;
@@ -30,47 +33,114 @@ import io.undertow.util.ConduitFactory;
 import io.undertow.util.HeaderValues;
 import io.undertow.util.Headers;
 import io.undertow.util.LocaleUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.xnio.conduits.StreamSinkConduit;
 import org.xnio.conduits.StreamSourceConduit;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Handler that dumps a exchange to a log.
+ * <p>
+ * Only a sample of the exchanges matching the configured routes, clients and statuses are dumped, bodies are truncated
+ * and the dump is written to the log by a {@link RequestTraceWriter}.
  *
  * @author Stuart Douglas
  */
 public class RequestDumpingHandler implements HttpHandler {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(RequestDumpingHandler.class);
-
     private final HttpHandler next;
+    private final LoggingConfig.RequestTrace cfg;
+    private final RequestTraceWriter writer;
+    private final Set<String> routes;
+    private final List<CIDRUtils> clients = new ArrayList<>();
 
-    public RequestDumpingHandler(HttpHandler next) {
+    public RequestDumpingHandler(HttpHandler next, LoggingConfig.RequestTrace cfg, RequestTraceWriter writer) {
         this.next = next;
+        this.cfg = cfg;
+        this.writer = writer;
+        this.routes = new HashSet<>(cfg.getRoutes());
+
+        for (String client : cfg.getClients()) {
+            try {
+                if (!client.contains("/")) {
+                    client += InetAddress.getByName(client).getAddress().length == 4 ? "/32" : "/128";
+                }
+                clients.add(new CIDRUtils(client));
+            } catch (UnknownHostException | IllegalArgumentException e) {
+                throw new ConfigurationException("logging.requestTrace.clients", "Invalid address or CIDR range: " + client);
+            }
+        }
+    }
+
+    private boolean isSelected(HttpServerExchange exchange) {
+        if (cfg.getSampleRate() < 1 && ThreadLocalRandom.current().nextDouble() >= cfg.getSampleRate()) {
+            return false;
+        }
+
+        if (!routes.isEmpty() && !routes.contains(RequestMetricsHandler.getRoute(exchange))) {
+            return false;
+        }
+
+        if (!clients.isEmpty()) {
+            String address = exchange.getSourceAddress().getAddress().getHostAddress();
+            for (CIDRUtils client : clients) {
+                try {
+                    if (client.isInRange(address)) {
+                        return true;
+                    }
+                } catch (UnknownHostException e) {
+                    // Not a literal address of the same family, cannot be in range
+                }
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean isSelected(int status) {
+        if (cfg.getStatuses().isEmpty()) {
+            return true;
+        }
+
+        String code = Integer.toString(status);
+        String group = code.charAt(0) + "xx";
+        return cfg.getStatuses().contains(code) || cfg.getStatuses().contains(group);
     }
 
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!isSelected(exchange)) {
+            next.handleRequest(exchange);
+            return;
+        }
+
         LazyConduitWrapper<StreamSourceConduit> requestConduitWrapper = new LazyConduitWrapper<StreamSourceConduit>() {
             @Override
             protected StreamSourceConduit create(ConduitFactory<StreamSourceConduit> factory, HttpServerExchange exchange) {
-                return new DebuggingStreamSourceConduit(factory.create());
+                return new DebuggingStreamSourceConduit(factory.create(), cfg.getMaxBodySize());
             }
         };
         LazyConduitWrapper<StreamSinkConduit> responseConduitWrapper = new LazyConduitWrapper<StreamSinkConduit>() {
             @Override
             protected StreamSinkConduit create(ConduitFactory<StreamSinkConduit> factory, HttpServerExchange exchange) {
-                return new DebuggingStreamSinkConduit(factory.create());
+                return new DebuggingStreamSinkConduit(factory.create(), cfg.getMaxBodySize());
             }
         };
         exchange.addRequestWrapper(requestConduitWrapper);
         exchange.addResponseWrapper(responseConduitWrapper);
 
+        final long start = System.nanoTime();
         final StringBuilder sb = new StringBuilder();
 // Log pre-service information
         final SecurityContext sc = exchange.getSecurityContext();
@@ -123,7 +193,8 @@ public class RequestDumpingHandler implements HttpHandler {
         sb.append("          protocol=").append(exchange.getProtocol()).append("\n");
         sb.append("       queryString=").append(exchange.getQueryString()).append("\n");
         sb.append("        remoteAddr=").append(exchange.getSourceAddress()).append("\n");
-        sb.append("        remoteHost=").append(exchange.getSourceAddress().getHostName()).append("\n");
+        // Reverse DNS lookups would block the I/O thread
+        sb.append("        remoteHost=").append(exchange.getSourceAddress().getHostString()).append("\n");
         //sb.append("requestedSessionId=" + exchange.getRequestedSessionId());
         sb.append("            scheme=").append(exchange.getRequestScheme()).append("\n");
         sb.append("              host=").append(exchange.getRequestHeaders().getFirst(Headers.HOST)).append("\n");
@@ -132,6 +203,11 @@ public class RequestDumpingHandler implements HttpHandler {
         sb.append("          isSecure=").append(exchange.isSecure()).append("\n");
 
         exchange.addExchangeCompleteListener((exchange1, nextListener) -> {
+            if (!isSelected(exchange1.getStatusCode())) {
+                nextListener.proceed();
+                return;
+            }
+
             StreamSourceConduit sourceConduit = requestConduitWrapper.get();
             if (sourceConduit instanceof ConduitWithDump) {
                 ConduitWithDump conduitWithDump = (ConduitWithDump) sourceConduit;
@@ -164,6 +240,7 @@ public class RequestDumpingHandler implements HttpHandler {
                 }
             }
             sb.append("            status=").append(exchange1.getStatusCode()).append("\n");
+            sb.append("          duration=").append((System.nanoTime() - start) / 1000000).append("ms\n");
             StreamSinkConduit streamSinkConduit = responseConduitWrapper.get();
             if (streamSinkConduit instanceof ConduitWithDump) {
                 ConduitWithDump conduitWithDump = (ConduitWithDump) streamSinkConduit;
@@ -176,7 +253,7 @@ public class RequestDumpingHandler implements HttpHandler {
 
 
             nextListener.proceed();
-            LOGGER.info(sb.toString());
+            writer.submit(sb.toString());
         });
 
 
@@ -0,0 +1,143 @@
+package io.kamax.mxisd.http.undertow.handler;
+
+import io.kamax.mxisd.logging.RequestContext;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.HttpString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Gives each request a correlation ID and logs a single summary event once it completes.
+ * <p>
+ * The ID is taken from the <code>X-Request-Id</code> header if a reverse proxy set a sane one, generated otherwise, and
+ * returned in the response. The summary is logged at info level as <code>key=value</code> pairs, with the fields added
+ * through {@link RequestContext#annotate(String, Object)} while handling the request.
+ */
+public class RequestLoggingHandler implements HttpHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestLoggingHandler.class);
+
+    public static final HttpString RequestIdHeader = HttpString.tryFromString("X-Request-Id");
+
+    private static final AttachmentKey<RequestContext> contextKey = AttachmentKey.create(RequestContext.class);
+    private static final Pattern IdPattern = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    public static RequestContext getContext(HttpServerExchange exchange) {
+        return exchange.getAttachment(contextKey);
+    }
+
+    public static RequestLoggingHandler around(HttpHandler h) {
+        return new RequestLoggingHandler(h);
+    }
+
+    private final HttpHandler child;
+
+    private RequestLoggingHandler(HttpHandler child) {
+        this.child = child;
+    }
+
+    /**
+     * Appends a field as written in the summary. Values are quoted when needed, and control characters are escaped as
+     * values can come from clients and must not be able to forge log lines.
+     */
+    public static void append(StringBuilder b, String key, Object value) {
+        String v = Objects.toString(value);
+        b.append(' ').append(key).append('=');
+        if (!needsQuotes(v)) {
+            b.append(v);
+            return;
+        }
+
+        b.append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            switch (c) {
+                case '\\':
+                    b.append("\\\\");
+                    break;
+                case '"':
+                    b.append("\\\"");
+                    break;
+                case '\n':
+                    b.append("\\n");
+                    break;
+                case '\r':
+                    b.append("\\r");
+                    break;
+                case '\t':
+                    b.append("\\t");
+                    break;
+                default:
+                    if (Character.isISOControl(c)) {
+                        b.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        b.append(c);
+                    }
+            }
+        }
+        b.append('"');
+    }
+
+    private static boolean needsQuotes(String v) {
+        if (v.isEmpty()) {
+            return true;
+        }
+
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == ' ' || c == '"' || c == '=' || c == '\\' || Character.isISOControl(c)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (Objects.nonNull(getContext(exchange))) {
+            // Already handled by an outer handler, which logs the summary
+            child.handleRequest(exchange);
+            return;
+        }
+
+        String id = exchange.getRequestHeaders().getFirst(RequestIdHeader);
+        if (Objects.isNull(id) || !IdPattern.matcher(id).matches()) {
+            id = RequestContext.newId();
+        }
+
+        RequestContext ctx = new RequestContext(id);
+        exchange.putAttachment(contextKey, ctx);
+        exchange.getResponseHeaders().put(RequestIdHeader, id);
+
+        long start = System.nanoTime();
+        exchange.addExchangeCompleteListener((ex, next) -> {
+            try {
+                if (log.isInfoEnabled()) {
+                    StringBuilder b = new StringBuilder("request");
+                    append(b, "id", ctx.getId());
+                    append(b, "method", ex.getRequestMethod());
+                    append(b, "route", RequestMetricsHandler.getRoute(ex));
+                    append(b, "status", ex.getStatusCode());
+                    append(b, "duration_ms", (System.nanoTime() - start) / 1000000);
+                    append(b, "client", ex.getSourceAddress().getAddress().getHostAddress());
+                    for (Map.Entry<String, Object> field : ctx.getFields().entrySet()) {
+                        append(b, field.getKey(), field.getValue());
+                    }
+                    log.info(b.toString());
+                }
+            } finally {
+                next.proceed();
+            }
+        });
+
+        child.handleRequest(exchange);
+    }
+
+}
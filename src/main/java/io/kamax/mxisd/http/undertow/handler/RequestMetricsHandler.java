@@ -0,0 +1,62 @@
+package io.kamax.mxisd.http.undertow.handler;
+
+import io.kamax.mxisd.metrics.Counter;
+import io.kamax.mxisd.metrics.Gauge;
+import io.kamax.mxisd.metrics.Histogram;
+import io.kamax.mxisd.metrics.MetricRegistry;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.PathTemplateMatch;
+
+import java.util.Objects;
+
+/**
+ * Records request count, latency and in-flight requests of a route.
+ * <p>
+ * Routes are identified by their path template, so path parameters do not create new label values.
+ */
+public class RequestMetricsHandler implements HttpHandler {
+
+    private static final Counter requests = MetricRegistry.get().counter("http_requests_total",
+        "HTTP requests handled", "method", "route", "status");
+    private static final Histogram duration = MetricRegistry.get().histogram("http_request_duration_seconds",
+        "Time taken to handle HTTP requests", "method", "route");
+    private static final Gauge inFlight = MetricRegistry.get().gauge("http_requests_in_flight",
+        "HTTP requests currently being handled", "route");
+
+    public static String getRoute(HttpServerExchange exchange) {
+        PathTemplateMatch match = exchange.getAttachment(PathTemplateMatch.ATTACHMENT_KEY);
+        return Objects.isNull(match) ? "unmatched" : match.getMatchedTemplate();
+    }
+
+    public static RequestMetricsHandler around(HttpHandler h) {
+        return new RequestMetricsHandler(h);
+    }
+
+    private final HttpHandler child;
+
+    private RequestMetricsHandler(HttpHandler child) {
+        this.child = child;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        String route = getRoute(exchange);
+        String method = exchange.getRequestMethod().toString();
+        long start = System.nanoTime();
+
+        inFlight.inc(route);
+        exchange.addExchangeCompleteListener((ex, next) -> {
+            try {
+                inFlight.dec(route);
+                duration.observeSince(start, method, route);
+                requests.inc(method, route, Integer.toString(ex.getStatusCode()));
+            } finally {
+                next.proceed();
+            }
+        });
+
+        child.handleRequest(exchange);
+    }
+
+}
@@ -0,0 +1,83 @@
+package io.kamax.mxisd.http.undertow.handler;
+
+import io.kamax.mxisd.metrics.Counter;
+import io.kamax.mxisd.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes request traces to the log from a dedicated thread, so the exchange never waits on the logging backend.
+ * <p>
+ * Traces are kept in a bounded queue. When the writer cannot keep up, the oldest traces are dropped in favour of the
+ * newest ones and the number of dropped traces is reported in the log.
+ */
+public class RequestTraceWriter {
+
+    // Same logger as before traces were written asynchronously, so existing log level settings still apply
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestDumpingHandler.class);
+
+    private static final Counter droppedTotal = MetricRegistry.get().counter("request_traces_dropped_total",
+        "Request traces dropped because the trace queue was full");
+
+    private final BlockingQueue<String> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public RequestTraceWriter(int queueSize) {
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.writer = new Thread(this::run, "request-trace-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public void submit(String trace) {
+        while (!queue.offer(trace)) {
+            if (Objects.nonNull(queue.poll())) {
+                dropped.incrementAndGet();
+                droppedTotal.inc();
+            }
+        }
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                String trace = queue.poll(1, TimeUnit.SECONDS);
+
+                long count = dropped.getAndSet(0);
+                if (count > 0) {
+                    LOGGER.warn("{} request trace(s) dropped, the log writer could not keep up", count);
+                }
+
+                if (Objects.nonNull(trace)) {
+                    LOGGER.info(trace);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to write request trace", e);
+            }
+        }
+    }
+
+    /**
+     * Stops the writer, giving it a moment to flush pending traces.
+     */
+    public void stop() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
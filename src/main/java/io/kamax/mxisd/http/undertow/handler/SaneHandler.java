@@ -25,19 +25,28 @@ import com.google.gson.stream.MalformedJsonException;
 import io.kamax.matrix.json.GsonUtil;
 import io.kamax.matrix.json.InvalidJsonException;
 import io.kamax.mxisd.exception.*;
+import io.kamax.mxisd.logging.RequestContext;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.SameThreadExecutor;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 public class SaneHandler extends BasicHttpHandler {
 
     private static final Logger log = LoggerFactory.getLogger(SaneHandler.class);
 
+    private static final long RejectedRetryAfterMs = 1000;
+
     private static final String CorsOriginName = "Access-Control-Allow-Origin";
     private static final String CorsOriginValue = "*";
     private static final String CorsMethodsName = "Access-Control-Allow-Methods";
@@ -46,83 +55,162 @@ public class SaneHandler extends BasicHttpHandler {
     private static final String CorsHeadersValue = "Origin, X-Requested-With, Content-Type, Accept, Authorization";
 
     public static SaneHandler around(HttpHandler h) {
-        return new SaneHandler(h);
+        return new SaneHandler(h, false, null);
+    }
+
+    /**
+     * Wraps a handler without switching the exchange to blocking mode.
+     * <p>
+     * The request body is read with a non-blocking receiver and made available through
+     * {@link BasicHttpHandler#getBodyUtf8(HttpServerExchange)}, then the child is run on the given executor, or directly
+     * on the IO thread if none is given. The child must write its response through the response sender. Only off the IO
+     * thread, a child may instead switch the exchange to blocking mode and write to its output stream, as
+     * {@link BasicHttpHandler#streamJson(HttpServerExchange, int, Object)} does for bodies too large to buffer.
+     * <p>
+     * The executor should have a bounded queue: requests it rejects are answered with <code>M_LIMIT_EXCEEDED</code>.
+     *
+     * @param h        The handler to wrap
+     * @param executor The executor to run the handler on, or <code>null</code> to run it on the IO thread
+     * @return The wrapping handler
+     */
+    public static SaneHandler nonBlocking(HttpHandler h, Executor executor) {
+        return new SaneHandler(h, true, executor);
     }
 
     private final HttpHandler child;
+    private final boolean nonBlocking;
+    private final Executor executor;
 
-    private SaneHandler(HttpHandler child) {
+    private SaneHandler(HttpHandler child, boolean nonBlocking, Executor executor) {
         this.child = child;
+        this.nonBlocking = nonBlocking;
+        this.executor = executor;
     }
 
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (nonBlocking) {
+            exchange.getRequestReceiver().receiveFullBytes((ex, body) -> {
+                ex.putAttachment(requestBodyKey, body);
+                if (Objects.isNull(executor)) {
+                    handleNonBlocking(ex);
+                } else {
+                    ex.dispatch(SameThreadExecutor.INSTANCE, () -> {
+                        try {
+                            executor.execute(() -> handleNonBlocking(ex));
+                        } catch (RejectedExecutionException e) {
+                            respond(ex, new LimitExceededException(RejectedRetryAfterMs));
+                        }
+                    });
+                }
+            }, (ex, e) -> {
+                log.warn("Unable to read request body of {}: {}", ex.getRequestURL(), e.getMessage());
+                ex.setStatusCode(HttpStatus.SC_BAD_REQUEST);
+                ex.endExchange();
+            });
+            return;
+        }
+
         exchange.startBlocking();
 
         if (exchange.isInIoThread()) {
             exchange.dispatch(this);
         } else {
             try {
-                // CORS headers as per spec
-                putHeader(exchange, CorsOriginName, CorsOriginValue);
-                putHeader(exchange, CorsMethodsName, CorsMethodsValue);
-                putHeader(exchange, CorsHeadersName, CorsHeadersValue);
+                handle(exchange);
+            } finally {
+                exchange.endExchange();
+            }
+        }
+    }
 
+    private void handleNonBlocking(HttpServerExchange exchange) {
+        try {
+            handle(exchange);
+        } catch (Exception e) {
+            log.error("Unknown error when handling {}", exchange.getRequestURL(), e);
+            respond(exchange, HttpStatus.SC_INTERNAL_SERVER_ERROR, buildErrorBody(exchange, "M_UNKNOWN",
+                "An internal server error occurred. Contact your administrator with reference Transaction #" + Instant.now().toEpochMilli()));
+        } finally {
+            // The response sender ends the exchange once the body is written
+            if (!exchange.isResponseStarted()) {
+                exchange.endExchange();
+            }
+        }
+    }
+
+    private void handle(HttpServerExchange exchange) throws Exception {
+        RequestContext.enter(RequestLoggingHandler.getContext(exchange));
+        try {
+            // CORS headers as per spec
+            putHeader(exchange, CorsOriginName, CorsOriginValue);
+            putHeader(exchange, CorsMethodsName, CorsMethodsValue);
+            putHeader(exchange, CorsHeadersName, CorsHeadersValue);
+
+            try {
                 child.handleRequest(exchange);
-            } catch (IllegalArgumentException e) {
-                respond(exchange, HttpStatus.SC_BAD_REQUEST, GsonUtil.makeObj("error", e.getMessage()));
-            } catch (BadRequestException e) {
-                respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_BAD_REQUEST", e.getMessage());
-            } catch (MappingAlreadyExistsException e) {
-                respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_ALREADY_EXISTS", e.getMessage());
-            } catch (JsonMemberNotFoundException e) {
-                respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_JSON_MISSING_KEYS", e.getMessage());
-            } catch (InvalidResponseJsonException | JsonSyntaxException | MalformedJsonException e) {
-                respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_INVALID_JSON", e.getMessage());
-            } catch (InvalidJsonException e) {
-                respond(exchange, HttpStatus.SC_BAD_REQUEST, e.getErrorCode(), e.getError());
-            } catch (InvalidCredentialsException e) {
-                respond(exchange, HttpStatus.SC_UNAUTHORIZED, "M_UNAUTHORIZED", e.getMessage());
-            } catch (ObjectNotFoundException e) {
-                respond(exchange, HttpStatus.SC_NOT_FOUND, "M_NOT_FOUND", e.getMessage());
-            } catch (NotImplementedException e) {
-                respond(exchange, HttpStatus.SC_NOT_IMPLEMENTED, "M_NOT_IMPLEMENTED", e.getMessage());
-            } catch (InvalidPepperException e) {
-                respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_INVALID_PEPPER", e.getMessage());
-            } catch (InvalidParamException e) {
-                respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_INVALID_PARAM", e.getMessage());
-            } catch (FeatureNotAvailable e) {
-                if (StringUtils.isNotBlank(e.getInternalReason())) {
-                    log.error("Feature not available: {}", e.getInternalReason());
+            } catch (ExecutionException | CompletionException e) {
+                // Failures of asynchronous work the child waited for, such as bulk lookups, are mapped as if thrown directly
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
                 }
+                throw e;
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, HttpStatus.SC_BAD_REQUEST, GsonUtil.makeObj("error", e.getMessage()));
+        } catch (BadRequestException e) {
+            respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_BAD_REQUEST", e.getMessage());
+        } catch (MappingAlreadyExistsException e) {
+            respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_ALREADY_EXISTS", e.getMessage());
+        } catch (JsonMemberNotFoundException e) {
+            respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_JSON_MISSING_KEYS", e.getMessage());
+        } catch (InvalidResponseJsonException | JsonSyntaxException | MalformedJsonException e) {
+            respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_INVALID_JSON", e.getMessage());
+        } catch (InvalidJsonException e) {
+            respond(exchange, HttpStatus.SC_BAD_REQUEST, e.getErrorCode(), e.getError());
+        } catch (InvalidCredentialsException e) {
+            respond(exchange, HttpStatus.SC_UNAUTHORIZED, "M_UNAUTHORIZED", e.getMessage());
+        } catch (ObjectNotFoundException e) {
+            respond(exchange, HttpStatus.SC_NOT_FOUND, "M_NOT_FOUND", e.getMessage());
+        } catch (NotImplementedException e) {
+            respond(exchange, HttpStatus.SC_NOT_IMPLEMENTED, "M_NOT_IMPLEMENTED", e.getMessage());
+        } catch (InvalidPepperException e) {
+            respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_INVALID_PEPPER", e.getMessage());
+        } catch (InvalidParamException e) {
+            respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_INVALID_PARAM", e.getMessage());
+        } catch (FeatureNotAvailable e) {
+            if (StringUtils.isNotBlank(e.getInternalReason())) {
+                log.error("Feature not available: {}", e.getInternalReason());
+            }
 
-                handleException(exchange, e);
-            } catch (InternalServerError e) {
-                if (StringUtils.isNotBlank(e.getInternalReason())) {
-                    log.error("Transaction #{} - {}", e.getReference(), e.getInternalReason());
-                } else {
-                    log.error("Transaction #{}", e.getReference(), e);
-                }
+            handleException(exchange, e);
+        } catch (InternalServerError e) {
+            if (StringUtils.isNotBlank(e.getInternalReason())) {
+                log.error("Transaction #{} - {}", e.getReference(), e.getInternalReason());
+            } else {
+                log.error("Transaction #{}", e.getReference(), e);
+            }
 
+            handleException(exchange, e);
+        } catch (RemoteLoginException e) {
+            if (e.getErrorBodyMsgResp() != null) {
+                respond(exchange, e.getStatus(), e.getErrorBodyMsgResp());
+            } else {
                 handleException(exchange, e);
-            } catch (RemoteLoginException e) {
-                if (e.getErrorBodyMsgResp() != null) {
-                    respond(exchange, e.getStatus(), e.getErrorBodyMsgResp());
-                } else {
-                    handleException(exchange, e);
-                }
-            } catch (HttpMatrixException e) {
-                respond(exchange, e.getStatus(), buildErrorBody(exchange, e.getErrorCode(), e.getError()));
-            } catch (RuntimeException e) {
-                log.error("Unknown error when handling {}", exchange.getRequestURL(), e);
-                String message = e.getMessage();
-                if (StringUtils.isBlank(message)) {
-                    message = "An internal server error occurred. Contact your administrator with reference Transaction #" + Instant.now().toEpochMilli();
-                }
-                respond(exchange, HttpStatus.SC_INTERNAL_SERVER_ERROR, buildErrorBody(exchange, "M_UNKNOWN", message));
-            } finally {
-                exchange.endExchange();
             }
+        } catch (LimitExceededException e) {
+            respond(exchange, e);
+        } catch (HttpMatrixException e) {
+            respond(exchange, e.getStatus(), buildErrorBody(exchange, e.getErrorCode(), e.getError()));
+        } catch (RuntimeException e) {
+            log.error("Unknown error when handling {}", exchange.getRequestURL(), e);
+            String message = e.getMessage();
+            if (StringUtils.isBlank(message)) {
+                message = "An internal server error occurred. Contact your administrator with reference Transaction #" + Instant.now().toEpochMilli();
+            }
+            respond(exchange, HttpStatus.SC_INTERNAL_SERVER_ERROR, buildErrorBody(exchange, "M_UNKNOWN", message));
+        } finally {
+            RequestContext.leave();
         }
     }
 
@@ -20,7 +20,6 @@
 
 package io.kamax.mxisd.http.undertow.handler.directory.v1;
 
-import io.kamax.matrix.json.GsonUtil;
 import io.kamax.mxisd.directory.DirectoryManager;
 import io.kamax.mxisd.http.io.UserDirectorySearchRequest;
 import io.kamax.mxisd.http.io.UserDirectorySearchResult;
@@ -46,7 +45,7 @@ public class UserDirectorySearchHandler extends HomeserverProxyHandler {
         URI target = URI.create(exchange.getRequestURL());
         UserDirectorySearchResult result = mgr.search(target, accessToken, searchQuery.getSearchTerm());
 
-        respondJson(exchange, GsonUtil.get().toJson(result));
+        respondJson(exchange, result);
     }
 
 }
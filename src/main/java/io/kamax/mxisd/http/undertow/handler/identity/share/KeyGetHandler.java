@@ -26,11 +26,15 @@ import io.kamax.mxisd.crypto.KeyManager;
 import io.kamax.mxisd.crypto.KeyType;
 import io.kamax.mxisd.http.undertow.handler.BasicHttpHandler;
 import io.kamax.mxisd.http.undertow.handler.ApiHandler;
+import io.kamax.mxisd.http.undertow.handler.CacheableBody;
 import io.undertow.server.HttpServerExchange;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class KeyGetHandler extends BasicHttpHandler implements ApiHandler {
 
     public static final String Key = "key";
@@ -39,6 +43,9 @@ public class KeyGetHandler extends BasicHttpHandler implements ApiHandler {
 
     private KeyManager mgr;
 
+    // Public keys never change for a given ID, so their bodies are built once
+    private final Map<String, CacheableBody> responses = new ConcurrentHashMap<>();
+
     public KeyGetHandler(KeyManager mgr) {
         this.mgr = mgr;
     }
@@ -55,9 +62,11 @@ public class KeyGetHandler extends BasicHttpHandler implements ApiHandler {
         String keyId = v[1];
 
         log.info("Key {}:{} was requested", keyAlgo, keyId);
-        JsonObject obj = new JsonObject();
-        obj.addProperty("public_key", mgr.getPublicKeyBase64(new GenericKeyIdentifier(KeyType.Regular, keyAlgo, keyId)));
-        respond(exchange, obj);
+        respond(exchange, responses.computeIfAbsent(key, k -> {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("public_key", mgr.getPublicKeyBase64(new GenericKeyIdentifier(KeyType.Regular, keyAlgo, keyId)));
+            return new CacheableBody(obj);
+        }));
     }
 
     @Override
@@ -21,6 +21,7 @@
 package io.kamax.mxisd.http.undertow.handler.identity.share;
 
 import io.kamax.mxisd.http.undertow.handler.BasicHttpHandler;
+import io.kamax.mxisd.logging.RequestContext;
 import io.kamax.mxisd.lookup.ALookupRequest;
 import io.undertow.server.HttpServerExchange;
 import org.apache.commons.lang.StringUtils;
@@ -46,6 +47,7 @@ public abstract class LookupHandler extends BasicHttpHandler {
         }
 
         lookup.setUserAgent(exchange.getRequestHeaders().getFirst("User-Agent"));
+        RequestContext.annotate("requester", lookup.getRequester());
     }
 
 }
@@ -64,7 +64,7 @@ public class SignEd25519Handler extends BasicHttpHandler implements ApiHandler {
         res.addProperty("token", token);
         res.addProperty("sender", sender.getId());
         res.addProperty("mxid", mxid.getId());
-        res.add("signatures", signMgr.signMessageGson(cfg.getServer().getName(), MatrixJson.encodeCanonical(res)));
+        res.add("signatures", signMgr.signMessageGson(cfg.getServer().getName(), MatrixJson.encodeCanonicalBytes(res)));
 
         log.info("Signed data for invite using token {}", token);
         respondJson(exchange, res);
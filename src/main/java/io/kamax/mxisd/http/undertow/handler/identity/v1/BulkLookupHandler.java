@@ -52,7 +52,7 @@ public class BulkLookupHandler extends LookupHandler implements ApiHandler {
         ClientBulkLookupRequest input = parseJsonTo(exchange, ClientBulkLookupRequest.class);
         BulkLookupRequest lookupRequest = new BulkLookupRequest();
         setRequesterInfo(lookupRequest, exchange);
-        log.info("Got bulk lookup request from {} with client {} - Is recursive? {}",
+        log.debug("Got bulk lookup request from {} with client {} - Is recursive? {}",
                 lookupRequest.getRequester(), lookupRequest.getUserAgent(), lookupRequest.isRecursive());
 
         List<ThreePidMapping> mappings = new ArrayList<>();
@@ -66,7 +66,7 @@ public class BulkLookupHandler extends LookupHandler implements ApiHandler {
 
         ClientBulkLookupAnswer answer = new ClientBulkLookupAnswer();
         answer.addAll(strategy.find(lookupRequest).get());
-        log.info("Finished bulk lookup request from {}", lookupRequest.getRequester());
+        log.debug("Finished bulk lookup request from {}", lookupRequest.getRequester());
 
         respondJson(exchange, answer);
     }
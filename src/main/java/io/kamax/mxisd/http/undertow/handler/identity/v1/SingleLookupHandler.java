@@ -24,11 +24,13 @@ import com.google.gson.JsonObject;
 import io.kamax.matrix.json.GsonUtil;
 import io.kamax.mxisd.config.MxisdConfig;
 import io.kamax.mxisd.config.ServerConfig;
+import io.kamax.mxisd.crypto.KeyManager;
 import io.kamax.mxisd.crypto.SignatureManager;
 import io.kamax.mxisd.http.IsAPIv1;
 import io.kamax.mxisd.http.io.identity.SingeLookupReplyJson;
 import io.kamax.mxisd.http.undertow.handler.ApiHandler;
 import io.kamax.mxisd.http.undertow.handler.identity.share.LookupHandler;
+import io.kamax.mxisd.lookup.SignedLookupCache;
 import io.kamax.mxisd.lookup.SingleLookupReply;
 import io.kamax.mxisd.lookup.SingleLookupRequest;
 import io.kamax.mxisd.lookup.strategy.LookupStrategy;
@@ -46,12 +48,16 @@ public class SingleLookupHandler extends LookupHandler implements ApiHandler {
 
     private ServerConfig cfg;
     private LookupStrategy strategy;
+    private KeyManager keyMgr;
     private SignatureManager signMgr;
+    private SignedLookupCache signedCache;
 
-    public SingleLookupHandler(MxisdConfig cfg, LookupStrategy strategy, SignatureManager signMgr) {
+    public SingleLookupHandler(MxisdConfig cfg, LookupStrategy strategy, KeyManager keyMgr, SignatureManager signMgr) {
         this.cfg = cfg.getServer();
         this.strategy = strategy;
+        this.keyMgr = keyMgr;
         this.signMgr = signMgr;
+        this.signedCache = new SignedLookupCache(cfg.getLookup().getSignedCache());
     }
 
     @Override
@@ -64,18 +70,28 @@ public class SingleLookupHandler extends LookupHandler implements ApiHandler {
         lookupRequest.setType(medium);
         lookupRequest.setThreePid(address);
 
-        log.info("Got single lookup request from {} with client {} - Is recursive? {}",
+        log.debug("Got single lookup request from {} with client {} - Is recursive? {}",
                 lookupRequest.getRequester(), lookupRequest.getUserAgent(), lookupRequest.isRecursive());
 
         Optional<SingleLookupReply> lookupOpt = strategy.find(lookupRequest);
         if (!lookupOpt.isPresent()) {
-            log.info("No mapping was found, return empty JSON object");
+            log.debug("No mapping was found, return empty JSON object");
             respondJson(exchange, "{}");
         } else {
             SingleLookupReply lookup = lookupOpt.get();
+            String keyId = keyMgr.getServerSigningKeyId().getId();
+            Optional<String> cached = signedCache.get(lookup, keyId);
+            if (cached.isPresent()) {
+                log.debug("Using cached signed reply");
+                respondJson(exchange, cached.get());
+                return;
+            }
+
             JsonObject obj = GsonUtil.makeObj(new SingeLookupReplyJson(lookup));
             signMgr.signMessageGson(cfg.getName(), obj);
-            respondJson(exchange, obj);
+            String body = GsonUtil.get().toJson(obj);
+            signedCache.put(lookup, keyId, body);
+            respondJson(exchange, body);
         }
     }
 
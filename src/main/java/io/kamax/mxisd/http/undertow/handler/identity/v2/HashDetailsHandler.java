@@ -3,15 +3,21 @@ package io.kamax.mxisd.http.undertow.handler.identity.v2;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import io.kamax.mxisd.config.HashingConfig;
+import io.kamax.mxisd.exception.NotReadyException;
 import io.kamax.mxisd.hash.HashManager;
 import io.kamax.mxisd.http.undertow.handler.BasicHttpHandler;
+import io.kamax.mxisd.http.undertow.handler.CacheableBody;
 import io.undertow.server.HttpServerExchange;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.Objects;
 
 public class HashDetailsHandler extends BasicHttpHandler {
 
     public static final String PATH = "/_matrix/identity/v2/hash_details";
 
     private final HashManager hashManager;
+    private volatile Pair<String, CacheableBody> response;
 
     public HashDetailsHandler(HashManager hashManager) {
         this.hashManager = hashManager;
@@ -19,12 +25,27 @@ public class HashDetailsHandler extends BasicHttpHandler {
 
     @Override
     public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!hashManager.isReady()) {
+            throw new NotReadyException("hashing");
+        }
+
         respond(exchange, getResponse());
     }
 
-    private JsonObject getResponse() {
+    private CacheableBody getResponse() {
+        // Only rebuilt when the pepper is rotated, so clients can revalidate it with a 304
+        String pepper = hashManager.getHashEngine().getPepper();
+        Pair<String, CacheableBody> current = response;
+        if (Objects.isNull(current) || !Objects.equals(pepper, current.getKey())) {
+            current = Pair.of(pepper, new CacheableBody(buildResponse(pepper)));
+            response = current;
+        }
+        return current.getValue();
+    }
+
+    private JsonObject buildResponse(String pepper) {
         JsonObject response = new JsonObject();
-        response.addProperty("lookup_pepper", hashManager.getHashEngine().getPepper());
+        response.addProperty("lookup_pepper", pepper);
         JsonArray algorithms = new JsonArray();
         HashingConfig config = hashManager.getConfig();
         if (config.isEnabled()) {
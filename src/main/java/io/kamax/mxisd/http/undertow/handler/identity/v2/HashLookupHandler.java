@@ -23,12 +23,14 @@ package io.kamax.mxisd.http.undertow.handler.identity.v2;
 import io.kamax.mxisd.config.HashingConfig;
 import io.kamax.mxisd.exception.InvalidParamException;
 import io.kamax.mxisd.exception.InvalidPepperException;
+import io.kamax.mxisd.exception.NotReadyException;
 import io.kamax.mxisd.hash.HashManager;
 import io.kamax.mxisd.http.IsAPIv2;
 import io.kamax.mxisd.http.io.identity.ClientHashLookupAnswer;
 import io.kamax.mxisd.http.io.identity.ClientHashLookupRequest;
 import io.kamax.mxisd.http.undertow.handler.ApiHandler;
 import io.kamax.mxisd.http.undertow.handler.identity.share.LookupHandler;
+import io.kamax.mxisd.logging.RequestContext;
 import io.kamax.mxisd.lookup.BulkLookupRequest;
 import io.kamax.mxisd.lookup.HashLookupRequest;
 import io.kamax.mxisd.lookup.SingleLookupReply;
@@ -42,6 +44,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 public class HashLookupHandler extends LookupHandler implements ApiHandler {
@@ -64,18 +67,26 @@ public class HashLookupHandler extends LookupHandler implements ApiHandler {
         HashLookupRequest lookupRequest = new HashLookupRequest();
         setRequesterInfo(lookupRequest, exchange);
         lookupRequest.setHashes(input.getAddresses());
-        log.info("Got bulk lookup request from {} with client {} - Is recursive? {}",
+        log.debug("Got bulk lookup request from {} with client {} - Is recursive? {}",
             lookupRequest.getRequester(), lookupRequest.getUserAgent(), lookupRequest.isRecursive());
 
+        RequestContext.annotate("addresses", Objects.isNull(input.getAddresses()) ? 0 : input.getAddresses().size());
+
+        if (!hashManager.isReady()) {
+            throw new NotReadyException("hashing");
+        }
+
         if (!hashManager.getHashEngine().getPepper().equals(input.getPepper())) {
             throw new InvalidPepperException();
         }
 
         switch (input.getAlgorithm()) {
             case "none":
+                RequestContext.annotate("algorithm", input.getAlgorithm());
                 noneAlgorithm(exchange, lookupRequest, input);
                 break;
             case "sha256":
+                RequestContext.annotate("algorithm", input.getAlgorithm());
                 sha256Algorithm(exchange, lookupRequest, input);
                 break;
             default:
@@ -117,7 +128,7 @@ public class HashLookupHandler extends LookupHandler implements ApiHandler {
         for (ThreePidMapping mapping : strategy.find(bulkLookupRequest).get()) {
             answer.getMappings().put(mapping.getMedium() + " " + mapping.getValue(), mapping.getMxid());
         }
-        log.info("Finished bulk lookup request from {}", request.getRequester());
+        log.debug("Finished bulk lookup request from {}", request.getRequester());
 
         return answer;
     }
@@ -136,7 +147,7 @@ public class HashLookupHandler extends LookupHandler implements ApiHandler {
             SingleLookupReply reply = singleLookupReply.get();
             answer.getMappings().put(address, reply.getMxid().toString());
         }
-        log.info("Finished single lookup request from {}", request.getRequester());
+        log.debug("Finished single lookup request from {}", request.getRequester());
 
         return answer;
     }
@@ -148,10 +159,15 @@ public class HashLookupHandler extends LookupHandler implements ApiHandler {
 
         ClientHashLookupAnswer answer = new ClientHashLookupAnswer();
         if (request.getHashes() != null && !request.getHashes().isEmpty()) {
-            for (Pair<String, ThreePidMapping> pair : hashManager.getHashStorage().find(request.getHashes())) {
-                answer.getMappings().put(pair.getKey(), pair.getValue().getMxid());
+            List<String> candidates = hashManager.getHashEngine().filter(request.getHashes());
+            RequestContext.annotate("candidates", candidates.size());
+            if (!candidates.isEmpty()) {
+                for (Pair<String, ThreePidMapping> pair : hashManager.getHashStorage().find(candidates)) {
+                    answer.getMappings().put(pair.getKey(), pair.getValue().getMxid());
+                }
             }
-            log.info("Finished bulk lookup request from {}", request.getRequester());
+            RequestContext.annotate("found", answer.getMappings().size());
+            log.debug("Finished bulk lookup request from {}", request.getRequester());
         } else {
             log.warn("Empty request");
         }
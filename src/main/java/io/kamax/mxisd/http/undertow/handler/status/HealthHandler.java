@@ -0,0 +1,53 @@
+package io.kamax.mxisd.http.undertow.handler.status;
+
+import com.google.gson.JsonObject;
+import io.kamax.mxisd.http.undertow.handler.BasicHttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.StatusCodes;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Probe for orchestrators and load balancers: 200 while the check passes, 503 otherwise.
+ * <p>
+ * The liveness probe always passes as long as the process can answer. The readiness probe fails while starting and as
+ * soon as shutdown begins, so traffic is moved away before connections are drained. It also reports subsystems which
+ * warm up in the background, such as hashing, without failing on them: v1 lookups can be served in the meantime.
+ */
+public class HealthHandler extends BasicHttpHandler {
+
+    public static final String LivePath = "/health/live";
+    public static final String ReadyPath = "/health/ready";
+
+    private final BooleanSupplier check;
+    private final Supplier<Map<String, Boolean>> subsystems;
+
+    public HealthHandler(BooleanSupplier check) {
+        this(check, Collections::emptyMap);
+    }
+
+    public HealthHandler(BooleanSupplier check, Supplier<Map<String, Boolean>> subsystems) {
+        this.check = check;
+        this.subsystems = subsystems;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) {
+        boolean ok = check.getAsBoolean();
+        JsonObject obj = new JsonObject();
+        obj.addProperty("status", ok ? "OK" : "UNAVAILABLE");
+
+        Map<String, Boolean> states = subsystems.get();
+        if (!states.isEmpty()) {
+            JsonObject details = new JsonObject();
+            states.forEach((name, ready) -> details.addProperty(name, ready ? "ready" : "warming"));
+            obj.add("subsystems", details);
+        }
+
+        respond(exchange, ok ? StatusCodes.OK : StatusCodes.SERVICE_UNAVAILABLE, obj);
+    }
+
+}
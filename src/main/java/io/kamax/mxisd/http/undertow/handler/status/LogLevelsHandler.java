@@ -0,0 +1,46 @@
+package io.kamax.mxisd.http.undertow.handler.status;
+
+import io.kamax.mxisd.http.undertow.handler.BasicHttpHandler;
+import io.kamax.mxisd.logging.LogLevels;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Methods;
+import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lists and changes the log level of components at runtime. Only served on the admin listener.
+ * <ul>
+ * <li><code>GET /logging/levels</code> lists the levels set for components</li>
+ * <li><code>PUT /logging/levels/{component}?level=debug</code> sets the level of a component</li>
+ * <li><code>DELETE /logging/levels/{component}</code> restores the level the component inherits</li>
+ * </ul>
+ */
+public class LogLevelsHandler extends BasicHttpHandler {
+
+    public static final String Path = "/logging/levels";
+    public static final String ComponentPath = Path + "/{component}";
+
+    private static final Logger log = LoggerFactory.getLogger(LogLevelsHandler.class);
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) {
+        String component = getQueryParameter(exchange, "component");
+        if (Methods.PUT.equals(exchange.getRequestMethod())) {
+            String level = getQueryParameter(exchange, "level");
+            if (!LogLevels.isValid(level)) {
+                respond(exchange, HttpStatus.SC_BAD_REQUEST, "M_INVALID_PARAM", "Invalid log level: " + level);
+                return;
+            }
+
+            LogLevels.set(component, level);
+            log.info("Log level of {} set to {}", component, level);
+        } else if (Methods.DELETE.equals(exchange.getRequestMethod())) {
+            LogLevels.reset(component);
+            log.info("Log level of {} reset", component);
+        }
+
+        respondJson(exchange, LogLevels.list());
+    }
+
+}
@@ -0,0 +1,29 @@
+package io.kamax.mxisd.http.undertow.handler.status;
+
+import io.kamax.mxisd.http.undertow.handler.BasicHttpHandler;
+import io.kamax.mxisd.metrics.MetricRegistry;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Exposes all metrics in the Prometheus text format. Only served on the admin listener.
+ */
+public class MetricsHandler extends BasicHttpHandler {
+
+    public static final String Path = "/metrics";
+
+    private final MetricRegistry registry;
+
+    public MetricsHandler(MetricRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) {
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain; version=0.0.4; charset=utf-8");
+        exchange.getResponseSender().send(registry.scrape(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -3,6 +3,7 @@ package io.kamax.mxisd.http.undertow.handler.term.v2;
 import com.google.gson.JsonObject;
 import io.kamax.mxisd.config.PolicyConfig;
 import io.kamax.mxisd.http.undertow.handler.BasicHttpHandler;
+import io.kamax.mxisd.http.undertow.handler.CacheableBody;
 import io.undertow.server.HttpServerExchange;
 
 import java.util.Map;
@@ -11,10 +12,10 @@ public class GetTermsHandler extends BasicHttpHandler {
 
     public static final String PATH = "/_matrix/identity/v2/terms";
 
-    private final JsonObject policyResponse;
+    private final CacheableBody policyResponse;
 
     public GetTermsHandler(PolicyConfig config) {
-        policyResponse = new JsonObject();
+        JsonObject response = new JsonObject();
         JsonObject policies = new JsonObject();
         for (Map.Entry<String, PolicyConfig.PolicyObject> policyItem : config.getPolicies().entrySet()) {
             JsonObject policy = new JsonObject();
@@ -27,7 +28,8 @@ public class GetTermsHandler extends BasicHttpHandler {
             }
             policies.add(policyItem.getKey(), policy);
         }
-        policyResponse.add("policies", policies);
+        response.add("policies", policies);
+        policyResponse = new CacheableBody(response);
     }
 
     @Override
@@ -43,6 +43,8 @@ import io.kamax.mxisd.lookup.ThreePidMapping;
 import io.kamax.mxisd.lookup.strategy.LookupStrategy;
 import io.kamax.mxisd.matrix.HomeserverFederationResolver;
 import io.kamax.mxisd.matrix.HomeserverVerifier;
+import io.kamax.mxisd.metrics.Gauge;
+import io.kamax.mxisd.metrics.MetricRegistry;
 import io.kamax.mxisd.notification.NotificationManager;
 import io.kamax.mxisd.profile.ProfileManager;
 import io.kamax.mxisd.storage.IStorage;
@@ -74,6 +76,8 @@ import java.util.Optional;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
@@ -82,6 +86,9 @@ public class InvitationManager {
     private static final Logger log = LoggerFactory.getLogger(InvitationManager.class);
     private static final String CreatedAtPropertyKey = "created_at";
 
+    private static final Gauge pending = MetricRegistry.get().gauge("invite_pending",
+        "3PID invites waiting for their address to be bound");
+
     private final String defaultCreateTs = Long.toString(Instant.now().toEpochMilli());
 
     private InvitationConfig cfg;
@@ -95,8 +102,15 @@ public class InvitationManager {
     private ProfileManager profileMgr;
 
     private Timer refreshTimer;
+    private final ExecutorService publisher = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "invite-publisher");
+        t.setDaemon(true);
+        return t;
+    });
 
     private Map<String, IThreePidInviteReply> invitations = new ConcurrentHashMap<>();
+    // Set under the instance lock once stopped, so publications still running no longer touch the storage
+    private boolean stopped;
 
     public InvitationManager(
             MxisdConfig mxisdCfg,
@@ -109,6 +123,7 @@ public class InvitationManager {
             ProfileManager profileMgr
     ) {
         this.cfg = requireValid(mxisdCfg);
+        pending.track(invitations::size);
         this.srvCfg = mxisdCfg.getServer();
         this.storage = storage;
         this.lookupMgr = lookupMgr;
@@ -139,12 +154,6 @@ public class InvitationManager {
         log.info("Setting up invitation mapping refresh timer");
         refreshTimer = new Timer();
 
-        // We add a shutdown hook to cancel the hook and wait for pending resolutions
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            refreshTimer.cancel();
-            ForkJoinPool.commonPool().awaitQuiescence(1, TimeUnit.MINUTES);
-        }));
-
         // We set the refresh timer for background tasks
         refreshTimer.scheduleAtFixedRate(new TimerTask() {
             @Override
@@ -319,6 +328,23 @@ public class InvitationManager {
     private void removeInvite(IThreePidInviteReply reply) {
         invitations.remove(reply.getId());
         storage.deleteInvite(reply.getId());
+        removeEphemeralKey(reply);
+    }
+
+    private void removeEphemeralKey(IThreePidInviteReply reply) {
+        String algo = reply.getInvite().getProperties().get("e_key_algo");
+        String serial = reply.getInvite().getProperties().get("e_key_serial");
+        if (StringUtils.isAnyBlank(algo, serial)) {
+            return;
+        }
+
+        // Ephemeral keys are only valid while the invite is pending
+        try {
+            keyMgr.deleteKey(new GenericKeyIdentifier(KeyType.Ephemeral, algo, serial));
+            log.info("Removed ephemeral key {}:{} of invite {}", algo, serial, reply.getId());
+        } catch (ObjectNotFoundException e) {
+            log.debug("Ephemeral key {}:{} of invite {} was already removed", algo, serial, reply.getId());
+        }
     }
 
     /**
@@ -422,7 +448,7 @@ public class InvitationManager {
         HomeserverFederationResolver.HomeserverTarget hsUrlOpt = resolver.resolve(domain);
 
         // TODO this is needed as this will block if called during authentication cycle due to synapse implementation
-        new Thread(() -> { // FIXME need to make this retry-able and within a general background working pool
+        publisher.execute(() -> { // FIXME need to make this retry-able
             HttpPost req = new HttpPost(hsUrlOpt.getUrl().toString() + "/_matrix/federation/v1/3pid/onbind");
             // Expected body: https://matrix.to/#/!HUeDbmFUsWAhxHHvFG:matrix.org/$150469846739DCLWc:matrix.trancendances.fr
             JsonObject obj = new JsonObject();
@@ -478,20 +504,51 @@ public class InvitationManager {
                     }
                     response.close();
                 } catch (IOException e) {
-                    log.warn("Unable to tell HS {} about invite being mapped", domain, e);
+                    log.warn("Unable to tell HS {} about invite being mapped, it stays pending until the next maintenance", domain, e);
+                    shouldArchive = false;
                 } finally {
                     if (shouldArchive) {
                         synchronized (this) {
-                            storage.insertHistoricalInvite(reply, mxid, resolvedAt, couldPublish);
-                            removeInvite(reply);
-                            log.info("Moved invite {} to historical table", reply.getId());
+                            if (stopped) {
+                                log.warn("Stopped while publishing invite {}, it stays pending until next start", reply.getId());
+                            } else {
+                                storage.insertHistoricalInvite(reply, mxid, resolvedAt, couldPublish);
+                                removeInvite(reply);
+                                log.info("Moved invite {} to historical table", reply.getId());
+                            }
                         }
                     }
                 }
             } catch (IOException e) {
                 log.error("Unable to create client to the " + hsUrlOpt.getUrl().toString(), e);
             }
-        }).start();
+        });
+    }
+
+    /**
+     * Stops the maintenance timer, then waits for pending resolutions and mapping publications. Once this returns,
+     * publications which did not complete in time are interrupted and no longer use the storage, so it can be closed.
+     */
+    public void stop(long timeout, TimeUnit unit) {
+        refreshTimer.cancel();
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        ForkJoinPool.commonPool().awaitQuiescence(timeout, unit);
+        publisher.shutdown();
+        try {
+            if (!publisher.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                log.warn("Mapping publications still in progress, their invites stay pending until next start");
+                publisher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            publisher.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            // Waits for a publication which is already moving its invite to the historical table
+            synchronized (this) {
+                stopped = true;
+            }
+        }
     }
 
     private class MappingChecker implements Runnable {
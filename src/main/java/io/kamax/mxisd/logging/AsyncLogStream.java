@@ -0,0 +1,150 @@
+package io.kamax.mxisd.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Standard output replacement which hands log lines to a dedicated writer thread.
+ * <p>
+ * The logging backend writes each event to {@link System#out} and flushes it. On flush, complete lines are tagged with
+ * the correlation ID of the {@link RequestContext} of the thread that logged them and queued. When the queue is full,
+ * callers wait for the writer instead of losing events.
+ */
+public class AsyncLogStream extends OutputStream {
+
+    private static AsyncLogStream installed;
+
+    /**
+     * Replaces {@link System#out} with an asynchronous stream writing to the current one. Does nothing if already done.
+     */
+    public static synchronized void install(int queueSize) {
+        if (Objects.nonNull(installed)) {
+            return;
+        }
+
+        installed = new AsyncLogStream(System.out, queueSize);
+        System.setOut(new PrintStream(installed, true));
+    }
+
+    /**
+     * Restores the original {@link System#out} once all queued events are written.
+     */
+    public static synchronized void uninstall() {
+        if (Objects.isNull(installed)) {
+            return;
+        }
+
+        System.setOut(installed.target);
+        installed.stop();
+        installed = null;
+    }
+
+    private final PrintStream target;
+    private final BlockingQueue<byte[]> queue;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(256);
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    AsyncLogStream(PrintStream target, int queueSize) {
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.writer = new Thread(this::run, "log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        pending.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        pending.write(b, off, len);
+    }
+
+    @Override
+    public synchronized void flush() {
+        // Only complete lines are queued, the rest waits for the end of its line
+        byte[] data = pending.toByteArray();
+        int end = data.length;
+        while (end > 0 && data[end - 1] != '\n') {
+            end--;
+        }
+        if (end == 0) {
+            return;
+        }
+
+        byte[] event = Arrays.copyOf(data, end);
+        pending.reset();
+        pending.write(data, end, data.length - end);
+
+        // Continuation lines, like stack frames, are left as is
+        RequestContext ctx = RequestContext.current();
+        if (Objects.nonNull(ctx) && event[0] != '\t' && event[0] != ' ') {
+            byte[] prefix = ("[" + ctx.getId() + "] ").getBytes(StandardCharsets.UTF_8);
+            byte[] tagged = new byte[prefix.length + event.length];
+            System.arraycopy(prefix, 0, tagged, 0, prefix.length);
+            System.arraycopy(event, 0, tagged, prefix.length, event.length);
+            event = tagged;
+        }
+
+        if (!running) {
+            target.write(event, 0, event.length);
+            target.flush();
+            return;
+        }
+
+        try {
+            queue.put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            target.write(event, 0, event.length);
+            target.flush();
+        }
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                byte[] event = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (Objects.isNull(event)) {
+                    continue;
+                }
+
+                target.write(event, 0, event.length);
+                if (queue.isEmpty()) {
+                    target.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        target.flush();
+    }
+
+    private void stop() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+}
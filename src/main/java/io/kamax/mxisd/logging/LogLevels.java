@@ -0,0 +1,105 @@
+package io.kamax.mxisd.logging;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.impl.SimpleLogger;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Changes the log level of components at runtime.
+ * <p>
+ * A component is a logger name or a prefix of it, like <code>io.kamax.mxisd.lookup</code>. Levels are stored as the
+ * system properties read by the simple logging backend, so loggers created later pick them up, and the level of the
+ * already created loggers is computed again.
+ */
+public class LogLevels {
+
+    private static final Logger log = LoggerFactory.getLogger(LogLevels.class);
+
+    private static final String PropertyPrefix = SimpleLogger.LOG_KEY_PREFIX;
+    private static final Map<String, Integer> Levels = new HashMap<>();
+
+    static {
+        Levels.put("trace", 0);
+        Levels.put("debug", 10);
+        Levels.put("info", 20);
+        Levels.put("warn", 30);
+        Levels.put("error", 40);
+        Levels.put("off", 50);
+    }
+
+    public static boolean isValid(String level) {
+        return Objects.nonNull(level) && Levels.containsKey(level.toLowerCase());
+    }
+
+    /**
+     * @return The levels set for components, by component name
+     */
+    public static Map<String, String> list() {
+        Map<String, String> levels = new TreeMap<>();
+        System.getProperties().stringPropertyNames().stream()
+            .filter(name -> name.startsWith(PropertyPrefix))
+            .forEach(name -> levels.put(name.substring(PropertyPrefix.length()), System.getProperty(name)));
+        return levels;
+    }
+
+    public static void set(String component, String level) {
+        if (StringUtils.isBlank(component)) {
+            throw new IllegalArgumentException("Component cannot be blank");
+        }
+
+        if (!isValid(level)) {
+            throw new IllegalArgumentException("Invalid log level: " + level);
+        }
+
+        System.setProperty(PropertyPrefix + component, level.toLowerCase());
+        refresh();
+    }
+
+    public static void reset(String component) {
+        System.clearProperty(PropertyPrefix + component);
+        refresh();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void refresh() {
+        ILoggerFactory factory = LoggerFactory.getILoggerFactory();
+        try {
+            Field mapField = factory.getClass().getDeclaredField("loggerMap");
+            mapField.setAccessible(true);
+            Map<String, Logger> loggers = (Map<String, Logger>) mapField.get(factory);
+
+            Method compute = SimpleLogger.class.getDeclaredMethod("recursivelyComputeLevelString");
+            compute.setAccessible(true);
+            Field level = SimpleLogger.class.getDeclaredField("currentLogLevel");
+            level.setAccessible(true);
+            Field cfgField = SimpleLogger.class.getDeclaredField("CONFIG_PARAMS");
+            cfgField.setAccessible(true);
+            Object cfg = cfgField.get(null);
+            Field defaultField = cfg.getClass().getDeclaredField("defaultLogLevel");
+            defaultField.setAccessible(true);
+            int defaultLevel = defaultField.getInt(cfg);
+
+            for (Logger logger : loggers.values()) {
+                if (!(logger instanceof SimpleLogger)) {
+                    continue;
+                }
+
+                String value = (String) compute.invoke(logger);
+                int newLevel = Objects.isNull(value) ? defaultLevel : Levels.getOrDefault(value.toLowerCase(), 20);
+                level.setInt(logger, newLevel);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Unable to change the level of existing loggers, only new loggers will use it: {}", e.toString());
+        }
+    }
+
+}
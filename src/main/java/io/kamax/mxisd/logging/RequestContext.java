@@ -0,0 +1,66 @@
+package io.kamax.mxisd.logging;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Correlation ID and summary fields of the request being handled by the current thread.
+ * <p>
+ * Components on the request path add fields with {@link #annotate(String, Object)} instead of logging each step, and
+ * the fields are logged once as a single event when the request completes.
+ */
+public class RequestContext {
+
+    private static final ThreadLocal<RequestContext> current = new ThreadLocal<>();
+
+    public static String newId() {
+        return Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+    }
+
+    /**
+     * @return The context of the request handled by the current thread, or <code>null</code> if there is none
+     */
+    public static RequestContext current() {
+        return current.get();
+    }
+
+    public static void enter(RequestContext ctx) {
+        current.set(ctx);
+    }
+
+    public static void leave() {
+        current.remove();
+    }
+
+    /**
+     * Adds a field to the summary of the current request, if any.
+     */
+    public static void annotate(String key, Object value) {
+        RequestContext ctx = current.get();
+        if (Objects.nonNull(ctx)) {
+            ctx.put(key, value);
+        }
+    }
+
+    private final String id;
+    private final Map<String, Object> fields = new LinkedHashMap<>();
+
+    public RequestContext(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public synchronized void put(String key, Object value) {
+        fields.put(key, value);
+    }
+
+    public synchronized Map<String, Object> getFields() {
+        return new LinkedHashMap<>(fields);
+    }
+
+}
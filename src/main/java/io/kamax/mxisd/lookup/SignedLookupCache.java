@@ -0,0 +1,126 @@
+package io.kamax.mxisd.lookup;
+
+import io.kamax.mxisd.config.SignedLookupCacheConfig;
+import io.kamax.mxisd.metrics.CacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of signed single lookup responses, so a mapping looked up again shortly after does not need to be signed again.
+ * <p>
+ * An entry is only served while the current time is within the not_before/not_after window of the signed reply, and
+ * never longer than the configured TTL. All entries are dropped when the signing key changes.
+ */
+public class SignedLookupCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SignedLookupCache.class);
+
+    private static class Entry {
+
+        private final String body;
+        private final Instant notBefore;
+        private final Instant expiresAt;
+
+        Entry(String body, Instant notBefore, Instant expiresAt) {
+            this.body = body;
+            this.notBefore = notBefore;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isUsable(Instant now) {
+            return !now.isBefore(notBefore) && now.isBefore(expiresAt);
+        }
+
+    }
+
+    private final SignedLookupCacheConfig cfg;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile String lastKeyId;
+
+    public SignedLookupCache(SignedLookupCacheConfig cfg) {
+        this.cfg = cfg;
+    }
+
+    private String getCacheKey(SingleLookupReply reply, String keyId) {
+        return reply.getRequest().getType() + "\u0000" + reply.getRequest().getThreePid() + "\u0000" + reply.getMxid().getId()
+                + "\u0000" + keyId;
+    }
+
+    private void checkKey(String keyId) {
+        if (Objects.equals(lastKeyId, keyId)) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!Objects.equals(lastKeyId, keyId)) {
+                if (Objects.nonNull(lastKeyId)) {
+                    log.info("Signing key changed from {} to {}, invalidating signed lookup cache", lastKeyId, keyId);
+                }
+                entries.clear();
+                lastKeyId = keyId;
+            }
+        }
+    }
+
+    public Optional<String> get(SingleLookupReply reply, String keyId) {
+        if (!cfg.isEnabled()) {
+            return Optional.empty();
+        }
+
+        checkKey(keyId);
+        String key = getCacheKey(reply, keyId);
+        Entry entry = entries.get(key);
+        if (Objects.isNull(entry)) {
+            CacheMetrics.miss("signed_lookup");
+            return Optional.empty();
+        }
+
+        if (!entry.isUsable(Instant.now())) {
+            entries.remove(key, entry);
+            CacheMetrics.miss("signed_lookup");
+            return Optional.empty();
+        }
+
+        CacheMetrics.hit("signed_lookup");
+        return Optional.of(entry.body);
+    }
+
+    public void put(SingleLookupReply reply, String keyId, String signedBody) {
+        if (!cfg.isEnabled()) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusSeconds(cfg.getTtlInSeconds());
+        if (reply.getNotAfter().isBefore(expiresAt)) {
+            expiresAt = reply.getNotAfter();
+        }
+
+        Entry entry = new Entry(signedBody, reply.getNotBefore(), expiresAt);
+        if (!entry.isUsable(now)) {
+            return;
+        }
+
+        if (entries.size() >= cfg.getMaxEntries()) {
+            entries.values().removeIf(e -> !e.isUsable(now));
+            if (entries.size() >= cfg.getMaxEntries()) {
+                log.debug("Signed lookup cache is full, not caching");
+                return;
+            }
+        }
+
+        checkKey(keyId);
+        entries.put(getCacheKey(reply, keyId), entry);
+    }
+
+    public void invalidate() {
+        entries.clear();
+    }
+
+}
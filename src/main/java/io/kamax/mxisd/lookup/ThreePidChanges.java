@@ -0,0 +1,37 @@
+package io.kamax.mxisd.lookup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mappings added and removed in an identity store since a given cursor, with the cursor to use for the next call.
+ * <p>
+ * Cursors are opaque to callers and only handed back to the provider which returned them, in their native type.
+ */
+public class ThreePidChanges {
+
+    private final Object cursor;
+    private final List<ThreePidMapping> added = new ArrayList<>();
+    private final List<ThreePidMapping> removed = new ArrayList<>();
+
+    public ThreePidChanges(Object cursor) {
+        this.cursor = cursor;
+    }
+
+    public Object getCursor() {
+        return cursor;
+    }
+
+    public List<ThreePidMapping> getAdded() {
+        return added;
+    }
+
+    public List<ThreePidMapping> getRemoved() {
+        return removed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+}
@@ -22,6 +22,8 @@ package io.kamax.mxisd.lookup.provider;
 
 import io.kamax.matrix.ThreePidMedium;
 import io.kamax.mxisd.config.MatrixConfig;
+import io.kamax.mxisd.config.RecursiveLookupConfig;
+import io.kamax.mxisd.config.RemoteBulkLookupConfig;
 import io.kamax.mxisd.lookup.SingleLookupReply;
 import io.kamax.mxisd.lookup.SingleLookupRequest;
 import io.kamax.mxisd.lookup.ThreePidMapping;
@@ -32,19 +34,60 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.*;
 
-class DnsLookupProvider implements IThreePidProvider {
+public class DnsLookupProvider implements IThreePidProvider {
+
+    // Shared by all the lookups in a domain, removed once none of them holds or waits on it anymore
+    private static class DomainPermits {
+
+        private final Semaphore semaphore;
+        private int users;
+
+        DomainPermits(int permits) {
+            this.semaphore = new Semaphore(permits);
+        }
+
+    }
 
     private transient final Logger log = LoggerFactory.getLogger(DnsLookupProvider.class);
 
     private MatrixConfig cfg;
     private IRemoteIdentityServerFetcher fetcher;
+    private IdentityServerDiscoveryCache discovery;
+    private RemoteBulkLookupConfig bulkCfg;
+    private ExecutorService bulkExecutor;
+    private Map<String, DomainPermits> domainPermits = new ConcurrentHashMap<>();
+
+    public DnsLookupProvider(MatrixConfig cfg, RecursiveLookupConfig recursiveCfg, IRemoteIdentityServerFetcher fetcher) {
+        this(cfg, recursiveCfg.getBulk(),
+                new IdentityServerDiscoveryCache(recursiveCfg.getDiscovery(), IdentityServerUtils::findIsUrlForDomain, IdentityServerUtils::isUsable),
+                fetcher);
+    }
 
-    public DnsLookupProvider(MatrixConfig cfg, IRemoteIdentityServerFetcher fetcher) {
+    public DnsLookupProvider(MatrixConfig cfg, RemoteBulkLookupConfig bulkCfg, IdentityServerDiscoveryCache discovery, IRemoteIdentityServerFetcher fetcher) {
         this.cfg = cfg;
         this.fetcher = fetcher;
+        this.discovery = discovery;
+        this.bulkCfg = bulkCfg;
+
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, "dns-bulk-lookup");
+            t.setDaemon(true);
+            return t;
+        };
+        // Once all threads are busy and the queue is full, domains are looked up by the calling thread instead
+        BlockingQueue<Runnable> queue = bulkCfg.getQueue() > 0 ? new LinkedBlockingQueue<>(bulkCfg.getQueue()) : new SynchronousQueue<>();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(bulkCfg.getThreads(), bulkCfg.getThreads(), 60, TimeUnit.SECONDS,
+                queue, threadFactory, (r, e) -> {
+            if (e.isShutdown()) {
+                throw new RejectedExecutionException("DNS lookup provider is closed");
+            }
+
+            r.run();
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.bulkExecutor = executor;
     }
 
     @Override
@@ -66,14 +109,13 @@ class DnsLookupProvider implements IThreePidProvider {
         return Optional.of(email.substring(atIndex + 1));
     }
 
-    // TODO use caching mechanism
     private Optional<String> findIdentityServerForDomain(String domain) {
         if (StringUtils.equals(cfg.getDomain(), domain)) {
             log.info("We are authoritative for {}, no remote lookup", domain);
             return Optional.empty();
         }
 
-        return IdentityServerUtils.findIsUrlForDomain(domain);
+        return discovery.find(domain);
     }
 
     @Override
@@ -118,59 +160,78 @@ class DnsLookupProvider implements IThreePidProvider {
         }
 
         log.info("Looking mappings across {} domains", domains.keySet().size());
-        ForkJoinPool pool = ForkJoinPool.commonPool();
-        RecursiveTask<List<ThreePidMapping>> task = new RecursiveTask<List<ThreePidMapping>>() {
-
-            @Override
-            protected List<ThreePidMapping> compute() {
-                List<ThreePidMapping> mappingsFound = new ArrayList<>();
-                List<DomainBulkLookupTask> tasks = new ArrayList<>();
-
-                for (String domain : domains.keySet()) {
-                    DomainBulkLookupTask domainTask = new DomainBulkLookupTask(domain, domains.get(domain));
-                    domainTask.fork();
-                    tasks.add(domainTask);
-                }
-
-                for (DomainBulkLookupTask task : tasks) {
-                    mappingsFound.addAll(task.join());
-                }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(bulkCfg.getTimeoutInSeconds());
+        Map<String, Future<List<ThreePidMapping>>> tasks = new HashMap<>();
+        for (Map.Entry<String, List<ThreePidMapping>> entry : domains.entrySet()) {
+            tasks.put(entry.getKey(), bulkExecutor.submit(() -> lookupDomain(entry.getKey(), entry.getValue(), deadline)));
+        }
 
-                return mappingsFound;
+        List<ThreePidMapping> mappingsFound = new ArrayList<>();
+        for (Map.Entry<String, Future<List<ThreePidMapping>>> task : tasks.entrySet()) {
+            try {
+                mappingsFound.addAll(task.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                log.warn("Lookup in domain {} did not complete in time, skipping", task.getKey());
+                task.getValue().cancel(true);
+            } catch (ExecutionException e) {
+                log.warn("Lookup in domain {} failed: {}", task.getKey(), e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                log.warn("Interrupted while waiting on lookup in domain {}", task.getKey());
+                Thread.currentThread().interrupt();
+                break;
             }
-        };
-        pool.submit(task);
-        pool.shutdown();
+        }
 
-        List<ThreePidMapping> mappingsFound = task.join();
         log.info("Found {} mappings overall", mappingsFound.size());
         return mappingsFound;
     }
 
-    private class DomainBulkLookupTask extends RecursiveTask<List<ThreePidMapping>> {
+    private DomainPermits acquirePermits(String domain) {
+        return domainPermits.compute(domain, (d, p) -> {
+            if (Objects.isNull(p)) {
+                p = new DomainPermits(bulkCfg.getPerDomain());
+            }
+            p.users++;
+            return p;
+        });
+    }
 
-        private String domain;
-        private List<ThreePidMapping> mappings;
+    private void releasePermits(String domain) {
+        domainPermits.computeIfPresent(domain, (d, p) -> --p.users > 0 ? p : null);
+    }
 
-        DomainBulkLookupTask(String domain, List<ThreePidMapping> mappings) {
-            this.domain = domain;
-            this.mappings = mappings;
-        }
+    private List<ThreePidMapping> lookupDomain(String domain, List<ThreePidMapping> mappings, long deadline) throws InterruptedException {
+        DomainPermits permits = acquirePermits(domain);
+        try {
+            if (!permits.semaphore.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                log.warn("Too many concurrent lookups in domain {}, skipping", domain);
+                return Collections.emptyList();
+            }
 
-        @Override
-        protected List<ThreePidMapping> compute() {
-            List<ThreePidMapping> domainMappings = new ArrayList<>();
+            try {
+                List<ThreePidMapping> domainMappings = new ArrayList<>();
 
-            Optional<String> baseUrl = findIdentityServerForDomain(domain);
-            if (!baseUrl.isPresent()) {
-                log.info("No usable Identity server for domain {}", domain);
-            } else {
-                domainMappings.addAll(fetcher.find(baseUrl.get(), mappings));
-                log.info("Found {} mappings in domain {}", domainMappings.size(), domain);
-            }
+                Optional<String> baseUrl = findIdentityServerForDomain(domain);
+                if (!baseUrl.isPresent()) {
+                    log.info("No usable Identity server for domain {}", domain);
+                } else {
+                    domainMappings.addAll(fetcher.find(baseUrl.get(), mappings));
+                    log.info("Found {} mappings in domain {}", domainMappings.size(), domain);
+                }
 
-            return domainMappings;
+                return domainMappings;
+            } finally {
+                permits.semaphore.release();
+            }
+        } finally {
+            releasePermits(domain);
         }
     }
 
+    @Override
+    public void close() {
+        discovery.stop();
+        bulkExecutor.shutdownNow();
+    }
+
 }
@@ -22,11 +22,13 @@ package io.kamax.mxisd.lookup.provider;
 
 import io.kamax.mxisd.lookup.SingleLookupReply;
 import io.kamax.mxisd.lookup.SingleLookupRequest;
+import io.kamax.mxisd.lookup.ThreePidChanges;
 import io.kamax.mxisd.lookup.ThreePidMapping;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface IThreePidProvider {
 
@@ -41,7 +43,42 @@ public interface IThreePidProvider {
 
     List<ThreePidMapping> populate(List<ThreePidMapping> mappings);
 
+    /**
+     * Same as {@link #find(SingleLookupRequest)}, for providers which can look up without blocking the calling thread.
+     */
+    default CompletableFuture<Optional<SingleLookupReply>> findAsync(SingleLookupRequest request) {
+        return CompletableFuture.completedFuture(find(request));
+    }
+
+    /**
+     * Same as {@link #populate(List)}, for providers which can look up without blocking the calling thread.
+     */
+    default CompletableFuture<List<ThreePidMapping>> populateAsync(List<ThreePidMapping> mappings) {
+        return CompletableFuture.completedFuture(populate(mappings));
+    }
+
     default Iterable<ThreePidMapping> populateHashes() {
         return Collections.emptyList();
     }
+
+    /**
+     * Changes to the mappings returned by {@link #populateHashes()}, so hashes can be kept up to date between rotations.
+     * <p>
+     * Called with a null cursor right before a full {@link #populateHashes()}, to only get the current cursor. Changes
+     * made during that call may be returned again next time, they are applied idempotently.
+     *
+     * @param cursor The cursor returned by the previous call, or null.
+     * @return The changes, or empty if the provider cannot track them.
+     */
+    default Optional<ThreePidChanges> changesSince(Object cursor) {
+        return Optional.empty();
+    }
+
+    /**
+     * Releases the threads and connections of the provider, once no more lookups are made.
+     */
+    default void close() {
+        // no-op
+    }
+
 }
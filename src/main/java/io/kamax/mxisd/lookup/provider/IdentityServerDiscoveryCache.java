@@ -0,0 +1,132 @@
+package io.kamax.mxisd.lookup.provider;
+
+import io.kamax.mxisd.config.IdentityServerDiscoveryConfig;
+import io.kamax.mxisd.metrics.CacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Cache of the Identity server discovered for a domain, including domains without any.
+ * <p>
+ * Cached Identity servers are periodically probed in the background. When one is no longer usable, discovery is
+ * performed again for its domain so lookups do not have to wait on it.
+ */
+public class IdentityServerDiscoveryCache {
+
+    private static final Logger log = LoggerFactory.getLogger(IdentityServerDiscoveryCache.class);
+
+    private static class Entry {
+
+        private final String url;
+        private final Instant expiresAt;
+
+        Entry(String url, Instant expiresAt) {
+            this.url = url;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(Instant now) {
+            return !now.isBefore(expiresAt);
+        }
+
+    }
+
+    private final IdentityServerDiscoveryConfig cfg;
+    private final Function<String, Optional<String>> discoverer;
+    private final Predicate<String> prober;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private ScheduledExecutorService probeExecutor;
+
+    public IdentityServerDiscoveryCache(IdentityServerDiscoveryConfig cfg, Function<String, Optional<String>> discoverer, Predicate<String> prober) {
+        this.cfg = cfg;
+        this.discoverer = discoverer;
+        this.prober = prober;
+
+        if (cfg.getProbeIntervalInSeconds() > 0) {
+            probeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "is-discovery-probe");
+                t.setDaemon(true);
+                return t;
+            });
+            long interval = cfg.getProbeIntervalInSeconds();
+            probeExecutor.scheduleWithFixedDelay(this::probe, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    private Entry discover(String domain) {
+        Optional<String> url = discoverer.apply(domain);
+        long ttl = url.isPresent() ? cfg.getTtlInSeconds() : cfg.getNegativeTtlInSeconds();
+        Entry entry = new Entry(url.orElse(null), Instant.now().plusSeconds(ttl));
+
+        if (ttl > 0) {
+            if (entries.size() >= cfg.getMaxEntries()) {
+                Instant now = Instant.now();
+                entries.values().removeIf(e -> e.isExpired(now));
+            }
+
+            if (entries.size() < cfg.getMaxEntries() || entries.containsKey(domain)) {
+                entries.put(domain, entry);
+            }
+        }
+
+        return entry;
+    }
+
+    public Optional<String> find(String domain) {
+        Entry entry = entries.get(domain);
+        if (Objects.isNull(entry) || entry.isExpired(Instant.now())) {
+            CacheMetrics.miss("is_discovery");
+            entry = discover(domain);
+        } else {
+            CacheMetrics.hit("is_discovery");
+            log.debug("Identity server discovery for {} from cache: {}", domain, entry.url);
+        }
+
+        return Optional.ofNullable(entry.url);
+    }
+
+    /**
+     * Check that cached Identity servers are still usable, discovering again for domains where they are not.
+     * This is called periodically in the background as configured.
+     */
+    public void probe() {
+        try {
+            Instant now = Instant.now();
+            entries.entrySet().removeIf(e -> e.getValue().isExpired(now));
+
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                String url = e.getValue().url;
+                if (Objects.isNull(url) || prober.test(url)) {
+                    continue;
+                }
+
+                log.info("Cached Identity server {} for {} is no longer usable, discovering again", url, e.getKey());
+                discover(e.getKey());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Error while probing cached Identity servers", e);
+        }
+    }
+
+    public void invalidate(String domain) {
+        entries.remove(domain);
+    }
+
+    public void stop() {
+        if (Objects.nonNull(probeExecutor)) {
+            probeExecutor.shutdownNow();
+        }
+    }
+
+}
@@ -28,7 +28,8 @@ public class RemoteLookupProviderSupplier implements IdentityStoreSupplier {
 
     @Override
     public void accept(Mxisd mxisd) {
-        ThreePidProviders.register(() -> new DnsLookupProvider(mxisd.getConfig().getMatrix(), mxisd.getServerFetcher()));
+        ThreePidProviders.register(() -> new DnsLookupProvider(mxisd.getConfig().getMatrix(),
+                mxisd.getConfig().getLookup().getRecursive(), mxisd.getServerFetcher()));
         ThreePidProviders.register(() -> new ForwarderProvider(mxisd.getConfig(), mxisd.getServerFetcher()));
     }
 
@@ -26,6 +26,7 @@ import io.kamax.matrix.json.MatrixJson;
 import io.kamax.mxisd.config.MxisdConfig;
 import io.kamax.mxisd.exception.ConfigurationException;
 import io.kamax.mxisd.hash.HashManager;
+import io.kamax.mxisd.logging.RequestContext;
 import io.kamax.mxisd.lookup.ALookupRequest;
 import io.kamax.mxisd.lookup.BulkLookupRequest;
 import io.kamax.mxisd.lookup.SingleLookupReply;
@@ -33,6 +34,8 @@ import io.kamax.mxisd.lookup.SingleLookupRequest;
 import io.kamax.mxisd.lookup.ThreePidMapping;
 import io.kamax.mxisd.lookup.fetcher.IBridgeFetcher;
 import io.kamax.mxisd.lookup.provider.IThreePidProvider;
+import io.kamax.mxisd.metrics.Histogram;
+import io.kamax.mxisd.metrics.MetricRegistry;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +47,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
@@ -51,6 +55,9 @@ public class RecursivePriorityLookupStrategy implements LookupStrategy {
 
     private transient final Logger log = LoggerFactory.getLogger(RecursivePriorityLookupStrategy.class);
 
+    private static final Histogram providerTime = MetricRegistry.get().histogram("lookup_provider_duration_seconds",
+        "Time spent in 3PID lookup providers", "provider", "type");
+
     private MxisdConfig.Lookup cfg;
     private List<IThreePidProvider> providers;
     private IBridgeFetcher bridge;
@@ -118,7 +125,8 @@ public class RecursivePriorityLookupStrategy implements LookupStrategy {
 
         boolean canRecurse = forceRecursive || isAllowedForRecursive(request.getRequester());
 
-        log.info("Host {} allowed for recursion: {}", request.getRequester(), canRecurse);
+        log.debug("Host {} allowed for recursion: {}", request.getRequester(), canRecurse);
+        RequestContext.annotate("recursion", canRecurse);
         for (IThreePidProvider provider : providers) {
             if (provider.isLocal() || canRecurse || forceRecursive) {
                 usableProviders.add(provider);
@@ -166,10 +174,17 @@ public class RecursivePriorityLookupStrategy implements LookupStrategy {
 
     public Optional<SingleLookupReply> find(SingleLookupRequest request, List<IThreePidProvider> providers) {
         for (IThreePidProvider provider : providers) {
-            Optional<SingleLookupReply> lookupDataOpt = provider.find(request);
+            Optional<SingleLookupReply> lookupDataOpt;
+            long start = System.nanoTime();
+            try {
+                lookupDataOpt = provider.find(request);
+            } finally {
+                providerTime.observeSince(start, provider.getClass().getSimpleName(), "single");
+            }
             if (lookupDataOpt.isPresent()) {
-                log.info("Found 3PID mapping: {medium: '{}', address: '{}', mxid: '{}'}",
+                log.debug("Found 3PID mapping: {medium: '{}', address: '{}', mxid: '{}'}",
                     request.getType(), request.getThreePid(), lookupDataOpt.get().getMxid().getId());
+                RequestContext.annotate("found", 1);
                 return lookupDataOpt;
             }
         }
@@ -179,14 +194,15 @@ public class RecursivePriorityLookupStrategy implements LookupStrategy {
                 cfg.getRecursive().getBridge().getEnabled() &&
                 (!cfg.getRecursive().getBridge().getRecursiveOnly() || isAllowedForRecursive(request.getRequester()))
         ) {
-            log.info("Using bridge failover for lookup");
+            log.debug("Using bridge failover for lookup");
             Optional<SingleLookupReply> lookupDataOpt = bridge.find(request);
-            log.info("Found 3PID mapping: {medium: '{}', address: '{}', mxid: '{}'}",
+            log.debug("Found 3PID mapping: {medium: '{}', address: '{}', mxid: '{}'}",
                 request.getThreePid(), request.getId(), lookupDataOpt.get().getMxid().getId());
             return lookupDataOpt;
         }
 
-        log.info("No 3PID mapping found");
+        log.debug("No 3PID mapping found");
+        RequestContext.annotate("found", 0);
         return Optional.empty();
     }
 
@@ -206,42 +222,62 @@ public class RecursivePriorityLookupStrategy implements LookupStrategy {
             return CompletableFuture.completedFuture(new ArrayList<>());
         }
 
-        String payloadId = DigestUtils.md5Hex(MatrixJson.encodeCanonical(GsonUtil.makeObj(request)));
+        String payloadId = DigestUtils.md5Hex(MatrixJson.encodeCanonicalBytes(GsonUtil.makeObj(request)));
 
-        log.info("Computed Payload ID: {}", payloadId);
+        log.debug("Computed Payload ID: {}", payloadId);
         synchronized (this) {
             CompletableFuture<List<ThreePidMapping>> f = bulkLookupInProgress.get(payloadId);
             if (Objects.nonNull(f)) {
-                log.info("Returning existing future for Payload ID {}", payloadId);
+                log.debug("Returning existing future for Payload ID {}", payloadId);
                 return f;
             }
 
             bulkLookupInProgress.put(payloadId, new CompletableFuture<>());
         }
 
-        log.info("Processing Payload ID {}", payloadId);
+        log.debug("Processing Payload ID {}", payloadId);
 
         CompletableFuture<List<ThreePidMapping>> result = bulkLookupInProgress.get(payloadId);
         List<ThreePidMapping> mapToDo = new ArrayList<>(request.getMappings());
         List<ThreePidMapping> mapFoundAll = new ArrayList<>();
+        RequestContext ctx = RequestContext.current();
 
+        // Providers are asked one after the other, without blocking on those which look up asynchronously
+        CompletableFuture<Void> lookups = CompletableFuture.completedFuture(null);
         for (IThreePidProvider provider : listUsableProviders(request)) {
-            if (mapToDo.isEmpty()) {
-                log.info("No more mappings to lookup");
-                break;
-            } else {
-                log.info("{} mappings remaining overall", mapToDo.size());
-            }
+            lookups = lookups.thenCompose(v -> {
+                if (mapToDo.isEmpty()) {
+                    log.debug("No more mappings to lookup");
+                    return CompletableFuture.completedFuture(null);
+                }
 
-            log.info("Using provider {} for remaining mappings", provider.getClass().getSimpleName());
-            List<ThreePidMapping> mapFound = provider.populate(mapToDo);
-            log.info("Provider {} returned {} mappings", provider.getClass().getSimpleName(), mapFound.size());
-            mapFoundAll.addAll(mapFound);
-            mapToDo.removeAll(mapFound);
+                log.debug("{} mappings remaining overall", mapToDo.size());
+                log.debug("Using provider {} for remaining mappings", provider.getClass().getSimpleName());
+                long start = System.nanoTime();
+                return provider.populateAsync(new ArrayList<>(mapToDo))
+                    .whenComplete((mapFound, e) -> providerTime.observeSince(start, provider.getClass().getSimpleName(), "bulk"))
+                    .thenAccept(mapFound -> {
+                        log.debug("Provider {} returned {} mappings", provider.getClass().getSimpleName(), mapFound.size());
+                        mapFoundAll.addAll(mapFound);
+                        mapToDo.removeAll(mapFound);
+                    });
+            });
         }
 
-        log.info("Processed Payload ID {}", payloadId);
-        result.complete(mapFoundAll);
-        return bulkLookupInProgress.remove(payloadId);
+        lookups.whenComplete((v, e) -> {
+            bulkLookupInProgress.remove(payloadId);
+            if (Objects.nonNull(e)) {
+                result.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+                return;
+            }
+
+            log.debug("Processed Payload ID {}", payloadId);
+            if (Objects.nonNull(ctx)) {
+                ctx.put("mappings", request.getMappings().size());
+                ctx.put("found", mapFoundAll.size());
+            }
+            result.complete(mapFoundAll);
+        });
+        return result;
     }
 }
@@ -24,9 +24,12 @@ import com.google.gson.JsonObject;
 import io.kamax.matrix.json.GsonUtil;
 import io.kamax.matrix.json.InvalidJsonException;
 import io.kamax.mxisd.dns.FederationDnsOverwrite;
+import io.kamax.mxisd.metrics.CacheMetrics;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
@@ -36,18 +39,154 @@ import org.xbill.DNS.*;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
 public class HomeserverFederationResolver {
 
     private static final Logger log = LoggerFactory.getLogger(HomeserverFederationResolver.class);
 
+    // Cache durations, as recommended by the Server-Server spec for well-known
+    private static final Duration wellKnownDefaultTtl = Duration.ofHours(24);
+    private static final Duration wellKnownMaxTtl = Duration.ofHours(48);
+    private static final Duration negativeTtl = Duration.ofHours(1);
+    private static final Duration backoffMinTtl = Duration.ofMinutes(1);
+    private static final Duration staleTtl = Duration.ofMinutes(10);
+
+    // Server names come from remote parties, so the number of cached resolutions is bounded
+    public static final int DefaultMaxEntries = 10000;
+
+    /**
+     * Result of a single resolution step, with how long it can be cached.
+     */
+    public static class Step {
+
+        private final URL url;
+        private final Duration ttl;
+        private final boolean transientFailure;
+
+        private Step(URL url, Duration ttl, boolean transientFailure) {
+            this.url = url;
+            this.ttl = ttl;
+            this.transientFailure = transientFailure;
+        }
+
+        public static Step found(URL url, Duration ttl) {
+            return new Step(url, ttl, false);
+        }
+
+        public static Step notFound() {
+            return new Step(null, negativeTtl, false);
+        }
+
+        public static Step failed() {
+            return new Step(null, null, true);
+        }
+
+        Optional<URL> getUrl() {
+            return Optional.ofNullable(url);
+        }
+
+    }
+
+    private static class Resolution {
+
+        private final HomeserverTarget target;
+        private final boolean resolved;
+        private final int failures;
+        private final Instant expiresAt;
+        private final Instant staleUntil;
+
+        /**
+         * @param resolved If the target was given by well-known or SRV, instead of being the default fallback
+         * @param failures The number of transient failures in a row, for the backoff
+         */
+        Resolution(HomeserverTarget target, boolean resolved, int failures, Instant expiresAt, Instant staleUntil) {
+            this.target = target;
+            this.resolved = resolved;
+            this.failures = failures;
+            this.expiresAt = expiresAt;
+            this.staleUntil = staleUntil;
+        }
+
+    }
+
+    /**
+     * Compute how long a HTTP response can be cached, based on its <code>Cache-Control</code> and <code>Expires</code>
+     * headers.
+     *
+     * @param cacheControl The value of the <code>Cache-Control</code> header, possibly null
+     * @param expires      The value of the <code>Expires</code> header, possibly null
+     * @param now          The current time
+     * @return The TTL given by the headers, or empty if none was given
+     */
+    public static Optional<Duration> getCacheTtl(String cacheControl, String expires, Instant now) {
+        if (StringUtils.isNotBlank(cacheControl)) {
+            for (String directive : cacheControl.toLowerCase().split(",")) {
+                String[] kv = directive.trim().split("=", 2);
+                String name = kv[0].trim();
+                if (StringUtils.equalsAny(name, "no-store", "no-cache")) {
+                    return Optional.of(Duration.ZERO);
+                }
+
+                if (StringUtils.equals(name, "max-age") && kv.length == 2) {
+                    try {
+                        return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(kv[1].trim().replace("\"", "")))));
+                    } catch (NumberFormatException e) {
+                        log.debug("Invalid max-age value: {}", kv[1]);
+                    }
+                }
+            }
+        }
+
+        if (StringUtils.isNotBlank(expires)) {
+            Date date = DateUtils.parseDate(expires);
+            if (Objects.isNull(date)) {
+                // Invalid dates mean already expired as per RFC 7234
+                return Optional.of(Duration.ZERO);
+            }
+
+            Duration ttl = Duration.between(now, date.toInstant());
+            return Optional.of(ttl.isNegative() ? Duration.ZERO : ttl);
+        }
+
+        return Optional.empty();
+    }
+
+    private static Duration min(Duration d1, Duration d2) {
+        return d1.compareTo(d2) <= 0 ? d1 : d2;
+    }
+
     private FederationDnsOverwrite dns;
     private CloseableHttpClient client;
+    private final int maxEntries;
+
+    private final Map<String, Resolution> cache = new ConcurrentHashMap<>();
+    // Only holds resolutions being computed, so it is bounded by the resolving threads and the refresh queue
+    private final Map<String, CompletableFuture<Resolution>> inFlight = new ConcurrentHashMap<>();
+    // Refreshes which do not fit in the queue are dropped, the stale entry is served until the next attempt
+    private final ThreadPoolExecutor refresher = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(100), r -> {
+        Thread t = new Thread(r, "homeserver-resolver-refresh");
+        t.setDaemon(true);
+        return t;
+    }, new ThreadPoolExecutor.DiscardPolicy());
 
     public HomeserverFederationResolver(FederationDnsOverwrite dns, CloseableHttpClient client) {
+        this(dns, client, DefaultMaxEntries);
+    }
+
+    public HomeserverFederationResolver(FederationDnsOverwrite dns, CloseableHttpClient client, int maxEntries) {
         this.dns = dns;
         this.client = client;
+        this.maxEntries = maxEntries;
+    }
+
+    protected Instant now() {
+        return Instant.now();
     }
 
     private String getDefaultScheme() {
@@ -108,7 +247,7 @@ public class HomeserverFederationResolver {
         return Optional.empty();
     }
 
-    private Optional<URL> resolveWellKnown(String domain) {
+    protected Step resolveWellKnown(String domain) {
         log.debug("Performing Well-known lookup for {}", domain);
         HttpGet wnReq = new HttpGet("https://" + domain + "/.well-known/matrix/server");
         try (CloseableHttpResponse wnRes = client.execute(wnReq)) {
@@ -119,7 +258,12 @@ public class HomeserverFederationResolver {
                     String server = GsonUtil.getStringOrNull(body, "m.server");
                     if (StringUtils.isNotBlank(server)) {
                         log.debug("Found well-known entry: {}", server);
-                        return Optional.of(build(server));
+                        Duration ttl = getCacheTtl(
+                                Optional.ofNullable(wnRes.getFirstHeader("Cache-Control")).map(Header::getValue).orElse(null),
+                                Optional.ofNullable(wnRes.getFirstHeader("Expires")).map(Header::getValue).orElse(null),
+                                now()
+                        ).orElse(wellKnownDefaultTtl);
+                        return Step.found(build(server), min(ttl, wellKnownMaxTtl));
                     }
                 } catch (InvalidJsonException e) {
                     log.info("Could not parse well-known resource: {}", e.getMessage());
@@ -128,25 +272,26 @@ public class HomeserverFederationResolver {
                 log.info("Well-known did not return status code 200 but {}, ignoring", status);
             }
 
-            return Optional.empty();
+            return Step.notFound();
         } catch (IOException e) {
             log.info("Error while trying to lookup well-known for " + domain);
             log.trace("Error while trying to lookup well-known for " + domain, e);
-            return Optional.empty();
+            return Step.failed();
         }
     }
 
-    private Optional<URL> resolveDnsSrv(String domain) {
+    protected Step resolveDnsSrv(String domain) {
         log.debug("Performing SRV lookup for {}", domain);
         String lookupDns = buildSrvRecordName(domain);
         log.debug("Lookup name: {}", lookupDns);
 
         try {
             List<SRVRecord> srvRecords = new ArrayList<>();
-            Record[] rawRecords = new Lookup(lookupDns, Type.SRV).run();
+            Lookup lookup = new Lookup(lookupDns, Type.SRV);
+            Record[] rawRecords = lookup.run();
             if (Objects.isNull(rawRecords) || rawRecords.length == 0) {
                 log.debug("No SRV record for {}", domain);
-                return Optional.empty();
+                return lookup.getResult() == Lookup.TRY_AGAIN ? Step.failed() : Step.notFound();
             }
 
             for (Record record : rawRecords) {
@@ -159,17 +304,18 @@ public class HomeserverFederationResolver {
 
             if (srvRecords.size() < 1) {
                 log.warn("DNS SRV records were found for {} but none is usable", lookupDns);
-                return Optional.empty();
+                return Step.notFound();
             }
 
             srvRecords.sort(Comparator.comparingInt(SRVRecord::getPriority));
             SRVRecord record = srvRecords.get(0);
-            return Optional.of(build(record.getTarget().toString(true) + ":" + record.getPort()));
+            long ttl = srvRecords.stream().mapToLong(Record::getTTL).min().orElse(0);
+            return Step.found(build(record.getTarget().toString(true) + ":" + record.getPort()), Duration.ofSeconds(ttl));
         } catch (TextParseException e) {
             log.warn("Unable to perform DNS SRV query for {}: {}", lookupDns, e.getMessage());
         }
 
-        return Optional.empty();
+        return Step.notFound();
     }
 
     public URL build(String authority) {
@@ -180,6 +326,102 @@ public class HomeserverFederationResolver {
         }
     }
 
+    private Resolution resolveUncached(String domain, Resolution previous) {
+        Duration ttl;
+        HomeserverTarget target;
+        boolean resolved = true;
+        boolean transientFailure;
+
+        Step s3 = resolveWellKnown(domain);
+        if (s3.getUrl().isPresent()) {
+            URL dest = s3.getUrl().get();
+            log.info("Resolution of {} via well-known to {}", domain, dest);
+            ttl = s3.ttl;
+            target = new HomeserverTarget(dest.getHost(), dest);
+            transientFailure = false;
+        } else {
+            // The domain needs to be resolved
+            Step s4 = resolveDnsSrv(domain);
+            transientFailure = s3.transientFailure || s4.transientFailure;
+            if (s4.getUrl().isPresent()) {
+                URL dest = s4.getUrl().get();
+                log.info("Resolution of {} via DNS SRV record to {}", domain, dest);
+                ttl = s3.transientFailure ? s4.ttl : min(s3.ttl, s4.ttl);
+                target = new HomeserverTarget(domain, dest);
+            } else if (transientFailure && Objects.nonNull(previous) && previous.resolved) {
+                // The failure may have hidden the well-known or SRV record, the last known destination is a better guess
+                log.info("Resolution of {} failed, keeping previous destination {}", domain, previous.target.getUrl());
+                ttl = negativeTtl;
+                target = previous.target;
+            } else {
+                URL dest = build(domain + ":" + getDefaultPort());
+                log.info("Resolution of {} to {}", domain, dest);
+                ttl = negativeTtl;
+                target = new HomeserverTarget(dest.getHost(), dest);
+                resolved = false;
+            }
+        }
+
+        int failures = 0;
+        if (transientFailure) {
+            // We back off exponentially on errors that could be temporary, so the next attempt comes sooner
+            failures = (Objects.isNull(previous) ? 0 : previous.failures) + 1;
+            Duration backoff = backoffMinTtl.multipliedBy(1L << Math.min(failures - 1, 6));
+            ttl = min(ttl, min(backoff, negativeTtl));
+        }
+
+        log.debug("Caching resolution of {} for {}", domain, ttl);
+        Instant expiresAt = now().plus(ttl);
+        return new Resolution(target, resolved, failures, expiresAt, ttl.isZero() ? expiresAt : expiresAt.plus(staleTtl));
+    }
+
+    private void put(String domain, Resolution resolution) {
+        cache.put(domain, resolution);
+        if (cache.size() <= maxEntries) {
+            return;
+        }
+
+        synchronized (cache) {
+            if (cache.size() <= maxEntries) {
+                return;
+            }
+
+            Instant now = now();
+            cache.values().removeIf(r -> !now.isBefore(r.staleUntil));
+            int excess = cache.size() - (maxEntries - maxEntries / 10);
+            if (excess > 0) {
+                log.info("More than {} homeserver resolutions cached, forgetting the {} closest to expiry", maxEntries, excess);
+                cache.entrySet().stream()
+                    .sorted(Comparator.comparing(e -> e.getValue().expiresAt))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList())
+                    .forEach(cache::remove);
+            }
+        }
+    }
+
+    private CompletableFuture<Resolution> lookup(String domain) {
+        CompletableFuture<Resolution> future = new CompletableFuture<>();
+        CompletableFuture<Resolution> existing = inFlight.putIfAbsent(domain, future);
+        if (Objects.nonNull(existing)) {
+            log.debug("Resolution of {} already in progress, waiting on it", domain);
+            return existing;
+        }
+
+        try {
+            Resolution resolution = resolveUncached(domain, cache.get(domain));
+            put(domain, resolution);
+            future.complete(resolution);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(domain, future);
+        }
+
+        return future;
+    }
+
     public HomeserverTarget resolve(String domain) {
         Optional<URL> s1 = resolveOverwrite(domain);
         if (s1.isPresent()) {
@@ -195,24 +437,43 @@ public class HomeserverFederationResolver {
             return new HomeserverTarget(dest.getHost(), dest);
         }
 
-        Optional<URL> s3 = resolveWellKnown(domain);
-        if (s3.isPresent()) {
-            URL dest = s3.get();
-            log.info("Resolution of {} via well-known to {}", domain, dest);
-            return new HomeserverTarget(dest.getHost(), dest);
+        Instant now = now();
+        Resolution cached = cache.get(domain);
+        if (Objects.nonNull(cached)) {
+            if (now.isBefore(cached.expiresAt)) {
+                CacheMetrics.hit("hs_federation");
+                log.debug("Resolution of {} from cache to {}", domain, cached.target.getUrl());
+                return cached.target;
+            }
+
+            if (now.isBefore(cached.staleUntil)) {
+                CacheMetrics.hit("hs_federation");
+                log.debug("Resolution of {} from stale cache to {}, refreshing in background", domain, cached.target.getUrl());
+                if (!inFlight.containsKey(domain)) {
+                    refresher.execute(() -> lookup(domain));
+                }
+                return cached.target;
+            }
         }
-        // The domain needs to be resolved
 
-        Optional<URL> s4 = resolveDnsSrv(domain);
-        if (s4.isPresent()) {
-            URL dest = s4.get();
-            log.info("Resolution of {} via DNS SRV record to {}", domain, dest);
-            return new HomeserverTarget(domain, dest);
+        CacheMetrics.miss("hs_federation");
+        try {
+            return lookup(domain).join().target;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw e;
         }
+    }
+
+    public int getCachedCount() {
+        return cache.size();
+    }
 
-        URL dest = build(domain + ":" + getDefaultPort());
-        log.info("Resolution of {} to {}", domain, dest);
-        return new HomeserverTarget(dest.getHost(), dest);
+    public void stop() {
+        refresher.shutdownNow();
     }
 
     public static class HomeserverTarget {
@@ -0,0 +1,19 @@
+package io.kamax.mxisd.metrics;
+
+/**
+ * Hit and miss counts of the in-process caches, from which hit ratios can be derived.
+ */
+public class CacheMetrics {
+
+    private static final Counter requests = MetricRegistry.get().counter("cache_requests_total",
+        "Cache lookups by cache and result", "cache", "result");
+
+    public static void hit(String cache) {
+        requests.inc(cache, "hit");
+    }
+
+    public static void miss(String cache) {
+        requests.inc(cache, "miss");
+    }
+
+}
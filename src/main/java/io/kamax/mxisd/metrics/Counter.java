@@ -0,0 +1,42 @@
+package io.kamax.mxisd.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count.
+ */
+public class Counter extends Metric<LongAdder> {
+
+    Counter(String name, String help, String... labelNames) {
+        super(name, help, labelNames);
+    }
+
+    @Override
+    protected String getType() {
+        return "counter";
+    }
+
+    @Override
+    protected LongAdder newChild() {
+        return new LongAdder();
+    }
+
+    public void inc(String... labelValues) {
+        child(labelValues).increment();
+    }
+
+    public void inc(long amount, String... labelValues) {
+        child(labelValues).add(amount);
+    }
+
+    public long get(String... labelValues) {
+        return child(labelValues).sum();
+    }
+
+    @Override
+    protected void write(StringBuilder b, List<String> labelValues, LongAdder child) {
+        writeSample(b, "", labelValues, null, null, child.sum());
+    }
+
+}
@@ -0,0 +1,78 @@
+package io.kamax.mxisd.metrics;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A value that can go up and down, either maintained directly or read from a supplier when scraped.
+ */
+public class Gauge extends Metric<Gauge.Child> {
+
+    public static class Child {
+
+        private final AtomicLong value = new AtomicLong();
+        private volatile Supplier<? extends Number> supplier;
+
+        public double get() {
+            Supplier<? extends Number> s = supplier;
+            if (Objects.nonNull(s)) {
+                Number n = s.get();
+                return Objects.isNull(n) ? Double.NaN : n.doubleValue();
+            }
+
+            return value.get();
+        }
+
+    }
+
+    Gauge(String name, String help, String... labelNames) {
+        super(name, help, labelNames);
+    }
+
+    @Override
+    protected String getType() {
+        return "gauge";
+    }
+
+    @Override
+    protected Child newChild() {
+        return new Child();
+    }
+
+    public void inc(String... labelValues) {
+        child(labelValues).value.incrementAndGet();
+    }
+
+    public void dec(String... labelValues) {
+        child(labelValues).value.decrementAndGet();
+    }
+
+    public void set(long value, String... labelValues) {
+        child(labelValues).value.set(value);
+    }
+
+    /**
+     * Reads the value from the supplier each time metrics are collected.
+     */
+    public void track(Supplier<? extends Number> supplier, String... labelValues) {
+        child(labelValues).supplier = supplier;
+    }
+
+    public double get(String... labelValues) {
+        return child(labelValues).get();
+    }
+
+    @Override
+    protected void write(StringBuilder b, List<String> labelValues, Child child) {
+        double value;
+        try {
+            value = child.get();
+        } catch (RuntimeException e) {
+            value = Double.NaN;
+        }
+        writeSample(b, "", labelValues, null, null, value);
+    }
+
+}
@@ -0,0 +1,90 @@
+package io.kamax.mxisd.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observations in cumulative buckets, with their sum and count.
+ */
+public class Histogram extends Metric<Histogram.Child> {
+
+    // In seconds, from 1ms to 10s
+    public static final double[] LatencyBuckets = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    public class Child {
+
+        private final LongAdder[] buckets = new LongAdder[bounds.length];
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        Child() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getSum() {
+            return sum.sum();
+        }
+
+    }
+
+    private final double[] bounds;
+
+    Histogram(String name, String help, double[] bounds, String... labelNames) {
+        super(name, help, labelNames);
+        this.bounds = bounds.clone();
+    }
+
+    @Override
+    protected String getType() {
+        return "histogram";
+    }
+
+    @Override
+    protected Child newChild() {
+        return new Child();
+    }
+
+    public void observe(double value, String... labelValues) {
+        Child child = child(labelValues);
+        for (int i = 0; i < bounds.length; i++) {
+            if (value <= bounds[i]) {
+                child.buckets[i].increment();
+                break;
+            }
+        }
+        child.count.increment();
+        child.sum.add(value);
+    }
+
+    /**
+     * Observes the time elapsed since the given {@link System#nanoTime()} value, in seconds.
+     */
+    public void observeSince(long startNanos, String... labelValues) {
+        observe((System.nanoTime() - startNanos) / 1e9, labelValues);
+    }
+
+    public Child get(String... labelValues) {
+        return child(labelValues);
+    }
+
+    @Override
+    protected void write(StringBuilder b, List<String> labelValues, Child child) {
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += child.buckets[i].sum();
+            writeSample(b, "_bucket", labelValues, "le", format(bounds[i]), cumulative);
+        }
+        long count = child.count.sum();
+        writeSample(b, "_bucket", labelValues, "le", "+Inf", count);
+        writeSample(b, "_sum", labelValues, null, null, child.sum.sum());
+        writeSample(b, "_count", labelValues, null, null, count);
+    }
+
+}
@@ -0,0 +1,122 @@
+package io.kamax.mxisd.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A named metric family, with one child per combination of label values.
+ *
+ * @param <T> The type of the children
+ */
+public abstract class Metric<T> {
+
+    private final String name;
+    private final String help;
+    private final List<String> labelNames;
+    private final Map<List<String>, T> children = new ConcurrentHashMap<>();
+
+    protected Metric(String name, String help, String... labelNames) {
+        this.name = name;
+        this.help = help;
+        this.labelNames = Collections.unmodifiableList(Arrays.asList(labelNames));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public List<String> getLabelNames() {
+        return labelNames;
+    }
+
+    protected abstract String getType();
+
+    protected abstract T newChild();
+
+    protected abstract void write(StringBuilder b, List<String> labelValues, T child);
+
+    protected T child(String... labelValues) {
+        if (labelValues.length != labelNames.size()) {
+            throw new IllegalArgumentException("Metric " + name + " expects " + labelNames.size() + " label values, got " + labelValues.length);
+        }
+
+        return children.computeIfAbsent(Arrays.asList(labelValues), k -> newChild());
+    }
+
+    public void remove(String... labelValues) {
+        children.remove(Arrays.asList(labelValues));
+    }
+
+    void write(StringBuilder b) {
+        b.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        b.append("# TYPE ").append(name).append(' ').append(getType()).append('\n');
+        children.forEach((labelValues, child) -> write(b, labelValues, child));
+    }
+
+    protected void writeSample(StringBuilder b, String suffix, List<String> labelValues, String extraLabel, String extraValue, double value) {
+        b.append(name).append(suffix);
+        if (!labelNames.isEmpty() || extraLabel != null) {
+            b.append('{');
+            for (int i = 0; i < labelNames.size(); i++) {
+                if (i > 0) {
+                    b.append(',');
+                }
+                appendLabel(b, labelNames.get(i), labelValues.get(i));
+            }
+            if (extraLabel != null) {
+                if (!labelNames.isEmpty()) {
+                    b.append(',');
+                }
+                appendLabel(b, extraLabel, extraValue);
+            }
+            b.append('}');
+        }
+        b.append(' ').append(format(value)).append('\n');
+    }
+
+    private static void appendLabel(StringBuilder b, String name, String value) {
+        b.append(name).append("=\"");
+        String v = value == null ? "" : value;
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            switch (c) {
+                case '\\':
+                    b.append("\\\\");
+                    break;
+                case '"':
+                    b.append("\\\"");
+                    break;
+                case '\n':
+                    b.append("\\n");
+                    break;
+                default:
+                    b.append(c);
+            }
+        }
+        b.append('"');
+    }
+
+    static String format(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        }
+
+        if (value == Double.NEGATIVE_INFINITY) {
+            return "-Inf";
+        }
+
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+
+        return Double.toString(value);
+    }
+
+}
@@ -0,0 +1,56 @@
+package io.kamax.mxisd.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Holds all metrics of the process and renders them in the Prometheus text exposition format.
+ * <p>
+ * Metrics are meant to be declared once, usually as static fields of the class that updates them. Declaring the same
+ * name again returns the existing metric.
+ */
+public class MetricRegistry {
+
+    public static final String Prefix = "mxisd_";
+
+    private static final MetricRegistry registry = new MetricRegistry();
+
+    public static MetricRegistry get() {
+        return registry;
+    }
+
+    private final Map<String, Metric<?>> metrics = new ConcurrentSkipListMap<>();
+
+    private <T extends Metric<?>> T register(String name, Class<T> type, Supplier<T> creator) {
+        Metric<?> metric = metrics.computeIfAbsent(Prefix + name, k -> creator.get());
+        if (!type.isInstance(metric)) {
+            throw new IllegalStateException("Metric " + metric.getName() + " is already registered as a " + metric.getType());
+        }
+
+        return type.cast(metric);
+    }
+
+    public Counter counter(String name, String help, String... labelNames) {
+        return register(name, Counter.class, () -> new Counter(Prefix + name, help, labelNames));
+    }
+
+    public Gauge gauge(String name, String help, String... labelNames) {
+        return register(name, Gauge.class, () -> new Gauge(Prefix + name, help, labelNames));
+    }
+
+    public Histogram histogram(String name, String help, String... labelNames) {
+        return histogram(name, help, Histogram.LatencyBuckets, labelNames);
+    }
+
+    public Histogram histogram(String name, String help, double[] buckets, String... labelNames) {
+        return register(name, Histogram.class, () -> new Histogram(Prefix + name, help, buckets, labelNames));
+    }
+
+    public String scrape() {
+        StringBuilder b = new StringBuilder();
+        metrics.values().forEach(m -> m.write(b));
+        return b.toString();
+    }
+
+}
@@ -25,6 +25,9 @@ import io.kamax.mxisd.config.threepid.notification.NotificationConfig;
 import io.kamax.mxisd.exception.NotImplementedException;
 import io.kamax.mxisd.invitation.IMatrixIdInvite;
 import io.kamax.mxisd.invitation.IThreePidInviteReply;
+import io.kamax.mxisd.metrics.Gauge;
+import io.kamax.mxisd.metrics.Histogram;
+import io.kamax.mxisd.metrics.MetricRegistry;
 import io.kamax.mxisd.threepid.session.IThreePidSession;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -33,11 +36,18 @@ import org.slf4j.LoggerFactory;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class NotificationManager {
 
     private transient final Logger log = LoggerFactory.getLogger(NotificationManager.class);
 
+    // Notifications are sent synchronously, so those in flight are the effective queue
+    private static final Gauge inFlight = MetricRegistry.get().gauge("notification_in_flight",
+        "Notifications currently being sent", "medium");
+    private static final Histogram sendTime = MetricRegistry.get().histogram("notification_duration_seconds",
+        "Time taken to send notifications", "medium", "type");
+
     private Map<String, NotificationHandler> handlers;
 
     public NotificationManager(NotificationConfig cfg, List<NotificationHandler> handlers) {
@@ -66,20 +76,32 @@ public class NotificationManager {
         return handlers.containsKey(medium);
     }
 
+    private void send(String medium, String type, Consumer<NotificationHandler> sender) {
+        NotificationHandler handler = ensureMedium(medium);
+        inFlight.inc(medium);
+        long start = System.nanoTime();
+        try {
+            sender.accept(handler);
+        } finally {
+            sendTime.observeSince(start, medium, type);
+            inFlight.dec(medium);
+        }
+    }
+
     public void sendForInvite(IMatrixIdInvite invite) {
-        ensureMedium(invite.getMedium()).sendForInvite(invite);
+        send(invite.getMedium(), "invite", h -> h.sendForInvite(invite));
     }
 
     public void sendForReply(IThreePidInviteReply invite) {
-        ensureMedium(invite.getInvite().getMedium()).sendForReply(invite);
+        send(invite.getInvite().getMedium(), "reply", h -> h.sendForReply(invite));
     }
 
     public void sendForValidation(IThreePidSession session) {
-        ensureMedium(session.getThreePid().getMedium()).sendForValidation(session);
+        send(session.getThreePid().getMedium(), "validation", h -> h.sendForValidation(session));
     }
 
     public void sendForUnbind(ThreePid tpid) throws NotImplementedException {
-        ensureMedium(tpid.getMedium()).sendForUnbind(tpid);
+        send(tpid.getMedium(), "unbind", h -> h.sendForUnbind(tpid));
     }
 
 }
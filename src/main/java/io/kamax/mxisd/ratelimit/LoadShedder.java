@@ -0,0 +1,55 @@
+package io.kamax.mxisd.ratelimit;
+
+import io.kamax.mxisd.metrics.Counter;
+import io.kamax.mxisd.metrics.MetricRegistry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rejects requests once too many are waiting for or running on a worker thread, so an overload is answered quickly
+ * instead of piling up behind slow backends until they time out.
+ */
+public class LoadShedder {
+
+    private static final Counter shed = MetricRegistry.get().counter("requests_shed_total",
+        "Requests rejected because the server was saturated", "route");
+
+    private final int maxInFlight;
+    private final long retryAfterMs;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public LoadShedder(int maxInFlight, long retryAfterMs) {
+        this.maxInFlight = maxInFlight;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return <code>true</code> if the request can be handled, in which case {@link #leave()} must be called once done
+     */
+    public boolean tryEnter(String route) {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                shed.inc(route);
+                return false;
+            }
+
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void leave() {
+        inFlight.decrementAndGet();
+    }
+
+}
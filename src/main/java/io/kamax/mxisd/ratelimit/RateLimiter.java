@@ -0,0 +1,172 @@
+package io.kamax.mxisd.ratelimit;
+
+import io.kamax.mxisd.config.RateLimitConfig;
+import io.kamax.mxisd.metrics.Counter;
+import io.kamax.mxisd.metrics.MetricRegistry;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Enforces the per-client budgets of {@link RateLimitConfig} with one token bucket per rule and client.
+ * <p>
+ * The number of clients tracked per rule is bounded: when it is reached, buckets which are full again are dropped, then
+ * the least recently used ones if that is not enough.
+ * <p>
+ * Access tokens are only used as client identifiers once they have been verified, see {@link #addVerifiedToken(String)},
+ * so sending a new random token with each request does not give a new budget.
+ */
+public class RateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimiter.class);
+
+    private static final Counter limited = MetricRegistry.get().counter("rate_limited_total",
+        "Requests rejected because a client exceeded its budget", "route", "key");
+
+    private static class Limit {
+
+        private final RateLimitConfig.Rule rule;
+        private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+        private Limit(RateLimitConfig.Rule rule) {
+            this.rule = rule;
+        }
+
+    }
+
+    private final int maxKeys;
+    private final Map<String, List<Limit>> limits = new HashMap<>();
+    private final Map<String, Boolean> verifiedTokens;
+    private final TrustedProxies proxies;
+
+    public RateLimiter(RateLimitConfig cfg) {
+        this.maxKeys = cfg.getMaxKeys();
+        this.proxies = new TrustedProxies(cfg.getTrustedProxies());
+        this.verifiedTokens = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxKeys;
+            }
+        });
+        if (!cfg.isEnabled()) {
+            return;
+        }
+
+        for (RateLimitConfig.Rule rule : cfg.getRules()) {
+            Limit limit = new Limit(rule);
+            for (String route : rule.getRoutes()) {
+                limits.computeIfAbsent(route, k -> new ArrayList<>()).add(limit);
+            }
+        }
+    }
+
+    private List<Limit> getLimits(String route) {
+        return limits.getOrDefault(route, Collections.emptyList());
+    }
+
+    public boolean isEnabled() {
+        return !limits.isEmpty();
+    }
+
+    /**
+     * @see TrustedProxies#getClient(String, String)
+     */
+    public String getClient(String peer, String forwardedFor) {
+        return proxies.getClient(peer, forwardedFor);
+    }
+
+    public boolean has(String route, RateLimitConfig.Key key) {
+        return getLimits(route).stream().anyMatch(l -> l.rule.getKey() == key);
+    }
+
+    private String hashToken(String token) {
+        return DigestUtils.sha256Hex(token);
+    }
+
+    /**
+     * Records an access token as valid, so further requests with it get their own budget for rules keyed by token.
+     *
+     * @param token The access token, once verified
+     */
+    public void addVerifiedToken(String token) {
+        if (isEnabled()) {
+            verifiedTokens.put(hashToken(token), Boolean.TRUE);
+        }
+    }
+
+    /**
+     * @param token The access token of a request, verified or not
+     * @return The client identifier to use for rules keyed by token, if the token is known to be valid
+     */
+    public Optional<String> findVerifiedToken(String token) {
+        String hash = hashToken(token);
+        return verifiedTokens.containsKey(hash) ? Optional.of(hash) : Optional.empty();
+    }
+
+    private void trim(Limit limit, long now) {
+        if (limit.buckets.size() < maxKeys) {
+            return;
+        }
+
+        synchronized (limit) {
+            if (limit.buckets.size() < maxKeys) {
+                return;
+            }
+
+            limit.buckets.values().removeIf(b -> b.isFull(now));
+            int excess = limit.buckets.size() - (maxKeys - maxKeys / 10) + 1;
+            if (excess > 0) {
+                log.warn("More than {} clients are limited on {}, forgetting the {} least recent", maxKeys, limit.rule.getRoutes(), excess);
+                limit.buckets.entrySet().stream()
+                    .sorted(Comparator.comparingLong(e -> e.getValue().getLastUsed()))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList())
+                    .forEach(limit.buckets::remove);
+            }
+        }
+    }
+
+    /**
+     * Takes a token from every bucket of the client for rules of the route with the given key.
+     *
+     * @param route  The path template of the request
+     * @param key    The kind of client identifier
+     * @param client The client identifier
+     * @return 0 if the request is allowed, or the number of milliseconds to wait before retrying
+     */
+    public long acquire(String route, RateLimitConfig.Key key, String client) {
+        long wait = 0;
+        long now = System.nanoTime();
+        for (Limit limit : getLimits(route)) {
+            if (limit.rule.getKey() != key) {
+                continue;
+            }
+
+            TokenBucket bucket = limit.buckets.get(client);
+            if (bucket == null) {
+                trim(limit, now);
+                bucket = limit.buckets.computeIfAbsent(client, k -> new TokenBucket(limit.rule.getRate(), limit.rule.getBurst(), now));
+            }
+            wait = Math.max(wait, bucket.tryAcquire(now));
+        }
+
+        if (wait > 0) {
+            limited.inc(route, key.name());
+        }
+
+        return wait;
+    }
+
+}
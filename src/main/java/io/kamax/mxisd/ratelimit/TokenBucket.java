@@ -0,0 +1,62 @@
+package io.kamax.mxisd.ratelimit;
+
+/**
+ * Holds up to <code>burst</code> tokens, refilled at <code>rate</code> tokens per second. Each request takes one.
+ */
+public class TokenBucket {
+
+    private final double rate;
+    private final double burst;
+    private double tokens;
+    private long lastNanos;
+    private volatile long lastUsedNanos;
+
+    public TokenBucket(double rate, int burst, long nowNanos) {
+        this.rate = rate;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastNanos = nowNanos;
+        this.lastUsedNanos = nowNanos;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * rate / 1e9);
+            lastNanos = nowNanos;
+        }
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @param nowNanos The current {@link System#nanoTime()}
+     * @return 0 if a token was taken, or the number of milliseconds until one is available
+     */
+    public synchronized long tryAcquire(long nowNanos) {
+        lastUsedNanos = nowNanos;
+        refill(nowNanos);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+
+        return Math.max(1, (long) Math.ceil((1 - tokens) * 1000 / rate));
+    }
+
+    /**
+     * @return The {@link System#nanoTime()} of the last request which used the bucket
+     */
+    public long getLastUsed() {
+        return lastUsedNanos;
+    }
+
+    /**
+     * @return If the bucket is full, meaning it can be dropped and created again without changing the outcome
+     */
+    public synchronized boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= burst;
+    }
+
+}
@@ -0,0 +1,89 @@
+package io.kamax.mxisd.ratelimit;
+
+import edazdarevic.commons.net.CIDRUtils;
+import io.kamax.mxisd.exception.ConfigurationException;
+import org.apache.commons.lang.StringUtils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Reverse proxies allowed to report the address of the client they forward requests for.
+ * <p>
+ * The client is the last address of <code>X-Forwarded-For</code> which is not a trusted proxy, walking back from the
+ * direct peer. Only trusted proxies are believed, so clients cannot choose their address by sending the header
+ * themselves.
+ */
+public class TrustedProxies {
+
+    private static final Pattern Ipv4Literal = Pattern.compile("[0-9]{1,3}(\\.[0-9]{1,3}){3}");
+
+    private final List<CIDRUtils> ranges = new ArrayList<>();
+
+    /**
+     * @param proxies Addresses or CIDR ranges
+     */
+    public TrustedProxies(List<String> proxies) {
+        for (String proxy : proxies) {
+            try {
+                String range = proxy;
+                if (!range.contains("/")) {
+                    range += InetAddress.getByName(range).getAddress().length == 4 ? "/32" : "/128";
+                }
+                ranges.add(new CIDRUtils(range));
+            } catch (UnknownHostException | IllegalArgumentException e) {
+                throw new ConfigurationException("server.rateLimit.trustedProxies", "Invalid address or CIDR range: " + proxy);
+            }
+        }
+    }
+
+    // Only literal addresses, forwarded values must never trigger a DNS lookup
+    private boolean isTrusted(String address) {
+        if (!Ipv4Literal.matcher(address).matches() && !address.contains(":")) {
+            return false;
+        }
+
+        for (CIDRUtils range : ranges) {
+            try {
+                if (range.isInRange(address)) {
+                    return true;
+                }
+            } catch (UnknownHostException | RuntimeException e) {
+                // Not a valid address or not of the same family, cannot be in range
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param peer         The address of the direct peer
+     * @param forwardedFor The value of the <code>X-Forwarded-For</code> header, if any
+     * @return The address of the client
+     */
+    public String getClient(String peer, String forwardedFor) {
+        if (ranges.isEmpty() || StringUtils.isBlank(forwardedFor) || !isTrusted(peer)) {
+            return peer;
+        }
+
+        String client = peer;
+        String[] hops = forwardedFor.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (hop.isEmpty()) {
+                continue;
+            }
+
+            client = hop;
+            if (!isTrusted(hop)) {
+                break;
+            }
+        }
+
+        return client;
+    }
+
+}
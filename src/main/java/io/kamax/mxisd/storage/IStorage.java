@@ -27,6 +27,7 @@ import io.kamax.mxisd.lookup.ThreePidMapping;
 import io.kamax.mxisd.storage.dao.IThreePidSessionDao;
 import io.kamax.mxisd.storage.ormlite.dao.ASTransactionDao;
 import io.kamax.mxisd.storage.ormlite.dao.AccountDao;
+import io.kamax.mxisd.storage.ormlite.dao.KeyDao;
 import io.kamax.mxisd.storage.ormlite.dao.ThreePidInviteIO;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -73,5 +74,27 @@ public interface IStorage {
 
     void addHash(String mxid, String medium, String address, String hash);
 
+    void deleteHash(String hash);
+
     Collection<Pair<String, ThreePidMapping>> findHashes(Iterable<String> hashes);
+
+    List<KeyDao> getKeys(String type);
+
+    Optional<KeyDao> getKey(String type, String algorithm, String serial);
+
+    Optional<KeyDao> findKeyByPublicKey(String type, String publicKey);
+
+    void insertKey(KeyDao key);
+
+    void updateKey(KeyDao key);
+
+    void deleteKey(String type, String algorithm, String serial);
+
+    void setCurrentKey(String type, String algorithm, String serial);
+
+    Optional<KeyDao> getCurrentKey();
+
+    default void close() {
+        // no-op
+    }
 }
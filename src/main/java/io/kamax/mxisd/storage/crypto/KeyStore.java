@@ -20,6 +20,7 @@
 
 package io.kamax.mxisd.storage.crypto;
 
+import io.kamax.mxisd.crypto.CryptoFactory;
 import io.kamax.mxisd.crypto.Key;
 import io.kamax.mxisd.crypto.KeyIdentifier;
 import io.kamax.mxisd.crypto.KeyType;
@@ -65,6 +66,26 @@ public interface KeyStore {
      */
     Key get(KeyIdentifier id) throws ObjectNotFoundException;
 
+    /**
+     * Find the key of a given type that matches a public key.
+     * <p>
+     * The default implementation computes the public key of every key of that type. Stores able to index public keys
+     * should override it.
+     *
+     * @param type            The type to filter on
+     * @param publicKeyBase64 The public key, encoded as unpadded Base64
+     * @return The identifier of the matching key, if any
+     */
+    default Optional<KeyIdentifier> findByPublicKey(KeyType type, String publicKeyBase64) {
+        for (KeyIdentifier id : list(type)) {
+            if (CryptoFactory.getPublicKeyBase64(get(id)).map(publicKeyBase64::equals).orElse(false)) {
+                return Optional.of(id);
+            }
+        }
+
+        return Optional.empty();
+    }
+
     /**
      * Add a key to the store
      *
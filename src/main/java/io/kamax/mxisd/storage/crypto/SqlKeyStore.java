@@ -0,0 +1,135 @@
+/*
+ * mxisd - Matrix Identity Server Daemon
+ * Copyright (C) 2019 Kamax Sàrl
+ *
+ * https://www.kamax.io/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.kamax.mxisd.storage.crypto;
+
+import io.kamax.mxisd.crypto.*;
+import io.kamax.mxisd.exception.ObjectNotFoundException;
+import io.kamax.mxisd.storage.IStorage;
+import io.kamax.mxisd.storage.ormlite.dao.KeyDao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Key store backed by the internal database, allowing several instances to share the same set of keys.
+ * <p>
+ * Public keys are stored next to private keys so lookups by public key do not require to load every key.
+ */
+public class SqlKeyStore implements KeyStore {
+
+    private final IStorage storage;
+
+    public SqlKeyStore(IStorage storage) {
+        this.storage = storage;
+    }
+
+    private KeyIdentifier toId(KeyDao dao) {
+        return new GenericKeyIdentifier(KeyType.valueOf(dao.getType()), dao.getAlgorithm(), dao.getSerial());
+    }
+
+    private Optional<KeyDao> find(KeyIdentifier id) {
+        return storage.getKey(id.getType().name(), id.getAlgorithm(), id.getSerial());
+    }
+
+    private KeyDao findOrThrow(KeyIdentifier id) {
+        return find(id).orElseThrow(() -> new ObjectNotFoundException("Key", id.getId()));
+    }
+
+    @Override
+    public boolean has(KeyIdentifier id) {
+        return find(id).isPresent();
+    }
+
+    @Override
+    public List<KeyIdentifier> list() {
+        List<KeyIdentifier> keyIds = new ArrayList<>();
+
+        for (KeyType type : KeyType.values()) {
+            keyIds.addAll(list(type));
+        }
+
+        return keyIds;
+    }
+
+    @Override
+    public List<KeyIdentifier> list(KeyType type) {
+        return storage.getKeys(type.name()).stream().map(this::toId).collect(Collectors.toList());
+    }
+
+    @Override
+    public Key get(KeyIdentifier id) throws ObjectNotFoundException {
+        KeyDao dao = findOrThrow(id);
+        return new GenericKey(id, dao.isValid(), dao.getPrivateKey());
+    }
+
+    @Override
+    public Optional<KeyIdentifier> findByPublicKey(KeyType type, String publicKeyBase64) {
+        return storage.findKeyByPublicKey(type.name(), publicKeyBase64).map(this::toId);
+    }
+
+    @Override
+    public void add(Key key) throws IllegalStateException {
+        if (has(key.getId())) {
+            throw new IllegalStateException("Key " + key.getId().getId() + " already exists");
+        }
+
+        storage.insertKey(new KeyDao(
+                key.getId().getType().name(),
+                key.getId().getAlgorithm(),
+                key.getId().getSerial(),
+                key.isValid(),
+                key.getPrivateKeyBase64(),
+                CryptoFactory.getPublicKeyBase64(key).orElse(null)
+        ));
+    }
+
+    @Override
+    public void update(Key key) throws ObjectNotFoundException {
+        KeyDao dao = findOrThrow(key.getId());
+        dao.setValid(key.isValid());
+        dao.setPrivateKey(key.getPrivateKeyBase64());
+        dao.setPublicKey(CryptoFactory.getPublicKeyBase64(key).orElse(null));
+        storage.updateKey(dao);
+    }
+
+    @Override
+    public void delete(KeyIdentifier id) throws ObjectNotFoundException {
+        findOrThrow(id);
+        storage.deleteKey(id.getType().name(), id.getAlgorithm(), id.getSerial());
+    }
+
+    @Override
+    public void setCurrentKey(KeyIdentifier id) throws IllegalArgumentException {
+        if (!has(id)) {
+            throw new IllegalArgumentException("Key " + id.getType() + ":" + id.getAlgorithm() + ":" + id.getSerial() + " is not known to the store");
+        }
+
+        storage.setCurrentKey(id.getType().name(), id.getAlgorithm(), id.getSerial());
+    }
+
+    @Override
+    public Optional<KeyIdentifier> getCurrentKey() {
+        return storage.getCurrentKey().map(this::toId);
+    }
+
+}
@@ -27,7 +27,10 @@ import com.j256.ormlite.db.PostgresDatabaseType;
 import com.j256.ormlite.db.SqliteDatabaseType;
 import com.j256.ormlite.jdbc.JdbcConnectionSource;
 import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.DeleteBuilder;
 import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.UpdateBuilder;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.TableUtils;
 import io.kamax.matrix.ThreePid;
@@ -40,6 +43,8 @@ import io.kamax.mxisd.exception.InternalServerError;
 import io.kamax.mxisd.exception.InvalidCredentialsException;
 import io.kamax.mxisd.invitation.IThreePidInviteReply;
 import io.kamax.mxisd.lookup.ThreePidMapping;
+import io.kamax.mxisd.metrics.Gauge;
+import io.kamax.mxisd.metrics.MetricRegistry;
 import io.kamax.mxisd.storage.IStorage;
 import io.kamax.mxisd.storage.dao.IThreePidSessionDao;
 import io.kamax.mxisd.storage.ormlite.dao.ASTransactionDao;
@@ -47,6 +52,7 @@ import io.kamax.mxisd.storage.ormlite.dao.AccountDao;
 import io.kamax.mxisd.storage.ormlite.dao.ChangelogDao;
 import io.kamax.mxisd.storage.ormlite.dao.HashDao;
 import io.kamax.mxisd.storage.ormlite.dao.HistoricalThreePidInviteIO;
+import io.kamax.mxisd.storage.ormlite.dao.KeyDao;
 import io.kamax.mxisd.storage.ormlite.dao.AcceptedDao;
 import io.kamax.mxisd.storage.ormlite.dao.ThreePidInviteIO;
 import io.kamax.mxisd.storage.ormlite.dao.ThreePidSessionDao;
@@ -98,6 +104,7 @@ public class OrmLiteSqlStorage implements IStorage {
     private Dao<AcceptedDao, Long> acceptedDao;
     private Dao<HashDao, String> hashDao;
     private Dao<ChangelogDao, String> changelogDao;
+    private Dao<KeyDao, Long> keyDao;
     private StorageConfig.BackendEnum backend;
 
     public OrmLiteSqlStorage(StorageConfig.BackendEnum backend, StorageConfig.Provider provider) {
@@ -127,6 +134,7 @@ public class OrmLiteSqlStorage implements IStorage {
             accountDao = createDaoAndTable(connPool, AccountDao.class);
             acceptedDao = createDaoAndTable(connPool, AcceptedDao.class, true);
             hashDao = createDaoAndTable(connPool, HashDao.class, true);
+            keyDao = createDaoAndTable(connPool, KeyDao.class, true);
             runMigration(connPool);
         });
     }
@@ -153,6 +161,10 @@ public class OrmLiteSqlStorage implements IStorage {
             source.setMaxConnectionAgeMillis(config.getMaxConnectionAgeMillis());
             source.setCheckConnectionsEveryMillis(config.getCheckConnectionsEveryMillis());
             source.setTestBeforeGet(config.isTestBeforeGetFromPool());
+
+            Gauge connections = MetricRegistry.get().gauge("storage_pool_connections", "Connections of the storage pool by state", "state");
+            connections.track(() -> source.getCurrentConnectionsManaged() - source.getCurrentConnectionsFree(), "busy");
+            connections.track(source::getCurrentConnectionsFree, "idle");
             return source;
         } else {
             return new JdbcConnectionSource("jdbc:" + backend + ":" + config.getDatabase(), config.getUsername(), config.getPassword(),
@@ -469,6 +481,15 @@ public class OrmLiteSqlStorage implements IStorage {
         });
     }
 
+    @Override
+    public void deleteHash(String hash) {
+        withCatcher(() -> {
+            DeleteBuilder<HashDao, String> builder = hashDao.deleteBuilder();
+            builder.where().eq("hash", hash);
+            builder.delete();
+        });
+    }
+
     @Override
     public Collection<Pair<String, ThreePidMapping>> findHashes(Iterable<String> hashes) {
         return withCatcher(() -> {
@@ -479,4 +500,105 @@ public class OrmLiteSqlStorage implements IStorage {
                     Collectors.toList());
         });
     }
+
+    @Override
+    public List<KeyDao> getKeys(String type) {
+        return withCatcher(() -> keyDao.queryForEq("type", type));
+    }
+
+    @Override
+    public Optional<KeyDao> getKey(String type, String algorithm, String serial) {
+        return withCatcher(() -> {
+            QueryBuilder<KeyDao, Long> builder = keyDao.queryBuilder();
+            builder.where().eq("type", type).and().eq("algorithm", algorithm).and().eq("serial", serial);
+            List<KeyDao> keys = keyDao.query(builder.prepare());
+            if (keys.isEmpty()) {
+                return Optional.empty();
+            }
+            if (keys.size() != 1) {
+                throw new RuntimeException("Unexpected rows for key " + algorithm + ":" + serial + ": " + keys.size());
+            }
+            return Optional.of(keys.get(0));
+        });
+    }
+
+    @Override
+    public Optional<KeyDao> findKeyByPublicKey(String type, String publicKey) {
+        return withCatcher(() -> {
+            QueryBuilder<KeyDao, Long> builder = keyDao.queryBuilder();
+            builder.where().eq("publicKey", publicKey).and().eq("type", type);
+            return Optional.ofNullable(keyDao.queryForFirst(builder.prepare()));
+        });
+    }
+
+    @Override
+    public void insertKey(KeyDao key) {
+        withCatcher(() -> {
+            int created = keyDao.create(key);
+            if (created != 1) {
+                throw new RuntimeException("Unexpected row count after DB action: " + created);
+            }
+        });
+    }
+
+    @Override
+    public void updateKey(KeyDao key) {
+        withCatcher(() -> {
+            int updated = keyDao.update(key);
+            if (updated != 1) {
+                throw new RuntimeException("Unexpected row count after DB action: " + updated);
+            }
+        });
+    }
+
+    @Override
+    public void deleteKey(String type, String algorithm, String serial) {
+        withCatcher(() -> {
+            DeleteBuilder<KeyDao, Long> builder = keyDao.deleteBuilder();
+            builder.where().eq("type", type).and().eq("algorithm", algorithm).and().eq("serial", serial);
+            int deleted = builder.delete();
+            if (deleted != 1) {
+                throw new RuntimeException("Unexpected row count after DB action: " + deleted);
+            }
+        });
+    }
+
+    @Override
+    public void setCurrentKey(String type, String algorithm, String serial) {
+        withCatcher(() -> {
+            TransactionManager.callInTransaction(keyDao.getConnectionSource(), () -> {
+                UpdateBuilder<KeyDao, Long> reset = keyDao.updateBuilder();
+                reset.updateColumnValue("current", false).where().eq("current", true);
+                reset.update();
+
+                UpdateBuilder<KeyDao, Long> set = keyDao.updateBuilder();
+                set.updateColumnValue("current", true).where().eq("type", type).and().eq("algorithm", algorithm).and().eq("serial", serial);
+                int updated = set.update();
+                if (updated != 1) {
+                    throw new SQLException("Unexpected row count after DB action: " + updated);
+                }
+                return null;
+            });
+        });
+    }
+
+    @Override
+    public Optional<KeyDao> getCurrentKey() {
+        return withCatcher(() -> {
+            List<KeyDao> keys = keyDao.queryForEq("current", true);
+            if (keys.isEmpty()) {
+                return Optional.empty();
+            }
+            if (keys.size() != 1) {
+                throw new RuntimeException("Unexpected rows for current key: " + keys.size());
+            }
+            return Optional.of(keys.get(0));
+        });
+    }
+
+    @Override
+    public void close() {
+        // All DAOs share the same connection source
+        withCatcher(() -> invDao.getConnectionSource().close());
+    }
 }
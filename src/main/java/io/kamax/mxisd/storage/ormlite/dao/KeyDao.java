@@ -0,0 +1,121 @@
+package io.kamax.mxisd.storage.ormlite.dao;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+@DatabaseTable(tableName = "crypto_keys")
+public class KeyDao {
+
+    @DatabaseField(generatedId = true)
+    private Long id;
+
+    @DatabaseField(canBeNull = false, uniqueCombo = true, index = true)
+    private String type;
+
+    @DatabaseField(canBeNull = false, uniqueCombo = true)
+    private String algorithm;
+
+    @DatabaseField(canBeNull = false, uniqueCombo = true)
+    private String serial;
+
+    @DatabaseField(canBeNull = false)
+    private boolean valid;
+
+    @DatabaseField(canBeNull = false, width = 1024)
+    private String privateKey;
+
+    @DatabaseField(index = true)
+    private String publicKey;
+
+    @DatabaseField(canBeNull = false)
+    private boolean current;
+
+    @DatabaseField(canBeNull = false)
+    private long createdAt;
+
+    public KeyDao() {
+        // Needed for ORMLite
+    }
+
+    public KeyDao(String type, String algorithm, String serial, boolean valid, String privateKey, String publicKey) {
+        this.type = type;
+        this.algorithm = algorithm;
+        this.serial = serial;
+        this.valid = valid;
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public String getSerial() {
+        return serial;
+    }
+
+    public void setSerial(String serial) {
+        this.serial = serial;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public void setValid(boolean valid) {
+        this.valid = valid;
+    }
+
+    public String getPrivateKey() {
+        return privateKey;
+    }
+
+    public void setPrivateKey(String privateKey) {
+        this.privateKey = privateKey;
+    }
+
+    public String getPublicKey() {
+        return publicKey;
+    }
+
+    public void setPublicKey(String publicKey) {
+        this.publicKey = publicKey;
+    }
+
+    public boolean isCurrent() {
+        return current;
+    }
+
+    public void setCurrent(boolean current) {
+        this.current = current;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
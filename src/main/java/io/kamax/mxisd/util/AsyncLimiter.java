@@ -0,0 +1,141 @@
+package io.kamax.mxisd.util;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs asynchronous operations with at most <code>maxConcurrent</code> of them in flight, without blocking the caller.
+ * <p>
+ * Operations over the limit are queued and started as slots are released. Each one must complete within the timeout,
+ * counted from its submission, or its future fails with a {@link TimeoutException}. A slot is released as soon as the
+ * future completes, so an operation which never completes does not hold its slot forever.
+ */
+public class AsyncLimiter implements AutoCloseable {
+
+    private class Entry<T> {
+
+        private final Supplier<CompletableFuture<T>> operation;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Entry(Supplier<CompletableFuture<T>> operation) {
+            this.operation = operation;
+        }
+
+        private void start() {
+            result.whenComplete((v, e) -> release());
+
+            CompletableFuture<T> f;
+            try {
+                f = operation.get();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+
+            f.whenComplete((v, e) -> {
+                if (Objects.isNull(e)) {
+                    result.complete(v);
+                } else {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+                drain();
+            }
+        }
+
+    }
+
+    private final Semaphore permits;
+    private final long timeoutNanos;
+    private final Queue<Entry<?>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger drains = new AtomicInteger();
+    private final ScheduledThreadPoolExecutor timer;
+
+    public AsyncLimiter(String name, int maxConcurrent, long timeout, TimeUnit unit) {
+        this.permits = new Semaphore(maxConcurrent);
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, name + "-timeout");
+            t.setDaemon(true);
+            return t;
+        });
+        // Most operations complete well before their timeout
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @param operation Starts the operation, only called once a slot is available
+     * @return The result of the operation
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> operation) {
+        Entry<T> entry = new Entry<>(operation);
+        ScheduledFuture<?> timeout = timer.schedule(() -> entry.result.completeExceptionally(new TimeoutException()),
+            timeoutNanos, TimeUnit.NANOSECONDS);
+        entry.result.whenComplete((v, e) -> timeout.cancel(false));
+
+        queue.add(entry);
+        drain();
+        return entry.result;
+    }
+
+    /*
+     * Also called once an entry is queued, so one is never left behind by a slot released in the meantime. Only one
+     * thread drains at a time, and calls made meanwhile make it loop again instead of recursing through operations
+     * which complete right away.
+     */
+    private void drain() {
+        if (drains.getAndIncrement() > 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            while (!queue.isEmpty() && permits.tryAcquire()) {
+                Entry<?> entry = queue.poll();
+                if (Objects.isNull(entry)) {
+                    permits.release();
+                    break;
+                }
+
+                if (entry.result.isDone()) {
+                    // Timed out while queued
+                    permits.release();
+                    continue;
+                }
+
+                entry.start();
+            }
+            missed = drains.addAndGet(-missed);
+        } while (missed > 0);
+    }
+
+    public int getAvailable() {
+        return permits.availablePermits();
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+}
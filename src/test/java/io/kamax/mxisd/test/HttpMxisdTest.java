@@ -0,0 +1,110 @@
+package io.kamax.mxisd.test;
+
+import io.kamax.mxisd.HttpMxisd;
+import io.kamax.mxisd.config.MxisdConfig;
+import io.kamax.mxisd.config.RateLimitConfig;
+import io.kamax.mxisd.metrics.Counter;
+import io.kamax.mxisd.metrics.MetricRegistry;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class HttpMxisdTest {
+
+    private static final int Burst = 3;
+
+    private HttpMxisd m;
+    private String base;
+
+    @Before
+    public void before() throws IOException {
+        int port;
+        try (ServerSocket unused = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = unused.getLocalPort();
+        }
+
+        MxisdConfig cfg = MxisdConfig.forDomain("localhost").inMemory();
+        cfg.getLogging().setAsync(false);
+        cfg.getServer().setHostname("127.0.0.1");
+        cfg.getServer().setPort(port);
+
+        RateLimitConfig.Rule rule = new RateLimitConfig.Rule();
+        rule.setRoutes(Collections.singletonList("/_matrix/identity/api/v1"));
+        rule.setRate(0.001);
+        rule.setBurst(Burst);
+        cfg.getServer().getRateLimit().setEnabled(true);
+        cfg.getServer().getRateLimit().getTrustedProxies().add("127.0.0.1");
+        cfg.getServer().getRateLimit().getRules().add(rule);
+
+        m = new HttpMxisd(cfg);
+        m.start();
+        base = "http://127.0.0.1:" + port;
+    }
+
+    @After
+    public void after() {
+        m.stop();
+    }
+
+    private HttpURLConnection get(String path) throws IOException {
+        return get(path, null);
+    }
+
+    private HttpURLConnection get(String path, String forwardedFor) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(base + path).openConnection();
+        if (forwardedFor != null) {
+            conn.setRequestProperty("X-Forwarded-For", forwardedFor);
+        }
+        conn.getResponseCode();
+        try (InputStream is = conn.getResponseCode() < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+            IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+        return conn;
+    }
+
+    @Test
+    public void burstAllowed() throws IOException {
+        for (int i = 0; i < Burst; i++) {
+            assertEquals(200, get("/_matrix/identity/api/v1").getResponseCode());
+        }
+        assertEquals(429, get("/_matrix/identity/api/v1").getResponseCode());
+    }
+
+    @Test
+    public void budgetPerForwardedClient() throws IOException {
+        for (int i = 0; i < Burst; i++) {
+            assertEquals(200, get("/_matrix/identity/api/v1", "192.0.2.1").getResponseCode());
+        }
+        assertEquals(429, get("/_matrix/identity/api/v1", "192.0.2.1").getResponseCode());
+        assertEquals(200, get("/_matrix/identity/api/v1", "192.0.2.2").getResponseCode());
+    }
+
+    @Test
+    public void countedOnce() throws Exception {
+        Counter requests = MetricRegistry.get().counter("http_requests_total", "", "method", "route", "status");
+        long before = requests.get("GET", "/_matrix/identity/api/v1", "200");
+
+        assertEquals(200, get("/_matrix/identity/api/v1").getResponseCode());
+
+        // Recorded once the exchange completes, which can be after the client got the response
+        long deadline = System.currentTimeMillis() + 5000;
+        while (requests.get("GET", "/_matrix/identity/api/v1", "200") == before && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(before + 1, requests.get("GET", "/_matrix/identity/api/v1", "200"));
+    }
+
+}
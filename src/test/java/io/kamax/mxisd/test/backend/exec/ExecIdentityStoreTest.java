@@ -35,7 +35,9 @@ import io.kamax.mxisd.lookup.SingleLookupReply;
 import io.kamax.mxisd.lookup.SingleLookupRequest;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
@@ -43,7 +45,14 @@ import static org.junit.Assert.assertFalse;
 
 public class ExecIdentityStoreTest extends ExecStoreTest {
 
+    private final AtomicInteger countedRuns = new AtomicInteger();
+
     public ExecIdentityStoreTest() {
+        executables.put("singleSuccessCounted", () -> {
+            countedRuns.incrementAndGet();
+            return make(0, () -> "");
+        });
+
         executables.put("singleSuccessEmpty", () -> make(0, () ->
                 GsonUtil.get().toJson(GsonUtil.makeObj("lookup", new JsonObject()))));
 
@@ -128,4 +137,24 @@ public class ExecIdentityStoreTest extends ExecStoreTest {
         getStore("singleSuccessEmptyFromInvalidOutput").find(req);
     }
 
+    @Test
+    public void singleSuccessCached() {
+        ExecConfig cfg = getCfg();
+        cfg.getIdentity().getLookup().getSingle().setCommand("singleSuccessCounted");
+        cfg.getIdentity().getLookup().getSingle().setArgs(Collections.singletonList("{address}"));
+        cfg.getIdentity().getLookup().getSingle().getCache().setEnabled(true);
+        ExecIdentityStore store = getStore(cfg);
+
+        SingleLookupRequest req = new SingleLookupRequest();
+        req.setType(ThreePidMedium.Email.getId());
+        req.setThreePid(user1Email);
+        store.find(req);
+        store.find(req);
+        assertEquals(1, countedRuns.get());
+
+        req.setThreePid("other@" + domain);
+        store.find(req);
+        assertEquals(2, countedRuns.get());
+    }
+
 }
@@ -0,0 +1,149 @@
+/*
+ * mxisd - Matrix Identity Server Daemon
+ * Copyright (C) 2019 Kamax Sàrl
+ *
+ * https://www.kamax.io/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.kamax.mxisd.test.backend.exec;
+
+import io.kamax.mxisd.backend.exec.ExecStore;
+import io.kamax.mxisd.backend.exec.ExecWorkerPool;
+import io.kamax.mxisd.config.ExecConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class ExecWorkerPoolTest {
+
+    private final String idExtract = "id=$(printf '%s' \"$line\" | sed 's/.*\"id\":\"\\([0-9]*\\)\".*/\\1/'); ";
+    private final String inputExtract = "input=$(printf '%s' \"$line\" | sed 's/.*\"input\":\"\\([^\"]*\\)\".*/\\1/'); ";
+    private final String reply = "printf '{\"id\":\"%s\",\"exit\":%s,\"output\":\"%s\"}\\n' \"$id\" \"$exit\" \"$input\"; ";
+
+    private ExecWorkerPool pool;
+
+    private ExecConfig.Process makeConfig(String script) {
+        ExecConfig.Process cfg = new ExecConfig.Process();
+        cfg.setCommand("/bin/sh");
+        cfg.setArgs(Arrays.asList("-c", script));
+        cfg.setMode(ExecConfig.ModeEnum.persistent);
+        cfg.getInput().setType(ExecStore.PlainType);
+        cfg.getWorker().setTimeout("5s");
+        cfg.getWorker().setHealthCheck("0s");
+        cfg.build();
+        return cfg;
+    }
+
+    @Before
+    public void before() {
+        assumeTrue(new File("/bin/sh").canExecute());
+    }
+
+    @After
+    public void after() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void reusesWorker() {
+        pool = new ExecWorkerPool(makeConfig("while IFS= read -r line; do " + idExtract + inputExtract + "exit=0; " + reply + "done"));
+
+        for (int i = 0; i < 5; i++) {
+            ExecWorkerPool.Reply r = pool.execute(Optional.of("value" + i));
+            assertEquals(0, r.getExitValue());
+            assertEquals("value" + i, r.getOutput());
+        }
+        assertEquals(1, pool.getStartedCount());
+    }
+
+    @Test
+    public void forwardsExitValue() {
+        pool = new ExecWorkerPool(makeConfig("while IFS= read -r line; do " + idExtract + inputExtract + "exit=1; " + reply + "done"));
+
+        assertEquals(1, pool.execute(Optional.of("a")).getExitValue());
+    }
+
+    @Test
+    public void forwardsArgsAndEnv() {
+        String argExtract = "arg=$(printf '%s' \"$line\" | sed 's/.*\"args\":\\[\"\\([^\"]*\\)\".*/\\1/'); ";
+        String envExtract = "env=$(printf '%s' \"$line\" | sed 's/.*\"VALUE\":\"\\([^\"]*\\)\".*/\\1/'); ";
+        String argReply = "printf '{\"id\":\"%s\",\"output\":\"%s %s\"}\\n' \"$id\" \"$arg\" \"$env\"; ";
+        pool = new ExecWorkerPool(makeConfig("while IFS= read -r line; do " + idExtract + argExtract + envExtract + argReply + "done"));
+
+        ExecWorkerPool.Reply r = pool.execute(Collections.singletonList("email"), Collections.singletonMap("VALUE", "a@example.org"), Optional.empty());
+        assertEquals("email a@example.org", r.getOutput());
+        r = pool.execute(Collections.singletonList("msisdn"), Collections.singletonMap("VALUE", "123"), Optional.empty());
+        assertEquals("msisdn 123", r.getOutput());
+    }
+
+    @Test
+    public void healthCheckWhileBusy() throws IOException, InterruptedException {
+        Path marker = Files.createTempFile("exec-worker-ping", "");
+        Files.delete(marker);
+        try {
+            String script = "while IFS= read -r line; do " + idExtract + "case \"$line\" in " +
+                    "*'\"type\":\"ping\"'*) touch '" + marker + "'; printf '{\"id\":\"%s\"}\\n' \"$id\";; " +
+                    "*) (sleep 2; printf '{\"id\":\"%s\",\"output\":\"done\"}\\n' \"$id\") & ;; " +
+                    "esac; done";
+            ExecConfig.Process cfg = makeConfig(script);
+            cfg.getWorker().setHealthCheck("1s");
+            cfg.build();
+            pool = new ExecWorkerPool(cfg);
+
+            // Takes the only slot of the worker for longer than the health check interval
+            CompletableFuture<ExecWorkerPool.Reply> f = CompletableFuture.supplyAsync(() -> pool.execute(Optional.of("a")));
+            for (int i = 0; i < 15 && !Files.exists(marker); i++) {
+                Thread.sleep(100);
+            }
+            assertTrue(Files.exists(marker));
+            assertFalse(f.isDone());
+
+            assertEquals("done", f.join().getOutput());
+            assertEquals(1, pool.getStartedCount());
+        } finally {
+            Files.deleteIfExists(marker);
+        }
+    }
+
+    @Test
+    public void restartsAfterExit() throws InterruptedException {
+        pool = new ExecWorkerPool(makeConfig("IFS= read -r line; " + idExtract + inputExtract + "exit=0; " + reply));
+
+        assertEquals("first", pool.execute(Optional.of("first")).getOutput());
+        for (int i = 0; i < 50 && pool.getStartedCount() > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, pool.getStartedCount());
+        assertEquals("second", pool.execute(Optional.of("second")).getOutput());
+    }
+
+}
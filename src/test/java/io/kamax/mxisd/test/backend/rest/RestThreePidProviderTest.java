@@ -28,6 +28,7 @@ public class RestThreePidProviderTest {
     @Rule
     public WireMockRule wireMockRule = new WireMockRule(65000);
 
+    private MatrixConfig mxCfg;
     private RestThreePidProvider p;
 
     private String lookupSinglePath = "/lookup/single";
@@ -48,7 +49,7 @@ public class RestThreePidProviderTest {
 
     @Before
     public void before() {
-        MatrixConfig mxCfg = new MatrixConfig();
+        mxCfg = new MatrixConfig();
         mxCfg.setDomain("example.org");
         mxCfg.build();
 
@@ -147,4 +148,25 @@ public class RestThreePidProviderTest {
         assertEquals(0, mappings.size());
     }
 
+    @Test
+    public void lookupBulkChunked() {
+        stubFor(post(urlEqualTo(lookupBulkPath))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", ContentType.APPLICATION_JSON.getMimeType())
+                        .withBody(lookupBulkFoundBody)
+                )
+        );
+
+        RestBackendConfig cfg = new RestBackendConfig();
+        cfg.setEnabled(true);
+        cfg.setHost("http://localhost:65000");
+        cfg.getEndpoints().getIdentity().setBulk(lookupBulkPath);
+        cfg.getBulk().setChunkSize(1);
+        cfg.build();
+
+        List<ThreePidMapping> mappings = new RestThreePidProvider(cfg, mxCfg).populate(lookupBulkList);
+        assertEquals(4, mappings.size());
+        verify(2, postRequestedFor(urlMatching(lookupBulkPath)));
+    }
+
 }
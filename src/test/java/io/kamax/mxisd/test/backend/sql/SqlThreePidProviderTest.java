@@ -0,0 +1,96 @@
+package io.kamax.mxisd.test.backend.sql;
+
+import io.kamax.mxisd.backend.sql.generic.GenericSqlThreePidProvider;
+import io.kamax.mxisd.config.MatrixConfig;
+import io.kamax.mxisd.config.sql.generic.GenericSqlProviderConfig;
+import io.kamax.mxisd.lookup.ThreePidChanges;
+import io.kamax.mxisd.lookup.ThreePidMapping;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SqlThreePidProviderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String db;
+    private GenericSqlThreePidProvider provider;
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + db); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    @Before
+    public void before() throws Exception {
+        db = folder.newFile("store.db").getAbsolutePath();
+        // No declared type, so SQLite compares the cursor like strict databases do: a text cursor never matches a number
+        execute("create table threepids (mxid text, medium text, address text, updated_at, deleted integer)");
+        execute("insert into threepids values ('@john:example.org', 'email', 'john@example.org', 1, 0)");
+
+        MatrixConfig mxCfg = new MatrixConfig();
+        mxCfg.setDomain("example.org");
+        mxCfg.build();
+
+        GenericSqlProviderConfig cfg = new GenericSqlProviderConfig();
+        cfg.setEnabled(true);
+        cfg.setType("sqlite");
+        cfg.setConnection(db);
+        cfg.getLookup().setQuery("select mxid, medium, address from threepids where deleted = 0");
+        cfg.getLookup().setCursorQuery("select coalesce(max(updated_at), 0) as cursor from threepids");
+        cfg.getLookup().setChangesQuery("select mxid, medium, address, deleted, updated_at as cursor from threepids " +
+            "where updated_at > ? order by updated_at");
+        provider = new GenericSqlThreePidProvider(cfg, mxCfg);
+    }
+
+    @Test
+    public void changesSinceCursor() throws Exception {
+        ThreePidChanges initial = provider.changesSince(null).orElseThrow(IllegalStateException::new);
+        assertTrue(initial.isEmpty());
+        assertTrue(initial.getCursor() instanceof Number);
+
+        ThreePidChanges none = provider.changesSince(initial.getCursor()).orElseThrow(IllegalStateException::new);
+        assertTrue(none.isEmpty());
+        assertEquals(initial.getCursor(), none.getCursor());
+
+        execute("insert into threepids values ('@jane:example.org', 'msisdn', '123456789', 2, 0)");
+        execute("update threepids set deleted = 1, updated_at = 3 where mxid = '@john:example.org'");
+
+        ThreePidChanges changes = provider.changesSince(initial.getCursor()).orElseThrow(IllegalStateException::new);
+        assertEquals(1, changes.getAdded().size());
+        ThreePidMapping added = changes.getAdded().get(0);
+        assertEquals("@jane:example.org", added.getMxid());
+        assertEquals("123456789", added.getValue());
+        assertEquals(1, changes.getRemoved().size());
+        assertEquals("john@example.org", changes.getRemoved().get(0).getValue());
+
+        ThreePidChanges next = provider.changesSince(changes.getCursor()).orElseThrow(IllegalStateException::new);
+        assertTrue(next.isEmpty());
+        assertEquals(changes.getCursor(), next.getCursor());
+    }
+
+    @Test
+    public void unsupportedWithoutQueries() {
+        GenericSqlProviderConfig cfg = new GenericSqlProviderConfig();
+        cfg.setEnabled(true);
+        cfg.setConnection(db);
+        MatrixConfig mxCfg = new MatrixConfig();
+        mxCfg.setDomain("example.org");
+        mxCfg.build();
+
+        assertFalse(new GenericSqlThreePidProvider(cfg, mxCfg).changesSince(null).isPresent());
+    }
+
+}
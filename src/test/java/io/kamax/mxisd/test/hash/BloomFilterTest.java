@@ -0,0 +1,32 @@
+package io.kamax.mxisd.test.hash;
+
+import io.kamax.mxisd.hash.engine.BloomFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilterTest {
+
+    @Test
+    public void noFalseNegativesAndBoundedFalsePositives() {
+        int n = 10000;
+        BloomFilter filter = new BloomFilter(n, 0.01);
+        for (int i = 0; i < n; i++) {
+            filter.add("added-" + i);
+        }
+
+        for (int i = 0; i < n; i++) {
+            assertTrue(filter.mightContain("added-" + i));
+        }
+
+        int falsePositives = 0;
+        int checks = 100000;
+        for (int i = 0; i < checks; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("False positive rate too high: " + falsePositives, falsePositives < checks * 0.02);
+    }
+
+}
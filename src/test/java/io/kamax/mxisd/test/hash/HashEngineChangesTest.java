@@ -0,0 +1,105 @@
+package io.kamax.mxisd.test.hash;
+
+import io.kamax.mxisd.config.HashingConfig;
+import io.kamax.mxisd.hash.engine.HashEngine;
+import io.kamax.mxisd.hash.storage.InMemoryHashStorage;
+import io.kamax.mxisd.lookup.SingleLookupReply;
+import io.kamax.mxisd.lookup.SingleLookupRequest;
+import io.kamax.mxisd.lookup.ThreePidChanges;
+import io.kamax.mxisd.lookup.ThreePidMapping;
+import io.kamax.mxisd.lookup.provider.IThreePidProvider;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+
+public class HashEngineChangesTest {
+
+    private static class ChangingProvider implements IThreePidProvider {
+
+        private final List<ThreePidMapping> mappings = new ArrayList<>();
+        private final List<ThreePidMapping> removed = new ArrayList<>();
+        private int version = 0;
+
+        @Override
+        public boolean isLocal() {
+            return true;
+        }
+
+        @Override
+        public int getPriority() {
+            return 0;
+        }
+
+        @Override
+        public Optional<SingleLookupReply> find(SingleLookupRequest request) {
+            return Optional.empty();
+        }
+
+        @Override
+        public List<ThreePidMapping> populate(List<ThreePidMapping> mappings) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Iterable<ThreePidMapping> populateHashes() {
+            return new ArrayList<>(mappings);
+        }
+
+        @Override
+        public Optional<ThreePidChanges> changesSince(Object cursor) {
+            ThreePidChanges changes = new ThreePidChanges(version);
+            if (cursor != null) {
+                // Everything since the cursor, which is enough for this test
+                changes.getAdded().addAll(mappings.subList((Integer) cursor, mappings.size()));
+                changes.getRemoved().addAll(removed);
+                removed.clear();
+            }
+            return Optional.of(changes);
+        }
+
+        void add(ThreePidMapping mapping) {
+            mappings.add(mapping);
+            version = mappings.size();
+        }
+
+    }
+
+    private static String hash(ThreePidMapping mapping, String pepper) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+            DigestUtils.sha256(mapping.getValue() + " " + mapping.getMedium() + " " + pepper));
+    }
+
+    @Test
+    public void changesAreAppliedBetweenRotations() {
+        ThreePidMapping john = new ThreePidMapping("email", "john@example.org", "@john:example.org");
+        ThreePidMapping jane = new ThreePidMapping("email", "jane@example.org", "@jane:example.org");
+
+        ChangingProvider provider = new ChangingProvider();
+        provider.add(john);
+
+        HashingConfig cfg = new HashingConfig();
+        cfg.setEnabled(true);
+        InMemoryHashStorage storage = new InMemoryHashStorage();
+        HashEngine engine = new HashEngine(Collections.singletonList(provider), storage, cfg);
+        engine.updateHashes();
+        String pepper = engine.getPepper();
+
+        provider.add(jane);
+        assertEquals(0, storage.find(Collections.singletonList(hash(jane, pepper))).size());
+        engine.updateChanges();
+        assertEquals(1, storage.find(Collections.singletonList(hash(jane, pepper))).size());
+
+        provider.removed.add(john);
+        engine.updateChanges();
+        assertEquals(0, storage.find(Collections.singletonList(hash(john, pepper))).size());
+        assertEquals(pepper, engine.getPepper());
+    }
+
+}
@@ -0,0 +1,75 @@
+package io.kamax.mxisd.test.hash;
+
+import io.kamax.mxisd.config.HashingConfig;
+import io.kamax.mxisd.hash.HashManager;
+import io.kamax.mxisd.lookup.SingleLookupReply;
+import io.kamax.mxisd.lookup.SingleLookupRequest;
+import io.kamax.mxisd.lookup.ThreePidMapping;
+import io.kamax.mxisd.lookup.provider.IThreePidProvider;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HashManagerTest {
+
+    private static class BlockingProvider implements IThreePidProvider {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public boolean isLocal() {
+            return true;
+        }
+
+        @Override
+        public int getPriority() {
+            return 0;
+        }
+
+        @Override
+        public Optional<SingleLookupReply> find(SingleLookupRequest request) {
+            return Optional.empty();
+        }
+
+        @Override
+        public List<ThreePidMapping> populate(List<ThreePidMapping> mappings) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Iterable<ThreePidMapping> populateHashes() {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.singletonList(new ThreePidMapping("email", "john@example.org", "@john:example.org"));
+        }
+
+    }
+
+    @Test
+    public void initialRotationDoesNotBlockInit() throws InterruptedException {
+        HashingConfig cfg = new HashingConfig();
+        cfg.setEnabled(true);
+        cfg.setRotationPolicy(HashingConfig.RotationPolicyEnum.per_requests);
+        cfg.setHashStorageType(HashingConfig.HashStorageEnum.in_memory);
+
+        BlockingProvider provider = new BlockingProvider();
+        HashManager manager = new HashManager();
+        manager.init(cfg, Collections.singletonList(provider), null);
+        assertFalse(manager.isReady());
+
+        provider.release.countDown();
+        manager.stop(10, TimeUnit.SECONDS);
+        assertTrue(manager.isReady());
+    }
+
+}
@@ -0,0 +1,61 @@
+package io.kamax.mxisd.test.hash;
+
+import io.kamax.mxisd.hash.storage.HashSnapshot;
+import io.kamax.mxisd.lookup.ThreePidMapping;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HashSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("hashes.bin");
+        List<Pair<String, ThreePidMapping>> hashes = Arrays.asList(
+            Pair.of("rujYzy1w0JxulN_rVlErGUmkdXT5znL0sjSF_IWreko", new ThreePidMapping("email", "john@example.org", "@john:example.org")),
+            Pair.of("Eo9gqTYL_4NkFvyXUQPAZX_ZGIRuqrBU3CvVLmIH6tE", new ThreePidMapping("msisdn", "123456789", "@jöhn:example.org"))
+        );
+        HashSnapshot.write(file, "pepper", hashes);
+
+        HashSnapshot snapshot = HashSnapshot.read(file).orElseThrow(AssertionError::new);
+        assertEquals("pepper", snapshot.getPepper());
+        assertEquals(2, snapshot.size());
+        assertTrue(snapshot.getCreatedAt() > 0);
+
+        List<Pair<String, ThreePidMapping>> read = new ArrayList<>();
+        snapshot.forEach((hash, mapping) -> read.add(Pair.of(hash, mapping)));
+        assertEquals(2, read.size());
+        for (int i = 0; i < hashes.size(); i++) {
+            assertEquals(hashes.get(i).getKey(), read.get(i).getKey());
+            assertEquals(hashes.get(i).getValue().getMedium(), read.get(i).getValue().getMedium());
+            assertEquals(hashes.get(i).getValue().getValue(), read.get(i).getValue().getValue());
+            assertEquals(hashes.get(i).getValue().getMxid(), read.get(i).getValue().getMxid());
+        }
+    }
+
+    @Test
+    public void missingOrInvalidIsIgnored() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("hashes.bin");
+        assertFalse(HashSnapshot.read(file).isPresent());
+
+        Files.write(file, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+        assertFalse(HashSnapshot.read(file).isPresent());
+    }
+
+}
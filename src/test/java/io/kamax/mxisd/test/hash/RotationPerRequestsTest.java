@@ -0,0 +1,59 @@
+package io.kamax.mxisd.test.hash;
+
+import io.kamax.mxisd.hash.engine.Engine;
+import io.kamax.mxisd.hash.rotation.RotationPerRequests;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RotationPerRequestsTest {
+
+    private static class BlockingEngine implements Engine {
+
+        private final AtomicInteger updates = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void updateHashes() {
+            updates.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public String getPepper() {
+            return "";
+        }
+
+    }
+
+    @Test
+    public void rotationsAreCoalesced() throws InterruptedException {
+        BlockingEngine engine = new BlockingEngine();
+        RotationPerRequests rotation = new RotationPerRequests(2);
+        rotation.register(engine);
+        assertTrue(engine.started.await(10, TimeUnit.SECONDS));
+
+        // Would block the caller for the whole rotation if it ran on the request thread
+        for (int i = 0; i < 100; i++) {
+            rotation.newRequest();
+        }
+
+        engine.release.countDown();
+        rotation.stop(10, TimeUnit.SECONDS);
+
+        // The initial rotation, then a single one for all the requests made while it was running
+        assertEquals(2, engine.updates.get());
+    }
+
+}
@@ -0,0 +1,78 @@
+package io.kamax.mxisd.test.http;
+
+import com.google.gson.JsonObject;
+import io.kamax.matrix.json.GsonUtil;
+import io.kamax.mxisd.http.undertow.handler.SaneHandler;
+import io.kamax.mxisd.http.undertow.handler.status.HealthHandler;
+import io.undertow.Undertow;
+import io.undertow.server.RoutingHandler;
+import org.apache.commons.io.IOUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class HealthHandlerTest {
+
+    private static final AtomicBoolean ready = new AtomicBoolean();
+    private static final Map<String, Boolean> subsystems = new LinkedHashMap<>();
+    private static Undertow server;
+    private static String base;
+
+    @BeforeClass
+    public static void beforeClass() {
+        RoutingHandler handler = new RoutingHandler()
+            .get(HealthHandler.LivePath, SaneHandler.nonBlocking(new HealthHandler(() -> true), null))
+            .get(HealthHandler.ReadyPath, SaneHandler.nonBlocking(new HealthHandler(ready::get, () -> subsystems), null));
+        server = Undertow.builder().addHttpListener(0, "127.0.0.1").setHandler(handler).build();
+        server.start();
+        InetSocketAddress address = (InetSocketAddress) server.getListenerInfo().get(0).getAddress();
+        base = "http://127.0.0.1:" + address.getPort();
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        server.stop();
+    }
+
+    private JsonObject get(String path, int expectedStatus) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(base + path).openConnection();
+        assertEquals(expectedStatus, conn.getResponseCode());
+        try (InputStream is = expectedStatus < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+            return GsonUtil.parseObj(IOUtils.toString(is, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void liveWhileNotReady() throws IOException {
+        ready.set(false);
+        assertEquals("OK", get(HealthHandler.LivePath, 200).get("status").getAsString());
+        assertEquals("UNAVAILABLE", get(HealthHandler.ReadyPath, 503).get("status").getAsString());
+    }
+
+    @Test
+    public void readyWhileWarmingUp() throws IOException {
+        ready.set(true);
+        subsystems.put("storage", true);
+        subsystems.put("hashing", false);
+
+        JsonObject obj = get(HealthHandler.ReadyPath, 200);
+        assertEquals("OK", obj.get("status").getAsString());
+        assertEquals("ready", obj.getAsJsonObject("subsystems").get("storage").getAsString());
+        assertEquals("warming", obj.getAsJsonObject("subsystems").get("hashing").getAsString());
+        assertFalse(get(HealthHandler.LivePath, 200).has("subsystems"));
+    }
+
+}
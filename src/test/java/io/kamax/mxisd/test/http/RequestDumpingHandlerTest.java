@@ -0,0 +1,179 @@
+package io.kamax.mxisd.test.http;
+
+import com.google.gson.JsonObject;
+import io.kamax.mxisd.config.LoggingConfig;
+import io.kamax.mxisd.exception.ConfigurationException;
+import io.kamax.mxisd.http.undertow.handler.BasicHttpHandler;
+import io.kamax.mxisd.http.undertow.handler.RequestDumpingHandler;
+import io.kamax.mxisd.http.undertow.handler.RequestTraceWriter;
+import io.kamax.mxisd.http.undertow.handler.SaneHandler;
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.RoutingHandler;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RequestDumpingHandlerTest {
+
+    // Answers with the status given in the query string, echoing the request body
+    private static class EchoHandler extends BasicHttpHandler {
+
+        @Override
+        public void handleRequest(HttpServerExchange exchange) {
+            String body = getBodyUtf8(exchange);
+            int status = Integer.parseInt(getQueryParameter(exchange, "status"));
+            JsonObject obj = new JsonObject();
+            obj.addProperty("body", body);
+            respond(exchange, status, obj);
+        }
+
+    }
+
+    // Keeps the traces handed off instead of logging them
+    private static class RecordingWriter extends RequestTraceWriter {
+
+        private final BlockingQueue<String> traces = new LinkedBlockingQueue<>();
+
+        RecordingWriter() {
+            super(1);
+        }
+
+        @Override
+        public void submit(String trace) {
+            traces.add(trace);
+        }
+
+        String next() throws InterruptedException {
+            return traces.poll(5, TimeUnit.SECONDS);
+        }
+
+        String none() throws InterruptedException {
+            return traces.poll(200, TimeUnit.MILLISECONDS);
+        }
+
+    }
+
+    private final RecordingWriter writer = new RecordingWriter();
+    private Undertow server;
+    private String base;
+
+    private void start(LoggingConfig.RequestTrace cfg) {
+        cfg.build();
+        RoutingHandler handler = new RoutingHandler()
+            .post("/traced", new RequestDumpingHandler(SaneHandler.around(new EchoHandler()), cfg, writer))
+            .post("/other", new RequestDumpingHandler(SaneHandler.around(new EchoHandler()), cfg, writer));
+        server = Undertow.builder().addHttpListener(0, "127.0.0.1").setHandler(handler).build();
+        server.start();
+        InetSocketAddress address = (InetSocketAddress) server.getListenerInfo().get(0).getAddress();
+        base = "http://127.0.0.1:" + address.getPort();
+    }
+
+    @After
+    public void after() {
+        if (server != null) {
+            server.stop();
+        }
+        writer.stop();
+    }
+
+    private void post(String path, int status, String body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(base + path + "?status=" + status).openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(status, conn.getResponseCode());
+        try (InputStream is = status < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+            IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void handsOffTruncatedTrace() throws Exception {
+        LoggingConfig.RequestTrace cfg = new LoggingConfig.RequestTrace();
+        cfg.setMaxBodySize(8);
+        start(cfg);
+
+        post("/traced", 200, "0123456789abcdef");
+        String trace = writer.next();
+        assertNotNull(trace);
+        assertTrue(trace.contains("URI=/traced"));
+        assertTrue(trace.contains("status=200"));
+        assertTrue(trace.contains("01234567... (8 more bytes)"));
+    }
+
+    @Test
+    public void sampling() throws Exception {
+        LoggingConfig.RequestTrace cfg = new LoggingConfig.RequestTrace();
+        cfg.setSampleRate(0);
+        start(cfg);
+
+        for (int i = 0; i < 10; i++) {
+            post("/traced", 200, "data");
+        }
+        assertNull(writer.none());
+    }
+
+    @Test
+    public void selectsByRouteAndStatus() throws Exception {
+        LoggingConfig.RequestTrace cfg = new LoggingConfig.RequestTrace();
+        cfg.setRoutes(Collections.singletonList("/traced"));
+        cfg.setStatuses(Arrays.asList("4xx", "503"));
+        start(cfg);
+
+        post("/traced", 200, "ok");
+        post("/other", 400, "other route");
+        post("/traced", 500, "other status");
+        assertNull(writer.none());
+
+        post("/traced", 404, "class");
+        assertTrue(writer.next().contains("status=404"));
+        post("/traced", 503, "code");
+        assertTrue(writer.next().contains("status=503"));
+        assertNull(writer.none());
+    }
+
+    @Test
+    public void selectsByClient() throws Exception {
+        LoggingConfig.RequestTrace cfg = new LoggingConfig.RequestTrace();
+        cfg.setClients(Arrays.asList("10.0.0.0/8", "::1"));
+        start(cfg);
+        post("/traced", 200, "data");
+        assertNull(writer.none());
+        server.stop();
+
+        cfg = new LoggingConfig.RequestTrace();
+        cfg.setClients(Collections.singletonList("127.0.0.1"));
+        start(cfg);
+        post("/traced", 200, "data");
+        assertTrue(writer.next().contains("remoteAddr=/127.0.0.1"));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void rejectsInvalidClient() {
+        LoggingConfig.RequestTrace cfg = new LoggingConfig.RequestTrace();
+        cfg.setClients(Collections.singletonList("10.0.0.0/eight"));
+        new RequestDumpingHandler(exchange -> { }, cfg, writer);
+    }
+
+}
@@ -0,0 +1,65 @@
+package io.kamax.mxisd.test.http;
+
+import io.kamax.mxisd.http.undertow.handler.RequestLoggingHandler;
+import io.kamax.mxisd.logging.RequestContext;
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RequestLoggingHandlerTest {
+
+    private String field(Object value) {
+        StringBuilder b = new StringBuilder();
+        RequestLoggingHandler.append(b, "key", value);
+        return b.toString();
+    }
+
+    @Test
+    public void quotesOnlyWhenNeeded() {
+        assertEquals(" key=sha256", field("sha256"));
+        assertEquals(" key=\"a b\"", field("a b"));
+        assertEquals(" key=\"\"", field(""));
+        assertEquals(" key=\"a\\\"b\\\\c\"", field("a\"b\\c"));
+    }
+
+    @Test
+    public void escapesControlCharacters() {
+        assertEquals(" key=\"x\\nrequest id=forged\"", field("x\nrequest id=forged"));
+        assertEquals(" key=\"a\\r\\tb\\u0000\"", field("a\r\tb\u0000"));
+    }
+
+    @Test
+    public void nestedHandlersShareContext() throws IOException {
+        List<RequestContext> contexts = new CopyOnWriteArrayList<>();
+        HttpHandler inner = RequestLoggingHandler.around(exchange -> contexts.add(RequestLoggingHandler.getContext(exchange)));
+        HttpHandler outer = RequestLoggingHandler.around(exchange -> {
+            contexts.add(RequestLoggingHandler.getContext(exchange));
+            inner.handleRequest(exchange);
+        });
+
+        Undertow server = Undertow.builder().addHttpListener(0, "127.0.0.1").setHandler(outer).build();
+        server.start();
+        try {
+            InetSocketAddress address = (InetSocketAddress) server.getListenerInfo().get(0).getAddress();
+            HttpURLConnection conn = (HttpURLConnection) new URL("http://127.0.0.1:" + address.getPort()).openConnection();
+            assertEquals(200, conn.getResponseCode());
+
+            assertEquals(2, contexts.size());
+            assertSame(contexts.get(0), contexts.get(1));
+            assertEquals(contexts.get(0).getId(), conn.getHeaderField("X-Request-Id"));
+        } finally {
+            server.stop();
+        }
+    }
+
+}
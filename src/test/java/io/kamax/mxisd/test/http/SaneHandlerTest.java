@@ -0,0 +1,273 @@
+package io.kamax.mxisd.test.http;
+
+import com.google.gson.JsonObject;
+import io.kamax.matrix.json.GsonUtil;
+import io.kamax.mxisd.exception.InvalidParamException;
+import io.kamax.mxisd.http.undertow.handler.BasicHttpHandler;
+import io.kamax.mxisd.http.undertow.handler.CacheableBody;
+import io.kamax.mxisd.http.undertow.handler.SaneHandler;
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.RoutingHandler;
+import io.undertow.server.handlers.encoding.ContentEncodingRepository;
+import io.undertow.server.handlers.encoding.EncodingHandler;
+import io.undertow.server.handlers.encoding.GzipEncodingProvider;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SaneHandlerTest {
+
+    private static class EchoHandler extends BasicHttpHandler {
+
+        @Override
+        public void handleRequest(HttpServerExchange exchange) {
+            String body = getBodyUtf8(exchange);
+            if ("fail".equals(body)) {
+                throw new InvalidParamException();
+            }
+
+            respondJson(exchange, "{\"body\":\"" + body + "\",\"io\":" + exchange.isInIoThread() + "}");
+        }
+
+    }
+
+    private static class LargeHandler extends BasicHttpHandler {
+
+        @Override
+        public void handleRequest(HttpServerExchange exchange) {
+            int count = parseJsonTo(exchange, JsonObject.class).get("count").getAsInt();
+            Map<String, String> mappings = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                mappings.put("hash" + i, "@user" + i + ":example.org");
+            }
+            respondJson(exchange, Collections.singletonMap("mappings", mappings));
+        }
+
+    }
+
+    private static class CachedHandler extends BasicHttpHandler {
+
+        private final CacheableBody body = new CacheableBody(GsonUtil.makeObj("key", "value"));
+
+        @Override
+        public void handleRequest(HttpServerExchange exchange) {
+            respond(exchange, body);
+        }
+
+    }
+
+    private static final CountDownLatch release = new CountDownLatch(1);
+    private static final CountDownLatch busy = new CountDownLatch(1);
+    private static ExecutorService executor;
+    // A single thread and no queue
+    private static ThreadPoolExecutor bounded;
+    private static Undertow server;
+    private static String base;
+
+    @BeforeClass
+    public static void beforeClass() {
+        executor = Executors.newFixedThreadPool(2);
+        bounded = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<>());
+        RoutingHandler handler = new RoutingHandler()
+            .post("/io", SaneHandler.nonBlocking(new EchoHandler(), null))
+            .post("/executor", SaneHandler.nonBlocking(new EchoHandler(), executor))
+            .post("/bounded", SaneHandler.nonBlocking(exchange -> {
+                busy.countDown();
+                release.await();
+                exchange.getResponseSender().send("{}");
+            }, bounded))
+            .post("/blocking", SaneHandler.around(new EchoHandler()))
+            .post("/large/executor", SaneHandler.nonBlocking(new LargeHandler(), executor))
+            .post("/large/blocking", SaneHandler.around(new LargeHandler()))
+            .post("/large/gzip", new EncodingHandler(SaneHandler.nonBlocking(new LargeHandler(), executor),
+                new ContentEncodingRepository().addEncodingHandler("gzip", new GzipEncodingProvider(), 50)))
+            .get("/cached", SaneHandler.nonBlocking(new CachedHandler(), null))
+            .get("/cached/gzip", new EncodingHandler(SaneHandler.nonBlocking(new CachedHandler(), null),
+                new ContentEncodingRepository().addEncodingHandler("gzip", new GzipEncodingProvider(), 50)));
+        server = Undertow.builder().addHttpListener(0, "127.0.0.1").setHandler(handler).build();
+        server.start();
+        InetSocketAddress address = (InetSocketAddress) server.getListenerInfo().get(0).getAddress();
+        base = "http://127.0.0.1:" + address.getPort();
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        server.stop();
+        release.countDown();
+        executor.shutdown();
+        bounded.shutdown();
+    }
+
+    private HttpURLConnection post(String path, String body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(base + path).openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return conn;
+    }
+
+    private String read(InputStream is) throws IOException {
+        try (InputStream in = is) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void bodyReadOnIoThread() throws IOException {
+        HttpURLConnection conn = post("/io", "hello");
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("{\"body\":\"hello\",\"io\":true}", read(conn.getInputStream()));
+    }
+
+    @Test
+    public void bodyReadOnExecutor() throws IOException {
+        HttpURLConnection conn = post("/executor", "hello");
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("{\"body\":\"hello\",\"io\":false}", read(conn.getInputStream()));
+    }
+
+    @Test
+    public void blockingStillWorks() throws IOException {
+        HttpURLConnection conn = post("/blocking", "hello");
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("{\"body\":\"hello\",\"io\":false}", read(conn.getInputStream()));
+    }
+
+    private void assertStreamed(String path, int count) throws IOException {
+        HttpURLConnection conn = post(path, "{\"count\":" + count + "}");
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("chunked", conn.getHeaderField("Transfer-Encoding"));
+        JsonObject mappings = GsonUtil.parseObj(read(conn.getInputStream())).getAsJsonObject("mappings");
+        assertEquals(count, mappings.size());
+        assertEquals("@user" + (count - 1) + ":example.org", mappings.get("hash" + (count - 1)).getAsString());
+    }
+
+    @Test
+    public void largeResponsesStreamed() throws IOException {
+        assertStreamed("/large/executor", 50000);
+        assertStreamed("/large/blocking", 50000);
+    }
+
+    @Test
+    public void smallStreamedResponsesHaveLength() throws IOException {
+        HttpURLConnection conn = post("/large/executor", "{\"count\":1}");
+        assertEquals(200, conn.getResponseCode());
+        assertTrue(conn.getContentLength() > 0);
+        assertEquals(conn.getContentLength(), read(conn.getInputStream()).getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    public void streamedResponsesCompressed() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(base + "/large/gzip").openConnection();
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty("Accept-Encoding", "gzip");
+        conn.setDoOutput(true);
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write("{\"count\":1000}".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("gzip", conn.getContentEncoding());
+        JsonObject body = GsonUtil.parseObj(read(new GZIPInputStream(conn.getInputStream())));
+        assertEquals(1000, body.getAsJsonObject("mappings").size());
+    }
+
+    @Test
+    public void conditionalRequests() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(base + "/cached").openConnection();
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("{\"key\":\"value\"}", read(conn.getInputStream()));
+        String etag = conn.getHeaderField("ETag");
+        String lastModified = conn.getHeaderField("Last-Modified");
+        assertTrue(StringUtils.isNotBlank(etag));
+        assertTrue(StringUtils.isNotBlank(lastModified));
+        assertEquals("Accept-Encoding", conn.getHeaderField("Vary"));
+
+        conn = (HttpURLConnection) new URL(base + "/cached").openConnection();
+        conn.setRequestProperty("If-None-Match", etag);
+        assertEquals(304, conn.getResponseCode());
+
+        conn = (HttpURLConnection) new URL(base + "/cached").openConnection();
+        conn.setRequestProperty("If-None-Match", "\"other\"");
+        assertEquals(200, conn.getResponseCode());
+        read(conn.getInputStream());
+
+        conn = (HttpURLConnection) new URL(base + "/cached").openConnection();
+        conn.setRequestProperty("If-Modified-Since", lastModified);
+        assertEquals(304, conn.getResponseCode());
+    }
+
+    @Test
+    public void compressedBodyHasWeakETag() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(base + "/cached/gzip").openConnection();
+        conn.setRequestProperty("Accept-Encoding", "gzip");
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("gzip", conn.getContentEncoding());
+        assertEquals("{\"key\":\"value\"}", read(new GZIPInputStream(conn.getInputStream())));
+        String etag = conn.getHeaderField("ETag");
+        assertTrue(etag.startsWith("W/"));
+        assertEquals("Accept-Encoding", conn.getHeaderField("Vary"));
+
+        // Either representation validates the other
+        conn = (HttpURLConnection) new URL(base + "/cached").openConnection();
+        conn.setRequestProperty("If-None-Match", etag);
+        assertEquals(304, conn.getResponseCode());
+    }
+
+    @Test
+    public void shedWhenExecutorRejects() throws Exception {
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return post("/bounded", "").getResponseCode();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTrue(busy.await(10, TimeUnit.SECONDS));
+
+        HttpURLConnection conn = post("/bounded", "");
+        assertEquals(429, conn.getResponseCode());
+        assertTrue(read(conn.getErrorStream()).contains("M_LIMIT_EXCEEDED"));
+
+        release.countDown();
+        assertEquals(200, (int) first.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void errorsAreMapped() throws IOException {
+        HttpURLConnection conn = post("/executor", "fail");
+        assertEquals(400, conn.getResponseCode());
+        assertTrue(read(conn.getErrorStream()).contains("M_INVALID_PARAM"));
+
+        conn = post("/io", "fail");
+        assertEquals(400, conn.getResponseCode());
+        assertTrue(read(conn.getErrorStream()).contains("M_INVALID_PARAM"));
+    }
+
+}
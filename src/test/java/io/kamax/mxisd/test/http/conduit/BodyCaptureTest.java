@@ -0,0 +1,51 @@
+package io.kamax.mxisd.test.http.conduit;
+
+import io.kamax.mxisd.http.undertow.conduit.BodyCapture;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class BodyCaptureTest {
+
+    private ByteBuffer buffer(String data) {
+        return ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void keepsEverythingUnderLimit() {
+        BodyCapture capture = new BodyCapture(16);
+        capture.capture(buffer("hello "), 0, 6);
+        capture.capture(buffer("world"), 0, 5);
+        assertEquals("hello world", capture.dump());
+    }
+
+    @Test
+    public void truncatesOverLimit() {
+        BodyCapture capture = new BodyCapture(4);
+        capture.capture(buffer("abcdef"), 0, 6);
+        capture.capture(buffer("ghij"), 0, 4);
+        assertEquals("abcd... (6 more bytes)", capture.dump());
+    }
+
+    @Test
+    public void leavesBufferUntouched() {
+        ByteBuffer b = buffer("xxabcxx");
+        b.position(5);
+        BodyCapture capture = new BodyCapture(16);
+        capture.capture(b, 2, 3);
+        assertEquals("abc", capture.dump());
+        assertEquals(5, b.position());
+        assertEquals(7, b.limit());
+    }
+
+    @Test
+    public void zeroLimitOnlyCounts() {
+        BodyCapture capture = new BodyCapture(0);
+        capture.capture(buffer("abc"), 0, 3);
+        assertEquals("... (3 more bytes)", capture.dump());
+    }
+
+}
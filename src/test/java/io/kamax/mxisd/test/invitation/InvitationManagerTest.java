@@ -0,0 +1,171 @@
+package io.kamax.mxisd.test.invitation;
+
+import io.kamax.matrix.MatrixID;
+import io.kamax.mxisd.config.MxisdConfig;
+import io.kamax.mxisd.crypto.ed25519.Ed25519Key;
+import io.kamax.mxisd.crypto.ed25519.Ed25519KeyManager;
+import io.kamax.mxisd.crypto.ed25519.Ed25519RegularKeyIdentifier;
+import io.kamax.mxisd.crypto.ed25519.Ed25519SignatureManager;
+import io.kamax.mxisd.dns.FederationDnsOverwrite;
+import io.kamax.mxisd.invitation.InvitationManager;
+import io.kamax.mxisd.invitation.ThreePidInvite;
+import io.kamax.mxisd.invitation.ThreePidInviteReply;
+import io.kamax.mxisd.matrix.HomeserverFederationResolver;
+import io.kamax.mxisd.storage.IStorage;
+import io.kamax.mxisd.storage.crypto.MemoryKeyStore;
+import io.kamax.mxisd.storage.ormlite.dao.ThreePidInviteIO;
+import io.kamax.mxisd.test.crypto.KeyTest;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InvitationManagerTest {
+
+    private static class TestResolver extends HomeserverFederationResolver {
+
+        private final URL url;
+
+        TestResolver(URL url) {
+            super(new FederationDnsOverwrite(new MxisdConfig().getDns().getOverwrite()), null);
+            this.url = url;
+        }
+
+        @Override
+        protected Step resolveWellKnown(String domain) {
+            return Step.found(url, Duration.ofHours(1));
+        }
+
+        @Override
+        protected Step resolveDnsSrv(String domain) {
+            return Step.notFound();
+        }
+
+    }
+
+    private final List<String> storageCalls = new CopyOnWriteArrayList<>();
+    private final CountDownLatch archived = new CountDownLatch(1);
+    private TestResolver resolver;
+    private InvitationManager mgr;
+
+    // Only records calls, with a single pending invite
+    private IStorage storage() {
+        ThreePidInvite invite = new ThreePidInvite(MatrixID.asAcceptable("@alice:example.org"), "email",
+            "john@example.org", "!room:example.org", new HashMap<>());
+        ThreePidInviteIO io = new ThreePidInviteIO(new ThreePidInviteReply("invite", invite, "token", "", Collections.emptyList()));
+
+        return (IStorage) Proxy.newProxyInstance(IStorage.class.getClassLoader(), new Class<?>[]{IStorage.class}, (proxy, method, args) -> {
+            if ("getInvites".equals(method.getName())) {
+                return Collections.singletonList(io);
+            }
+
+            storageCalls.add(method.getName());
+            if ("insertHistoricalInvite".equals(method.getName())) {
+                archived.countDown();
+            }
+            return null;
+        });
+    }
+
+    private InvitationManager build(int port) throws IOException {
+        MxisdConfig cfg = MxisdConfig.forDomain("localhost").inMemory().build();
+        MemoryKeyStore keyStore = new MemoryKeyStore();
+        keyStore.add(new Ed25519Key(new Ed25519RegularKeyIdentifier("0"), KeyTest.Private));
+        Ed25519KeyManager keyMgr = new Ed25519KeyManager(keyStore);
+
+        resolver = new TestResolver(new URL("http://127.0.0.1:" + port));
+        mgr = new InvitationManager(cfg, storage(), null, keyMgr, new Ed25519SignatureManager(cfg, keyMgr), resolver, null, null);
+        return mgr;
+    }
+
+    @After
+    public void after() {
+        if (mgr != null) {
+            mgr.stop(0, TimeUnit.SECONDS);
+        }
+        if (resolver != null) {
+            resolver.stop();
+        }
+    }
+
+    @Test
+    public void failedPublicationStaysPending() throws Exception {
+        int port;
+        try (ServerSocket unused = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = unused.getLocalPort();
+        }
+
+        InvitationManager mgr = build(port);
+        mgr.expireInvite("invite");
+        mgr.stop(10, TimeUnit.SECONDS);
+
+        assertTrue(storageCalls.isEmpty());
+        assertEquals(1, mgr.listInvites().size());
+    }
+
+    @Test
+    public void noStorageAfterStop() throws Exception {
+        try (ServerSocket hs = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            InvitationManager mgr = build(hs.getLocalPort());
+            mgr.expireInvite("invite");
+
+            try (Socket publication = hs.accept()) {
+                // The homeserver only answers once the grace period is over, and the storage is about to be closed
+                mgr.stop(100, TimeUnit.MILLISECONDS);
+
+                publication.setSoTimeout(10000);
+                InputStream is = publication.getInputStream();
+                byte[] buffer = new byte[8192];
+                is.read(buffer);
+                OutputStream os = publication.getOutputStream();
+                os.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\n{}".getBytes(StandardCharsets.UTF_8));
+                os.flush();
+
+                assertFalse(archived.await(1, TimeUnit.SECONDS));
+                assertTrue(storageCalls.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void successfulPublicationArchived() throws Exception {
+        try (ServerSocket hs = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            InvitationManager mgr = build(hs.getLocalPort());
+            mgr.expireInvite("invite");
+
+            try (Socket publication = hs.accept()) {
+                publication.setSoTimeout(10000);
+                publication.getInputStream().read(new byte[8192]);
+                OutputStream os = publication.getOutputStream();
+                os.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\n{}".getBytes(StandardCharsets.UTF_8));
+                os.flush();
+
+                assertTrue(archived.await(10, TimeUnit.SECONDS));
+            }
+
+            mgr.stop(10, TimeUnit.SECONDS);
+            assertTrue(storageCalls.contains("deleteInvite"));
+            assertTrue(mgr.listInvites().isEmpty());
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * mxisd - Matrix Identity Server Daemon
+ * Copyright (C) 2019 Kamax Sàrl
+ *
+ * https://www.kamax.io/
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.kamax.mxisd.test.json;
+
+import io.kamax.matrix.json.GsonUtil;
+import io.kamax.matrix.json.MatrixJson;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MatrixJsonTest {
+
+    private void assertCanonical(String expected, String input) {
+        assertEquals(expected, MatrixJson.encodeCanonical(input));
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), MatrixJson.encodeCanonicalBytes(GsonUtil.parseObj(input)));
+    }
+
+    @Test
+    public void sortsKeys() {
+        assertCanonical("{}", "{}");
+        assertCanonical("{\"one\":1,\"two\":\"Two\"}", "{\"one\": 1, \"two\": \"Two\"}");
+        assertCanonical("{\"a\":\"1\",\"b\":\"2\"}", "{\"b\": \"2\", \"a\": \"1\"}");
+        assertCanonical("{\"auth\":{\"mxid\":\"@john.doe:example.com\",\"profile\":{\"display_name\":\"John Doe\","
+                        + "\"three_pids\":[{\"address\":\"john.doe@example.org\",\"medium\":\"email\"},{\"address\":\"123456789\","
+                        + "\"medium\":\"msisdn\"}]},\"success\":true}}",
+                "{\"auth\": {\"success\": true, \"mxid\": \"@john.doe:example.com\", \"profile\": {\"display_name\": \"John Doe\","
+                        + "\"three_pids\": [{\"medium\": \"email\", \"address\": \"john.doe@example.org\"}, {\"medium\": \"msisdn\","
+                        + "\"address\": \"123456789\"}]}}}");
+    }
+
+    @Test
+    public void encodesValues() {
+        assertCanonical("{\"a\":null,\"b\":[1,2.5,-3,1e10],\"c\":false}", "{\"c\": false, \"b\": [1, 2.5, -3, 1e10], \"a\": null}");
+    }
+
+    @Test
+    public void escapesStrings() {
+        assertCanonical("{\"a\":\"日本語\"}", "{\"a\": \"\\u65E5\\u672C\\u8A9E\"}");
+        assertCanonical("{\"日\":1,\"本\":2}", "{\"本\": 2, \"日\": 1}");
+        assertCanonical("{\"a\":\"\\\"\\\\\\t\\n\\r\\b\\f\\u0001\\u2028\"}", "{\"a\": \"\\\"\\\\\\t\\n\\r\\b\\f\\u0001\\u2028\"}");
+        assertCanonical("{\"a\":\"<>&='/é😀\"}", "{\"a\": \"<>&='/\\u00e9\\ud83d\\ude00\"}");
+    }
+
+}
@@ -0,0 +1,53 @@
+package io.kamax.mxisd.test.logging;
+
+import io.kamax.mxisd.logging.LogLevels;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogLevelsTest {
+
+    private static final String Component = "io.kamax.mxisd.test.logging.levels";
+
+    @After
+    public void after() {
+        LogLevels.reset(Component);
+    }
+
+    @Test
+    public void appliesToExistingLoggers() {
+        Logger log = LoggerFactory.getLogger(Component + ".Child");
+        assertFalse(log.isTraceEnabled());
+
+        LogLevels.set(Component, "trace");
+        assertTrue(log.isTraceEnabled());
+        assertEquals("trace", LogLevels.list().get(Component));
+
+        LogLevels.reset(Component);
+        assertFalse(log.isTraceEnabled());
+    }
+
+    @Test
+    public void closestComponentWins() {
+        Logger log = LoggerFactory.getLogger(Component + ".Child");
+        LogLevels.set(Component, "error");
+        LogLevels.set(Component + ".Child", "debug");
+        try {
+            assertTrue(log.isDebugEnabled());
+        } finally {
+            LogLevels.reset(Component + ".Child");
+        }
+        assertFalse(log.isInfoEnabled());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLevel() {
+        LogLevels.set(Component, "verbose");
+    }
+
+}
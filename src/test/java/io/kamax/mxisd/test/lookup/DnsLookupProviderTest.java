@@ -0,0 +1,129 @@
+package io.kamax.mxisd.test.lookup;
+
+import io.kamax.mxisd.config.IdentityServerDiscoveryConfig;
+import io.kamax.mxisd.config.MatrixConfig;
+import io.kamax.mxisd.config.RemoteBulkLookupConfig;
+import io.kamax.mxisd.lookup.SingleLookupReply;
+import io.kamax.mxisd.lookup.SingleLookupRequest;
+import io.kamax.mxisd.lookup.ThreePidMapping;
+import io.kamax.mxisd.lookup.fetcher.IRemoteIdentityServerFetcher;
+import io.kamax.mxisd.lookup.provider.DnsLookupProvider;
+import io.kamax.mxisd.lookup.provider.IdentityServerDiscoveryCache;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DnsLookupProviderTest {
+
+    private final List<String> lookupThreads = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private DnsLookupProvider provider;
+
+    private final IRemoteIdentityServerFetcher fetcher = new IRemoteIdentityServerFetcher() {
+
+        @Override
+        public boolean isUsable(String remote) {
+            return true;
+        }
+
+        @Override
+        public Optional<SingleLookupReply> find(String remote, SingleLookupRequest request) {
+            return Optional.empty();
+        }
+
+        @Override
+        public List<ThreePidMapping> find(String remote, List<ThreePidMapping> mappings) {
+            lookupThreads.add(Thread.currentThread().getName());
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Collections.emptyList();
+            }
+
+            List<ThreePidMapping> found = new ArrayList<>();
+            for (ThreePidMapping mapping : mappings) {
+                found.add(new ThreePidMapping(mapping.getMedium(), mapping.getValue(), "@john:" + remote));
+            }
+            return found;
+        }
+
+    };
+
+    private DnsLookupProvider build(int threads, int queue) {
+        MatrixConfig cfg = new MatrixConfig();
+        cfg.setDomain("example.org");
+
+        IdentityServerDiscoveryConfig discoveryCfg = new IdentityServerDiscoveryConfig();
+        discoveryCfg.setProbeInterval("0s");
+        discoveryCfg.build();
+        IdentityServerDiscoveryCache discovery = new IdentityServerDiscoveryCache(discoveryCfg, Optional::of, url -> true);
+
+        RemoteBulkLookupConfig bulkCfg = new RemoteBulkLookupConfig();
+        bulkCfg.setThreads(threads);
+        bulkCfg.setQueue(queue);
+        bulkCfg.build();
+
+        provider = new DnsLookupProvider(cfg, bulkCfg, discovery, fetcher);
+        return provider;
+    }
+
+    private List<ThreePidMapping> mappings(String... domains) {
+        List<ThreePidMapping> mappings = new ArrayList<>();
+        for (String domain : domains) {
+            mappings.add(new ThreePidMapping("email", "john@" + domain, null));
+        }
+        return mappings;
+    }
+
+    @After
+    public void after() {
+        release.countDown();
+        if (provider != null) {
+            provider.close();
+        }
+    }
+
+    @Test
+    public void callerRunsOverBound() throws Exception {
+        DnsLookupProvider provider = build(1, 1);
+        List<ThreePidMapping> mappings = mappings("a.example.com", "b.example.com", "c.example.com");
+
+        CompletableFuture<List<ThreePidMapping>> result = new CompletableFuture<>();
+        Thread caller = new Thread(() -> result.complete(provider.populate(mappings)), "lookup-caller");
+        caller.start();
+
+        // One domain on the single thread, one queued, and the last one looked up by the caller itself
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (lookupThreads.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(2, lookupThreads.size());
+        assertTrue(lookupThreads.containsAll(Arrays.asList("dns-bulk-lookup", "lookup-caller")));
+
+        release.countDown();
+        assertEquals(3, result.get(10, TimeUnit.SECONDS).size());
+        assertEquals(3, lookupThreads.size());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void rejectsOnceClosed() {
+        build(1, 1).close();
+        provider.populate(mappings("a.example.com"));
+    }
+
+}
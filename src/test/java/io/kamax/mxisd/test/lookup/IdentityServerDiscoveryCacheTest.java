@@ -0,0 +1,57 @@
+package io.kamax.mxisd.test.lookup;
+
+import io.kamax.mxisd.config.IdentityServerDiscoveryConfig;
+import io.kamax.mxisd.lookup.provider.IdentityServerDiscoveryCache;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class IdentityServerDiscoveryCacheTest {
+
+    private final Map<String, Integer> discoveries = new HashMap<>();
+
+    private IdentityServerDiscoveryCache build(AtomicBoolean usable) {
+        IdentityServerDiscoveryConfig cfg = new IdentityServerDiscoveryConfig();
+        cfg.setProbeInterval("0s");
+        cfg.build();
+
+        return new IdentityServerDiscoveryCache(cfg, domain -> {
+            discoveries.merge(domain, 1, Integer::sum);
+            return "example.org".equals(domain) ? Optional.of("https://matrix.example.org:443") : Optional.empty();
+        }, url -> usable.get());
+    }
+
+    @Test
+    public void cachesPositiveAndNegative() {
+        IdentityServerDiscoveryCache cache = build(new AtomicBoolean(true));
+
+        assertEquals("https://matrix.example.org:443", cache.find("example.org").orElse(""));
+        assertEquals("https://matrix.example.org:443", cache.find("example.org").orElse(""));
+        assertFalse(cache.find("example.com").isPresent());
+        assertFalse(cache.find("example.com").isPresent());
+
+        assertEquals(1, (int) discoveries.get("example.org"));
+        assertEquals(1, (int) discoveries.get("example.com"));
+    }
+
+    @Test
+    public void rediscoversWhenProbeFails() {
+        AtomicBoolean usable = new AtomicBoolean(true);
+        IdentityServerDiscoveryCache cache = build(usable);
+        cache.find("example.org");
+
+        cache.probe();
+        assertEquals(1, (int) discoveries.get("example.org"));
+
+        usable.set(false);
+        cache.probe();
+        assertEquals(2, (int) discoveries.get("example.org"));
+    }
+
+}
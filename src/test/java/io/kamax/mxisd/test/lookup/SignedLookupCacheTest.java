@@ -0,0 +1,73 @@
+package io.kamax.mxisd.test.lookup;
+
+import io.kamax.matrix.MatrixID;
+import io.kamax.mxisd.config.SignedLookupCacheConfig;
+import io.kamax.mxisd.lookup.SignedLookupCache;
+import io.kamax.mxisd.lookup.SingleLookupReply;
+import io.kamax.mxisd.lookup.SingleLookupRequest;
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class SignedLookupCacheTest {
+
+    private SingleLookupReply makeReply(String address, Instant notBefore, Instant notAfter) {
+        SingleLookupRequest req = new SingleLookupRequest();
+        req.setType("email");
+        req.setThreePid(address);
+        return new SingleLookupReply(req, MatrixID.asAcceptable("john", "example.org"), Instant.now(), notBefore, notAfter);
+    }
+
+    private SingleLookupReply makeReply(String address) {
+        return makeReply(address, Instant.now().minusSeconds(60), Instant.now().plusSeconds(300));
+    }
+
+    private SignedLookupCacheConfig makeConfig() {
+        SignedLookupCacheConfig cfg = new SignedLookupCacheConfig();
+        cfg.build();
+        return cfg;
+    }
+
+    @Test
+    public void hitForSameLookupAndKey() {
+        SignedLookupCache cache = new SignedLookupCache(makeConfig());
+        cache.put(makeReply("john@example.org"), "ed25519:0", "{\"a\":1}");
+
+        assertEquals("{\"a\":1}", cache.get(makeReply("john@example.org"), "ed25519:0").orElse(""));
+        assertFalse(cache.get(makeReply("jane@example.org"), "ed25519:0").isPresent());
+    }
+
+    @Test
+    public void invalidatedOnKeyRotation() {
+        SignedLookupCache cache = new SignedLookupCache(makeConfig());
+        cache.put(makeReply("john@example.org"), "ed25519:0", "{}");
+
+        assertFalse(cache.get(makeReply("john@example.org"), "ed25519:1").isPresent());
+        assertFalse(cache.get(makeReply("john@example.org"), "ed25519:0").isPresent());
+    }
+
+    @Test
+    public void notCachedOutsideValidityWindow() {
+        SignedLookupCache cache = new SignedLookupCache(makeConfig());
+        cache.put(makeReply("expired@example.org", Instant.now().minusSeconds(120), Instant.now().minusSeconds(60)), "ed25519:0", "{}");
+        cache.put(makeReply("future@example.org", Instant.now().plusSeconds(60), Instant.now().plusSeconds(120)), "ed25519:0", "{}");
+
+        assertFalse(cache.get(makeReply("expired@example.org"), "ed25519:0").isPresent());
+        assertFalse(cache.get(makeReply("future@example.org"), "ed25519:0").isPresent());
+    }
+
+    @Test
+    public void disabled() {
+        SignedLookupCacheConfig cfg = new SignedLookupCacheConfig();
+        cfg.setEnabled(false);
+        cfg.build();
+        SignedLookupCache cache = new SignedLookupCache(cfg);
+        cache.put(makeReply("john@example.org"), "ed25519:0", "{}");
+
+        assertFalse(cache.get(makeReply("john@example.org"), "ed25519:0").isPresent());
+    }
+
+}
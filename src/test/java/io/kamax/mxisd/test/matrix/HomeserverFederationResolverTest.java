@@ -24,17 +24,70 @@ import io.kamax.mxisd.Mxisd;
 import io.kamax.mxisd.config.MxisdConfig;
 import io.kamax.mxisd.dns.FederationDnsOverwrite;
 import io.kamax.mxisd.matrix.HomeserverFederationResolver;
+import io.kamax.mxisd.matrix.HomeserverFederationResolver.Step;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class HomeserverFederationResolverTest {
 
+    // Resolves through the given well-known step, with no SRV record, at a controlled time
+    private static class TestResolver extends HomeserverFederationResolver {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile Supplier<Step> wellKnown;
+        private volatile Instant now = Instant.ofEpochSecond(1571000000L);
+
+        TestResolver(int maxEntries) {
+            super(new FederationDnsOverwrite(new MxisdConfig().getDns().getOverwrite()), null, maxEntries);
+        }
+
+        @Override
+        protected Instant now() {
+            return now;
+        }
+
+        @Override
+        protected Step resolveWellKnown(String domain) {
+            calls.incrementAndGet();
+            return wellKnown.get();
+        }
+
+        @Override
+        protected Step resolveDnsSrv(String domain) {
+            return Step.notFound();
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        // Background refreshes are counted when they start, wait for them to be done
+        void awaitCalls(int count) throws InterruptedException {
+            for (int i = 0; i < 50 && calls.get() < count; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(count, calls.get());
+            Thread.sleep(100);
+        }
+
+    }
+
     private static HomeserverFederationResolver resolver;
 
     @BeforeClass
@@ -61,4 +114,114 @@ public class HomeserverFederationResolverTest {
         assertEquals("https://example.org:443", url.toString());
     }
 
+    @Test
+    public void staleServedWhileRefreshFails() throws InterruptedException {
+        TestResolver r = new TestResolver(100);
+        try {
+            URL good = r.build("matrix.example.org:443");
+            r.wellKnown = () -> Step.found(good, Duration.ofHours(1));
+            assertEquals(good, r.resolve("example.org").getUrl());
+
+            // Expired, but still served while refreshed in the background
+            r.wellKnown = Step::failed;
+            r.advance(Duration.ofMinutes(65));
+            assertEquals(good, r.resolve("example.org").getUrl());
+            r.awaitCalls(2);
+
+            // The failed refresh did not replace the good entry with the default fallback
+            assertEquals(good, r.resolve("example.org").getUrl());
+            r.advance(Duration.ofHours(3));
+            assertEquals(good, r.resolve("example.org").getUrl());
+            assertEquals(3, r.calls.get());
+        } finally {
+            r.stop();
+        }
+    }
+
+    @Test
+    public void concurrentResolutionsCoalesced() throws Exception {
+        TestResolver r = new TestResolver(100);
+        try {
+            URL good = r.build("matrix.example.org:443");
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            r.wellKnown = () -> {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Step.found(good, Duration.ofHours(1));
+            };
+
+            CompletableFuture<URL> first = CompletableFuture.supplyAsync(() -> r.resolve("example.org").getUrl());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<URL> second = CompletableFuture.supplyAsync(() -> r.resolve("example.org").getUrl());
+            Thread.sleep(200);
+            release.countDown();
+
+            assertEquals(good, first.get(5, TimeUnit.SECONDS));
+            assertEquals(good, second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, r.calls.get());
+        } finally {
+            r.stop();
+        }
+    }
+
+    @Test
+    public void failuresBackOff() throws InterruptedException {
+        TestResolver r = new TestResolver(100);
+        try {
+            r.wellKnown = Step::failed;
+            assertEquals("https://example.org:8448", r.resolve("example.org").getUrl().toString());
+            assertEquals(1, r.calls.get());
+
+            // First failure is cached for a minute
+            r.advance(Duration.ofSeconds(30));
+            r.resolve("example.org");
+            assertEquals(1, r.calls.get());
+
+            r.advance(Duration.ofSeconds(31));
+            r.resolve("example.org");
+            r.awaitCalls(2);
+
+            // Second failure in a row is cached for two minutes
+            r.advance(Duration.ofSeconds(90));
+            r.resolve("example.org");
+            assertEquals(2, r.calls.get());
+
+            r.advance(Duration.ofSeconds(31));
+            r.resolve("example.org");
+            r.awaitCalls(3);
+        } finally {
+            r.stop();
+        }
+    }
+
+    @Test
+    public void cacheBounded() {
+        TestResolver r = new TestResolver(10);
+        try {
+            r.wellKnown = () -> Step.found(r.build("matrix.example.org:443"), Duration.ofHours(1));
+            for (int i = 0; i < 100; i++) {
+                r.resolve("example" + i + ".org");
+            }
+            assertTrue(r.getCachedCount() <= 10);
+        } finally {
+            r.stop();
+        }
+    }
+
+    @Test
+    public void cacheTtlFromHeaders() {
+        Instant now = Instant.ofEpochSecond(1571000000L); // Sun, 13 Oct 2019 20:53:20 GMT
+        assertEquals(Optional.of(Duration.ofSeconds(3600)), HomeserverFederationResolver.getCacheTtl("public, max-age=3600", null, now));
+        assertEquals(Optional.of(Duration.ZERO), HomeserverFederationResolver.getCacheTtl("no-store", null, now));
+        assertEquals(Optional.of(Duration.ofSeconds(600)), HomeserverFederationResolver.getCacheTtl(null, "Sun, 13 Oct 2019 21:03:20 GMT", now));
+        assertEquals(Optional.of(Duration.ZERO), HomeserverFederationResolver.getCacheTtl(null, "0", now));
+        assertEquals(Optional.of(Duration.ofSeconds(60)), HomeserverFederationResolver.getCacheTtl("max-age=60", "Sun, 13 Oct 2019 21:03:20 GMT", now));
+        assertFalse(HomeserverFederationResolver.getCacheTtl(null, null, now).isPresent());
+    }
+
 }
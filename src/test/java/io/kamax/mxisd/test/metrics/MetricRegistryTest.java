@@ -0,0 +1,81 @@
+package io.kamax.mxisd.test.metrics;
+
+import io.kamax.mxisd.metrics.Counter;
+import io.kamax.mxisd.metrics.Gauge;
+import io.kamax.mxisd.metrics.Histogram;
+import io.kamax.mxisd.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricRegistryTest {
+
+    private final MetricRegistry registry = new MetricRegistry();
+
+    @Test
+    public void counter() {
+        Counter c = registry.counter("test_total", "Test counter", "route", "status");
+        c.inc("/a", "200");
+        c.inc(2, "/a", "200");
+        c.inc("/b", "404");
+        assertSame(c, registry.counter("test_total", "Test counter", "route", "status"));
+        assertEquals(3, c.get("/a", "200"));
+
+        String output = registry.scrape();
+        assertTrue(output.contains("# TYPE mxisd_test_total counter\n"));
+        assertTrue(output.contains("mxisd_test_total{route=\"/a\",status=\"200\"} 3\n"));
+        assertTrue(output.contains("mxisd_test_total{route=\"/b\",status=\"404\"} 1\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void labelCountMismatch() {
+        registry.counter("test_mismatch_total", "Test counter", "route").inc();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void typeMismatch() {
+        registry.counter("test_type", "Test counter");
+        registry.gauge("test_type", "Test gauge");
+    }
+
+    @Test
+    public void gauge() {
+        AtomicInteger size = new AtomicInteger(42);
+        Gauge g = registry.gauge("test_gauge", "Test gauge", "pool");
+        g.inc("a");
+        g.inc("a");
+        g.dec("a");
+        g.track(size::get, "b");
+
+        String output = registry.scrape();
+        assertTrue(output.contains("mxisd_test_gauge{pool=\"a\"} 1\n"));
+        assertTrue(output.contains("mxisd_test_gauge{pool=\"b\"} 42\n"));
+    }
+
+    @Test
+    public void histogram() {
+        Histogram h = registry.histogram("test_seconds", "Test histogram", new double[]{0.1, 1}, "route");
+        h.observe(0.05, "/a");
+        h.observe(0.5, "/a");
+        h.observe(5, "/a");
+
+        String output = registry.scrape();
+        assertTrue(output.contains("# TYPE mxisd_test_seconds histogram\n"));
+        assertTrue(output.contains("mxisd_test_seconds_bucket{route=\"/a\",le=\"0.1\"} 1\n"));
+        assertTrue(output.contains("mxisd_test_seconds_bucket{route=\"/a\",le=\"1\"} 2\n"));
+        assertTrue(output.contains("mxisd_test_seconds_bucket{route=\"/a\",le=\"+Inf\"} 3\n"));
+        assertTrue(output.contains("mxisd_test_seconds_sum{route=\"/a\"} 5.55\n"));
+        assertTrue(output.contains("mxisd_test_seconds_count{route=\"/a\"} 3\n"));
+    }
+
+    @Test
+    public void labelValuesEscaped() {
+        registry.counter("test_escape_total", "Test counter", "value").inc("a\"b\\c");
+        assertTrue(registry.scrape().contains("mxisd_test_escape_total{value=\"a\\\"b\\\\c\"} 1\n"));
+    }
+
+}
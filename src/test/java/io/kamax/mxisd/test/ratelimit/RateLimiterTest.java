@@ -0,0 +1,113 @@
+package io.kamax.mxisd.test.ratelimit;
+
+import io.kamax.mxisd.config.RateLimitConfig;
+import io.kamax.mxisd.ratelimit.LoadShedder;
+import io.kamax.mxisd.ratelimit.RateLimiter;
+import io.kamax.mxisd.ratelimit.TokenBucket;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    private static final String Route = "/_matrix/identity/v2/lookup";
+
+    private RateLimiter build(double rate, int burst, int maxKeys) {
+        RateLimitConfig.Rule rule = new RateLimitConfig.Rule();
+        rule.setRoutes(Collections.singletonList(Route));
+        rule.setKey(RateLimitConfig.Key.ip);
+        rule.setRate(rate);
+        rule.setBurst(burst);
+
+        RateLimitConfig cfg = new RateLimitConfig();
+        cfg.setEnabled(true);
+        cfg.setMaxKeys(maxKeys);
+        cfg.setRules(Collections.singletonList(rule));
+        cfg.build();
+        return new RateLimiter(cfg);
+    }
+
+    @Test
+    public void bucketRefills() {
+        long now = 0;
+        TokenBucket bucket = new TokenBucket(2, 2, now);
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(500, bucket.tryAcquire(now));
+
+        now += TimeUnit.MILLISECONDS.toNanos(500);
+        assertEquals(0, bucket.tryAcquire(now));
+        assertFalse(bucket.isFull(now));
+
+        now += TimeUnit.SECONDS.toNanos(10);
+        assertTrue(bucket.isFull(now));
+    }
+
+    @Test
+    public void limitsPerClient() {
+        RateLimiter limiter = build(0.001, 2, 100);
+        assertEquals(0, limiter.acquire(Route, RateLimitConfig.Key.ip, "10.0.0.1"));
+        assertEquals(0, limiter.acquire(Route, RateLimitConfig.Key.ip, "10.0.0.1"));
+        assertTrue(limiter.acquire(Route, RateLimitConfig.Key.ip, "10.0.0.1") > 0);
+
+        assertEquals(0, limiter.acquire(Route, RateLimitConfig.Key.ip, "10.0.0.2"));
+        assertEquals(0, limiter.acquire("/other", RateLimitConfig.Key.ip, "10.0.0.1"));
+        assertEquals(0, limiter.acquire(Route, RateLimitConfig.Key.token, "10.0.0.1"));
+    }
+
+    @Test
+    public void forgetsClientsOverMaxKeys() {
+        RateLimiter limiter = build(0.001, 1, 2);
+        assertEquals(0, limiter.acquire(Route, RateLimitConfig.Key.ip, "10.0.0.1"));
+        assertEquals(0, limiter.acquire(Route, RateLimitConfig.Key.ip, "10.0.0.2"));
+        assertEquals(0, limiter.acquire(Route, RateLimitConfig.Key.ip, "10.0.0.3"));
+        assertEquals(0, limiter.acquire(Route, RateLimitConfig.Key.ip, "10.0.0.1"));
+    }
+
+    @Test
+    public void keepsActiveClientsOverMaxKeys() {
+        RateLimiter limiter = build(0.001, 1, 10);
+        assertEquals(0, limiter.acquire(Route, RateLimitConfig.Key.ip, "10.0.0.1"));
+
+        // Many new clients only push out the least recent ones, not a client still being limited
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limiter.acquire(Route, RateLimitConfig.Key.ip, "10.0.0.1") > 0);
+            assertEquals(0, limiter.acquire(Route, RateLimitConfig.Key.ip, "10.0.1." + i));
+        }
+    }
+
+    @Test
+    public void onlyVerifiedTokens() {
+        RateLimiter limiter = build(0.001, 1, 10);
+        assertFalse(limiter.findVerifiedToken("token").isPresent());
+
+        limiter.addVerifiedToken("token");
+        assertTrue(limiter.findVerifiedToken("token").isPresent());
+        assertFalse(limiter.findVerifiedToken("token").get().contains("token"));
+        assertFalse(limiter.findVerifiedToken("other").isPresent());
+    }
+
+    @Test
+    public void disabled() {
+        RateLimiter limiter = new RateLimiter(new RateLimitConfig());
+        assertFalse(limiter.isEnabled());
+        assertEquals(0, limiter.acquire(Route, RateLimitConfig.Key.ip, "10.0.0.1"));
+    }
+
+    @Test
+    public void shedsOverMaxInFlight() {
+        LoadShedder shedder = new LoadShedder(2, 1000);
+        assertTrue(shedder.tryEnter(Route));
+        assertTrue(shedder.tryEnter(Route));
+        assertFalse(shedder.tryEnter(Route));
+        shedder.leave();
+        assertTrue(shedder.tryEnter(Route));
+        assertEquals(2, shedder.getInFlight());
+    }
+
+}
@@ -0,0 +1,48 @@
+package io.kamax.mxisd.test.ratelimit;
+
+import io.kamax.mxisd.exception.ConfigurationException;
+import io.kamax.mxisd.ratelimit.TrustedProxies;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrustedProxiesTest {
+
+    private final TrustedProxies proxies = new TrustedProxies(Arrays.asList("127.0.0.1", "10.0.0.0/8", "::1"));
+
+    @Test
+    public void peerWithoutProxies() {
+        TrustedProxies none = new TrustedProxies(Collections.emptyList());
+        assertEquals("127.0.0.1", none.getClient("127.0.0.1", "192.0.2.1"));
+    }
+
+    @Test
+    public void headerOnlyFromTrustedPeer() {
+        assertEquals("192.0.2.1", proxies.getClient("127.0.0.1", "192.0.2.1"));
+        assertEquals("198.51.100.7", proxies.getClient("198.51.100.7", "192.0.2.1"));
+        assertEquals("127.0.0.1", proxies.getClient("127.0.0.1", " "));
+        assertEquals("192.0.2.1", proxies.getClient("::1", "192.0.2.1"));
+    }
+
+    @Test
+    public void skipsTrustedHops() {
+        assertEquals("192.0.2.1", proxies.getClient("127.0.0.1", "192.0.2.1, 10.1.2.3"));
+        // Values sent by the client itself are left of the address the first proxy saw
+        assertEquals("192.0.2.1", proxies.getClient("127.0.0.1", "203.0.113.9, 192.0.2.1, 10.1.2.3"));
+        assertEquals("10.0.0.1", proxies.getClient("127.0.0.1", "10.0.0.1"));
+    }
+
+    @Test
+    public void hostnamesAreNotTrusted() {
+        assertEquals("localhost", proxies.getClient("127.0.0.1", "192.0.2.1, localhost"));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void invalidRange() {
+        new TrustedProxies(Collections.singletonList("10.0.0.0/eight"));
+    }
+
+}
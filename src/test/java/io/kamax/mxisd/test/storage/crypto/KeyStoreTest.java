@@ -20,10 +20,13 @@
 
 package io.kamax.mxisd.test.storage.crypto;
 
+import io.kamax.matrix.codec.MxBase64;
 import io.kamax.mxisd.crypto.*;
+import io.kamax.mxisd.crypto.ed25519.Ed25519KeyManager;
 import io.kamax.mxisd.exception.ObjectNotFoundException;
 import io.kamax.mxisd.storage.crypto.KeyStore;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.RandomUtils;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -42,6 +45,11 @@ public abstract class KeyStoreTest {
         return new GenericKey(keyId, true, RandomStringUtils.randomAlphanumeric(48));
     }
 
+    private Key generateRandomEd25519Key() {
+        KeyIdentifier keyId = new GenericKeyIdentifier(KeyType.Ephemeral, KeyAlgorithm.Ed25519, RandomStringUtils.randomAlphanumeric(6));
+        return new GenericKey(keyId, true, MxBase64.encode(RandomUtils.nextBytes(32)));
+    }
+
     @Before
     public void before() throws Exception {
         store = create();
@@ -125,4 +133,20 @@ public abstract class KeyStoreTest {
         store.setCurrentKey(generateRandomKey().getId());
     }
 
+    @Test
+    public void findByPublicKey() {
+        Key key = generateRandomEd25519Key();
+        store.add(key);
+        store.add(generateRandomEd25519Key());
+
+        String pubKey = Ed25519KeyManager.getPublicKeyBase64(key.getPrivateKeyBase64());
+        Optional<KeyIdentifier> found = store.findByPublicKey(KeyType.Ephemeral, pubKey);
+        assertTrue(found.isPresent());
+        assertEquals(key.getId(), found.get());
+        assertFalse(store.findByPublicKey(KeyType.Regular, pubKey).isPresent());
+
+        store.delete(key.getId());
+        assertFalse(store.findByPublicKey(KeyType.Ephemeral, pubKey).isPresent());
+    }
+
 }
@@ -0,0 +1,116 @@
+package io.kamax.mxisd.test.util;
+
+import io.kamax.mxisd.util.AsyncLimiter;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncLimiterTest {
+
+    private AsyncLimiter limiter;
+
+    @After
+    public void after() {
+        if (limiter != null) {
+            limiter.close();
+        }
+    }
+
+    @Test
+    public void limitsConcurrency() {
+        limiter = new AsyncLimiter("test", 2, 30, TimeUnit.SECONDS);
+        AtomicInteger started = new AtomicInteger();
+        List<CompletableFuture<Integer>> operations = new ArrayList<>();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            CompletableFuture<Integer> operation = new CompletableFuture<>();
+            operations.add(operation);
+            results.add(limiter.submit(() -> {
+                started.incrementAndGet();
+                return operation;
+            }));
+        }
+
+        // Submitting never blocks, the operations over the limit are queued
+        assertEquals(2, started.get());
+        assertEquals(3, limiter.getQueued());
+        assertEquals(0, limiter.getAvailable());
+
+        operations.get(0).complete(0);
+        assertEquals(0, (int) results.get(0).join());
+        assertEquals(3, started.get());
+
+        for (int i = 1; i < operations.size(); i++) {
+            operations.get(i).complete(i);
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, (int) results.get(i).join());
+        }
+        assertEquals(5, started.get());
+        assertEquals(2, limiter.getAvailable());
+    }
+
+    @Test
+    public void timeoutReleasesSlot() {
+        limiter = new AsyncLimiter("test", 1, 1, TimeUnit.SECONDS);
+
+        // Never completes
+        CompletableFuture<String> stuck = limiter.submit(CompletableFuture::new);
+        CompletableFuture<String> next = limiter.submit(() -> CompletableFuture.completedFuture("next"));
+        assertFalse(next.isDone());
+
+        try {
+            stuck.join();
+            fail("Operation did not time out");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        assertEquals("next", next.join());
+        assertEquals(1, limiter.getAvailable());
+    }
+
+    @Test
+    public void failureReleasesSlot() {
+        limiter = new AsyncLimiter("test", 1, 30, TimeUnit.SECONDS);
+
+        CompletableFuture<String> failed = limiter.submit(() -> {
+            throw new IllegalStateException();
+        });
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals("ok", limiter.<String>submit(() -> CompletableFuture.completedFuture("ok")).join());
+        assertEquals(1, limiter.getAvailable());
+    }
+
+    @Test
+    public void manyImmediateOperations() {
+        limiter = new AsyncLimiter("test", 1, 30, TimeUnit.SECONDS);
+        CompletableFuture<Void> blocker = new CompletableFuture<>();
+        CompletableFuture<Void> first = limiter.submit(() -> blocker);
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            int value = i;
+            results.add(limiter.submit(() -> CompletableFuture.completedFuture(value)));
+        }
+
+        // Releasing the slot runs all queued operations without recursing through each of them
+        blocker.complete(null);
+        first.join();
+        assertEquals(99999, (int) results.get(99999).join());
+        assertEquals(0, limiter.getQueued());
+    }
+
+}